@@ -1,10 +1,129 @@
 package sc.ript.util;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
 
 abstract class AbstractSortedList<T> implements SortedList<T> {
 
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        for (Object o : c) {
+            if (!contains(o)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return listIterator();
+    }
+
+    @Override
+    public ListIterator<T> listIterator() {
+        return listIterator(0);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ListIterator<T> listIterator(int index) {
+        List<T> snapshot = (List<T>) Arrays.asList(toArray());
+        if ((index < 0) || (snapshot.size() < index)) {
+            throw new IndexOutOfBoundsException();
+        }
+        return Collections.unmodifiableList(snapshot).listIterator(index);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <S> S[] toArray(S[] a) {
+        Object[] elements = toArray();
+        if (a.length < elements.length) {
+            return (S[]) Arrays.copyOf(elements, elements.length, a.getClass());
+        }
+        System.arraycopy(elements, 0, a, 0, elements.length);
+        if (elements.length < a.length) {
+            a[elements.length] = null;
+        }
+        return a;
+    }
+
+    @Override
+    public T quantile(double q) {
+        return quantiles(q).get(0);
+    }
+
+    @Override
+    public List<T> quantiles(double... qs) {
+        Object[] elements = toArray();
+        int[] ranks = ranks(qs, elements.length);
+        Object[] values = new Object[ranks.length];
+        for (int i = 0; i < ranks.length; i++) {
+            values[i] = elements[ranks[i]];
+        }
+        return asList(values);
+    }
+
+    static int rank(double q, int size) {
+        // nearest rank: the smallest index whose share of the list reaches q
+        if (!((0 <= q) && (q <= 1))) {
+            throw new IllegalArgumentException("quantile out of [0, 1]: " + q);
+        }
+        int index = (int) Math.ceil(q * size) - 1;
+        return Math.min(Math.max(index, 0), size - 1);
+    }
+
+    static int[] ranks(double[] qs, int size) {
+        if (qs.length == 0) {
+            throw new IllegalArgumentException();
+        }
+        int[] ranks = new int[qs.length];
+        for (int i = 0; i < qs.length; i++) {
+            ranks[i] = rank(qs[i], size);
+        }
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return ranks;
+    }
+
+    static int[] distinct(int[] ranks) {
+        int[] sorted = ranks.clone();
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if ((n == 0) || (sorted[n - 1] != sorted[i])) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, n);
+    }
+
+    static <T> List<T> arrange(int[] ranks, int[] sorted, Object[] values) {
+        // values[i] belongs to sorted[i]; the result follows the order of ranks
+        Object[] result = new Object[ranks.length];
+        for (int i = 0; i < ranks.length; i++) {
+            result[i] = values[Arrays.binarySearch(sorted, ranks[i])];
+        }
+        return asList(result);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> List<T> asList(Object[] values) {
+        return Collections.unmodifiableList((List<T>) Arrays.asList(values));
+    }
+
     @Override
     public List<T> subList(int fromIndex, int toIndex) {
         throw new UnsupportedOperationException();
@@ -0,0 +1,454 @@
+package sc.ript.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * SortedList that keeps a small list as one sorted array, where positional access is direct indexing and an insert is a
+ * binary search and a copy, and moves the elements into a {@link RankTree} once they outgrow a threshold. It moves them
+ * back into an array only when the size falls to a quarter of the threshold, so a list that hovers around the threshold
+ * does not switch on every operation.
+ */
+public class AdaptiveList<T> extends AbstractSortedList<T> {
+
+    public static final int DEFAULT_THRESHOLD = 128;
+
+    private static final int SHRINK_RATIO = 4;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final RankTree<T> tree;
+
+    private final int threshold;
+
+    private Object[] array = new Object[INITIAL_CAPACITY];
+
+    private int size;
+
+    public AdaptiveList() {
+        this(null);
+    }
+
+    public AdaptiveList(Comparator<? super T> c) {
+        this(c, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Uses an array up to {@code threshold} elements.
+     */
+    public AdaptiveList(Comparator<? super T> c, int threshold) {
+        if (threshold < SHRINK_RATIO) {
+            throw new IllegalArgumentException("threshold: " + threshold);
+        }
+        tree = new RankTree<>(c);
+        this.threshold = threshold;
+    }
+
+    /**
+     * Returns whether the elements are held in a sorted array rather than a tree.
+     */
+    boolean isCompact() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return array != null;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (array != null) {
+                return size;
+            }
+            return tree.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return 0 <= indexOf(o);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (array != null) {
+                if ((index < 0) || (size <= index)) {
+                    throw new IndexOutOfBoundsException();
+                }
+                return (T) array[index];
+            }
+            if ((index < 0) || (tree.size() <= index)) {
+                throw new IndexOutOfBoundsException();
+            }
+            return tree.nodeAt(index).value;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<T> quantiles(double... qs) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (array != null) {
+                int[] ranks = ranks(qs, size);
+                Object[] values = new Object[ranks.length];
+                for (int i = 0; i < ranks.length; i++) {
+                    values[i] = array[ranks[i]];
+                }
+                return asList(values);
+            }
+            int[] ranks = ranks(qs, tree.size());
+            int[] sorted = distinct(ranks);
+            return arrange(ranks, sorted, tree.valuesAt(sorted));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (array != null) {
+                return Arrays.copyOf(array, size);
+            }
+            return tree.toArray();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if ((o == null) && (tree.comparator == null)) {
+            return -1;
+        }
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (array != null) {
+                return Math.max(search(o), -1);
+            }
+            return tree.indexOf(o);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T remove(int index) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (array != null) {
+                if ((index < 0) || (size <= index)) {
+                    throw new IndexOutOfBoundsException();
+                }
+                T o = (T) array[index];
+                removeAt(index);
+                return o;
+            }
+            if ((index < 0) || (tree.size() <= index)) {
+                throw new IndexOutOfBoundsException();
+            }
+            T o = tree.removeAt(index).value;
+            shrink();
+            return o;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if ((o == null) && (tree.comparator == null)) {
+            return false;
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            boolean modified = removeOne(o);
+            shrink();
+            return modified;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            boolean modified = false;
+            for (Object o : c) {
+                if (((o != null) || (tree.comparator != null)) && removeOne(o)) {
+                    modified = true;
+                }
+            }
+            shrink();
+            return modified;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            Object[] ary = toArray();
+            int n = 0;
+            for (Object o : ary) {
+                if (c.contains(o)) {
+                    ary[n++] = o;
+                }
+            }
+            if (n == ary.length) {
+                return false;
+            }
+            load(ary, n);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            tree.clear();
+            array = new Object[INITIAL_CAPACITY];
+            size = 0;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return tree.comparator;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T first() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (array != null) {
+                if (size == 0) {
+                    throw new NoSuchElementException();
+                }
+                return (T) array[0];
+            }
+            return tree.first();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T last() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (array != null) {
+                if (size == 0) {
+                    throw new NoSuchElementException();
+                }
+                return (T) array[size - 1];
+            }
+            return tree.last();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean insert(T o) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (array == null) {
+                return tree.insert(o);
+            }
+            int index = search(o);
+            if (0 <= index) {
+                return false;
+            }
+            if (size == threshold) {
+                toTree();
+                return tree.insert(o);
+            }
+            index = -index - 1;
+            if (size == array.length) {
+                array = Arrays.copyOf(array, Math.min(size + (size >> 1) + 1, threshold));
+            }
+            System.arraycopy(array, index, array, index + 1, size - index);
+            array[index] = o;
+            size++;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean insertAll(Collection<T> c) {
+        Object[] keys = SortedArraySet.sort(c, tree.comparator);
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (keys.length == 0) {
+                return false;
+            }
+            if (array != null) {
+                // the merge drops keys already present; it may still be too large for an array
+                Object[] merged = merge(keys);
+                if (merged.length == size) {
+                    return false;
+                }
+                load(merged, merged.length);
+                return true;
+            }
+            boolean modified = false;
+            for (Object o : keys) {
+                if (tree.insert((T) o)) {
+                    modified = true;
+                }
+            }
+            return modified;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private int compare(Object o1, Object o2) {
+        return SortedArraySet.compare(tree.comparator, o1, o2);
+    }
+
+    private int search(Object o) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(array[mid], o);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private boolean removeOne(Object o) {
+        if (array == null) {
+            return tree.remove(o) != null;
+        }
+        int index = search(o);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(array, index + 1, array, index, size - index - 1);
+        array[--size] = null;
+    }
+
+    private Object[] merge(Object[] keys) {
+        Object[] merged = new Object[size + keys.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while ((i < size) && (j < keys.length)) {
+            int cmp = compare(array[i], keys[j]);
+            if (cmp < 0) {
+                merged[n++] = array[i++];
+            } else if (cmp > 0) {
+                merged[n++] = keys[j++];
+            } else {
+                merged[n++] = array[i++];
+                j++;
+            }
+        }
+        while (i < size) {
+            merged[n++] = array[i++];
+        }
+        while (j < keys.length) {
+            merged[n++] = keys[j++];
+        }
+        if (n == merged.length) {
+            return merged;
+        }
+        return Arrays.copyOf(merged, n);
+    }
+
+    /**
+     * Replaces the elements with the first {@code n} of the sorted array, in whichever form suits {@code n}.
+     */
+    private void load(Object[] sorted, int n) {
+        if (n <= threshold) {
+            tree.clear();
+            array = Arrays.copyOf(sorted, Math.max(n, INITIAL_CAPACITY));
+            size = n;
+        } else {
+            tree.build(sorted, 0, n);
+            array = null;
+            size = 0;
+        }
+    }
+
+    private void toTree() {
+        tree.build(array, 0, size);
+        array = null;
+        size = 0;
+    }
+
+    private void shrink() {
+        if ((array == null) && (tree.size() <= (threshold / SHRINK_RATIO))) {
+            Object[] ary = tree.toArray();
+            tree.clear();
+            array = Arrays.copyOf(ary, Math.max(ary.length, INITIAL_CAPACITY));
+            size = ary.length;
+        }
+    }
+}
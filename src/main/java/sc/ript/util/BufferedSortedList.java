@@ -0,0 +1,316 @@
+package sc.ript.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Front end for a shared SortedList under heavy ingest. Every thread appends to its own unsorted buffer, and a buffer
+ * is handed to {@link SortedList#insertAll(Collection)} of the shared list when it holds {@code batchSize} elements or
+ * on {@link #flush()}, so the shared write lock is taken once per batch instead of once per element.
+ * <p>
+ * {@link #insert(Object)} cannot know whether the element is already present and always returns true. Removals and
+ * {@link #clear()} flush every buffer first. Reads see the shared list, plus the calling thread's own buffered
+ * elements when the visibility is {@link Visibility#READ_YOUR_WRITES}; {@link #withVisibility(Visibility)} gives a
+ * view with the other visibility over the same buffers.
+ * <p>
+ * A thread's buffer lives until {@link #flush()} or {@link #clear()} finds that its thread has terminated; then it is
+ * drained one last time and dropped. Until that, elements a terminated thread left buffered are not visible to
+ * {@link Visibility#EVENTUAL} readers, so callers running inserts on short-lived threads should flush periodically.
+ * If the shared list throws while it takes a batch, the batch stays buffered and the exception reaches the caller;
+ * {@link #clear()} discards it.
+ */
+public class BufferedSortedList<T> extends AbstractSortedList<T> {
+
+    public enum Visibility {
+        READ_YOUR_WRITES, EVENTUAL
+    }
+
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    private final SortedList<T> target;
+
+    private final int batchSize;
+
+    private final Visibility visibility;
+
+    private final ThreadLocal<Buffer> local;
+
+    private final Queue<Buffer> buffers;
+
+    public BufferedSortedList(SortedList<T> target) {
+        this(target, DEFAULT_BATCH_SIZE, Visibility.READ_YOUR_WRITES);
+    }
+
+    public BufferedSortedList(SortedList<T> target, int batchSize, Visibility visibility) {
+        if ((target == null) || (visibility == null)) {
+            throw new NullPointerException();
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        this.target = target;
+        this.batchSize = batchSize;
+        this.visibility = visibility;
+        buffers = new ConcurrentLinkedQueue<>();
+        local = new ThreadLocal<Buffer>() {
+
+            @Override
+            protected Buffer initialValue() {
+                Buffer buffer = new Buffer();
+                buffers.add(buffer);
+                return buffer;
+            }
+        };
+    }
+
+    private BufferedSortedList(BufferedSortedList<T> source, Visibility visibility) {
+        target = source.target;
+        batchSize = source.batchSize;
+        this.visibility = visibility;
+        local = source.local;
+        buffers = source.buffers;
+    }
+
+    public BufferedSortedList<T> withVisibility(Visibility v) {
+        if (v == null) {
+            throw new NullPointerException();
+        }
+        if (v == visibility) {
+            return this;
+        }
+        return new BufferedSortedList<>(this, v);
+    }
+
+    public Visibility visibility() {
+        return visibility;
+    }
+
+    public int batchSize() {
+        return batchSize;
+    }
+
+    public SortedList<T> target() {
+        return target;
+    }
+
+    public void flush() {
+        for (Iterator<Buffer> i = buffers.iterator(); i.hasNext();) {
+            Buffer buffer = i.next();
+            buffer.flush(true);
+            if (buffer.orphaned()) {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of buffers not yet dropped.
+     */
+    int bufferCount() {
+        return buffers.size();
+    }
+
+    @Override
+    public boolean insert(T o) {
+        local.get().add(o);
+        return true;
+    }
+
+    @Override
+    public boolean insertAll(Collection<T> c) {
+        Object[] ary = c.toArray();
+        local.get().addAll(ary);
+        return 0 < ary.length;
+    }
+
+    @Override
+    public int size() {
+        beforeRead();
+        return target.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        beforeRead();
+        return target.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        beforeRead();
+        return target.contains(o);
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        beforeRead();
+        return target.containsAll(c);
+    }
+
+    @Override
+    public T get(int index) {
+        beforeRead();
+        return target.get(index);
+    }
+
+    @Override
+    public Object[] toArray() {
+        beforeRead();
+        return target.toArray();
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        beforeRead();
+        return target.indexOf(o);
+    }
+
+    @Override
+    public T first() {
+        beforeRead();
+        return target.first();
+    }
+
+    @Override
+    public T last() {
+        beforeRead();
+        return target.last();
+    }
+
+    @Override
+    public List<T> quantiles(double... qs) {
+        beforeRead();
+        return target.quantiles(qs);
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return target.comparator();
+    }
+
+    @Override
+    public T remove(int index) {
+        flush();
+        return target.remove(index);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        flush();
+        return target.remove(o);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        flush();
+        return target.removeAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        flush();
+        return target.retainAll(c);
+    }
+
+    @Override
+    public void clear() {
+        for (Iterator<Buffer> i = buffers.iterator(); i.hasNext();) {
+            Buffer buffer = i.next();
+            buffer.flush(false);
+            if (buffer.orphaned()) {
+                i.remove();
+            }
+        }
+        target.clear();
+    }
+
+    private void beforeRead() {
+        if (visibility == Visibility.READ_YOUR_WRITES) {
+            local.get().flush(true);
+        }
+    }
+
+    private final class Buffer {
+
+        // held while a batch is written to the target, so a flush that finds the buffer empty knows its elements are
+        // already visible
+        private final ReentrantLock lock = new ReentrantLock();
+
+        // weak, so that the buffer does not keep a terminated thread reachable
+        private final WeakReference<Thread> owner = new WeakReference<>(Thread.currentThread());
+
+        private Object[] elements = new Object[Math.min(batchSize, DEFAULT_BATCH_SIZE)];
+
+        private int size;
+
+        void add(Object o) {
+            lock.lock();
+            try {
+                append(o);
+                if (batchSize <= size) {
+                    drain(true);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void addAll(Object[] ary) {
+            lock.lock();
+            try {
+                for (Object o : ary) {
+                    append(o);
+                }
+                if (batchSize <= size) {
+                    drain(true);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void flush(boolean write) {
+            lock.lock();
+            try {
+                drain(write);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Returns true once the owning thread has terminated; nothing can be added to the buffer after that.
+         */
+        boolean orphaned() {
+            Thread thread = owner.get();
+            return (thread == null) || !thread.isAlive();
+        }
+
+        private void append(Object o) {
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, Math.max(size << 1, 1));
+            }
+            elements[size++] = o;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void drain(boolean write) {
+            if (size == 0) {
+                return;
+            }
+            if (write) {
+                // cleared only once the target took the batch, so that a failure leaves it buffered
+                target.insertAll((List<T>) Arrays.asList(Arrays.copyOf(elements, size)));
+            }
+            Arrays.fill(elements, 0, size, null);
+            size = 0;
+        }
+    }
+}
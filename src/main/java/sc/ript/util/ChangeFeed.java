@@ -0,0 +1,320 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Publisher of the changes made to a sorted set under its write lock. Every write section that changes the set is
+ * emitted as one batch: removals in descending order with their index before the section, then insertions in ascending
+ * order with their index after it. A new subscriber first receives the current contents as one batch of insertions,
+ * taken under the same lock, so it can keep derived state incrementally from there.
+ * <p>
+ * The interfaces have the shape of {@code java.util.concurrent.Flow}, and on Java 17 and later
+ * {@code ChangeFeedPublisher} adapts a feed to a {@code Flow.Publisher}. Batches are delivered on an executor as the
+ * subscriber requests them; a subscriber that falls more than {@code capacity} batches behind is cancelled with an
+ * {@link IllegalStateException} instead of blocking the writers.
+ * <p>
+ * While anyone is subscribed, the feed keeps the elements in a tree of its own that counts its subtrees, so the
+ * indexes of a batch take O(log n) per change wherever the changes are; it is dropped after the last subscriber
+ * leaves.
+ */
+public class ChangeFeed<T> {
+
+    public interface Subscriber<T> {
+
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    public interface Subscription {
+
+        void request(long n);
+
+        void cancel();
+    }
+
+    /**
+     * Called synchronously at the end of every write section that changed the set, with the write lock held.
+     */
+    interface SectionListener {
+
+        void onSection(Object[] inserted, Object[] removed);
+    }
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final NavigableSet<T> set;
+
+    private final ReentrantReadWriteLock lock;
+
+    private final Lock writeLock;
+
+    private final Executor executor;
+
+    private final int capacity;
+
+    private final List<Delivery> deliveries = new CopyOnWriteArrayList<>();
+
+    private final List<SectionListener> listeners = new CopyOnWriteArrayList<>();
+
+    // changes of the current write section, guarded by writeLock
+    private final List<Object> inserted = new ArrayList<>();
+
+    private final List<Object> removed = new ArrayList<>();
+
+    // the elements of the set while there are deliveries, guarded by writeLock
+    private RankTree<T> ranks;
+
+    ChangeFeed(NavigableSet<T> set, ReentrantReadWriteLock lock) {
+        this(set, lock, ForkJoinPool.commonPool(), DEFAULT_CAPACITY);
+    }
+
+    ChangeFeed(NavigableSet<T> set, ReentrantReadWriteLock lock, Executor executor, int capacity) {
+        this.set = set;
+        this.lock = lock;
+        this.writeLock = lock.writeLock();
+        this.executor = executor;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Subscribes under the write lock of the list, so that the first batch is a consistent snapshot.
+     *
+     * @throws IllegalStateException if the calling thread holds the read lock of the list, which cannot be upgraded
+     */
+    public void subscribe(Subscriber<? super List<ListChange<T>>> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException();
+        }
+        if (0 < lock.getReadHoldCount()) {
+            throw new IllegalStateException("subscribed while holding the read lock of the list");
+        }
+        Delivery delivery = new Delivery(subscriber);
+        subscriber.onSubscribe(delivery);
+        writeLock.lock();
+        try {
+            if (delivery.cancelled) {
+                return;
+            }
+            if (ranks == null) {
+                RankTree<T> tree = new RankTree<>(set.comparator());
+                Object[] sorted = set.toArray();
+                tree.build(sorted, 0, sorted.length);
+                ranks = tree;
+            }
+            deliveries.add(delivery);
+            Object[] snapshot = set.toArray();
+            if (0 < snapshot.length) {
+                List<ListChange<T>> batch = new ArrayList<>(snapshot.length);
+                for (int i = 0; i < snapshot.length; i++) {
+                    batch.add(change(ListChange.Kind.INSERT, snapshot[i], i));
+                }
+                delivery.offer(Collections.unmodifiableList(batch));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public int subscribers() {
+        return deliveries.size();
+    }
+
+    boolean isActive() {
+        return !deliveries.isEmpty() || !listeners.isEmpty();
+    }
+
+    void listen(SectionListener listener) {
+        listeners.add(listener);
+    }
+
+    void unlisten(SectionListener listener) {
+        listeners.remove(listener);
+    }
+
+    @SuppressWarnings("unchecked")
+    void recordInsert(Object o) {
+        inserted.add(o);
+        if (ranks != null) {
+            ranks.insert((T) o);
+        }
+    }
+
+    void recordRemove(Object o) {
+        removed.add(o);
+        if (ranks != null) {
+            ranks.remove(o);
+        }
+    }
+
+    void publish() {
+        // called at the end of a write section, with writeLock held and the set in its final state
+        if (deliveries.isEmpty()) {
+            // changes are not recorded without deliveries or listeners, so the tree may have fallen behind the set
+            ranks = null;
+        }
+        if (inserted.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        try {
+            for (SectionListener listener : listeners) {
+                listener.onSection(inserted.toArray(), removed.toArray());
+            }
+            if (!deliveries.isEmpty()) {
+                List<ListChange<T>> batch = Collections.unmodifiableList(changes());
+                for (Delivery delivery : deliveries) {
+                    delivery.offer(batch);
+                }
+            }
+        } finally {
+            inserted.clear();
+            removed.clear();
+        }
+    }
+
+    private List<ListChange<T>> changes() {
+        Comparator<? super T> comparator = set.comparator();
+        Object[] ins = inserted.toArray();
+        Object[] rem = removed.toArray();
+        SortedArraySet.sort(ins, ins.length, comparator);
+        SortedArraySet.sort(rem, rem.length, comparator);
+
+        // the tree holds the set after the section, inserted elements included; a removed element was preceded by
+        // the elements less than it, minus the inserted ones, plus the removed ones
+        List<ListChange<T>> batch = new ArrayList<>(rem.length + ins.length);
+        int ip = ins.length;
+        for (int rp = rem.length - 1; 0 <= rp; rp--) {
+            while ((0 < ip) && (0 < SortedArraySet.compare(comparator, ins[ip - 1], rem[rp]))) {
+                ip--;
+            }
+            batch.add(change(ListChange.Kind.REMOVE, rem[rp], ranks.rank(rem[rp]) - ip + rp));
+        }
+        for (Object o : ins) {
+            batch.add(change(ListChange.Kind.INSERT, o, ranks.rank(o)));
+        }
+        return batch;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ListChange<T> change(ListChange.Kind kind, Object element, int index) {
+        return new ListChange<>(kind, (T) element, index);
+    }
+
+    private final class Delivery implements Subscription, Runnable {
+
+        private final Subscriber<? super List<ListChange<T>>> subscriber;
+
+        private final Queue<List<ListChange<T>>> queue = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger queued = new AtomicInteger();
+
+        private final AtomicLong demand = new AtomicLong();
+
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean cancelled;
+
+        private volatile Throwable error;
+
+        Delivery(Subscriber<? super List<ListChange<T>>> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(List<ListChange<T>> batch) {
+            if (cancelled) {
+                return;
+            }
+            if (capacity <= queued.get()) {
+                fail(new IllegalStateException("subscriber fell " + capacity + " batches behind"));
+                return;
+            }
+            queue.add(batch);
+            queued.incrementAndGet();
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("non-positive request: " + n));
+                return;
+            }
+            long current;
+            long next;
+            do {
+                current = demand.get();
+                next = current + n;
+                if (next < 0) {
+                    next = Long.MAX_VALUE;
+                }
+            } while (!demand.compareAndSet(current, next));
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            deliveries.remove(this);
+        }
+
+        private void fail(Throwable e) {
+            error = e;
+            cancel();
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                Throwable e = error;
+                if (e != null) {
+                    error = null;
+                    queue.clear();
+                    subscriber.onError(e);
+                } else if (cancelled) {
+                    queue.clear();
+                } else {
+                    while ((0 < demand.get()) && !cancelled) {
+                        List<ListChange<T>> batch = queue.poll();
+                        if (batch == null) {
+                            break;
+                        }
+                        queued.decrementAndGet();
+                        demand.decrementAndGet();
+                        try {
+                            subscriber.onNext(batch);
+                        } catch (RuntimeException t) {
+                            cancel();
+                            queue.clear();
+                        }
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
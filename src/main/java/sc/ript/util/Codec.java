@@ -0,0 +1,60 @@
+package sc.ript.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary form of the elements of a list, used by the log and snapshots of {@link DurableTreeList} and on the wire
+ * between {@link PartitionedList} and its {@link ShardServer}s.
+ */
+public interface Codec<T> {
+
+    Codec<Long> LONG = new Codec<Long>() {
+
+        @Override
+        public void write(Long o, DataOutput out) throws IOException {
+            out.writeLong(o);
+        }
+
+        @Override
+        public Long read(DataInput in) throws IOException {
+            return in.readLong();
+        }
+    };
+
+    Codec<Integer> INTEGER = new Codec<Integer>() {
+
+        @Override
+        public void write(Integer o, DataOutput out) throws IOException {
+            out.writeInt(o);
+        }
+
+        @Override
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    Codec<String> STRING = new Codec<String>() {
+
+        @Override
+        public void write(String o, DataOutput out) throws IOException {
+            byte[] bytes = o.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    void write(T o, DataOutput out) throws IOException;
+
+    T read(DataInput in) throws IOException;
+}
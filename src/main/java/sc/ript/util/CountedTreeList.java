@@ -0,0 +1,26 @@
+package sc.ript.util;
+
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * SortedList backed by a balanced tree whose subtrees count their elements, so {@link #get(int)},
+ * {@link #indexOf(Object)} and {@link #quantile(double)} take O(log n) right after any insert or removal, and
+ * {@link #quantiles(double...)} resolves all of its ranks in one walk down the tree. Nothing is materialized, unlike
+ * the view of a {@link TreeList}.
+ */
+public class CountedTreeList<T> extends RankTreeList<T> {
+
+    public CountedTreeList() {
+        this((Comparator<? super T>) null);
+    }
+
+    public CountedTreeList(Comparator<? super T> c) {
+        super(new RankTree<T>(c));
+    }
+
+    public CountedTreeList(Collection<T> c) {
+        this();
+        insertAll(c);
+    }
+}
@@ -0,0 +1,610 @@
+package sc.ript.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * TreeList that survives restarts. Every write section of the list is appended to a log as one checksummed frame and
+ * committed through a {@link FileChannel} before the mutating call returns; concurrent writers share one write and one
+ * fsync (group commit). {@link #checkpoint()}, also run once the log outgrows {@code checkpointBytes}, writes the
+ * elements in sorted order to a snapshot and starts a new log, so recovery bulk-loads the snapshot in O(n) and replays
+ * only the log written since. A torn frame at the end of the log is dropped on recovery.
+ * <p>
+ * Under {@link FsyncPolicy#INTERVAL} a shared flusher thread also syncs the log of an idle list, so a write is durable
+ * within {@link #SYNC_INTERVAL_MILLIS} whether or not another write follows it; {@link #close()} stops it. A failed
+ * write or fsync of the log leaves the list with elements the log may lack, so the list fails from then on: every
+ * later mutating call throws {@link IllegalStateException} with the {@link IOException} as its cause, and the list
+ * has to be reopened from its directory.
+ */
+public class DurableTreeList<T> extends AbstractSortedList<T> implements Closeable {
+
+    public enum FsyncPolicy {
+        /** fsync before every mutating call returns */
+        ALWAYS,
+        /** write before returning, fsync at most once per {@link DurableTreeList#SYNC_INTERVAL_MILLIS} */
+        INTERVAL,
+        /** write before returning and leave flushing to the operating system */
+        NEVER
+    }
+
+    public static final long SYNC_INTERVAL_MILLIS = 100L;
+
+    public static final long DEFAULT_CHECKPOINT_BYTES = 64L << 20;
+
+    private static final int SNAPSHOT_MAGIC = 0x534c5331;
+
+    private static final String SNAPSHOT = "snapshot-";
+
+    private static final String LOG = "log-";
+
+    private static final String TMP = ".tmp";
+
+    private static final int FRAME_HEADER = 8;
+
+    private static final int IO_BUFFER = 1 << 16;
+
+    private final Path dir;
+
+    private final Codec<T> codec;
+
+    private final FsyncPolicy policy;
+
+    private final long checkpointBytes;
+
+    private final TreeList<T> list;
+
+    // writers share it, a checkpoint holds it exclusively while it switches to a new log
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+
+    private final ReentrantLock bufferLock = new ReentrantLock();
+
+    private final ReentrantLock commitLock = new ReentrantLock();
+
+    private final AtomicBoolean checkpointing = new AtomicBoolean();
+
+    private final ChangeFeed.SectionListener listener = new ChangeFeed.SectionListener() {
+
+        @Override
+        public void onSection(Object[] inserted, Object[] removed) {
+            append(inserted, removed);
+        }
+    };
+
+    // guarded by bufferLock
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    private long appended;
+
+    // guarded by commitLock
+    private long written;
+
+    private long synced;
+
+    private long syncedAt = System.nanoTime();
+
+    private FileChannel channel;
+
+    private long generation;
+
+    private volatile boolean closed;
+
+    // the first failed write or fsync of the log, after which memory may be ahead of it
+    private volatile IOException failure;
+
+    private final ScheduledFuture<?> flusher;
+
+    private DurableTreeList(Path dir, Codec<T> codec, Comparator<? super T> c, FsyncPolicy policy,
+            long checkpointBytes) throws IOException {
+        if ((dir == null) || (codec == null) || (policy == null)) {
+            throw new NullPointerException();
+        }
+        if (checkpointBytes <= 0) {
+            throw new IllegalArgumentException("checkpointBytes must be positive: " + checkpointBytes);
+        }
+        this.dir = dir;
+        this.codec = codec;
+        this.policy = policy;
+        this.checkpointBytes = checkpointBytes;
+        Files.createDirectories(dir);
+        list = recover(c);
+        list.listen(listener);
+        if (policy == FsyncPolicy.INTERVAL) {
+            flusher = Flusher.INSTANCE.scheduleWithFixedDelay(new Runnable() {
+
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, SYNC_INTERVAL_MILLIS, SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    public static <T> DurableTreeList<T> open(Path dir, Codec<T> codec, FsyncPolicy policy) throws IOException {
+        return new DurableTreeList<>(dir, codec, null, policy, DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    public static <T> DurableTreeList<T> open(Path dir, Codec<T> codec, Comparator<? super T> c, FsyncPolicy policy,
+            long checkpointBytes) throws IOException {
+        return new DurableTreeList<>(dir, codec, c, policy, checkpointBytes);
+    }
+
+    public FsyncPolicy policy() {
+        return policy;
+    }
+
+    public void checkpoint() throws IOException {
+        Object[] elements;
+        long gen;
+        Lock exclusive = checkpointLock.writeLock();
+        exclusive.lock();
+        try {
+            ensureOpen();
+            commit(true);
+            elements = list.toArray();
+            gen = generation + 1;
+            FileChannel next = openLog(gen);
+            channel.close();
+            channel = next;
+            generation = gen;
+            written = 0;
+            synced = 0;
+            bufferLock.lock();
+            try {
+                appended = 0;
+            } finally {
+                bufferLock.unlock();
+            }
+        } finally {
+            exclusive.unlock();
+        }
+        writeSnapshot(gen, elements);
+        deleteBefore(gen);
+    }
+
+    @Override
+    public void close() throws IOException {
+        Lock exclusive = checkpointLock.writeLock();
+        exclusive.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (flusher != null) {
+                flusher.cancel(false);
+            }
+            list.unlisten(listener);
+            try {
+                if (failure == null) {
+                    commit(true);
+                }
+            } finally {
+                closed = true;
+                channel.close();
+            }
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    @Override
+    public boolean insert(final T o) {
+        return write(() -> list.insert(o));
+    }
+
+    @Override
+    public boolean insertAll(final Collection<T> c) {
+        return write(() -> list.insertAll(c));
+    }
+
+    @Override
+    public T remove(final int index) {
+        return write(() -> list.remove(index));
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+        return write(() -> list.remove(o));
+    }
+
+    @Override
+    public boolean removeAll(final Collection<?> c) {
+        return write(() -> list.removeAll(c));
+    }
+
+    @Override
+    public boolean retainAll(final Collection<?> c) {
+        return write(() -> list.retainAll(c));
+    }
+
+    @Override
+    public void clear() {
+        write(() -> {
+            list.clear();
+            return null;
+        });
+    }
+
+    @Override
+    public int size() {
+        return list.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return list.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return list.contains(o);
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        return list.containsAll(c);
+    }
+
+    @Override
+    public T get(int index) {
+        return list.get(index);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return list.indexOf(o);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return list.toArray();
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return list.comparator();
+    }
+
+    @Override
+    public T first() {
+        return list.first();
+    }
+
+    @Override
+    public T last() {
+        return list.last();
+    }
+
+    @Override
+    public List<T> quantiles(double... qs) {
+        return list.quantiles(qs);
+    }
+
+    private <R> R write(Supplier<R> mutation) {
+        R result;
+        boolean full;
+        Lock shared = checkpointLock.readLock();
+        shared.lock();
+        try {
+            ensureOpen();
+            result = mutation.get();
+            full = commit(policy == FsyncPolicy.ALWAYS);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            shared.unlock();
+        }
+        if (full && checkpointing.compareAndSet(false, true)) {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                checkpointing.set(false);
+            }
+        }
+        return result;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("closed");
+        }
+        if (failure != null) {
+            throw new IllegalStateException("log failed, reopen the list", failure);
+        }
+    }
+
+    private void flush() {
+        // syncs what the last writes left unsynced; a failure is recorded for the next write to report
+        Lock shared = checkpointLock.readLock();
+        shared.lock();
+        try {
+            if (!closed && (failure == null)) {
+                commit(true);
+            }
+        } catch (IOException e) {
+            // nop
+        } finally {
+            shared.unlock();
+        }
+    }
+
+    private void append(Object[] inserted, Object[] removed) {
+        // runs inside the list's write section, so frames are logged in the order the sections were applied
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        try {
+            DataOutputStream out = new DataOutputStream(payload);
+            writeElements(out, inserted);
+            writeElements(out, removed);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER);
+        header.putInt(bytes.length);
+        header.putInt((int) crc.getValue());
+        bufferLock.lock();
+        try {
+            buffer.write(header.array(), 0, FRAME_HEADER);
+            buffer.write(bytes, 0, bytes.length);
+            appended += FRAME_HEADER + bytes.length;
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeElements(DataOutputStream out, Object[] elements) throws IOException {
+        out.writeInt(elements.length);
+        for (Object o : elements) {
+            codec.write((T) o, out);
+        }
+    }
+
+    private boolean commit(boolean force) throws IOException {
+        // writes every frame appended so far; a writer that finds its frames already written (and synced) by another
+        // one returns without touching the file. Returns whether the log has outgrown checkpointBytes.
+        long target;
+        bufferLock.lock();
+        try {
+            target = appended;
+        } finally {
+            bufferLock.unlock();
+        }
+        commitLock.lock();
+        try {
+            if (failure != null) {
+                // the frames of this writer may have been in the batch that failed
+                throw new IOException("log failed", failure);
+            }
+            return writeLog(target, force);
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+            throw e;
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    private boolean writeLog(long target, boolean force) throws IOException {
+        // guarded by commitLock
+        if (written < target) {
+            byte[] bytes;
+            bufferLock.lock();
+            try {
+                bytes = buffer.toByteArray();
+                buffer = new ByteArrayOutputStream();
+                target = appended;
+            } finally {
+                bufferLock.unlock();
+            }
+            ByteBuffer src = ByteBuffer.wrap(bytes);
+            while (src.hasRemaining()) {
+                channel.write(src);
+            }
+            written = target;
+        }
+        long now = System.nanoTime();
+        boolean due = force || ((policy == FsyncPolicy.INTERVAL)
+                && (TimeUnit.MILLISECONDS.toNanos(SYNC_INTERVAL_MILLIS) <= now - syncedAt));
+        if (due && (synced < written)) {
+            channel.force(false);
+            synced = written;
+            syncedAt = now;
+        }
+        return checkpointBytes <= written;
+    }
+
+    private TreeList<T> recover(Comparator<? super T> c) throws IOException {
+        TreeMap<Long, Path> snapshots = new TreeMap<>();
+        TreeMap<Long, Path> logs = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(TMP)) {
+                    Files.delete(path);
+                } else if (name.startsWith(SNAPSHOT)) {
+                    snapshots.put(Long.parseLong(name.substring(SNAPSHOT.length())), path);
+                } else if (name.startsWith(LOG)) {
+                    logs.put(Long.parseLong(name.substring(LOG.length())), path);
+                }
+            }
+        }
+
+        TreeList<T> recovered;
+        long from = 0;
+        if (snapshots.isEmpty()) {
+            recovered = new TreeList<>(c);
+        } else {
+            from = snapshots.lastKey();
+            recovered = new TreeList<>(new SortedArraySet<T>(readSnapshot(snapshots.lastEntry().getValue()), c));
+        }
+        generation = from;
+        for (Long gen : logs.tailMap(from, true).keySet()) {
+            replay(recovered, logs.get(gen));
+            generation = gen;
+        }
+        channel = openLog(generation);
+        written = channel.size();
+        synced = written;
+        appended = written;
+        return recovered;
+    }
+
+    private Object[] readSnapshot(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path),
+                IO_BUFFER))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("not a snapshot: " + path);
+            }
+            Object[] elements = new Object[in.readInt()];
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = codec.read(in);
+            }
+            return elements;
+        }
+    }
+
+    private void writeSnapshot(long gen, Object[] elements) throws IOException {
+        Path tmp = dir.resolve(SNAPSHOT + gen + TMP);
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream stream = new BufferedOutputStream(Channels.newOutputStream(out), IO_BUFFER);
+            DataOutputStream data = new DataOutputStream(stream);
+            data.writeInt(SNAPSHOT_MAGIC);
+            data.writeInt(elements.length);
+            writeAll(data, elements);
+            data.flush();
+            out.force(true);
+        }
+        Files.move(tmp, dir.resolve(SNAPSHOT + gen), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeAll(DataOutputStream out, Object[] elements) throws IOException {
+        for (Object o : elements) {
+            codec.write((T) o, out);
+        }
+    }
+
+    private void replay(TreeList<T> target, Path path) throws IOException {
+        long size = Files.size(path);
+        long valid = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path), IO_BUFFER)) {
+            DataInputStream data = new DataInputStream(in);
+            while (valid + FRAME_HEADER <= size) {
+                int length = data.readInt();
+                int crc = data.readInt();
+                if ((length < 0) || (size - valid - FRAME_HEADER < length)) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                data.readFully(bytes);
+                CRC32 check = new CRC32();
+                check.update(bytes, 0, bytes.length);
+                if ((int) check.getValue() != crc) {
+                    break;
+                }
+                DataInputStream frame = new DataInputStream(new ByteArrayInputStream(bytes));
+                target.insertAll(Arrays.asList(readElements(frame)));
+                target.removeAll(Arrays.asList(readElements(frame)));
+                valid += FRAME_HEADER + bytes.length;
+            }
+        }
+        if (valid < size) {
+            // drop the torn tail, so that new frames follow the last complete one
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                ch.truncate(valid);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T[] readElements(DataInputStream in) throws IOException {
+        Object[] elements = new Object[in.readInt()];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = codec.read(in);
+        }
+        return (T[]) elements;
+    }
+
+    private FileChannel openLog(long gen) throws IOException {
+        FileChannel ch = FileChannel.open(dir.resolve(LOG + gen), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        ch.position(ch.size());
+        return ch;
+    }
+
+    private void deleteBefore(long gen) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                long g = -1;
+                if (name.startsWith(SNAPSHOT) && !name.endsWith(TMP)) {
+                    g = Long.parseLong(name.substring(SNAPSHOT.length()));
+                } else if (name.startsWith(LOG)) {
+                    g = Long.parseLong(name.substring(LOG.length()));
+                }
+                if ((0 <= g) && (g < gen)) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Thread that syncs the logs of idle lists under {@link FsyncPolicy#INTERVAL}.
+     */
+    private static final class Flusher {
+
+        static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "DurableTreeList-flusher");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+}
@@ -0,0 +1,729 @@
+package sc.ript.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * SortedList of distinct strings in natural order, stored front-coded. The strings are cut into blocks of up to
+ * {@value #BLOCK_SIZE}; within a block each string keeps only the characters after the prefix it shares with the one
+ * before it, except every {@value #RESTART}th, which is kept whole so that a lookup can start there. Searches carry
+ * the length of the prefix already known to match the key, and do not compare those characters again.
+ */
+public class FrontCodedList extends AbstractSortedList<String> {
+
+    static final int BLOCK_SIZE = 64;
+
+    static final int RESTART = 16;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final String[] scratch = new String[BLOCK_SIZE + 1];
+
+    private Block[] blocks = new Block[0];
+
+    private String[] firsts = new String[0];
+
+    private int[] sizes = new int[0];
+
+    /**
+     * Block sizes as a Fenwick tree, so that the offset of a block and the block at an index are found, and a size is
+     * changed, in logarithmic time.
+     */
+    private int[] counts = new int[1];
+
+    private int length;
+
+    private int count;
+
+    public FrontCodedList() {
+        // empty
+    }
+
+    public FrontCodedList(Collection<String> c) {
+        String[] sorted = c.toArray(new String[c.size()]);
+        Arrays.sort(sorted);
+        load(sorted, distinct(sorted, sorted.length));
+    }
+
+    /**
+     * Returns the number of leading characters, from {@code from} on, that {@code s} and {@code key} share.
+     */
+    static int mismatch(CharSequence s, CharSequence key, int from) {
+        int n = Math.min(s.length(), key.length());
+        int i = from;
+        while ((i < n) && (s.charAt(i) == key.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Compares {@code s} with {@code key}, as {@link String#compareTo(String)} does, given that they share exactly
+     * {@code lcp} leading characters.
+     */
+    static int compare(CharSequence s, CharSequence key, int lcp) {
+        if ((lcp < s.length()) && (lcp < key.length())) {
+            return s.charAt(lcp) - key.charAt(lcp);
+        }
+        return s.length() - key.length();
+    }
+
+    /**
+     * Returns the number of strings less than {@code o}.
+     */
+    public int rank(String o) {
+        if (o == null) {
+            throw new NullPointerException();
+        }
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (length == 0) {
+                return 0;
+            }
+            int b = blockOf(o);
+            int i = blocks[b].search(o);
+            if (i < 0) {
+                return offset(b) - i - 1;
+            }
+            return offset(b) + i;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of characters kept by the blocks, less than the sum of the string lengths by the shared
+     * prefixes.
+     */
+    long storedChars() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            long chars = 0;
+            for (int b = 0; b < length; b++) {
+                chars += blocks[b].chars.length;
+            }
+            return chars;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return count;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return 0 <= indexOf(o);
+    }
+
+    @Override
+    public String get(int index) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if ((index < 0) || (count <= index)) {
+                throw new IndexOutOfBoundsException();
+            }
+            int b = blockAt(index);
+            return blocks[b].get(index - offset(b));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<String> quantiles(double... qs) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int[] ranks = ranks(qs, count);
+            Object[] values = new Object[ranks.length];
+            for (int i = 0; i < ranks.length; i++) {
+                int b = blockAt(ranks[i]);
+                values[i] = blocks[b].get(ranks[i] - offset(b));
+            }
+            return asList(values);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return strings();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof String)) {
+            return -1;
+        }
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (length == 0) {
+                return -1;
+            }
+            int b = blockOf((String) o);
+            int i = blocks[b].search((String) o);
+            if (i < 0) {
+                return -1;
+            }
+            return offset(b) + i;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public String remove(int index) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if ((index < 0) || (count <= index)) {
+                throw new IndexOutOfBoundsException();
+            }
+            int b = blockAt(index);
+            int i = index - offset(b);
+            String o = blocks[b].get(i);
+            removeAt(b, i);
+            return o;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return removeOne((String) o);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            boolean modified = false;
+            for (Object o : c) {
+                if ((o instanceof String) && removeOne((String) o)) {
+                    modified = true;
+                }
+            }
+            return modified;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            String[] values = strings();
+            int n = 0;
+            for (String o : values) {
+                if (c.contains(o)) {
+                    values[n++] = o;
+                }
+            }
+            if (n == values.length) {
+                return false;
+            }
+            load(values, n);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            load(new String[0], 0);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns {@code null}; strings are in natural order.
+     */
+    @Override
+    public Comparator<? super String> comparator() {
+        return null;
+    }
+
+    @Override
+    public String first() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (count == 0) {
+                throw new NoSuchElementException();
+            }
+            return firsts[0];
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public String last() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (count == 0) {
+                throw new NoSuchElementException();
+            }
+            Block block = blocks[length - 1];
+            return block.get(block.size() - 1);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean insert(String o) {
+        if (o == null) {
+            throw new NullPointerException();
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return addOne(o);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean insertAll(Collection<String> c) {
+        String[] values = c.toArray(new String[c.size()]);
+        Arrays.sort(values);
+        int n = distinct(values, values.length);
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (((long) n * BLOCK_SIZE) < count) {
+                // few strings: re-encode only the blocks they fall into
+                boolean modified = false;
+                for (int i = 0; i < n; i++) {
+                    if (addOne(values[i])) {
+                        modified = true;
+                    }
+                }
+                return modified;
+            }
+            String[] merged = merge(strings(), values, n);
+            if (merged.length == count) {
+                return false;
+            }
+            load(merged, merged.length);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static int distinct(String[] sorted, int n) {
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            if ((k == 0) || !sorted[k - 1].equals(sorted[i])) {
+                sorted[k++] = sorted[i];
+            }
+        }
+        return k;
+    }
+
+    private static String[] merge(String[] x, String[] y, int n) {
+        String[] merged = new String[x.length + n];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while ((i < x.length) && (j < n)) {
+            int cmp = x[i].compareTo(y[j]);
+            if (cmp < 0) {
+                merged[k++] = x[i++];
+            } else if (cmp > 0) {
+                merged[k++] = y[j++];
+            } else {
+                merged[k++] = x[i++];
+                j++;
+            }
+        }
+        while (i < x.length) {
+            merged[k++] = x[i++];
+        }
+        while (j < n) {
+            merged[k++] = y[j++];
+        }
+        return Arrays.copyOf(merged, k);
+    }
+
+    private String[] strings() {
+        String[] values = new String[count];
+        int from = 0;
+        for (int b = 0; b < length; b++) {
+            blocks[b].decode(values, from);
+            from += sizes[b];
+        }
+        return values;
+    }
+
+    /**
+     * Returns the last block whose first string is not greater than {@code o}, or the first block.
+     */
+    private int blockOf(String o) {
+        int low = 0;
+        int high = length - 1;
+        // every first string in [low, high] shares at least min(lcpLow, lcpHigh) characters with o
+        int lcpLow = 0;
+        int lcpHigh = 0;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            int lcp = mismatch(firsts[mid], o, Math.min(lcpLow, lcpHigh));
+            if (compare(firsts[mid], o, lcp) <= 0) {
+                low = mid;
+                lcpLow = lcp;
+            } else {
+                high = mid - 1;
+                lcpHigh = lcp;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the number of strings in the blocks before {@code b}.
+     */
+    private int offset(int b) {
+        int sum = 0;
+        for (int i = b; 0 < i; i -= i & -i) {
+            sum += counts[i];
+        }
+        return sum;
+    }
+
+    private int blockAt(int index) {
+        // the last block whose offset is not greater than index
+        int b = 0;
+        int rest = index;
+        int n = counts.length - 1;
+        for (int step = Integer.highestOneBit(n); 0 < step; step >>>= 1) {
+            if (((b + step) <= n) && (counts[b + step] <= rest)) {
+                b += step;
+                rest -= counts[b];
+            }
+        }
+        return b;
+    }
+
+    private void resize(int b, int delta) {
+        for (int i = b + 1; i < counts.length; i += i & -i) {
+            counts[i] += delta;
+        }
+    }
+
+    /**
+     * Rebuilds the tree for the blocks from {@code b} on. Nodes up to {@code b} cover only earlier blocks and are kept.
+     */
+    private void reindex(int b) {
+        // over the whole capacity; the sizes of unused blocks are 0
+        if (counts.length != (sizes.length + 1)) {
+            counts = Arrays.copyOf(counts, sizes.length + 1);
+        }
+        int sum = offset(b);
+        for (int i = b + 1; i < counts.length; i++) {
+            sum += sizes[i - 1];
+            counts[i] = sum;
+        }
+        // each node holds a prefix sum now; subtract the one before its range, from the top down
+        for (int i = counts.length - 1; b < i; i--) {
+            int k = i - (i & -i);
+            if (b < k) {
+                counts[i] -= counts[k];
+            } else {
+                counts[i] -= offset(k);
+            }
+        }
+    }
+
+    private boolean removeOne(String o) {
+        if (length == 0) {
+            return false;
+        }
+        int b = blockOf(o);
+        int i = blocks[b].search(o);
+        if (i < 0) {
+            return false;
+        }
+        removeAt(b, i);
+        return true;
+    }
+
+    private boolean addOne(String o) {
+        if (length == 0) {
+            load(new String[] { o }, 1);
+            return true;
+        }
+        int b = blockOf(o);
+        Block block = blocks[b];
+        int i = block.search(o);
+        if (0 <= i) {
+            return false;
+        }
+        i = -i - 1;
+        int size = block.size();
+        block.decode(scratch, 0);
+        System.arraycopy(scratch, i, scratch, i + 1, size - i);
+        scratch[i] = o;
+        size++;
+        if (size <= BLOCK_SIZE) {
+            encode(b, scratch, 0, size);
+            resize(b, 1);
+        } else {
+            int half = size >>> 1;
+            openBlock(b + 1);
+            encode(b, scratch, 0, half);
+            encode(b + 1, scratch, half, size - half);
+            reindex(b);
+        }
+        Arrays.fill(scratch, null);
+        count++;
+        return true;
+    }
+
+    private void removeAt(int b, int i) {
+        int size = sizes[b] - 1;
+        if (size == 0) {
+            closeBlock(b);
+            reindex(b);
+        } else {
+            blocks[b].decode(scratch, 0);
+            System.arraycopy(scratch, i + 1, scratch, i, size - i);
+            encode(b, scratch, 0, size);
+            Arrays.fill(scratch, null);
+            resize(b, -1);
+        }
+        count--;
+    }
+
+    private void encode(int b, String[] values, int from, int n) {
+        blocks[b] = new Block(values, from, n);
+        firsts[b] = values[from];
+        sizes[b] = n;
+    }
+
+    private void openBlock(int b) {
+        int n = length;
+        if (n == sizes.length) {
+            int capacity = n + (n >> 1) + 1;
+            blocks = Arrays.copyOf(blocks, capacity);
+            firsts = Arrays.copyOf(firsts, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+        }
+        System.arraycopy(blocks, b, blocks, b + 1, n - b);
+        System.arraycopy(firsts, b, firsts, b + 1, n - b);
+        System.arraycopy(sizes, b, sizes, b + 1, n - b);
+        length++;
+    }
+
+    private void closeBlock(int b) {
+        int n = length - 1;
+        System.arraycopy(blocks, b + 1, blocks, b, n - b);
+        System.arraycopy(firsts, b + 1, firsts, b, n - b);
+        System.arraycopy(sizes, b + 1, sizes, b, n - b);
+        blocks[n] = null;
+        firsts[n] = null;
+        sizes[n] = 0;
+        length = n;
+    }
+
+    /**
+     * Replaces the strings with the first {@code n} of a sorted, distinct array, in full blocks.
+     */
+    private void load(String[] sorted, int n) {
+        int capacity = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        blocks = new Block[capacity];
+        firsts = new String[capacity];
+        sizes = new int[capacity];
+        for (int b = 0; b < capacity; b++) {
+            int from = b * BLOCK_SIZE;
+            encode(b, sorted, from, Math.min(from + BLOCK_SIZE, n) - from);
+        }
+        length = capacity;
+        counts = new int[1];
+        reindex(0);
+        count = n;
+    }
+
+    /**
+     * Front-coded strings of one block. String {@code i} is its first {@code shared[i]} characters in common with
+     * string {@code i - 1}, then {@code chars[ends[i - 1], ends[i])}.
+     */
+    private static final class Block {
+
+        private final char[] chars;
+
+        private final int[] shared;
+
+        private final int[] ends;
+
+        Block(String[] values, int from, int n) {
+            shared = new int[n];
+            ends = new int[n];
+            int total = 0;
+            for (int i = 0; i < n; i++) {
+                if ((i % RESTART) != 0) {
+                    shared[i] = mismatch(values[from + i - 1], values[from + i], 0);
+                }
+                total += values[from + i].length() - shared[i];
+                ends[i] = total;
+            }
+            chars = new char[total];
+            for (int i = 0; i < n; i++) {
+                String s = values[from + i];
+                s.getChars(shared[i], s.length(), chars, start(i));
+            }
+        }
+
+        int size() {
+            return ends.length;
+        }
+
+        private int start(int i) {
+            if (i == 0) {
+                return 0;
+            }
+            return ends[i - 1];
+        }
+
+        String get(int i) {
+            StringBuilder sb = new StringBuilder();
+            int r = i - (i % RESTART);
+            sb.append(chars, start(r), ends[r] - start(r));
+            for (int j = r + 1; j <= i; j++) {
+                sb.setLength(shared[j]);
+                sb.append(chars, start(j), ends[j] - start(j));
+            }
+            return sb.toString();
+        }
+
+        void decode(String[] out, int from) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < ends.length; i++) {
+                sb.setLength(shared[i]);
+                sb.append(chars, start(i), ends[i] - start(i));
+                out[from + i] = sb.toString();
+            }
+        }
+
+        /**
+         * Returns the position of {@code o}, or {@code -(insertion point) - 1}.
+         */
+        int search(String o) {
+            // the last restart not greater than o, as in blockOf
+            int low = 0;
+            int high = (ends.length - 1) / RESTART;
+            int lcpLow = 0;
+            int lcpHigh = 0;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                int m = mismatchAt(mid * RESTART, 0, o, Math.min(lcpLow, lcpHigh));
+                if (compareAt(mid * RESTART, 0, o, m) <= 0) {
+                    low = mid;
+                    lcpLow = m;
+                } else {
+                    high = mid - 1;
+                    lcpHigh = m;
+                }
+            }
+            int i = low * RESTART;
+            int lcp = mismatchAt(i, 0, o, Math.min(lcpLow, lcpHigh));
+            int cmp = compareAt(i, 0, o, lcp);
+            int end = Math.min(i + RESTART, ends.length);
+            while (cmp < 0) {
+                // string i is less than o and shares lcp characters with it
+                i++;
+                if (i == end) {
+                    return -i - 1;
+                }
+                if (lcp < shared[i]) {
+                    // string i differs from o where string i - 1 did, in the same way
+                    continue;
+                }
+                if (shared[i] < lcp) {
+                    // string i has a greater character than string i - 1 where o has the same one
+                    return -i - 1;
+                }
+                lcp = mismatchAt(i, shared[i], o, lcp);
+                cmp = compareAt(i, shared[i], o, lcp);
+            }
+            if (cmp == 0) {
+                return i;
+            }
+            return -i - 1;
+        }
+
+        /**
+         * Returns the number of leading characters, from {@code lcp} on, that string {@code i} shares with {@code o},
+         * given that its first {@code prefix} characters are not held for it.
+         */
+        private int mismatchAt(int i, int prefix, String o, int lcp) {
+            int offset = start(i) - prefix;
+            int n = Math.min(ends[i] - offset, o.length());
+            int k = lcp;
+            while ((k < n) && (chars[offset + k] == o.charAt(k))) {
+                k++;
+            }
+            return k;
+        }
+
+        private int compareAt(int i, int prefix, String o, int lcp) {
+            int offset = start(i) - prefix;
+            int n = ends[i] - offset;
+            if ((lcp < n) && (lcp < o.length())) {
+                return chars[offset + lcp] - o.charAt(lcp);
+            }
+            return n - o.length();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package sc.ript.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Immutable SortedList, made by {@link TreeList#freeze()}. The elements are kept in one sorted array for positional
+ * access, and a second copy is laid out in breadth-first (Eytzinger) order for searches: the first levels of the
+ * implicit tree share a few cache lines and each step reads {@code 2k} or {@code 2k + 1}, which are adjacent. No
+ * method takes a lock, and every mutator throws {@link UnsupportedOperationException}.
+ */
+public final class FrozenList<T> extends AbstractSortedList<T> {
+
+    private final Comparator<? super T> comparator;
+
+    private final Object[] values;
+
+    // 1-based: the children of slot k are 2k and 2k + 1; slot 0 is unused
+    private final Object[] keys;
+
+    // the index in values of the element in each slot of keys
+    private final int[] indexes;
+
+    FrozenList(Object[] sorted, Comparator<? super T> comparator) {
+        this.comparator = comparator;
+        values = sorted;
+        keys = new Object[sorted.length + 1];
+        indexes = new int[sorted.length + 1];
+        layout(1, 0);
+    }
+
+    private int layout(int k, int index) {
+        // an in-order walk of the implicit tree hands out the sorted elements in order
+        int i = index;
+        if (k < keys.length) {
+            i = layout(2 * k, i);
+            keys[k] = values[i];
+            indexes[k] = i;
+            i = layout((2 * k) + 1, i + 1);
+        }
+        return i;
+    }
+
+    /**
+     * Returns the number of elements less than {@code o}.
+     */
+    public int rank(T o) {
+        return lowerBound(o);
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return values.length == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return 0 <= indexOf(o);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T) values[index];
+    }
+
+    @Override
+    public List<T> quantiles(double... qs) {
+        int[] ranks = ranks(qs, values.length);
+        Object[] found = new Object[ranks.length];
+        for (int i = 0; i < ranks.length; i++) {
+            found[i] = values[ranks[i]];
+        }
+        return asList(found);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return values.clone();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ListIterator<T> listIterator(int index) {
+        if ((index < 0) || (values.length < index)) {
+            throw new IndexOutOfBoundsException();
+        }
+        return Collections.unmodifiableList((List<T>) Arrays.asList(values)).listIterator(index);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super T> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        for (Object o : values) {
+            action.accept((T) o);
+        }
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if ((o == null) && (comparator == null)) {
+            return -1;
+        }
+        int index = lowerBound(o);
+        if ((index < values.length) && (compare(values[index], o) == 0)) {
+            return index;
+        }
+        return -1;
+    }
+
+    @Override
+    public T remove(int index) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T first() {
+        if (values.length == 0) {
+            throw new NoSuchElementException();
+        }
+        return (T) values[0];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T last() {
+        if (values.length == 0) {
+            throw new NoSuchElementException();
+        }
+        return (T) values[values.length - 1];
+    }
+
+    @Override
+    public boolean insert(T o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean insertAll(Collection<T> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    private int compare(Object o1, Object o2) {
+        return SortedArraySet.compare(comparator, o1, o2);
+    }
+
+    private int lowerBound(Object o) {
+        int k = 1;
+        while (k < keys.length) {
+            k = 2 * k;
+            if (compare(keys[k >> 1], o) < 0) {
+                k++;
+            }
+        }
+        // undo the right turns taken after the last left turn; that left turn was at the lower bound
+        k >>= Integer.numberOfTrailingZeros(~k) + 1;
+        if (k == 0) {
+            return values.length;
+        }
+        return indexes[k];
+    }
+}
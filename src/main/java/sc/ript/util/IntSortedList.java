@@ -0,0 +1,1107 @@
+package sc.ript.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * SortedList of distinct {@code int} values kept as a compressed bitmap. Values sharing their high 16 bits go to one
+ * container, which holds the low 16 bits as a sorted array, a bitmap of 65536 bits or a list of runs, whichever is
+ * smallest. The cardinalities of the containers are kept in a Fenwick tree, so that a position finds its container in
+ * O(log n) steps. Bulk inserts and removals combine whole containers. The {@code int} methods avoid boxing; the
+ * {@link SortedList} methods box.
+ */
+public class IntSortedList extends AbstractSortedList<Integer> {
+
+    /**
+     * Largest cardinality of an array container; beyond it a bitmap is smaller.
+     */
+    static final int MAX_ARRAY = 4096;
+
+    private static final int WORDS = 1024;
+
+    private static final int WORD_SHIFT = 6;
+
+    private static final int BITMAP_BYTES = WORDS * Long.BYTES;
+
+    private static final int LOW_BITS = 16;
+
+    private static final int LOW_MASK = 0xFFFF;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The high 16 bits of the values of each container, ascending as signed numbers.
+     */
+    private int[] keys = new int[0];
+
+    private Container[] containers = new Container[0];
+
+    /**
+     * Cardinalities of the containers as a Fenwick tree.
+     */
+    private int[] counts = new int[1];
+
+    private int count;
+
+    public IntSortedList() {
+        // empty
+    }
+
+    public IntSortedList(int... values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        load(sorted, distinct(sorted, sorted.length));
+    }
+
+    public boolean containsInt(int o) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int b = containerOf(o >> LOW_BITS);
+            return (0 <= b) && containers[b].contains(o & LOW_MASK);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public int indexOfInt(int o) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int b = containerOf(o >> LOW_BITS);
+            if ((b < 0) || !containers[b].contains(o & LOW_MASK)) {
+                return -1;
+            }
+            return offset(b) + containers[b].rank(o & LOW_MASK);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of values less than {@code o}.
+     */
+    public int rank(int o) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int b = containerOf(o >> LOW_BITS);
+            if (b < 0) {
+                return offset(-b - 1);
+            }
+            return offset(b) + containers[b].rank(o & LOW_MASK);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public int getInt(int index) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if ((index < 0) || (count <= index)) {
+                throw new IndexOutOfBoundsException();
+            }
+            return valueAt(index);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public boolean insertInt(int o) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            int high = o >> LOW_BITS;
+            int b = containerOf(high);
+            if (b < 0) {
+                b = -b - 1;
+                ArrayContainer container = new ArrayContainer(new char[INITIAL_CAPACITY], 0);
+                container.add(o & LOW_MASK);
+                insertContainer(b, high, container);
+                count++;
+                return true;
+            }
+            Container container = containers[b];
+            int cardinality = container.cardinality;
+            containers[b] = container.add(o & LOW_MASK);
+            if (containers[b].cardinality == cardinality) {
+                return false;
+            }
+            resize(b, 1);
+            count++;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public boolean removeInt(int o) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            int b = containerOf(o >> LOW_BITS);
+            if (b < 0) {
+                return false;
+            }
+            Container container = containers[b];
+            int cardinality = container.cardinality;
+            containers[b] = container.remove(o & LOW_MASK);
+            if (containers[b].cardinality == cardinality) {
+                return false;
+            }
+            shrink(b);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the values in ascending order.
+     */
+    public int[] toIntArray() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int[] ary = new int[count];
+            int n = 0;
+            for (int b = 0; b < containers.length; b++) {
+                n = containers[b].fill(keys[b], ary, n);
+            }
+            return ary;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return count;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return (o instanceof Integer) && containsInt((Integer) o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Integer)) {
+            return -1;
+        }
+        return indexOfInt((Integer) o);
+    }
+
+    @Override
+    public Integer get(int index) {
+        return getInt(index);
+    }
+
+    @Override
+    public List<Integer> quantiles(double... qs) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int[] ranks = ranks(qs, count);
+            Object[] values = new Object[ranks.length];
+            for (int i = 0; i < ranks.length; i++) {
+                values[i] = valueAt(ranks[i]);
+            }
+            return asList(values);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        int[] values = toIntArray();
+        Object[] ary = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ary[i] = values[i];
+        }
+        return ary;
+    }
+
+    @Override
+    public Integer remove(int index) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if ((index < 0) || (count <= index)) {
+                throw new IndexOutOfBoundsException();
+            }
+            int b = containerAt(index);
+            int high = keys[b];
+            Container container = containers[b];
+            int low = container.select(index - offset(b));
+            containers[b] = container.remove(low);
+            shrink(b);
+            return (high << LOW_BITS) | low;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return (o instanceof Integer) && removeInt((Integer) o);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        int[] values = new int[c.size()];
+        int n = 0;
+        for (Object o : c) {
+            if (o instanceof Integer) {
+                values[n++] = (Integer) o;
+            }
+        }
+        Arrays.sort(values, 0, n);
+        n = distinct(values, n);
+        int[] highs = new int[n];
+        Container[] groups = new Container[n];
+        int m = group(values, n, highs, groups);
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            int before = count;
+            int length = 0;
+            int g = 0;
+            for (int b = 0; b < containers.length; b++) {
+                while ((g < m) && (highs[g] < keys[b])) {
+                    g++;
+                }
+                Container container = containers[b];
+                if ((g < m) && (highs[g] == keys[b])) {
+                    container = andNot(container, groups[g]);
+                }
+                if (0 < container.cardinality) {
+                    keys[length] = keys[b];
+                    containers[length] = container;
+                    length++;
+                }
+            }
+            replace(keys, containers, length);
+            return count != before;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            int[] values = toIntArray();
+            int n = 0;
+            for (int o : values) {
+                if (c.contains(o)) {
+                    values[n++] = o;
+                }
+            }
+            if (n == values.length) {
+                return false;
+            }
+            load(values, n);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            load(new int[0], 0);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns {@code null}; values are in natural order.
+     */
+    @Override
+    public Comparator<? super Integer> comparator() {
+        return null;
+    }
+
+    @Override
+    public Integer first() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (count == 0) {
+                throw new NoSuchElementException();
+            }
+            return valueAt(0);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Integer last() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (count == 0) {
+                throw new NoSuchElementException();
+            }
+            return valueAt(count - 1);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean insert(Integer o) {
+        return insertInt(o);
+    }
+
+    @Override
+    public boolean insertAll(Collection<Integer> c) {
+        int[] values = new int[c.size()];
+        int n = 0;
+        for (Integer o : c) {
+            values[n++] = o;
+        }
+        Arrays.sort(values, 0, n);
+        n = distinct(values, n);
+        int[] highs = new int[n];
+        Container[] groups = new Container[n];
+        int m = group(values, n, highs, groups);
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            int before = count;
+            int[] mergedKeys = new int[containers.length + m];
+            Container[] merged = new Container[containers.length + m];
+            int length = 0;
+            int b = 0;
+            int g = 0;
+            while ((b < containers.length) || (g < m)) {
+                if ((g == m) || ((b < containers.length) && (keys[b] < highs[g]))) {
+                    mergedKeys[length] = keys[b];
+                    merged[length] = containers[b++];
+                } else if ((b == containers.length) || (highs[g] < keys[b])) {
+                    mergedKeys[length] = highs[g];
+                    merged[length] = groups[g++];
+                } else {
+                    mergedKeys[length] = keys[b];
+                    merged[length] = or(containers[b++], groups[g++]);
+                }
+                length++;
+            }
+            replace(mergedKeys, merged, length);
+            return count != before;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the bytes the containers take for their values.
+     */
+    int containerBytes() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int bytes = 0;
+            for (Container container : containers) {
+                bytes += container.bytes();
+            }
+            return bytes;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private static int distinct(int[] sorted, int length) {
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            if ((n == 0) || (sorted[n - 1] != sorted[i])) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Splits the first {@code n} of sorted, distinct values by their high 16 bits into containers, and returns the
+     * number of them.
+     */
+    private static int group(int[] sorted, int n, int[] highs, Container[] groups) {
+        int m = 0;
+        char[] lows = new char[Math.min(n, LOW_MASK + 1)];
+        int i = 0;
+        while (i < n) {
+            int high = sorted[i] >> LOW_BITS;
+            int j = i;
+            while ((j < n) && ((sorted[j] >> LOW_BITS) == high)) {
+                lows[j - i] = (char) sorted[j];
+                j++;
+            }
+            highs[m] = high;
+            groups[m] = of(lows, j - i);
+            m++;
+            i = j;
+        }
+        return m;
+    }
+
+    /**
+     * Returns the smallest container of the first {@code n} of sorted, distinct low values.
+     */
+    static Container of(char[] lows, int n) {
+        int runs = 0;
+        for (int i = 0; i < n; i++) {
+            if ((i == 0) || (lows[i] != (lows[i - 1] + 1))) {
+                runs++;
+            }
+        }
+        if (prefersRuns(runs, n)) {
+            RunContainer container = new RunContainer(new char[runs], new char[runs], 0);
+            for (int i = 0; i < n; i++) {
+                if ((i == 0) || (lows[i] != (lows[i - 1] + 1))) {
+                    container.starts[container.runs++] = lows[i];
+                } else {
+                    container.lengths[container.runs - 1]++;
+                }
+            }
+            container.cardinality = n;
+            return container;
+        }
+        if (n <= MAX_ARRAY) {
+            return new ArrayContainer(Arrays.copyOf(lows, Math.max(n, INITIAL_CAPACITY)), n);
+        }
+        long[] words = new long[WORDS];
+        for (int i = 0; i < n; i++) {
+            words[lows[i] >>> WORD_SHIFT] |= 1L << lows[i];
+        }
+        return new BitmapContainer(words);
+    }
+
+    /**
+     * Returns the smallest container of the bits set in {@code words}, which it may keep.
+     */
+    static Container of(long[] words) {
+        int n = 0;
+        int runs = 0;
+        long previous = 0;
+        for (long word : words) {
+            n += Long.bitCount(word);
+            // a run starts at a set bit whose lower neighbour is clear
+            runs += Long.bitCount(word & ~((word << 1) | (previous >>> (Long.SIZE - 1))));
+            previous = word;
+        }
+        if (!prefersRuns(runs, n) && (MAX_ARRAY < n)) {
+            return new BitmapContainer(words);
+        }
+        char[] lows = new char[n];
+        int i = 0;
+        for (int w = 0; w < WORDS; w++) {
+            for (long word = words[w]; word != 0; word &= word - 1) {
+                lows[i++] = (char) ((w << WORD_SHIFT) | Long.numberOfTrailingZeros(word));
+            }
+        }
+        return of(lows, n);
+    }
+
+    private static boolean prefersRuns(int runs, int n) {
+        return (runs * RunContainer.RUN_BYTES) < Math.min(n * Character.BYTES, BITMAP_BYTES);
+    }
+
+    static Container or(Container a, Container b) {
+        if ((a instanceof ArrayContainer) && (b instanceof ArrayContainer)) {
+            ArrayContainer x = (ArrayContainer) a;
+            ArrayContainer y = (ArrayContainer) b;
+            char[] lows = new char[x.cardinality + y.cardinality];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while ((i < x.cardinality) || (j < y.cardinality)) {
+                if ((j == y.cardinality) || ((i < x.cardinality) && (x.values[i] < y.values[j]))) {
+                    lows[n++] = x.values[i++];
+                } else if ((i == x.cardinality) || (y.values[j] < x.values[i])) {
+                    lows[n++] = y.values[j++];
+                } else {
+                    lows[n++] = x.values[i++];
+                    j++;
+                }
+            }
+            return of(lows, n);
+        }
+        long[] words = new long[WORDS];
+        a.or(words);
+        b.or(words);
+        return of(words);
+    }
+
+    static Container andNot(Container a, Container b) {
+        if (a instanceof ArrayContainer) {
+            ArrayContainer x = (ArrayContainer) a;
+            char[] lows = new char[x.cardinality];
+            int n = 0;
+            for (int i = 0; i < x.cardinality; i++) {
+                if (!b.contains(x.values[i])) {
+                    lows[n++] = x.values[i];
+                }
+            }
+            return of(lows, n);
+        }
+        long[] words = new long[WORDS];
+        long[] others = new long[WORDS];
+        a.or(words);
+        b.or(others);
+        for (int w = 0; w < WORDS; w++) {
+            words[w] &= ~others[w];
+        }
+        return of(words);
+    }
+
+    /**
+     * Sets the bits {@code from} to {@code to}, both inclusive.
+     */
+    static void setRange(long[] words, int from, int to) {
+        int first = from >>> WORD_SHIFT;
+        int last = to >>> WORD_SHIFT;
+        long head = -1L << from;
+        long tail = -1L >>> (Long.SIZE - 1 - (to & (Long.SIZE - 1)));
+        if (first == last) {
+            words[first] |= head & tail;
+            return;
+        }
+        words[first] |= head;
+        for (int w = first + 1; w < last; w++) {
+            words[w] = -1L;
+        }
+        words[last] |= tail;
+    }
+
+    /**
+     * Returns the container of the values whose high 16 bits are {@code high}, or {@code -(insertion point) - 1}.
+     */
+    private int containerOf(int high) {
+        int low = 0;
+        int top = keys.length - 1;
+        while (low <= top) {
+            int mid = (low + top) >>> 1;
+            if (keys[mid] < high) {
+                low = mid + 1;
+            } else if (keys[mid] > high) {
+                top = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private int valueAt(int index) {
+        int b = containerAt(index);
+        return (keys[b] << LOW_BITS) | containers[b].select(index - offset(b));
+    }
+
+    private int offset(int b) {
+        int sum = 0;
+        for (int i = b; 0 < i; i -= i & -i) {
+            sum += counts[i];
+        }
+        return sum;
+    }
+
+    private int containerAt(int index) {
+        // the last container whose offset is not greater than index
+        int b = 0;
+        int rest = index;
+        int n = counts.length - 1;
+        for (int step = Integer.highestOneBit(n); 0 < step; step >>>= 1) {
+            if (((b + step) <= n) && (counts[b + step] <= rest)) {
+                b += step;
+                rest -= counts[b];
+            }
+        }
+        return b;
+    }
+
+    private void resize(int b, int delta) {
+        for (int i = b + 1; i < counts.length; i += i & -i) {
+            counts[i] += delta;
+        }
+    }
+
+    private void reindex() {
+        counts = new int[containers.length + 1];
+        for (int i = 1; i < counts.length; i++) {
+            counts[i] += containers[i - 1].cardinality;
+            int j = i + (i & -i);
+            if (j < counts.length) {
+                counts[j] += counts[i];
+            }
+        }
+    }
+
+    private void insertContainer(int b, int high, Container container) {
+        int n = containers.length;
+        keys = Arrays.copyOf(keys, n + 1);
+        containers = Arrays.copyOf(containers, n + 1);
+        System.arraycopy(keys, b, keys, b + 1, n - b);
+        System.arraycopy(containers, b, containers, b + 1, n - b);
+        keys[b] = high;
+        containers[b] = container;
+        reindex();
+    }
+
+    /**
+     * Accounts for a value removed from container {@code b}, and drops the container if it is empty.
+     */
+    private void shrink(int b) {
+        count--;
+        if (0 < containers[b].cardinality) {
+            resize(b, -1);
+            return;
+        }
+        int n = containers.length - 1;
+        System.arraycopy(keys, b + 1, keys, b, n - b);
+        System.arraycopy(containers, b + 1, containers, b, n - b);
+        keys = Arrays.copyOf(keys, n);
+        containers = Arrays.copyOf(containers, n);
+        reindex();
+    }
+
+    private void replace(int[] highs, Container[] groups, int length) {
+        keys = Arrays.copyOf(highs, length);
+        containers = Arrays.copyOf(groups, length);
+        reindex();
+        count = offset(length);
+    }
+
+    private void load(int[] sorted, int n) {
+        int[] highs = new int[n];
+        Container[] groups = new Container[n];
+        replace(highs, groups, group(sorted, n, highs, groups));
+    }
+
+    /**
+     * Low 16 bits of the values sharing their high 16 bits.
+     */
+    abstract static class Container {
+
+        int cardinality;
+
+        abstract boolean contains(int low);
+
+        /**
+         * Returns the number of values less than {@code low}.
+         */
+        abstract int rank(int low);
+
+        abstract int select(int index);
+
+        /**
+         * Adds {@code low}, and returns this or the container that replaces it.
+         */
+        abstract Container add(int low);
+
+        /**
+         * Removes {@code low}, and returns this or the container that replaces it.
+         */
+        abstract Container remove(int low);
+
+        /**
+         * Sets the bits of the values in {@code words}.
+         */
+        abstract void or(long[] words);
+
+        /**
+         * Writes the values, with their high 16 bits, to {@code ary} from {@code from}, and returns the index after them.
+         */
+        abstract int fill(int high, int[] ary, int from);
+
+        abstract int bytes();
+    }
+
+    static final class ArrayContainer extends Container {
+
+        char[] values;
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        boolean contains(int low) {
+            return 0 <= Arrays.binarySearch(values, 0, cardinality, (char) low);
+        }
+
+        @Override
+        int rank(int low) {
+            int i = Arrays.binarySearch(values, 0, cardinality, (char) low);
+            if (i < 0) {
+                return -i - 1;
+            }
+            return i;
+        }
+
+        @Override
+        int select(int index) {
+            return values[index];
+        }
+
+        @Override
+        Container add(int low) {
+            int i = Arrays.binarySearch(values, 0, cardinality, (char) low);
+            if (0 <= i) {
+                return this;
+            }
+            if (cardinality == MAX_ARRAY) {
+                long[] words = new long[WORDS];
+                or(words);
+                return new BitmapContainer(words).add(low);
+            }
+            i = -i - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(cardinality * 2, MAX_ARRAY));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = (char) low;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(int low) {
+            int i = Arrays.binarySearch(values, 0, cardinality, (char) low);
+            if (0 <= i) {
+                System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        void or(long[] words) {
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> WORD_SHIFT] |= 1L << values[i];
+            }
+        }
+
+        @Override
+        int fill(int high, int[] ary, int from) {
+            int n = from;
+            for (int i = 0; i < cardinality; i++) {
+                ary[n++] = (high << LOW_BITS) | values[i];
+            }
+            return n;
+        }
+
+        @Override
+        int bytes() {
+            return values.length * Character.BYTES;
+        }
+    }
+
+    static final class BitmapContainer extends Container {
+
+        private static final int CHUNK_SHIFT = 6;
+
+        final long[] words;
+
+        /**
+         * Cardinalities of each 64 words, so that rank and select count at most 16 of these and 64 words.
+         */
+        final int[] chunks = new int[WORDS >>> CHUNK_SHIFT];
+
+        BitmapContainer(long[] words) {
+            this.words = words;
+            for (int w = 0; w < WORDS; w++) {
+                chunks[w >>> CHUNK_SHIFT] += Long.bitCount(words[w]);
+            }
+            for (int chunk : chunks) {
+                cardinality += chunk;
+            }
+        }
+
+        @Override
+        boolean contains(int low) {
+            return (words[low >>> WORD_SHIFT] & (1L << low)) != 0;
+        }
+
+        @Override
+        int rank(int low) {
+            int w = low >>> WORD_SHIFT;
+            int n = Long.bitCount(words[w] & ((1L << low) - 1));
+            int c = w >>> CHUNK_SHIFT;
+            for (int i = 0; i < c; i++) {
+                n += chunks[i];
+            }
+            for (int i = c << CHUNK_SHIFT; i < w; i++) {
+                n += Long.bitCount(words[i]);
+            }
+            return n;
+        }
+
+        @Override
+        int select(int index) {
+            int rest = index;
+            int c = 0;
+            while (chunks[c] <= rest) {
+                rest -= chunks[c];
+                c++;
+            }
+            int w = c << CHUNK_SHIFT;
+            while (Long.bitCount(words[w]) <= rest) {
+                rest -= Long.bitCount(words[w]);
+                w++;
+            }
+            long word = words[w];
+            while (0 < rest) {
+                word &= word - 1;
+                rest--;
+            }
+            return (w << WORD_SHIFT) | Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        Container add(int low) {
+            if (!contains(low)) {
+                words[low >>> WORD_SHIFT] |= 1L << low;
+                chunks[low >>> (WORD_SHIFT + CHUNK_SHIFT)]++;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(int low) {
+            if (!contains(low)) {
+                return this;
+            }
+            words[low >>> WORD_SHIFT] &= ~(1L << low);
+            chunks[low >>> (WORD_SHIFT + CHUNK_SHIFT)]--;
+            cardinality--;
+            if (MAX_ARRAY < cardinality) {
+                return this;
+            }
+            return of(words);
+        }
+
+        @Override
+        void or(long[] bits) {
+            for (int w = 0; w < WORDS; w++) {
+                bits[w] |= words[w];
+            }
+        }
+
+        @Override
+        int fill(int high, int[] ary, int from) {
+            int n = from;
+            for (int w = 0; w < WORDS; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    ary[n++] = (high << LOW_BITS) | (w << WORD_SHIFT) | Long.numberOfTrailingZeros(word);
+                }
+            }
+            return n;
+        }
+
+        @Override
+        int bytes() {
+            return BITMAP_BYTES;
+        }
+    }
+
+    /**
+     * Runs of consecutive values, each as its start and its length less one.
+     */
+    static final class RunContainer extends Container {
+
+        static final int RUN_BYTES = Character.BYTES * 2;
+
+        char[] starts;
+
+        char[] lengths;
+
+        int runs;
+
+        RunContainer(char[] starts, char[] lengths, int runs) {
+            this.starts = starts;
+            this.lengths = lengths;
+            this.runs = runs;
+        }
+
+        @Override
+        boolean contains(int low) {
+            int i = runOf(low);
+            return (0 <= i) && (low <= end(i));
+        }
+
+        @Override
+        int rank(int low) {
+            int i = runOf(low);
+            int n = 0;
+            for (int r = 0; r < i; r++) {
+                n += lengths[r] + 1;
+            }
+            if (0 <= i) {
+                n += Math.min(low - starts[i], lengths[i] + 1);
+            }
+            return n;
+        }
+
+        @Override
+        int select(int index) {
+            int rest = index;
+            int r = 0;
+            while (lengths[r] < rest) {
+                rest -= lengths[r] + 1;
+                r++;
+            }
+            return starts[r] + rest;
+        }
+
+        @Override
+        Container add(int low) {
+            int i = runOf(low);
+            if ((0 <= i) && (low <= end(i))) {
+                return this;
+            }
+            boolean joinsPrevious = (0 <= i) && ((end(i) + 1) == low);
+            boolean joinsNext = ((i + 1) < runs) && (starts[i + 1] == (low + 1));
+            if (joinsPrevious && joinsNext) {
+                lengths[i] = (char) (end(i + 1) - starts[i]);
+                removeRun(i + 1);
+            } else if (joinsPrevious) {
+                lengths[i]++;
+            } else if (joinsNext) {
+                starts[i + 1]--;
+                lengths[i + 1]++;
+            } else {
+                insertRun(i + 1, low, 0);
+            }
+            cardinality++;
+            return compact();
+        }
+
+        @Override
+        Container remove(int low) {
+            int i = runOf(low);
+            if ((i < 0) || (end(i) < low)) {
+                return this;
+            }
+            int end = end(i);
+            if (lengths[i] == 0) {
+                removeRun(i);
+            } else if (low == starts[i]) {
+                starts[i]++;
+                lengths[i]--;
+            } else if (low == end) {
+                lengths[i]--;
+            } else {
+                lengths[i] = (char) (low - 1 - starts[i]);
+                insertRun(i + 1, low + 1, end - low - 1);
+            }
+            cardinality--;
+            return compact();
+        }
+
+        @Override
+        void or(long[] words) {
+            for (int r = 0; r < runs; r++) {
+                setRange(words, starts[r], end(r));
+            }
+        }
+
+        @Override
+        int fill(int high, int[] ary, int from) {
+            int n = from;
+            for (int r = 0; r < runs; r++) {
+                for (int low = starts[r]; low <= end(r); low++) {
+                    ary[n++] = (high << LOW_BITS) | low;
+                }
+            }
+            return n;
+        }
+
+        @Override
+        int bytes() {
+            return starts.length * RUN_BYTES;
+        }
+
+        private int end(int r) {
+            return starts[r] + lengths[r];
+        }
+
+        /**
+         * Returns the last run that starts at or before {@code low}, or -1.
+         */
+        private int runOf(int low) {
+            int lo = 0;
+            int hi = runs - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (starts[mid] <= low) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return lo - 1;
+        }
+
+        private void insertRun(int r, int start, int length) {
+            if (runs == starts.length) {
+                int capacity = Math.max(runs * 2, INITIAL_CAPACITY);
+                starts = Arrays.copyOf(starts, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+            System.arraycopy(starts, r, starts, r + 1, runs - r);
+            System.arraycopy(lengths, r, lengths, r + 1, runs - r);
+            starts[r] = (char) start;
+            lengths[r] = (char) length;
+            runs++;
+        }
+
+        private void removeRun(int r) {
+            System.arraycopy(starts, r + 1, starts, r, runs - r - 1);
+            System.arraycopy(lengths, r + 1, lengths, r, runs - r - 1);
+            runs--;
+        }
+
+        /**
+         * Returns this, or an array or a bitmap of the same values once the runs take more room than those.
+         */
+        private Container compact() {
+            if (prefersRuns(runs, cardinality)) {
+                return this;
+            }
+            long[] words = new long[WORDS];
+            or(words);
+            return of(words);
+        }
+    }
+}
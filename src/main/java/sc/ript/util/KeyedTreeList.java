@@ -0,0 +1,161 @@
+package sc.ript.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.locks.Lock;
+import java.util.function.ToLongFunction;
+
+/**
+ * SortedList ordered by a {@code long} key extracted from each element, then by a second comparator for equal keys.
+ * The key is extracted once when an element is inserted and kept in its node, so a descent compares primitives and
+ * calls the second comparator only on ties.
+ */
+public class KeyedTreeList<T> extends RankTreeList<T> {
+
+    private final KeyedTree<T> keyed;
+
+    /**
+     * Orders elements with equal keys by their natural ordering.
+     */
+    public KeyedTreeList(ToLongFunction<? super T> key) {
+        this(key, null);
+    }
+
+    public KeyedTreeList(ToLongFunction<? super T> key, Comparator<? super T> then) {
+        this(new KeyedTree<>(key, then));
+    }
+
+    private KeyedTreeList(KeyedTree<T> tree) {
+        super(tree);
+        keyed = tree;
+    }
+
+    /**
+     * Returns the key cached for the element at the index.
+     */
+    public long keyAt(int index) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if ((index < 0) || (keyed.size() <= index)) {
+                throw new IndexOutOfBoundsException();
+            }
+            return ((KeyedNode<T>) keyed.nodeAt(index)).key;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean insertAll(Collection<T> c) {
+        // keys are extracted once here and sorted with the nodes, rather than by the composite comparator
+        Object[] ary = c.toArray();
+        @SuppressWarnings("unchecked")
+        KeyedNode<T>[] nodes = (KeyedNode<T>[]) new KeyedNode<?>[ary.length];
+        for (int i = 0; i < ary.length; i++) {
+            @SuppressWarnings("unchecked")
+            T o = (T) ary[i];
+            nodes[i] = keyed.newNode(o);
+        }
+        Arrays.sort(nodes, new Comparator<KeyedNode<T>>() {
+
+            @Override
+            public int compare(KeyedNode<T> o1, KeyedNode<T> o2) {
+                return keyed.compareNodes(o1, o2);
+            }
+        });
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            boolean modified = false;
+            for (KeyedNode<T> node : nodes) {
+                if (keyed.insert(node)) {
+                    modified = true;
+                }
+            }
+            return modified;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    static final class KeyedNode<T> extends RankTree.Node<T> {
+
+        final long key;
+
+        KeyedNode(T value, long key) {
+            super(value);
+            this.key = key;
+        }
+    }
+
+    static final class KeyedTree<T> extends RankTree<T> {
+
+        private final ToLongFunction<? super T> extractor;
+
+        private final Comparator<? super T> then;
+
+        KeyedTree(ToLongFunction<? super T> extractor, Comparator<? super T> then) {
+            super(new KeyComparator<>(extractor, then));
+            if (extractor == null) {
+                throw new NullPointerException();
+            }
+            this.extractor = extractor;
+            this.then = then;
+        }
+
+        @Override
+        KeyedNode<T> newNode(T value) {
+            return new KeyedNode<>(value, extractor.applyAsLong(value));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object searchKey(Object o) {
+            return newNode((T) o);
+        }
+
+        @Override
+        Object insertKey(Node<T> node) {
+            return node;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        int compareTo(Object key, Node<T> n) {
+            return compareNodes((KeyedNode<T>) key, (KeyedNode<T>) n);
+        }
+
+        int compareNodes(KeyedNode<T> o1, KeyedNode<T> o2) {
+            if (o1.key < o2.key) {
+                return -1;
+            }
+            if (o1.key > o2.key) {
+                return 1;
+            }
+            return SortedArraySet.compare(then, o1.value, o2.value);
+        }
+    }
+
+    private static final class KeyComparator<T> implements Comparator<T> {
+
+        private final ToLongFunction<? super T> extractor;
+
+        private final Comparator<? super T> then;
+
+        KeyComparator(ToLongFunction<? super T> extractor, Comparator<? super T> then) {
+            this.extractor = extractor;
+            this.then = then;
+        }
+
+        @Override
+        public int compare(T o1, T o2) {
+            int cmp = Long.compare(extractor.applyAsLong(o1), extractor.applyAsLong(o2));
+            if (cmp != 0) {
+                return cmp;
+            }
+            return SortedArraySet.compare(then, o1, o2);
+        }
+    }
+}
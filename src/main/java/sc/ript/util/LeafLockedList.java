@@ -0,0 +1,760 @@
+package sc.ript.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Concurrent SortedList whose elements are kept in sorted leaves of up to {@value #LEAF_SIZE}, each with its own lock,
+ * so that operations on keys in different leaves do not block each other. The leaf directory has a lock of its own,
+ * taken exclusively only to split a full leaf or drop an empty one.
+ * <p>
+ * Every leaf has a version that is odd while it is written, and every group of {@value #GROUP} leaves keeps the number
+ * of its elements and a stamp counting the writes to its leaves in progress and completed, each group on a cache line
+ * of its own. A positional read counts the elements before its leaf from the groups before it and the leaves before
+ * it in its group, and is retried when a write to one of those overlapped it; writes to other leaves do not affect
+ * it. After a few retries it read-locks every leaf instead. {@link #remove(int)} takes the directory lock exclusively.
+ */
+public class LeafLockedList<T> extends AbstractSortedList<T> {
+
+    static final int LEAF_SIZE = 256;
+
+    static final int RETRIES = 8;
+
+    static final int GROUP = 32;
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    // a group takes STRIDE slots of groups, its stamp and then its size, so that groups do not share a cache line
+    private static final int STRIDE = 8;
+
+    // the low 32 bits of a group stamp count the writes in progress, the high bits the writes completed
+    private static final long DONE = 1L << 32;
+
+    private static final Object INVALID = new Object();
+
+    private static final Object STALE = new Object();
+
+    private static final int STALE_INDEX = -2;
+
+    private final Comparator<? super T> comparator;
+
+    private final ReentrantReadWriteLock structure = new ReentrantReadWriteLock();
+
+    private Leaf[] leaves;
+
+    /**
+     * The lowest key each leaf may hold; that of the first leaf is not used.
+     */
+    private Object[] lows;
+
+    /**
+     * The stamp and the size of every group of leaves, {@value #STRIDE} slots apart.
+     */
+    private volatile AtomicLongArray groups;
+
+    public LeafLockedList() {
+        this(null);
+    }
+
+    public LeafLockedList(Comparator<? super T> c) {
+        comparator = c;
+        load(new Object[0], 0);
+    }
+
+    @Override
+    public int size() {
+        AtomicLongArray g = groups;
+        int size = 0;
+        for (int i = 0; i < g.length(); i += STRIDE) {
+            size += (int) g.get(i + 1);
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if ((o == null) && (comparator == null)) {
+            return false;
+        }
+        Lock readLock = structure.readLock();
+        readLock.lock();
+        try {
+            Leaf leaf = leaves[leafOf(o)];
+            Lock leafLock = leaf.lock.readLock();
+            leafLock.lock();
+            try {
+                return 0 <= search(leaf, o);
+            } finally {
+                leafLock.unlock();
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        for (int attempt = 0; attempt < RETRIES; attempt++) {
+            Object value;
+            Lock readLock = structure.readLock();
+            readLock.lock();
+            try {
+                value = valueAt(index);
+            } finally {
+                readLock.unlock();
+            }
+            if (value == INVALID) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (value != STALE) {
+                return (T) value;
+            }
+            Thread.yield();
+        }
+        Lock readLock = structure.readLock();
+        readLock.lock();
+        lockAll();
+        try {
+            Object value = valueAt(index);
+            if (value == INVALID) {
+                throw new IndexOutOfBoundsException();
+            }
+            return (T) value;
+        } finally {
+            unlockAll();
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<T> quantiles(double... qs) {
+        Lock readLock = structure.readLock();
+        readLock.lock();
+        lockAll();
+        try {
+            int[] ranks = ranks(qs, size());
+            Object[] values = new Object[ranks.length];
+            for (int i = 0; i < ranks.length; i++) {
+                values[i] = valueAt(ranks[i]);
+            }
+            return asList(values);
+        } finally {
+            unlockAll();
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        Lock readLock = structure.readLock();
+        readLock.lock();
+        lockAll();
+        try {
+            return elements();
+        } finally {
+            unlockAll();
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if ((o == null) && (comparator == null)) {
+            return -1;
+        }
+        for (int attempt = 0; attempt < RETRIES; attempt++) {
+            int index;
+            Lock readLock = structure.readLock();
+            readLock.lock();
+            try {
+                index = position(o);
+            } finally {
+                readLock.unlock();
+            }
+            if (index != STALE_INDEX) {
+                return index;
+            }
+            Thread.yield();
+        }
+        Lock readLock = structure.readLock();
+        readLock.lock();
+        lockAll();
+        try {
+            return position(o);
+        } finally {
+            unlockAll();
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T remove(int index) {
+        Lock writeLock = structure.writeLock();
+        writeLock.lock();
+        try {
+            Object value = valueAt(index);
+            if (value == INVALID) {
+                throw new IndexOutOfBoundsException();
+            }
+            int b = leafAt(index);
+            removeAt(b, index - offset(b));
+            prune();
+            return (T) value;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if ((o == null) && (comparator == null)) {
+            return false;
+        }
+        boolean emptied;
+        Lock readLock = structure.readLock();
+        readLock.lock();
+        try {
+            int b = leafOf(o);
+            Leaf leaf = leaves[b];
+            Lock leafLock = leaf.lock.writeLock();
+            leafLock.lock();
+            try {
+                int i = search(leaf, o);
+                if (i < 0) {
+                    return false;
+                }
+                removeAt(b, i);
+                emptied = (leaf.size == 0) && (1 < leaves.length);
+            } finally {
+                leafLock.unlock();
+            }
+        } finally {
+            readLock.unlock();
+        }
+        if (emptied) {
+            Lock writeLock = structure.writeLock();
+            writeLock.lock();
+            try {
+                prune();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean modified = false;
+        for (Object o : c) {
+            if (remove(o)) {
+                modified = true;
+            }
+        }
+        return modified;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Lock writeLock = structure.writeLock();
+        writeLock.lock();
+        try {
+            Object[] ary = elements();
+            int n = 0;
+            for (Object o : ary) {
+                if (c.contains(o)) {
+                    ary[n++] = o;
+                }
+            }
+            if (n == ary.length) {
+                return false;
+            }
+            load(ary, n);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        Lock writeLock = structure.writeLock();
+        writeLock.lock();
+        try {
+            load(new Object[0], 0);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T first() {
+        Lock readLock = structure.readLock();
+        readLock.lock();
+        int locked = 0;
+        try {
+            // keep the empty leaves passed over locked, so that nothing is inserted into them meanwhile
+            while (locked < leaves.length) {
+                Leaf leaf = leaves[locked++];
+                leaf.lock.readLock().lock();
+                if (0 < leaf.size) {
+                    return (T) leaf.values[0];
+                }
+            }
+            throw new NoSuchElementException();
+        } finally {
+            for (int b = 0; b < locked; b++) {
+                leaves[b].lock.readLock().unlock();
+            }
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T last() {
+        Lock readLock = structure.readLock();
+        readLock.lock();
+        try {
+            // leaves are always locked in ascending order, so start at the last leaf that looks non-empty and lock up
+            // to the end; if they all turn out empty under their locks, start one leaf lower
+            int from = leaves.length - 1;
+            while ((0 < from) && (leaves[from].size == 0)) {
+                from--;
+            }
+            while (true) {
+                for (int b = from; b < leaves.length; b++) {
+                    leaves[b].lock.readLock().lock();
+                }
+                try {
+                    for (int b = leaves.length - 1; from <= b; b--) {
+                        Leaf leaf = leaves[b];
+                        if (0 < leaf.size) {
+                            return (T) leaf.values[leaf.size - 1];
+                        }
+                    }
+                    if (from == 0) {
+                        throw new NoSuchElementException();
+                    }
+                } finally {
+                    for (int b = from; b < leaves.length; b++) {
+                        leaves[b].lock.readLock().unlock();
+                    }
+                }
+                from--;
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean insert(T o) {
+        if ((o == null) && (comparator == null)) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            Lock readLock = structure.readLock();
+            readLock.lock();
+            try {
+                int b = leafOf(o);
+                Leaf leaf = leaves[b];
+                Lock leafLock = leaf.lock.writeLock();
+                leafLock.lock();
+                try {
+                    int i = search(leaf, o);
+                    if (0 <= i) {
+                        return false;
+                    }
+                    if (leaf.size < LEAF_SIZE) {
+                        insertAt(b, -i - 1, o);
+                        return true;
+                    }
+                } finally {
+                    leafLock.unlock();
+                }
+            } finally {
+                readLock.unlock();
+            }
+            split(o);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean insertAll(Collection<T> c) {
+        Object[] keys = SortedArraySet.sort(c, comparator);
+        if (keys.length == 0) {
+            return false;
+        }
+        Lock writeLock = structure.writeLock();
+        writeLock.lock();
+        try {
+            if (size() == 0) {
+                load(keys, keys.length);
+                return true;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        boolean modified = false;
+        for (Object o : keys) {
+            if (insert((T) o)) {
+                modified = true;
+            }
+        }
+        return modified;
+    }
+
+    private static boolean idle(long stamp) {
+        return (stamp & (DONE - 1)) == 0;
+    }
+
+    private int compare(Object o1, Object o2) {
+        return SortedArraySet.compare(comparator, o1, o2);
+    }
+
+    /**
+     * Returns the leaf whose range holds {@code o}.
+     */
+    private int leafOf(Object o) {
+        // the last leaf whose lowest key is not greater than o, or the first leaf
+        int low = 0;
+        int high = leaves.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (compare(lows[mid], o) <= 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private int search(Leaf leaf, Object o) {
+        int low = 0;
+        int high = leaf.size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(leaf.values[mid], o);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Returns the leaf that holds {@code index} as the sizes read without validation say, or the number of leaves if
+     * they hold fewer elements.
+     */
+    private int leafAt(int index) {
+        AtomicLongArray g = groups;
+        int rest = index;
+        int b = 0;
+        for (int i = 0; i < g.length(); i += STRIDE) {
+            int size = (int) g.get(i + 1);
+            if (rest < size) {
+                int end = Math.min(b + GROUP, leaves.length);
+                while (b < end) {
+                    int n = leaves[b].size;
+                    if (rest < n) {
+                        return b;
+                    }
+                    rest -= n;
+                    b++;
+                }
+                // the group shrank meanwhile; the offset check of the caller fails
+                return end - 1;
+            }
+            rest -= size;
+            b += GROUP;
+        }
+        return leaves.length;
+    }
+
+    /**
+     * Returns the number of elements before leaf {@code b}, or -1 if a write to a leaf before it was in progress or
+     * overlapped the count. Whole groups are checked by their stamps and the leaves before {@code b} in its group by
+     * their versions, so writes to {@code b} and the leaves after it do not matter.
+     */
+    private int offset(int b) {
+        AtomicLongArray g = groups;
+        int to = (b / GROUP) * STRIDE;
+        int from = b - (b % GROUP);
+        long stamps = 0;
+        long versions = 0;
+        int offset = 0;
+        for (int i = 0; i < to; i += STRIDE) {
+            long stamp = g.get(i);
+            if (!idle(stamp)) {
+                return -1;
+            }
+            stamps += stamp;
+            offset += (int) g.get(i + 1);
+        }
+        for (int c = from; c < b; c++) {
+            Leaf leaf = leaves[c];
+            long version = leaf.version;
+            if ((version & 1) != 0) {
+                return -1;
+            }
+            versions += version;
+            offset += leaf.size;
+        }
+        // stamps and versions only grow, so their sums are unchanged only if each of them is
+        for (int i = 0; i < to; i += STRIDE) {
+            stamps -= g.get(i);
+        }
+        for (int c = from; c < b; c++) {
+            versions -= leaves[c].version;
+        }
+        if ((stamps != 0) || (versions != 0)) {
+            return -1;
+        }
+        return offset;
+    }
+
+    /**
+     * Returns the element at {@code index}, {@link #INVALID} if there is none, or {@link #STALE} if a write to a leaf
+     * before it overlapped the read. The leaf is found from sizes read without validation, then its offset is counted
+     * again and validated while the leaf is locked.
+     */
+    private Object valueAt(int index) {
+        if (index < 0) {
+            return INVALID;
+        }
+        int b = leafAt(index);
+        if (b == leaves.length) {
+            int size = offset(b);
+            if ((0 <= size) && (size <= index)) {
+                return INVALID;
+            }
+            return STALE;
+        }
+        Leaf leaf = leaves[b];
+        Lock leafLock = leaf.lock.readLock();
+        leafLock.lock();
+        try {
+            int offset = offset(b);
+            if (offset < 0) {
+                return STALE;
+            }
+            int i = index - offset;
+            if ((i < 0) || (leaf.size <= i)) {
+                return STALE;
+            }
+            return leaf.values[i];
+        } finally {
+            leafLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the index of {@code o}, -1 if it is not held, or {@link #STALE_INDEX} if a write to a leaf before it
+     * overlapped the read. A miss holds at the moment its leaf was locked, whatever the other leaves did.
+     */
+    private int position(Object o) {
+        int b = leafOf(o);
+        Leaf leaf = leaves[b];
+        Lock leafLock = leaf.lock.readLock();
+        leafLock.lock();
+        try {
+            int i = search(leaf, o);
+            if (i < 0) {
+                return -1;
+            }
+            int offset = offset(b);
+            if (offset < 0) {
+                return STALE_INDEX;
+            }
+            return offset + i;
+        } finally {
+            leafLock.unlock();
+        }
+    }
+
+    private void lockAll() {
+        for (Leaf leaf : leaves) {
+            leaf.lock.readLock().lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (Leaf leaf : leaves) {
+            leaf.lock.readLock().unlock();
+        }
+    }
+
+    private Object[] elements() {
+        Object[] ary = new Object[size()];
+        int n = 0;
+        for (Leaf leaf : leaves) {
+            System.arraycopy(leaf.values, 0, ary, n, leaf.size);
+            n += leaf.size;
+        }
+        return ary;
+    }
+
+    private void insertAt(int b, int i, Object o) {
+        Leaf leaf = leaves[b];
+        int g = (b / GROUP) * STRIDE;
+        begin(leaf, g);
+        try {
+            if (leaf.size == leaf.values.length) {
+                leaf.values = Arrays.copyOf(leaf.values, Math.min(leaf.size * 2, LEAF_SIZE));
+            }
+            System.arraycopy(leaf.values, i, leaf.values, i + 1, leaf.size - i);
+            leaf.values[i] = o;
+            leaf.size++;
+            groups.incrementAndGet(g + 1);
+        } finally {
+            end(leaf, g);
+        }
+    }
+
+    private void removeAt(int b, int i) {
+        Leaf leaf = leaves[b];
+        int g = (b / GROUP) * STRIDE;
+        begin(leaf, g);
+        try {
+            System.arraycopy(leaf.values, i + 1, leaf.values, i, leaf.size - i - 1);
+            leaf.values[leaf.size - 1] = null;
+            leaf.size--;
+            groups.decrementAndGet(g + 1);
+        } finally {
+            end(leaf, g);
+        }
+    }
+
+    /**
+     * Marks a write to the leaf, whose write lock is held, and to its group as in progress.
+     */
+    private void begin(Leaf leaf, int g) {
+        leaf.version++;
+        groups.incrementAndGet(g);
+    }
+
+    private void end(Leaf leaf, int g) {
+        groups.addAndGet(g, DONE - 1);
+        leaf.version++;
+    }
+
+    private void split(Object o) {
+        Lock writeLock = structure.writeLock();
+        writeLock.lock();
+        try {
+            int b = leafOf(o);
+            Leaf leaf = leaves[b];
+            if (leaf.size < LEAF_SIZE) {
+                // split by another writer meanwhile
+                return;
+            }
+            int half = leaf.size >>> 1;
+            Leaf upper = new Leaf(Arrays.copyOfRange(leaf.values, half, LEAF_SIZE), leaf.size - half);
+            Arrays.fill(leaf.values, half, leaf.size, null);
+            leaf.size = half;
+            int n = leaves.length;
+            leaves = Arrays.copyOf(leaves, n + 1);
+            lows = Arrays.copyOf(lows, n + 1);
+            System.arraycopy(leaves, b + 1, leaves, b + 2, n - b - 1);
+            System.arraycopy(lows, b + 1, lows, b + 2, n - b - 1);
+            leaves[b + 1] = upper;
+            lows[b + 1] = upper.values[0];
+            reindex();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the empty leaves but one; the range of a dropped leaf goes to the one before it.
+     */
+    private void prune() {
+        int n = 0;
+        for (int b = 0; b < leaves.length; b++) {
+            if ((0 < leaves[b].size) || ((n == 0) && (b == (leaves.length - 1)))) {
+                leaves[n] = leaves[b];
+                lows[n] = lows[b];
+                n++;
+            }
+        }
+        if (n == leaves.length) {
+            return;
+        }
+        leaves = Arrays.copyOf(leaves, n);
+        lows = Arrays.copyOf(lows, n);
+        lows[0] = null;
+        reindex();
+    }
+
+    private void reindex() {
+        long[] ary = new long[((leaves.length + GROUP - 1) / GROUP) * STRIDE];
+        for (int b = 0; b < leaves.length; b++) {
+            ary[((b / GROUP) * STRIDE) + 1] += leaves[b].size;
+        }
+        groups = new AtomicLongArray(ary);
+    }
+
+    /**
+     * Replaces the elements with the first {@code n} of a sorted, distinct array, in half-full leaves.
+     */
+    private void load(Object[] sorted, int n) {
+        int fill = LEAF_SIZE / 2;
+        int length = Math.max((n + fill - 1) / fill, 1);
+        leaves = new Leaf[length];
+        lows = new Object[length];
+        for (int b = 0; b < length; b++) {
+            int from = Math.min(b * fill, n);
+            int to = Math.min(from + fill, n);
+            leaves[b] = new Leaf(Arrays.copyOfRange(sorted, from, from + Math.max(to - from, INITIAL_CAPACITY)),
+                    to - from);
+            if (0 < b) {
+                lows[b] = sorted[from];
+            }
+        }
+        reindex();
+    }
+
+    private static final class Leaf {
+
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        Object[] values;
+
+        // written under the write lock, read without it to count offsets
+        volatile int size;
+
+        // odd while the leaf is written
+        volatile long version;
+
+        Leaf(Object[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package sc.ript.util;
+
+/**
+ * One insertion into or removal from a SortedList, with the index the element had at that moment: the index after the
+ * insertion, or the index before the removal. Applying the changes of a batch in order to a copy of the list keeps the
+ * copy equal to the list.
+ */
+public final class ListChange<T> {
+
+    public enum Kind {
+        INSERT, REMOVE
+    }
+
+    private final Kind kind;
+
+    private final T element;
+
+    private final int index;
+
+    public ListChange(Kind kind, T element, int index) {
+        if (kind == null) {
+            throw new NullPointerException();
+        }
+        this.kind = kind;
+        this.element = element;
+        this.index = index;
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    public T element() {
+        return element;
+    }
+
+    public int index() {
+        return index;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ListChange)) {
+            return false;
+        }
+        ListChange<?> other = (ListChange<?>) obj;
+        if ((kind != other.kind) || (index != other.index)) {
+            return false;
+        }
+        if (element == null) {
+            return other.element == null;
+        }
+        return element.equals(other.element);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = (kind.hashCode() * 31) + index;
+        if (element != null) {
+            hash = (hash * 31) + element.hashCode();
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return kind + "(" + index + ", " + element + ")";
+    }
+}
@@ -0,0 +1,26 @@
+package sc.ript.util;
+
+/**
+ * Search within a block of {@link LongSortedList}. This is the scalar version; the multi-release jar carries one for
+ * Java 17 and later that compares several values per instruction when the {@code jdk.incubator.vector} module is
+ * present.
+ */
+final class LongSearch {
+
+    private LongSearch() {
+    }
+
+    /**
+     * Returns the number of values less than {@code key} in {@code a[from, from + n)}, which is sorted.
+     */
+    static int lowerBound(long[] a, int from, int n, long key) {
+        return LongSortedList.lowerBound(a, from, n, key);
+    }
+
+    /**
+     * Returns true if {@link #lowerBound(long[], int, int, long)} uses the vector API.
+     */
+    static boolean vectorized() {
+        return false;
+    }
+}
@@ -0,0 +1,505 @@
+package sc.ript.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * SortedList of distinct {@code long} values kept unboxed in sorted blocks. A block is found by a search over the first
+ * value of every block, and a value within a block by a search that halves the range without branching on the
+ * comparison until it fits a cache line, then counts the smaller values in that line. On Java 17 and later, with
+ * {@code --add-modules jdk.incubator.vector}, the multi-release jar counts them with vector compares instead. The
+ * {@code long} methods avoid boxing; the {@link SortedList} methods box.
+ */
+public class LongSortedList extends AbstractSortedList<Long> {
+
+    static final int BLOCK_SIZE = 1024;
+
+    /**
+     * Values of one 64-byte cache line.
+     */
+    static final int LEAF = 8;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[][] blocks = new long[0][];
+
+    private int[] sizes = new int[0];
+
+    /**
+     * Index of the first value of each block within the list.
+     */
+    private int[] offsets = new int[1];
+
+    private long[] firsts = new long[0];
+
+    private int count;
+
+    public LongSortedList() {
+        // empty
+    }
+
+    public LongSortedList(long... values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if ((n == 0) || (sorted[n - 1] != sorted[i])) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        load(sorted, n);
+    }
+
+    /**
+     * Returns the number of values less than {@code key} in {@code a[from, from + n)}, which is sorted.
+     */
+    static int lowerBound(long[] a, int from, int n, long key) {
+        int base = from;
+        while (LEAF < n) {
+            int half = n >>> 1;
+            base += lessThan(a[base + half - 1], key) * half;
+            n -= half;
+        }
+        int index = base;
+        for (int i = 0; i < n; i++) {
+            index += lessThan(a[base + i], key);
+        }
+        return index - from;
+    }
+
+    /**
+     * Returns 1 if {@code x < y}, else 0, without a branch.
+     */
+    static int lessThan(long x, long y) {
+        long d = x - y;
+        return (int) ((d ^ ((x ^ y) & (d ^ x))) >>> (Long.SIZE - 1));
+    }
+
+    public boolean containsLong(long o) {
+        return 0 <= indexOfLong(o);
+    }
+
+    public int indexOfLong(long o) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int b = blockOf(o);
+            if (b < 0) {
+                return -1;
+            }
+            int i = LongSearch.lowerBound(blocks[b], 0, sizes[b], o);
+            if ((i < sizes[b]) && (blocks[b][i] == o)) {
+                return offsets[b] + i;
+            }
+            return -1;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of values less than {@code o}.
+     */
+    public int rank(long o) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int b = blockOf(o);
+            if (b < 0) {
+                return 0;
+            }
+            return offsets[b] + LongSearch.lowerBound(blocks[b], 0, sizes[b], o);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public long getLong(int index) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if ((index < 0) || (count <= index)) {
+                throw new IndexOutOfBoundsException();
+            }
+            int b = blockAt(index);
+            return blocks[b][index - offsets[b]];
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public boolean insertLong(long o) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return add(o);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public boolean removeLong(long o) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            int b = blockOf(o);
+            if (b < 0) {
+                return false;
+            }
+            int i = LongSearch.lowerBound(blocks[b], 0, sizes[b], o);
+            if ((sizes[b] <= i) || (blocks[b][i] != o)) {
+                return false;
+            }
+            removeAt(b, i);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the values in ascending order.
+     */
+    public long[] toLongArray() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            long[] ary = new long[count];
+            for (int b = 0; b < blocks.length; b++) {
+                System.arraycopy(blocks[b], 0, ary, offsets[b], sizes[b]);
+            }
+            return ary;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return count;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return (o instanceof Long) && containsLong((Long) o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Long)) {
+            return -1;
+        }
+        return indexOfLong((Long) o);
+    }
+
+    @Override
+    public Long get(int index) {
+        return getLong(index);
+    }
+
+    @Override
+    public List<Long> quantiles(double... qs) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int[] ranks = ranks(qs, count);
+            Object[] values = new Object[ranks.length];
+            for (int i = 0; i < ranks.length; i++) {
+                int b = blockAt(ranks[i]);
+                values[i] = blocks[b][ranks[i] - offsets[b]];
+            }
+            return asList(values);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        long[] values = toLongArray();
+        Object[] ary = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ary[i] = values[i];
+        }
+        return ary;
+    }
+
+    @Override
+    public Long remove(int index) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if ((index < 0) || (count <= index)) {
+                throw new IndexOutOfBoundsException();
+            }
+            int b = blockAt(index);
+            long o = blocks[b][index - offsets[b]];
+            removeAt(b, index - offsets[b]);
+            return o;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return (o instanceof Long) && removeLong((Long) o);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean modified = false;
+        for (Object o : c) {
+            if (remove(o)) {
+                modified = true;
+            }
+        }
+        return modified;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            long[] values = toLongArray();
+            int n = 0;
+            for (long o : values) {
+                if (c.contains(o)) {
+                    values[n++] = o;
+                }
+            }
+            if (n == values.length) {
+                return false;
+            }
+            load(values, n);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            load(new long[0], 0);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns {@code null}; values are in natural order.
+     */
+    @Override
+    public Comparator<? super Long> comparator() {
+        return null;
+    }
+
+    @Override
+    public Long first() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (count == 0) {
+                throw new NoSuchElementException();
+            }
+            return blocks[0][0];
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Long last() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (count == 0) {
+                throw new NoSuchElementException();
+            }
+            int b = blocks.length - 1;
+            return blocks[b][sizes[b] - 1];
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean insert(Long o) {
+        return insertLong(o);
+    }
+
+    @Override
+    public boolean insertAll(Collection<Long> c) {
+        long[] values = new long[c.size()];
+        int n = 0;
+        for (Long o : c) {
+            values[n++] = o;
+        }
+        Arrays.sort(values, 0, n);
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            boolean modified = false;
+            for (int i = 0; i < n; i++) {
+                if (add(values[i])) {
+                    modified = true;
+                }
+            }
+            return modified;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the block that would hold {@code o}, or -1 if the list is empty.
+     */
+    private int blockOf(long o) {
+        if (blocks.length == 0) {
+            return -1;
+        }
+        // the last block whose first value is not greater than o, or the first block
+        if (o == Long.MAX_VALUE) {
+            return blocks.length - 1;
+        }
+        return Math.max(LongSearch.lowerBound(firsts, 0, blocks.length, o + 1) - 1, 0);
+    }
+
+    private int blockAt(int index) {
+        // the last block whose offset is not greater than index
+        int low = 0;
+        int high = blocks.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private boolean add(long o) {
+        if (blocks.length == 0) {
+            blocks = new long[][] { new long[LEAF] };
+            sizes = new int[] { 0 };
+            firsts = new long[] { o };
+            offsets = new int[] { 0, 0 };
+        }
+        int b = blockOf(o);
+        int size = sizes[b];
+        long[] block = blocks[b];
+        int i = LongSearch.lowerBound(block, 0, size, o);
+        if ((i < size) && (block[i] == o)) {
+            return false;
+        }
+        if (size == block.length) {
+            if (size == BLOCK_SIZE) {
+                split(b);
+                add(o);
+                return true;
+            }
+            block = Arrays.copyOf(block, Math.min(size * 2, BLOCK_SIZE));
+            blocks[b] = block;
+        }
+        System.arraycopy(block, i, block, i + 1, size - i);
+        block[i] = o;
+        sizes[b] = size + 1;
+        firsts[b] = block[0];
+        for (int k = b + 1; k < offsets.length; k++) {
+            offsets[k]++;
+        }
+        count++;
+        return true;
+    }
+
+    private void removeAt(int b, int i) {
+        long[] block = blocks[b];
+        int size = sizes[b] - 1;
+        System.arraycopy(block, i + 1, block, i, size - i);
+        sizes[b] = size;
+        for (int k = b + 1; k < offsets.length; k++) {
+            offsets[k]--;
+        }
+        count--;
+        if (size == 0) {
+            removeBlock(b);
+        } else {
+            firsts[b] = block[0];
+        }
+    }
+
+    private void split(int b) {
+        long[] block = blocks[b];
+        int half = sizes[b] >>> 1;
+        long[] upper = Arrays.copyOfRange(block, half, half + BLOCK_SIZE);
+        int n = blocks.length;
+        blocks = Arrays.copyOf(blocks, n + 1);
+        sizes = Arrays.copyOf(sizes, n + 1);
+        firsts = Arrays.copyOf(firsts, n + 1);
+        offsets = Arrays.copyOf(offsets, n + 2);
+        System.arraycopy(blocks, b + 1, blocks, b + 2, n - b - 1);
+        System.arraycopy(sizes, b + 1, sizes, b + 2, n - b - 1);
+        System.arraycopy(firsts, b + 1, firsts, b + 2, n - b - 1);
+        System.arraycopy(offsets, b + 1, offsets, b + 2, n - b);
+        blocks[b + 1] = upper;
+        sizes[b + 1] = sizes[b] - half;
+        firsts[b + 1] = upper[0];
+        offsets[b + 1] = offsets[b] + half;
+        sizes[b] = half;
+    }
+
+    private void removeBlock(int b) {
+        int n = blocks.length - 1;
+        System.arraycopy(blocks, b + 1, blocks, b, n - b);
+        System.arraycopy(sizes, b + 1, sizes, b, n - b);
+        System.arraycopy(firsts, b + 1, firsts, b, n - b);
+        System.arraycopy(offsets, b + 1, offsets, b, n - b + 1);
+        blocks = Arrays.copyOf(blocks, n);
+        sizes = Arrays.copyOf(sizes, n);
+        firsts = Arrays.copyOf(firsts, n);
+        offsets = Arrays.copyOf(offsets, n + 1);
+    }
+
+    /**
+     * Replaces the values with the first {@code n} of a sorted, distinct array, in full blocks; the last is only as
+     * long as its values.
+     */
+    private void load(long[] sorted, int n) {
+        int length = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        blocks = new long[length][];
+        sizes = new int[length];
+        firsts = new long[length];
+        offsets = new int[length + 1];
+        for (int b = 0; b < length; b++) {
+            int from = b * BLOCK_SIZE;
+            int to = Math.min(from + BLOCK_SIZE, n);
+            blocks[b] = Arrays.copyOfRange(sorted, from, from + Math.max(to - from, LEAF));
+            sizes[b] = to - from;
+            firsts[b] = sorted[from];
+            offsets[b + 1] = to;
+        }
+        count = n;
+    }
+}
@@ -0,0 +1,243 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Holds each element once and keeps it in several order-statistic indices, one per comparator. The first comparator
+ * decides which elements are equal; elements that another comparator ranks equal are ordered among themselves by the
+ * first. Each index is a SortedList view with O(log n) positional access, and every insert or remove updates all of
+ * them under one lock.
+ */
+public class MultiSortedList<T> {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<RankTree<T>> trees = new ArrayList<>();
+
+    private final List<Index> indexes = new ArrayList<>();
+
+    /**
+     * A {@code null} comparator orders its index by the natural ordering.
+     */
+    @SafeVarargs
+    public MultiSortedList(Comparator<? super T> primary, Comparator<? super T>... others) {
+        addIndex(new RankTree<T>(primary));
+        for (Comparator<? super T> c : others) {
+            addIndex(new RankTree<T>(new ThenComparator<T>(c, primary)));
+        }
+    }
+
+    private void addIndex(RankTree<T> tree) {
+        trees.add(tree);
+        indexes.add(new Index(tree));
+    }
+
+    /**
+     * Returns the view ordered by the comparator at the position it was given to the constructor. Inserts and removes
+     * through a view apply to every index. The {@link SortedList#comparator() comparator} of a view other than the
+     * first breaks ties by the first comparator, as the view does.
+     */
+    public SortedList<T> index(int i) {
+        return indexes.get(i);
+    }
+
+    public int indexCount() {
+        return indexes.size();
+    }
+
+    public int size() {
+        return index(0).size();
+    }
+
+    public boolean contains(Object o) {
+        return index(0).contains(o);
+    }
+
+    public boolean insert(T o) {
+        return index(0).insert(o);
+    }
+
+    public boolean insertAll(Collection<T> c) {
+        return index(0).insertAll(c);
+    }
+
+    public boolean remove(Object o) {
+        return index(0).remove(o);
+    }
+
+    public void clear() {
+        index(0).clear();
+    }
+
+    private boolean insertEach(T o) {
+        if (!trees.get(0).insert(o)) {
+            return false;
+        }
+        for (int i = 1; i < trees.size(); i++) {
+            trees.get(i).insert(o);
+        }
+        return true;
+    }
+
+    private boolean removeEach(Object o) {
+        RankTree.Node<T> node = trees.get(0).remove(o);
+        if (node == null) {
+            return false;
+        }
+        for (int i = 1; i < trees.size(); i++) {
+            trees.get(i).remove(node.value);
+        }
+        return true;
+    }
+
+    private final class Index extends RankTreeList<T> {
+
+        Index(RankTree<T> tree) {
+            super(tree, MultiSortedList.this.lock);
+        }
+
+        @Override
+        public T remove(int index) {
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                if ((index < 0) || (tree.size() <= index)) {
+                    throw new IndexOutOfBoundsException();
+                }
+                T o = tree.nodeAt(index).value;
+                removeEach(o);
+                return o;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if ((o == null) && (trees.get(0).comparator == null)) {
+                return false;
+            }
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                return removeEach(o);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> c) {
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                boolean modified = false;
+                for (Object o : c) {
+                    if (removeEach(o)) {
+                        modified = true;
+                    }
+                }
+                return modified;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> c) {
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                boolean modified = false;
+                for (Object o : trees.get(0).toArray()) {
+                    if (!c.contains(o)) {
+                        removeEach(o);
+                        modified = true;
+                    }
+                }
+                return modified;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        @Override
+        public void clear() {
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                for (RankTree<T> t : trees) {
+                    t.clear();
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        @Override
+        public boolean insert(T o) {
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                return insertEach(o);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean insertAll(Collection<T> c) {
+            Object[] keys = SortedArraySet.sort(c, trees.get(0).comparator);
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                if (trees.get(0).root == null) {
+                    // every index is empty, so each is built from the keys in its own order
+                    for (RankTree<T> t : trees) {
+                        Object[] ary = Arrays.copyOf(keys, keys.length);
+                        SortedArraySet.sort(ary, ary.length, t.comparator);
+                        t.build(ary, 0, ary.length);
+                    }
+                    return 0 < keys.length;
+                }
+                boolean modified = false;
+                for (Object o : keys) {
+                    if (insertEach((T) o)) {
+                        modified = true;
+                    }
+                }
+                return modified;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    private static final class ThenComparator<T> implements Comparator<T> {
+
+        private final Comparator<? super T> first;
+
+        private final Comparator<? super T> then;
+
+        ThenComparator(Comparator<? super T> first, Comparator<? super T> then) {
+            this.first = first;
+            this.then = then;
+        }
+
+        @Override
+        public int compare(T o1, T o2) {
+            int cmp = SortedArraySet.compare(first, o1, o2);
+            if (cmp != 0) {
+                return cmp;
+            }
+            return SortedArraySet.compare(then, o1, o2);
+        }
+    }
+}
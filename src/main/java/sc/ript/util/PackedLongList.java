@@ -0,0 +1,681 @@
+package sc.ript.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * SortedList of distinct {@code long} values stored compressed. The values are cut into blocks of up to
+ * {@value #BLOCK_SIZE}; a block keeps its first and last value, and the gaps between consecutive values, less one,
+ * bit-packed at the width of the largest gap. Consecutive values therefore take no bits at all, and values that are
+ * at most 2<sup>k</sup> apart take k bits. A lookup finds its block by the first values and decodes only that block;
+ * an insert or a remove decodes the block, changes it and packs it again, splitting it when it is full.
+ */
+public class PackedLongList extends AbstractSortedList<Long> {
+
+    static final int BLOCK_SIZE = 128;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final long[] scratch = new long[BLOCK_SIZE + 1];
+
+    private long[][] words = new long[0][];
+
+    private byte[] widths = new byte[0];
+
+    private int[] sizes = new int[0];
+
+    /**
+     * Block sizes as a Fenwick tree, so that the offset of a block and the block at an index are found, and a size is
+     * changed, in logarithmic time.
+     */
+    private int[] counts = new int[1];
+
+    private long[] firsts = new long[0];
+
+    private long[] lasts = new long[0];
+
+    private int blocks;
+
+    private int count;
+
+    public PackedLongList() {
+        // empty
+    }
+
+    public PackedLongList(long... values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        load(sorted, distinct(sorted, sorted.length));
+    }
+
+    /**
+     * Returns the gap, less one, between the {@code i}-th value of a block and the next one.
+     */
+    static long gap(long[] packed, int width, int i) {
+        if (width == 0) {
+            return 0;
+        }
+        int bit = i * width;
+        int word = bit >>> 6;
+        int shift = bit & (Long.SIZE - 1);
+        long value = packed[word] >>> shift;
+        if (Long.SIZE < (shift + width)) {
+            value |= packed[word + 1] << (Long.SIZE - shift);
+        }
+        return value & (-1L >>> (Long.SIZE - width));
+    }
+
+    /**
+     * Packs the gaps of the sorted, distinct {@code values[from, from + n)} at the given width.
+     */
+    static long[] pack(long[] values, int from, int n, int width) {
+        long[] packed = new long[(((n - 1) * width) + Long.SIZE - 1) / Long.SIZE];
+        if (width == 0) {
+            return packed;
+        }
+        for (int i = 0; i < (n - 1); i++) {
+            long value = values[from + i + 1] - values[from + i] - 1;
+            int bit = i * width;
+            int word = bit >>> 6;
+            int shift = bit & (Long.SIZE - 1);
+            packed[word] |= value << shift;
+            if (Long.SIZE < (shift + width)) {
+                packed[word + 1] |= value >>> (Long.SIZE - shift);
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Returns the number of bits that holds the largest gap, less one, of the sorted, distinct
+     * {@code values[from, from + n)}.
+     */
+    static int width(long[] values, int from, int n) {
+        long bits = 0;
+        for (int i = from + 1; i < (from + n); i++) {
+            bits |= values[i] - values[i - 1] - 1;
+        }
+        return Long.SIZE - Long.numberOfLeadingZeros(bits);
+    }
+
+    public boolean containsLong(long o) {
+        return 0 <= indexOfLong(o);
+    }
+
+    public int indexOfLong(long o) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int b = blockOf(o);
+            if ((b < 0) || (lasts[b] < o)) {
+                return -1;
+            }
+            int i = lowerBound(b, o);
+            if (i < 0) {
+                return -1;
+            }
+            return offset(b) + i;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of values less than {@code o}.
+     */
+    public int rank(long o) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int b = blockOf(o);
+            if (b < 0) {
+                return 0;
+            }
+            if (lasts[b] < o) {
+                return offset(b) + sizes[b];
+            }
+            int i = lowerBound(b, o);
+            if (i < 0) {
+                return offset(b) - i - 1;
+            }
+            return offset(b) + i;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public long getLong(int index) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if ((index < 0) || (count <= index)) {
+                throw new IndexOutOfBoundsException();
+            }
+            return valueAt(index);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public boolean insertLong(long o) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return add(o);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public boolean removeLong(long o) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            int b = blockOf(o);
+            if ((b < 0) || (lasts[b] < o)) {
+                return false;
+            }
+            int i = lowerBound(b, o);
+            if (i < 0) {
+                return false;
+            }
+            removeAt(b, i);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the values in ascending order.
+     */
+    public long[] toLongArray() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            long[] ary = new long[count];
+            int from = 0;
+            for (int b = 0; b < blocks; b++) {
+                decode(b, ary, from);
+                from += sizes[b];
+            }
+            return ary;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of bytes of the packed gaps and of the per-block fields, excluding object headers.
+     */
+    long packedBytes() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            long bytes = 0;
+            for (int b = 0; b < blocks; b++) {
+                bytes += (long) words[b].length * Long.BYTES;
+            }
+            // width, size, count, first and last value of each block
+            return bytes + ((long) blocks * (1 + Integer.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return count;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return (o instanceof Long) && containsLong((Long) o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Long)) {
+            return -1;
+        }
+        return indexOfLong((Long) o);
+    }
+
+    @Override
+    public Long get(int index) {
+        return getLong(index);
+    }
+
+    @Override
+    public List<Long> quantiles(double... qs) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int[] ranks = ranks(qs, count);
+            Object[] values = new Object[ranks.length];
+            for (int i = 0; i < ranks.length; i++) {
+                values[i] = valueAt(ranks[i]);
+            }
+            return asList(values);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        long[] values = toLongArray();
+        Object[] ary = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ary[i] = values[i];
+        }
+        return ary;
+    }
+
+    @Override
+    public Long remove(int index) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if ((index < 0) || (count <= index)) {
+                throw new IndexOutOfBoundsException();
+            }
+            int b = blockAt(index);
+            long o = valueAt(index);
+            removeAt(b, index - offset(b));
+            return o;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return (o instanceof Long) && removeLong((Long) o);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean modified = false;
+        for (Object o : c) {
+            if (remove(o)) {
+                modified = true;
+            }
+        }
+        return modified;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            long[] values = toLongArray();
+            int n = 0;
+            for (long o : values) {
+                if (c.contains(o)) {
+                    values[n++] = o;
+                }
+            }
+            if (n == values.length) {
+                return false;
+            }
+            load(values, n);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            load(new long[0], 0);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns {@code null}; values are in natural order.
+     */
+    @Override
+    public Comparator<? super Long> comparator() {
+        return null;
+    }
+
+    @Override
+    public Long first() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (count == 0) {
+                throw new NoSuchElementException();
+            }
+            return firsts[0];
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Long last() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (count == 0) {
+                throw new NoSuchElementException();
+            }
+            return lasts[blocks - 1];
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean insert(Long o) {
+        return insertLong(o);
+    }
+
+    @Override
+    public boolean insertAll(Collection<Long> c) {
+        long[] values = new long[c.size()];
+        int n = 0;
+        for (Long o : c) {
+            values[n++] = o;
+        }
+        Arrays.sort(values, 0, n);
+        n = distinct(values, n);
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (((long) n * BLOCK_SIZE) < count) {
+                // few values: re-encode only the blocks they fall into
+                boolean modified = false;
+                for (int i = 0; i < n; i++) {
+                    if (add(values[i])) {
+                        modified = true;
+                    }
+                }
+                return modified;
+            }
+            long[] merged = merge(toLongArray(), values, n);
+            if (merged.length == count) {
+                return false;
+            }
+            load(merged, merged.length);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static int distinct(long[] sorted, int length) {
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            if ((n == 0) || (sorted[n - 1] != sorted[i])) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        return n;
+    }
+
+    private static long[] merge(long[] x, long[] y, int n) {
+        long[] merged = new long[x.length + n];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while ((i < x.length) && (j < n)) {
+            if (x[i] < y[j]) {
+                merged[k++] = x[i++];
+            } else if (y[j] < x[i]) {
+                merged[k++] = y[j++];
+            } else {
+                merged[k++] = x[i++];
+                j++;
+            }
+        }
+        while (i < x.length) {
+            merged[k++] = x[i++];
+        }
+        while (j < n) {
+            merged[k++] = y[j++];
+        }
+        return Arrays.copyOf(merged, k);
+    }
+
+    /**
+     * Returns the block that would hold {@code o}, or -1 if the list is empty.
+     */
+    private int blockOf(long o) {
+        if (blocks == 0) {
+            return -1;
+        }
+        // the last block whose first value is not greater than o, or the first block
+        if (o == Long.MAX_VALUE) {
+            return blocks - 1;
+        }
+        return Math.max(LongSortedList.lowerBound(firsts, 0, blocks, o + 1) - 1, 0);
+    }
+
+    /**
+     * Returns the number of values in the blocks before {@code b}.
+     */
+    private int offset(int b) {
+        int sum = 0;
+        for (int i = b; 0 < i; i -= i & -i) {
+            sum += counts[i];
+        }
+        return sum;
+    }
+
+    private int blockAt(int index) {
+        // the last block whose offset is not greater than index
+        int b = 0;
+        int rest = index;
+        int n = counts.length - 1;
+        for (int step = Integer.highestOneBit(n); 0 < step; step >>>= 1) {
+            if (((b + step) <= n) && (counts[b + step] <= rest)) {
+                b += step;
+                rest -= counts[b];
+            }
+        }
+        return b;
+    }
+
+    private void resize(int b, int delta) {
+        for (int i = b + 1; i < counts.length; i += i & -i) {
+            counts[i] += delta;
+        }
+    }
+
+    /**
+     * Rebuilds the tree for the blocks from {@code b} on. Nodes up to {@code b} cover only earlier blocks and are kept.
+     */
+    private void reindex(int b) {
+        // over the whole capacity; the sizes of unused blocks are 0
+        if (counts.length != (sizes.length + 1)) {
+            counts = Arrays.copyOf(counts, sizes.length + 1);
+        }
+        int sum = offset(b);
+        for (int i = b + 1; i < counts.length; i++) {
+            sum += sizes[i - 1];
+            counts[i] = sum;
+        }
+        // each node holds a prefix sum now; subtract the one before its range, from the top down
+        for (int i = counts.length - 1; b < i; i--) {
+            int k = i - (i & -i);
+            if (b < k) {
+                counts[i] -= counts[k];
+            } else {
+                counts[i] -= offset(k);
+            }
+        }
+    }
+
+    /**
+     * Returns the position of {@code o} in block {@code b}, or {@code -(insertion point) - 1}.
+     */
+    private int lowerBound(int b, long o) {
+        long[] packed = words[b];
+        int width = widths[b];
+        long value = firsts[b];
+        int i = 0;
+        while (value < o) {
+            i++;
+            if (i == sizes[b]) {
+                return -i - 1;
+            }
+            value += gap(packed, width, i - 1) + 1;
+        }
+        if (value == o) {
+            return i;
+        }
+        return -i - 1;
+    }
+
+    private long valueAt(int index) {
+        int b = blockAt(index);
+        long[] packed = words[b];
+        int width = widths[b];
+        long value = firsts[b];
+        int n = index - offset(b);
+        for (int i = 0; i < n; i++) {
+            value += gap(packed, width, i) + 1;
+        }
+        return value;
+    }
+
+    private void decode(int b, long[] out, int from) {
+        long[] packed = words[b];
+        int width = widths[b];
+        long value = firsts[b];
+        out[from] = value;
+        for (int i = 1; i < sizes[b]; i++) {
+            value += gap(packed, width, i - 1) + 1;
+            out[from + i] = value;
+        }
+    }
+
+    private void encode(int b, long[] values, int from, int n) {
+        int width = width(values, from, n);
+        words[b] = pack(values, from, n, width);
+        widths[b] = (byte) width;
+        sizes[b] = n;
+        firsts[b] = values[from];
+        lasts[b] = values[from + n - 1];
+    }
+
+    private boolean add(long o) {
+        if (blocks == 0) {
+            load(new long[] { o }, 1);
+            return true;
+        }
+        int b = blockOf(o);
+        int i = lowerBound(b, o);
+        if (0 <= i) {
+            return false;
+        }
+        i = -i - 1;
+        int size = sizes[b];
+        decode(b, scratch, 0);
+        System.arraycopy(scratch, i, scratch, i + 1, size - i);
+        scratch[i] = o;
+        size++;
+        if (size <= BLOCK_SIZE) {
+            encode(b, scratch, 0, size);
+            resize(b, 1);
+        } else {
+            int half = size >>> 1;
+            openBlock(b + 1);
+            encode(b, scratch, 0, half);
+            encode(b + 1, scratch, half, size - half);
+            reindex(b);
+        }
+        count++;
+        return true;
+    }
+
+    private void removeAt(int b, int i) {
+        int size = sizes[b] - 1;
+        if (size == 0) {
+            closeBlock(b);
+            reindex(b);
+        } else {
+            decode(b, scratch, 0);
+            System.arraycopy(scratch, i + 1, scratch, i, size - i);
+            encode(b, scratch, 0, size);
+            resize(b, -1);
+        }
+        count--;
+    }
+
+    private void openBlock(int b) {
+        int n = blocks;
+        if (n == sizes.length) {
+            int capacity = n + (n >> 1) + 1;
+            words = Arrays.copyOf(words, capacity);
+            widths = Arrays.copyOf(widths, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            firsts = Arrays.copyOf(firsts, capacity);
+            lasts = Arrays.copyOf(lasts, capacity);
+        }
+        System.arraycopy(words, b, words, b + 1, n - b);
+        System.arraycopy(widths, b, widths, b + 1, n - b);
+        System.arraycopy(sizes, b, sizes, b + 1, n - b);
+        System.arraycopy(firsts, b, firsts, b + 1, n - b);
+        System.arraycopy(lasts, b, lasts, b + 1, n - b);
+        blocks++;
+    }
+
+    private void closeBlock(int b) {
+        int n = blocks - 1;
+        System.arraycopy(words, b + 1, words, b, n - b);
+        System.arraycopy(widths, b + 1, widths, b, n - b);
+        System.arraycopy(sizes, b + 1, sizes, b, n - b);
+        System.arraycopy(firsts, b + 1, firsts, b, n - b);
+        System.arraycopy(lasts, b + 1, lasts, b, n - b);
+        words[n] = null;
+        sizes[n] = 0;
+        blocks = n;
+    }
+
+    /**
+     * Replaces the values with the first {@code n} of a sorted, distinct array, in full blocks.
+     */
+    private void load(long[] sorted, int n) {
+        int length = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        words = new long[length][];
+        widths = new byte[length];
+        sizes = new int[length];
+        firsts = new long[length];
+        lasts = new long[length];
+        for (int b = 0; b < length; b++) {
+            int from = b * BLOCK_SIZE;
+            int to = Math.min(from + BLOCK_SIZE, n);
+            encode(b, sorted, from, to - from);
+        }
+        blocks = length;
+        counts = new int[1];
+        reindex(0);
+        count = n;
+    }
+}
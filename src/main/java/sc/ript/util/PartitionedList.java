@@ -0,0 +1,707 @@
+package sc.ript.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * SortedList whose key space is split into ranges, each held by a {@link ShardServer}. Shard {@code i} holds the
+ * elements from split {@code i - 1}, inclusive, to split {@code i}, exclusive. The size of every shard is cached from
+ * the responses read from it, so positional access goes to a single shard, while rank, quantiles and range scans are
+ * sent to every shard they span before any response is read. Changes made through other clients show up in the cached
+ * sizes after {@link #refresh()}.
+ * <p>
+ * If a shard fails while an exchange is under way, every connection that was sent a request but not read to the end of
+ * its response is closed, as its stream no longer lines up with the calls. The call fails with an
+ * {@link UncheckedIOException}, and the next call on such a shard connects to it again.
+ */
+public class PartitionedList<T> extends AbstractSortedList<T> implements Closeable {
+
+    private static final int ATTEMPTS = 2;
+
+    private final Codec<T> codec;
+
+    private final Comparator<? super T> comparator;
+
+    private final Object[] splits;
+
+    private final Connection[] shards;
+
+    private volatile boolean closed;
+
+    /**
+     * Connects to {@code splits.size() + 1} shards; the splits must be strictly ascending.
+     */
+    public PartitionedList(Codec<T> codec, Comparator<? super T> comparator, List<T> splits,
+            List<InetSocketAddress> addresses) throws IOException {
+        if (codec == null) {
+            throw new NullPointerException();
+        }
+        if (addresses.size() != (splits.size() + 1)) {
+            throw new IllegalArgumentException("needs " + (splits.size() + 1) + " shards for " + splits.size()
+                    + " splits");
+        }
+        this.codec = codec;
+        this.comparator = comparator;
+        this.splits = splits.toArray();
+        for (int i = 1; i < this.splits.length; i++) {
+            if (0 <= compare(this.splits[i - 1], this.splits[i])) {
+                throw new IllegalArgumentException("splits are not ascending");
+            }
+        }
+        shards = new Connection[addresses.size()];
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                shards[i] = new Connection(addresses.get(i));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        refresh();
+    }
+
+    /**
+     * Reads the size of every shard again.
+     */
+    public void refresh() {
+        Call<?>[] calls = new Call<?>[shards.length];
+        for (int i = 0; i < calls.length; i++) {
+            calls[i] = new Call<>(ShardServer.SIZE, null, null);
+        }
+        gather(calls);
+    }
+
+    /**
+     * Returns the cached number of elements in each shard.
+     */
+    public int[] shardSizes() {
+        int[] sizes = new int[shards.length];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = shards[i].size;
+        }
+        return sizes;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Connection shard : shards) {
+            size += shard.size;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return call(shardOf(o), new Call<>(ShardServer.CONTAINS, element(o), BOOLEAN));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            int s = 0;
+            int local = index;
+            while ((s < shards.length) && (shards[s].size <= local)) {
+                local -= shards[s].size;
+                s++;
+            }
+            if (s < shards.length) {
+                Call<Object[]> call = new Call<>(ShardServer.GET_ALL, indexes(new int[] { local }), values);
+                Call<?>[] calls = new Call<?>[shards.length];
+                calls[s] = call;
+                gather(calls);
+                if (!call.outOfRange) {
+                    return (T) call.result[0];
+                }
+            }
+            refresh();
+        }
+        throw new IndexOutOfBoundsException();
+    }
+
+    @Override
+    public List<T> quantiles(double... qs) {
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            int[] sizes = shardSizes();
+            int size = 0;
+            for (int n : sizes) {
+                size += n;
+            }
+            int[] ranks = ranks(qs, size);
+            int[] sorted = distinct(ranks);
+            // the sorted ranks are cut into ascending runs of local indexes, one per shard
+            Call<?>[] calls = new Call<?>[shards.length];
+            int[] starts = new int[shards.length];
+            int from = 0;
+            int base = 0;
+            for (int s = 0; s < shards.length; s++) {
+                int to = from;
+                while ((to < sorted.length) && (sorted[to] < (base + sizes[s]))) {
+                    to++;
+                }
+                if (from < to) {
+                    int[] local = new int[to - from];
+                    for (int i = 0; i < local.length; i++) {
+                        local[i] = sorted[from + i] - base;
+                    }
+                    calls[s] = new Call<>(ShardServer.GET_ALL, indexes(local), values);
+                    starts[s] = from;
+                }
+                from = to;
+                base += sizes[s];
+            }
+            if (!gather(calls)) {
+                refresh();
+                continue;
+            }
+            Object[] found = new Object[sorted.length];
+            for (int s = 0; s < calls.length; s++) {
+                if (calls[s] != null) {
+                    Object[] part = (Object[]) calls[s].result;
+                    System.arraycopy(part, 0, found, starts[s], part.length);
+                }
+            }
+            return arrange(ranks, sorted, found);
+        }
+        throw new IndexOutOfBoundsException();
+    }
+
+    /**
+     * Returns the number of elements less than {@code o}.
+     */
+    public int rank(T o) {
+        int s = shardOf(o);
+        int local = call(s, new Call<>(ShardServer.RANK, element(o), INTEGER));
+        return prefix(s) + local;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        int s = shardOf(o);
+        int local = call(s, new Call<>(ShardServer.INDEX_OF, element(o), INTEGER));
+        if (local < 0) {
+            return -1;
+        }
+        return prefix(s) + local;
+    }
+
+    /**
+     * Returns the elements from {@code from}, inclusive, to {@code to}, exclusive, gathered from every shard the range
+     * spans.
+     */
+    public List<T> range(T from, T to) {
+        if (0 < compare(from, to)) {
+            throw new IllegalArgumentException();
+        }
+        Call<?>[] calls = new Call<?>[shards.length];
+        for (int s = shardOf(from); s <= shardOf(to); s++) {
+            calls[s] = new Call<>(ShardServer.RANGE, bounds(from, to), values);
+        }
+        return asList(concat(calls));
+    }
+
+    @Override
+    public Object[] toArray() {
+        Call<?>[] calls = new Call<?>[shards.length];
+        for (int s = 0; s < calls.length; s++) {
+            calls[s] = new Call<>(ShardServer.RANGE, bounds(null, null), values);
+        }
+        return concat(calls);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T remove(int index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            int s = 0;
+            int local = index;
+            while ((s < shards.length) && (shards[s].size <= local)) {
+                local -= shards[s].size;
+                s++;
+            }
+            if (s < shards.length) {
+                final int at = local;
+                Call<Object[]> call = new Call<>(ShardServer.REMOVE_AT, new Request() {
+
+                    @Override
+                    public void write(DataOutputStream out) throws IOException {
+                        out.writeInt(at);
+                    }
+                }, values);
+                Call<?>[] calls = new Call<?>[shards.length];
+                calls[s] = call;
+                gather(calls);
+                if (!call.outOfRange) {
+                    return (T) call.result[0];
+                }
+            }
+            refresh();
+        }
+        throw new IndexOutOfBoundsException();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return call(shardOf(o), new Call<>(ShardServer.REMOVE, element(o), BOOLEAN));
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return scatter(ShardServer.REMOVE_ALL, c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        List<Object> removed = new ArrayList<>();
+        for (Object o : toArray()) {
+            if (!c.contains(o)) {
+                removed.add(o);
+            }
+        }
+        return scatter(ShardServer.REMOVE_ALL, removed);
+    }
+
+    @Override
+    public void clear() {
+        Call<?>[] calls = new Call<?>[shards.length];
+        for (int i = 0; i < calls.length; i++) {
+            calls[i] = new Call<>(ShardServer.CLEAR, null, null);
+        }
+        gather(calls);
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T first() {
+        for (int s = 0; s < shards.length; s++) {
+            if (0 < shards[s].size) {
+                Call<Object[]> call = new Call<>(ShardServer.GET_ALL, indexes(new int[] { 0 }), values);
+                Call<?>[] calls = new Call<?>[shards.length];
+                calls[s] = call;
+                if (gather(calls)) {
+                    return (T) call.result[0];
+                }
+            }
+        }
+        throw new NoSuchElementException();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T last() {
+        int s = shards.length - 1;
+        while (0 <= s) {
+            int size = shards[s].size;
+            if (size == 0) {
+                s--;
+            } else {
+                Call<Object[]> call = new Call<>(ShardServer.GET_ALL, indexes(new int[] { size - 1 }), values);
+                Call<?>[] calls = new Call<?>[shards.length];
+                calls[s] = call;
+                if (gather(calls)) {
+                    return (T) call.result[0];
+                }
+                // the shard shrank; its reply refreshed the size, so ask it again before moving down
+            }
+        }
+        throw new NoSuchElementException();
+    }
+
+    @Override
+    public boolean insert(T o) {
+        return call(shardOf(o), new Call<>(ShardServer.INSERT, element(o), BOOLEAN));
+    }
+
+    @Override
+    public boolean insertAll(Collection<T> c) {
+        return scatter(ShardServer.INSERT_ALL, c);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        IOException error = null;
+        for (Connection shard : shards) {
+            if (shard != null) {
+                try {
+                    shard.socket.close();
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private int compare(Object o1, Object o2) {
+        return SortedArraySet.compare(comparator, o1, o2);
+    }
+
+    private int shardOf(Object o) {
+        int low = 0;
+        int high = splits.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(splits[mid], o) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int prefix(int shard) {
+        int prefix = 0;
+        for (int s = 0; s < shard; s++) {
+            prefix += shards[s].size;
+        }
+        return prefix;
+    }
+
+    private boolean scatter(byte op, Collection<?> c) {
+        List<List<Object>> parts = new ArrayList<>();
+        for (int s = 0; s < shards.length; s++) {
+            parts.add(new ArrayList<>());
+        }
+        for (Object o : c) {
+            parts.get(shardOf(o)).add(o);
+        }
+        Call<?>[] calls = new Call<?>[shards.length];
+        for (int s = 0; s < calls.length; s++) {
+            if (!parts.get(s).isEmpty()) {
+                calls[s] = new Call<>(op, elements(parts.get(s)), BOOLEAN);
+            }
+        }
+        gather(calls);
+        boolean modified = false;
+        for (Call<?> call : calls) {
+            if ((call != null) && (Boolean) call.result) {
+                modified = true;
+            }
+        }
+        return modified;
+    }
+
+    private <R> R call(int shard, Call<R> call) {
+        Call<?>[] calls = new Call<?>[shards.length];
+        calls[shard] = call;
+        gather(calls);
+        return call.result;
+    }
+
+    private Object[] concat(Call<?>[] calls) {
+        gather(calls);
+        int length = 0;
+        for (Call<?> call : calls) {
+            if (call != null) {
+                length += ((Object[]) call.result).length;
+            }
+        }
+        Object[] ary = new Object[length];
+        int n = 0;
+        for (Call<?> call : calls) {
+            if (call != null) {
+                Object[] part = (Object[]) call.result;
+                System.arraycopy(part, 0, ary, n, part.length);
+                n += part.length;
+            }
+        }
+        return ary;
+    }
+
+    /**
+     * Sends every call to its shard, then reads the responses. Shards are locked in ascending order so that concurrent
+     * calls over several shards do not deadlock. Returns {@code false} if any shard answered that an index was out of
+     * range. A shard whose exchange does not complete is closed, and connected again before its next call.
+     */
+    private boolean gather(Call<?>[] calls) {
+        // requests are encoded before any shard is locked, so a codec failure cannot leave a partial request behind
+        try {
+            for (Call<?> call : calls) {
+                if (call != null) {
+                    call.encode();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (int s = 0; s < calls.length; s++) {
+            if (calls[s] != null) {
+                shards[s].lock.lock();
+            }
+        }
+        String failure = null;
+        boolean inRange = true;
+        // shards that were written to and not read back to the end of their response
+        boolean[] pending = new boolean[calls.length];
+        try {
+            for (int s = 0; s < calls.length; s++) {
+                if ((calls[s] != null) && shards[s].broken) {
+                    if (closed) {
+                        throw new IllegalStateException("closed");
+                    }
+                    shards[s].connect();
+                }
+            }
+            for (int s = 0; s < calls.length; s++) {
+                if (calls[s] != null) {
+                    pending[s] = true;
+                    calls[s].send(shards[s].out);
+                }
+            }
+            for (int s = 0; s < calls.length; s++) {
+                if (calls[s] != null) {
+                    shards[s].out.flush();
+                }
+            }
+            for (int s = 0; s < calls.length; s++) {
+                if (calls[s] != null) {
+                    String message = calls[s].receive(shards[s]);
+                    pending[s] = false;
+                    if (message != null) {
+                        failure = "shard " + s + ": " + message;
+                    }
+                    if (calls[s].outOfRange) {
+                        inRange = false;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            for (int s = 0; s < calls.length; s++) {
+                if (pending[s]) {
+                    shards[s].disconnect();
+                }
+                if (calls[s] != null) {
+                    shards[s].lock.unlock();
+                }
+            }
+        }
+        if (failure != null) {
+            throw new IllegalStateException(failure);
+        }
+        return inRange;
+    }
+
+    private Request element(final Object o) {
+        return new Request() {
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void write(DataOutputStream out) throws IOException {
+                codec.write((T) o, out);
+            }
+        };
+    }
+
+    private Request elements(final List<?> c) {
+        return new Request() {
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void write(DataOutputStream out) throws IOException {
+                out.writeInt(c.size());
+                for (Object o : c) {
+                    codec.write((T) o, out);
+                }
+            }
+        };
+    }
+
+    private Request bounds(final T from, final T to) {
+        return new Request() {
+
+            @Override
+            public void write(DataOutputStream out) throws IOException {
+                out.writeBoolean(from != null);
+                if (from != null) {
+                    codec.write(from, out);
+                }
+                out.writeBoolean(to != null);
+                if (to != null) {
+                    codec.write(to, out);
+                }
+            }
+        };
+    }
+
+    private static Request indexes(final int[] indexes) {
+        return new Request() {
+
+            @Override
+            public void write(DataOutputStream out) throws IOException {
+                out.writeInt(indexes.length);
+                for (int index : indexes) {
+                    out.writeInt(index);
+                }
+            }
+        };
+    }
+
+    private final Response<Object[]> values = new Response<Object[]>() {
+
+        @Override
+        public Object[] read(DataInputStream in) throws IOException {
+            Object[] ary = new Object[in.readInt()];
+            for (int i = 0; i < ary.length; i++) {
+                ary[i] = codec.read(in);
+            }
+            return ary;
+        }
+    };
+
+    private static final Response<Boolean> BOOLEAN = new Response<Boolean>() {
+
+        @Override
+        public Boolean read(DataInputStream in) throws IOException {
+            return in.readBoolean();
+        }
+    };
+
+    private static final Response<Integer> INTEGER = new Response<Integer>() {
+
+        @Override
+        public Integer read(DataInputStream in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    private interface Request {
+
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private interface Response<R> {
+
+        R read(DataInputStream in) throws IOException;
+    }
+
+    private static final class Call<R> {
+
+        final byte op;
+
+        final Request request;
+
+        final Response<R> response;
+
+        byte[] encoded;
+
+        R result;
+
+        boolean outOfRange;
+
+        Call(byte op, Request request, Response<R> response) {
+            this.op = op;
+            this.request = request;
+            this.response = response;
+        }
+
+        void encode() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(op);
+            if (request != null) {
+                request.write(out);
+            }
+            encoded = bytes.toByteArray();
+        }
+
+        void send(DataOutputStream out) throws IOException {
+            out.write(encoded);
+        }
+
+        String receive(Connection shard) throws IOException {
+            // returns the message of a failed request
+            byte status = shard.in.readByte();
+            shard.size = shard.in.readInt();
+            if (status == ShardServer.OUT_OF_RANGE) {
+                outOfRange = true;
+                return null;
+            }
+            if (status != ShardServer.OK) {
+                return shard.in.readUTF();
+            }
+            if (response != null) {
+                result = response.read(shard.in);
+            }
+            return null;
+        }
+    }
+
+    private static final class Connection {
+
+        final InetSocketAddress address;
+
+        final ReentrantLock lock = new ReentrantLock();
+
+        // replaced under lock; read without it by close() to unblock a pending exchange
+        volatile Socket socket;
+
+        // guarded by lock
+        DataInputStream in;
+
+        DataOutputStream out;
+
+        volatile boolean broken;
+
+        volatile int size;
+
+        Connection(InetSocketAddress address) throws IOException {
+            this.address = address;
+            connect();
+        }
+
+        void connect() throws IOException {
+            Socket connected = new Socket(address.getAddress(), address.getPort());
+            connected.setTcpNoDelay(true);
+            socket = connected;
+            in = new DataInputStream(new BufferedInputStream(connected.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(connected.getOutputStream()));
+            broken = false;
+        }
+
+        void disconnect() {
+            broken = true;
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nop
+            }
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package sc.ript.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+
+/**
+ * AVL tree whose nodes also count the size of their subtree, so positional access and ranks take O(log n). Subclasses
+ * can keep more per-subtree aggregates by overriding {@link #newNode(Object)} and {@link #update(Node)}. Nodes keep
+ * their identity when the tree is rebalanced or an element is removed, so data stored in a node stays with its element.
+ * Not thread-safe; callers hold their own lock.
+ */
+class RankTree<T> {
+
+    static class Node<T> {
+
+        final T value;
+
+        Node<T> left;
+
+        Node<T> right;
+
+        int height = 1;
+
+        int size = 1;
+
+        Node(T value) {
+            this.value = value;
+        }
+    }
+
+    final Comparator<? super T> comparator;
+
+    Node<T> root;
+
+    private boolean modified;
+
+    private Node<T> detached;
+
+    RankTree(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    Node<T> newNode(T value) {
+        return new Node<>(value);
+    }
+
+    void update(Node<T> n) {
+        n.height = Math.max(height(n.left), height(n.right)) + 1;
+        n.size = size(n.left) + size(n.right) + 1;
+    }
+
+    static int height(Node<?> n) {
+        if (n == null) {
+            return 0;
+        }
+        return n.height;
+    }
+
+    static int size(Node<?> n) {
+        if (n == null) {
+            return 0;
+        }
+        return n.size;
+    }
+
+    int compare(Object o1, Object o2) {
+        return SortedArraySet.compare(comparator, o1, o2);
+    }
+
+    /**
+     * Returns what the descents of a lookup for {@code o} compare against each node, computed once per lookup.
+     */
+    Object searchKey(Object o) {
+        return o;
+    }
+
+    /**
+     * Returns what the descent of an insert compares against each node.
+     */
+    Object insertKey(Node<T> node) {
+        return node.value;
+    }
+
+    int compareTo(Object key, Node<T> n) {
+        return compare(key, n.value);
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    void clear() {
+        root = null;
+    }
+
+    boolean insert(T value) {
+        return insert(newNode(value));
+    }
+
+    boolean insert(Node<T> node) {
+        node.left = null;
+        node.right = null;
+        update(node);
+        modified = false;
+        root = insert(root, node, insertKey(node));
+        return modified;
+    }
+
+    private Node<T> insert(Node<T> n, Node<T> node, Object key) {
+        if (n == null) {
+            modified = true;
+            return node;
+        }
+        int cmp = compareTo(key, n);
+        if (cmp < 0) {
+            n.left = insert(n.left, node, key);
+        } else if (cmp > 0) {
+            n.right = insert(n.right, node, key);
+        } else {
+            return n;
+        }
+        if (!modified) {
+            return n;
+        }
+        return balance(n);
+    }
+
+    Node<T> remove(Object o) {
+        detached = null;
+        root = remove(root, searchKey(o));
+        Node<T> removed = detached;
+        detached = null;
+        return removed;
+    }
+
+    private Node<T> remove(Node<T> n, Object key) {
+        if (n == null) {
+            return null;
+        }
+        int cmp = compareTo(key, n);
+        if (cmp < 0) {
+            n.left = remove(n.left, key);
+        } else if (cmp > 0) {
+            n.right = remove(n.right, key);
+        } else {
+            return unlink(n);
+        }
+        if (detached == null) {
+            return n;
+        }
+        return balance(n);
+    }
+
+    Node<T> removeAt(int index) {
+        detached = null;
+        root = removeAt(root, index);
+        Node<T> removed = detached;
+        detached = null;
+        return removed;
+    }
+
+    private Node<T> removeAt(Node<T> n, int index) {
+        int left = size(n.left);
+        if (index < left) {
+            n.left = removeAt(n.left, index);
+        } else if (left < index) {
+            n.right = removeAt(n.right, index - left - 1);
+        } else {
+            return unlink(n);
+        }
+        return balance(n);
+    }
+
+    private Node<T> unlink(Node<T> n) {
+        detached = n;
+        if (n.left == null) {
+            return n.right;
+        }
+        if (n.right == null) {
+            return n.left;
+        }
+        Node<T> successor = leftmost(n.right);
+        Node<T> right = removeLeftmost(n.right);
+        successor.left = n.left;
+        successor.right = right;
+        n.left = null;
+        n.right = null;
+        return balance(successor);
+    }
+
+    private Node<T> removeLeftmost(Node<T> n) {
+        if (n.left == null) {
+            return n.right;
+        }
+        n.left = removeLeftmost(n.left);
+        return balance(n);
+    }
+
+    private static <T> Node<T> leftmost(Node<T> n) {
+        while (n.left != null) {
+            n = n.left;
+        }
+        return n;
+    }
+
+    private Node<T> balance(Node<T> n) {
+        update(n);
+        int diff = height(n.left) - height(n.right);
+        if (1 < diff) {
+            if (height(n.left.left) < height(n.left.right)) {
+                n.left = rotateLeft(n.left);
+            }
+            return rotateRight(n);
+        }
+        if (diff < -1) {
+            if (height(n.right.right) < height(n.right.left)) {
+                n.right = rotateRight(n.right);
+            }
+            return rotateLeft(n);
+        }
+        return n;
+    }
+
+    private Node<T> rotateRight(Node<T> n) {
+        Node<T> l = n.left;
+        n.left = l.right;
+        l.right = n;
+        update(n);
+        update(l);
+        return l;
+    }
+
+    private Node<T> rotateLeft(Node<T> n) {
+        Node<T> r = n.right;
+        n.right = r.left;
+        r.left = n;
+        update(n);
+        update(r);
+        return r;
+    }
+
+    Node<T> nodeAt(int index) {
+        Node<T> n = root;
+        while (n != null) {
+            int left = size(n.left);
+            if (index < left) {
+                n = n.left;
+            } else if (left < index) {
+                index -= left + 1;
+                n = n.right;
+            } else {
+                return n;
+            }
+        }
+        throw new IndexOutOfBoundsException();
+    }
+
+    Object[] valuesAt(int[] indexes) {
+        // indexes are distinct and ascending; one walk down the tree resolves all of them
+        Object[] values = new Object[indexes.length];
+        collect(root, 0, indexes, 0, indexes.length, values);
+        return values;
+    }
+
+    private static void collect(Node<?> n, int base, int[] indexes, int from, int to, Object[] values) {
+        while ((n != null) && (from < to)) {
+            int self = base + size(n.left);
+            int mid = Arrays.binarySearch(indexes, from, to, self);
+            if (mid < 0) {
+                mid = -mid - 1;
+                collect(n.left, base, indexes, from, mid, values);
+            } else {
+                collect(n.left, base, indexes, from, mid, values);
+                values[mid++] = n.value;
+            }
+            from = mid;
+            base = self + 1;
+            n = n.right;
+        }
+    }
+
+    Node<T> find(Object o) {
+        Object key = searchKey(o);
+        Node<T> n = root;
+        while (n != null) {
+            int cmp = compareTo(key, n);
+            if (cmp < 0) {
+                n = n.left;
+            } else if (cmp > 0) {
+                n = n.right;
+            } else {
+                return n;
+            }
+        }
+        return null;
+    }
+
+    int indexOf(Object o) {
+        int index = 0;
+        Object key = searchKey(o);
+        Node<T> n = root;
+        while (n != null) {
+            int cmp = compareTo(key, n);
+            if (cmp < 0) {
+                n = n.left;
+            } else if (cmp > 0) {
+                index += size(n.left) + 1;
+                n = n.right;
+            } else {
+                return index + size(n.left);
+            }
+        }
+        return -1;
+    }
+
+    int rank(Object o) {
+        // number of elements less than o
+        int index = 0;
+        Object key = searchKey(o);
+        Node<T> n = root;
+        while (n != null) {
+            if (compareTo(key, n) <= 0) {
+                n = n.left;
+            } else {
+                index += size(n.left) + 1;
+                n = n.right;
+            }
+        }
+        return index;
+    }
+
+    T first() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+        return leftmost(root).value;
+    }
+
+    T last() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+        Node<T> n = root;
+        while (n.right != null) {
+            n = n.right;
+        }
+        return n.value;
+    }
+
+    void build(Object[] sorted, int from, int to) {
+        root = buildTree(sorted, from, to);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node<T> buildTree(Object[] sorted, int from, int to) {
+        if (to <= from) {
+            return null;
+        }
+        int mid = (from + to) >>> 1;
+        Node<T> n = newNode((T) sorted[mid]);
+        n.left = buildTree(sorted, from, mid);
+        n.right = buildTree(sorted, mid + 1, to);
+        update(n);
+        return n;
+    }
+
+    Object[] toArray() {
+        Object[] ary = new Object[size()];
+        fill(root, ary, 0);
+        return ary;
+    }
+
+    private static int fill(Node<?> n, Object[] ary, int index) {
+        while (n != null) {
+            index = fill(n.left, ary, index);
+            ary[index++] = n.value;
+            n = n.right;
+        }
+        return index;
+    }
+}
@@ -0,0 +1,242 @@
+package sc.ript.util;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+abstract class RankTreeList<T> extends AbstractSortedList<T> {
+
+    final RankTree<T> tree;
+
+    final ReentrantReadWriteLock lock;
+
+    RankTreeList(RankTree<T> tree) {
+        this(tree, new ReentrantReadWriteLock());
+    }
+
+    RankTreeList(RankTree<T> tree, ReentrantReadWriteLock lock) {
+        this.tree = tree;
+        this.lock = lock;
+    }
+
+    @Override
+    public int size() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return tree.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return tree.root == null;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return 0 <= indexOf(o);
+    }
+
+    @Override
+    public T get(int index) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if ((index < 0) || (tree.size() <= index)) {
+                throw new IndexOutOfBoundsException();
+            }
+            return tree.nodeAt(index).value;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<T> quantiles(double... qs) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int[] ranks = ranks(qs, tree.size());
+            int[] sorted = distinct(ranks);
+            return arrange(ranks, sorted, tree.valuesAt(sorted));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return tree.toArray();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if ((o == null) && (tree.comparator == null)) {
+            return -1;
+        }
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return tree.indexOf(o);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public T remove(int index) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if ((index < 0) || (tree.size() <= index)) {
+                throw new IndexOutOfBoundsException();
+            }
+            return tree.removeAt(index).value;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if ((o == null) && (tree.comparator == null)) {
+            return false;
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return tree.remove(o) != null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            boolean modified = false;
+            for (Object o : c) {
+                if (tree.remove(o) != null) {
+                    modified = true;
+                }
+            }
+            return modified;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            Object[] ary = tree.toArray();
+            int n = 0;
+            for (Object o : ary) {
+                if (c.contains(o)) {
+                    ary[n++] = o;
+                }
+            }
+            if (n == ary.length) {
+                return false;
+            }
+            tree.build(ary, 0, n);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            tree.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return tree.comparator;
+    }
+
+    @Override
+    public T first() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return tree.first();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public T last() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return tree.last();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean insert(T o) {
+        RankTree.Node<T> node = tree.newNode(o);
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return tree.insert(node);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean insertAll(Collection<T> c) {
+        Object[] keys = SortedArraySet.sort(c, tree.comparator);
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (tree.root == null) {
+                tree.build(keys, 0, keys.length);
+                return 0 < keys.length;
+            }
+            boolean modified = false;
+            for (Object o : keys) {
+                if (tree.insert((T) o)) {
+                    modified = true;
+                }
+            }
+            return modified;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package sc.ript.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Serves one range partition of a {@link PartitionedList} over TCP. Every connection is read by its own thread and
+ * its requests are answered in order, so a client may send several before reading the responses. Responses are flushed
+ * only when no further request is already buffered.
+ *
+ * <pre>
+ * java -cp sorted-list.jar sc.ript.util.ShardServer [port]
+ * </pre>
+ *
+ * serves {@code long} elements in natural order on the loopback interface, prints the port it listens on and runs
+ * until its standard input is closed.
+ */
+public class ShardServer<T> implements Closeable {
+
+    static final byte INSERT = 1;
+
+    static final byte INSERT_ALL = 2;
+
+    static final byte REMOVE = 3;
+
+    static final byte REMOVE_AT = 4;
+
+    static final byte REMOVE_ALL = 5;
+
+    static final byte CONTAINS = 6;
+
+    static final byte INDEX_OF = 7;
+
+    static final byte RANK = 8;
+
+    static final byte GET_ALL = 9;
+
+    static final byte RANGE = 10;
+
+    static final byte SIZE = 11;
+
+    static final byte CLEAR = 12;
+
+    static final byte OK = 0;
+
+    static final byte FAILED = 1;
+
+    static final byte OUT_OF_RANGE = 2;
+
+    private final Codec<T> codec;
+
+    private final Shard<T> shard;
+
+    private final ServerSocket server;
+
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean closed;
+
+    /**
+     * Listens on the port of the loopback interface, or on any free port if it is {@code 0}.
+     */
+    public ShardServer(Codec<T> codec, Comparator<? super T> comparator, int port) throws IOException {
+        this(codec, comparator, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public ShardServer(Codec<T> codec, Comparator<? super T> comparator, InetSocketAddress address)
+            throws IOException {
+        if (codec == null) {
+            throw new NullPointerException();
+        }
+        this.codec = codec;
+        shard = new Shard<>(comparator);
+        server = new ServerSocket();
+        server.bind(address);
+        Thread acceptor = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "shard-server-" + server.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public InetSocketAddress address() {
+        return (InetSocketAddress) server.getLocalSocketAddress();
+    }
+
+    /**
+     * Returns the number of elements held by this shard.
+     */
+    public int size() {
+        return shard.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        for (Socket socket : clients) {
+            socket.close();
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            final Socket socket;
+            try {
+                socket = server.accept();
+                socket.setTcpNoDelay(true);
+            } catch (IOException e) {
+                // closed
+                return;
+            }
+            clients.add(socket);
+            Thread handler = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        serve(socket);
+                    } catch (IOException e) {
+                        // the connection is dropped
+                    } finally {
+                        clients.remove(socket);
+                        try {
+                            socket.close();
+                        } catch (IOException e) {
+                            // nop
+                        }
+                    }
+                }
+            }, "shard-client-" + socket.getPort());
+            handler.setDaemon(true);
+            handler.start();
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        while (true) {
+            int op = in.read();
+            if (op < 0) {
+                return;
+            }
+            handle((byte) op, in, out);
+            if (in.available() == 0) {
+                out.flush();
+            }
+        }
+    }
+
+    private void handle(byte op, DataInputStream in, DataOutputStream out) throws IOException {
+        // the whole request is read before it runs, so a failure leaves the stream at the next request
+        T o = null;
+        List<T> elements = null;
+        int[] indexes = null;
+        T to = null;
+        switch (op) {
+        case INSERT:
+        case REMOVE:
+        case CONTAINS:
+        case INDEX_OF:
+        case RANK:
+            o = codec.read(in);
+            break;
+        case INSERT_ALL:
+        case REMOVE_ALL:
+            elements = readElements(in);
+            break;
+        case REMOVE_AT:
+            indexes = new int[] { in.readInt() };
+            break;
+        case GET_ALL:
+            indexes = new int[in.readInt()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = in.readInt();
+            }
+            break;
+        case RANGE:
+            if (in.readBoolean()) {
+                o = codec.read(in);
+            }
+            if (in.readBoolean()) {
+                to = codec.read(in);
+            }
+            break;
+        case SIZE:
+        case CLEAR:
+            break;
+        default:
+            throw new IOException("unknown request: " + op);
+        }
+
+        Object result;
+        try {
+            result = execute(op, o, elements, indexes, to);
+        } catch (IndexOutOfBoundsException e) {
+            out.writeByte(OUT_OF_RANGE);
+            out.writeInt(shard.size());
+            return;
+        } catch (RuntimeException e) {
+            out.writeByte(FAILED);
+            out.writeInt(shard.size());
+            out.writeUTF(String.valueOf(e));
+            return;
+        }
+        out.writeByte(OK);
+        out.writeInt(shard.size());
+        if (result instanceof Boolean) {
+            out.writeBoolean((Boolean) result);
+        } else if (result instanceof Integer) {
+            out.writeInt((Integer) result);
+        } else if (result instanceof Object[]) {
+            writeElements(out, (Object[]) result);
+        }
+    }
+
+    private Object execute(byte op, T o, List<T> elements, int[] indexes, T to) {
+        switch (op) {
+        case INSERT:
+            return shard.insert(o);
+        case INSERT_ALL:
+            return shard.insertAll(elements);
+        case REMOVE:
+            return shard.remove(o);
+        case REMOVE_AT:
+            return new Object[] { shard.remove(indexes[0]) };
+        case REMOVE_ALL:
+            return shard.removeAll(elements);
+        case CONTAINS:
+            return shard.contains(o);
+        case INDEX_OF:
+            return shard.indexOf(o);
+        case RANK:
+            return shard.rank(o);
+        case GET_ALL:
+            return shard.valuesAt(indexes);
+        case RANGE:
+            return shard.range(o, to);
+        case CLEAR:
+            shard.clear();
+            return null;
+        default:
+            return null;
+        }
+    }
+
+    private List<T> readElements(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("negative count: " + count);
+        }
+        List<T> elements = new ArrayList<>(Math.min(count, Short.MAX_VALUE));
+        for (int i = 0; i < count; i++) {
+            elements.add(codec.read(in));
+        }
+        return elements;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeElements(DataOutputStream out, Object[] elements) throws IOException {
+        out.writeInt(elements.length);
+        for (Object e : elements) {
+            codec.write((T) e, out);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 0;
+        if (0 < args.length) {
+            port = Integer.parseInt(args[0]);
+        }
+        try (ShardServer<Long> server = new ShardServer<>(Codec.LONG, null, port)) {
+            System.out.println(server.address().getPort());
+            System.out.flush();
+            while (System.in.read() >= 0) {
+                // nop
+            }
+        }
+    }
+
+    /**
+     * The partition held by a server, with the rank and range lookups the client needs.
+     */
+    static final class Shard<T> extends RankTreeList<T> {
+
+        Shard(Comparator<? super T> comparator) {
+            super(new RankTree<T>(comparator));
+        }
+
+        int rank(Object o) {
+            Lock readLock = lock.readLock();
+            readLock.lock();
+            try {
+                return tree.rank(o);
+            } finally {
+                readLock.unlock();
+            }
+        }
+
+        Object[] valuesAt(int[] indexes) {
+            // indexes are distinct and ascending
+            Lock readLock = lock.readLock();
+            readLock.lock();
+            try {
+                if ((0 < indexes.length)
+                        && ((indexes[0] < 0) || (tree.size() <= indexes[indexes.length - 1]))) {
+                    throw new IndexOutOfBoundsException();
+                }
+                return tree.valuesAt(indexes);
+            } finally {
+                readLock.unlock();
+            }
+        }
+
+        Object[] range(T from, T to) {
+            // null bounds are open
+            Lock readLock = lock.readLock();
+            readLock.lock();
+            try {
+                int start = 0;
+                if (from != null) {
+                    start = tree.rank(from);
+                }
+                int end = tree.size();
+                if (to != null) {
+                    end = tree.rank(to);
+                }
+                if (end <= start) {
+                    return new Object[0];
+                }
+                if ((start == 0) && (end == tree.size())) {
+                    return tree.toArray();
+                }
+                int[] indexes = new int[end - start];
+                for (int i = 0; i < indexes.length; i++) {
+                    indexes[i] = start + i;
+                }
+                return tree.valuesAt(indexes);
+            } finally {
+                readLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,550 @@
+package sc.ript.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Approximate SortedList over an unbounded stream, backed by a KLL sketch. Only O(k) elements are retained: level h
+ * holds samples that stand for 2^h inserted elements, and a full level is sorted and halved into the next one. Ranks,
+ * {@link #get(int)} and quantiles are answered within about {@link #rankError()} of the stream size, and sketches with
+ * the same k can be merged. {@link #size()} counts every inserted element, duplicates included; membership, removal
+ * and iteration are not supported.
+ */
+public class SketchList<T> extends AbstractSortedList<T> implements Serializable {
+
+    private static final long serialVersionUID = 3390581621876408571L;
+
+    public static final int DEFAULT_K = 200;
+
+    private static final int MIN_WIDTH = 8;
+
+    private static final double DECAY = 2.0 / 3.0;
+
+    // fitted rank error of a KLL sketch at 99% confidence: ERROR_SCALE / k^ERROR_EXPONENT
+    private static final double ERROR_SCALE = 2.296;
+
+    private static final double ERROR_EXPONENT = 0.9723;
+
+    private final int k;
+
+    private final Comparator<? super T> comparator;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Random random = new Random();
+
+    private final List<Object[]> levels = new ArrayList<>();
+
+    private final List<Integer> counts = new ArrayList<>();
+
+    private long count;
+
+    private int capacity;
+
+    private T min;
+
+    private T max;
+
+    private transient volatile Samples samples;
+
+    public SketchList() {
+        this(DEFAULT_K, null);
+    }
+
+    public SketchList(int k) {
+        this(k, null);
+    }
+
+    public SketchList(Comparator<? super T> c) {
+        this(DEFAULT_K, c);
+    }
+
+    public SketchList(int k, Comparator<? super T> c) {
+        if (k < MIN_WIDTH) {
+            throw new IllegalArgumentException("k must be at least " + MIN_WIDTH + ": " + k);
+        }
+        this.k = k;
+        comparator = c;
+    }
+
+    public static <T> SketchList<T> withRankError(double error, Comparator<? super T> c) {
+        if (!((0 < error) && (error < 1))) {
+            throw new IllegalArgumentException("rank error out of (0, 1): " + error);
+        }
+        double k = Math.pow(ERROR_SCALE / error, 1 / ERROR_EXPONENT);
+        return new SketchList<>(Math.max((int) Math.ceil(k), MIN_WIDTH), c);
+    }
+
+    public int k() {
+        return k;
+    }
+
+    public double rankError() {
+        return ERROR_SCALE / Math.pow(k, ERROR_EXPONENT);
+    }
+
+    public int retained() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return retainedCount();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public long count() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return count;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public long rank(T o) {
+        // approximate number of inserted elements less than o
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            Samples sorted = loadSamples();
+            int index = lowerBound(sorted.items, o);
+            if (index == 0) {
+                return 0;
+            }
+            return sorted.weights[index - 1];
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public boolean merge(SketchList<? extends T> other) {
+        if (other == this) {
+            return false;
+        }
+        if (other.k != k) {
+            throw new IllegalArgumentException("k differs: " + other.k + " != " + k);
+        }
+        List<Object[]> otherLevels = new ArrayList<>();
+        long otherCount;
+        Object otherMin;
+        Object otherMax;
+        Lock readLock = other.lock.readLock();
+        readLock.lock();
+        try {
+            for (int h = 0; h < other.levels.size(); h++) {
+                otherLevels.add(Arrays.copyOf(other.levels.get(h), other.counts.get(h)));
+            }
+            otherCount = other.count;
+            otherMin = other.min;
+            otherMax = other.max;
+        } finally {
+            readLock.unlock();
+        }
+        if (otherCount == 0) {
+            return false;
+        }
+
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            for (int h = 0; h < otherLevels.size(); h++) {
+                for (Object o : otherLevels.get(h)) {
+                    append(h, o);
+                }
+            }
+            count += otherCount;
+            updateBounds(otherMin);
+            updateBounds(otherMax);
+            while (capacity <= retainedCount()) {
+                compress();
+            }
+            samples = null;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return (int) Math.min(count, Integer.MAX_VALUE);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return count == 0;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public T get(int index) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if ((index < 0) || (count <= index)) {
+                throw new IndexOutOfBoundsException();
+            }
+            return valueAt(index);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<T> quantiles(double... qs) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int size = (int) Math.min(count, Integer.MAX_VALUE);
+            int[] ranks = ranks(qs, size);
+            Object[] values = new Object[ranks.length];
+            for (int i = 0; i < ranks.length; i++) {
+                values[i] = valueAt(ranks[i]);
+            }
+            return asList(values);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public T first() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (count == 0) {
+                throw new NoSuchElementException();
+            }
+            return min;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public T last() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (count == 0) {
+                throw new NoSuchElementException();
+            }
+            return max;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean insert(T o) {
+        if (o == null) {
+            throw new NullPointerException();
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            insertElement(o);
+            samples = null;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean insertAll(Collection<T> c) {
+        Object[] ary = c.toArray();
+        for (Object o : ary) {
+            if (o == null) {
+                throw new NullPointerException();
+            }
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            for (Object o : ary) {
+                insertElement(o);
+            }
+            samples = null;
+            return 0 < ary.length;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            levels.clear();
+            counts.clear();
+            count = 0;
+            capacity = 0;
+            min = null;
+            max = null;
+            samples = null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object[] toArray() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public T remove(int index) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Sketches do not hold their elements, so two of them are only equal when they are the same instance.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    /**
+     * Describes the sketch by its k, the number of inserted elements and their bounds, as the elements themselves
+     * are not retained.
+     */
+    @Override
+    public String toString() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return "SketchList[k=" + k + ", count=" + count + ", min=" + min + ", max=" + max + "]";
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private void insertElement(Object o) {
+        append(0, o);
+        count++;
+        updateBounds(o);
+        if (capacity <= retainedCount()) {
+            compress();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void updateBounds(Object o) {
+        if ((min == null) || (compare(o, min) < 0)) {
+            min = (T) o;
+        }
+        if ((max == null) || (0 < compare(o, max))) {
+            max = (T) o;
+        }
+    }
+
+    private void append(int h, Object o) {
+        while (levels.size() <= h) {
+            levels.add(new Object[MIN_WIDTH]);
+            counts.add(0);
+            capacity = capacity();
+        }
+        Object[] level = levels.get(h);
+        int n = counts.get(h);
+        if (n == level.length) {
+            level = Arrays.copyOf(level, n + (n >> 1));
+            levels.set(h, level);
+        }
+        level[n] = o;
+        counts.set(h, n + 1);
+    }
+
+    private int levelCapacity(int h) {
+        // the top level holds k samples and every level below it two thirds of the one above
+        int depth = levels.size() - h - 1;
+        return Math.max((int) Math.ceil(k * Math.pow(DECAY, depth)), MIN_WIDTH);
+    }
+
+    private int capacity() {
+        int total = 0;
+        for (int h = 0; h < levels.size(); h++) {
+            total += levelCapacity(h);
+        }
+        return total;
+    }
+
+    private int retainedCount() {
+        int retained = 0;
+        for (Integer n : counts) {
+            retained += n;
+        }
+        return retained;
+    }
+
+    private void compress() {
+        // halve the lowest full level: sort it, keep every other sample from a random offset and promote those
+        for (int h = 0; h < levels.size(); h++) {
+            int n = counts.get(h);
+            if (n < levelCapacity(h)) {
+                continue;
+            }
+            Object[] level = levels.get(h);
+            SortedArraySet.sort(level, n, comparator);
+            int keep = n & 1;
+            for (int i = keep + random.nextInt(2); i < n; i += 2) {
+                append(h + 1, level[i]);
+            }
+            // an odd sample stays behind so the promoted ones stay paired
+            level = levels.get(h);
+            Arrays.fill(level, keep, n, null);
+            counts.set(h, keep);
+            return;
+        }
+    }
+
+    private T valueAt(long index) {
+        // the sample whose cumulative weight first exceeds index
+        Samples sorted = loadSamples();
+        int lo = 0;
+        int hi = sorted.weights.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (index < sorted.weights[mid]) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return element(sorted.items, lo);
+    }
+
+    private int lowerBound(Object[] ary, Object o) {
+        int lo = 0;
+        int hi = ary.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(ary[mid], o) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private Samples loadSamples() {
+        // readers build it under the read lock; racing readers build identical copies, so the last one wins
+        Samples sorted = samples;
+        if (sorted != null) {
+            return sorted;
+        }
+        int n = retainedCount();
+        final Object[] items = new Object[n];
+        long[] unit = new long[n];
+        int p = 0;
+        for (int h = 0; h < levels.size(); h++) {
+            int c = counts.get(h);
+            System.arraycopy(levels.get(h), 0, items, p, c);
+            Arrays.fill(unit, p, p + c, 1L << h);
+            p += c;
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return SketchList.this.compare(items[i1], items[i2]);
+            }
+        });
+        Object[] values = new Object[n];
+        long[] weights = new long[n];
+        long cumulative = 0;
+        for (int i = 0; i < n; i++) {
+            values[i] = items[order[i]];
+            cumulative += unit[order[i]];
+            weights[i] = cumulative;
+        }
+        sorted = new Samples(values, weights);
+        samples = sorted;
+        return sorted;
+    }
+
+    private int compare(Object o1, Object o2) {
+        return SortedArraySet.compare(comparator, o1, o2);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T element(Object[] ary, int index) {
+        return (T) ary[index];
+    }
+
+    private static final class Samples {
+
+        final Object[] items;
+
+        // weights[i] is the total weight of items[0..i]
+        final long[] weights;
+
+        Samples(Object[] items, long[] weights) {
+            this.items = items;
+            this.weights = weights;
+        }
+    }
+}
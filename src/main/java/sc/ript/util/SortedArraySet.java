@@ -0,0 +1,152 @@
+package sc.ript.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * Read-only SortedSet over a range of an array that is already sorted and free of duplicates. Handing one to
+ * {@code new TreeSet<>(SortedSet)} or to {@code addAll} of an empty TreeSet with the same comparator builds the tree
+ * bottom-up in linear time.
+ */
+class SortedArraySet<T> extends AbstractSet<T> implements SortedSet<T> {
+
+    private final Object[] elements;
+
+    private final int from;
+
+    private final int to;
+
+    private final Comparator<? super T> comparator;
+
+    SortedArraySet(Object[] elements, Comparator<? super T> comparator) {
+        this(elements, 0, elements.length, comparator);
+    }
+
+    SortedArraySet(Object[] elements, int from, int to, Comparator<? super T> comparator) {
+        this.elements = elements;
+        this.from = from;
+        this.to = to;
+        this.comparator = comparator;
+    }
+
+    static <T> Object[] sort(Collection<?> c, Comparator<? super T> comparator) {
+        Object[] ary = c.toArray();
+        if (!(c instanceof SortedSet) || !equal(((SortedSet<?>) c).comparator(), comparator)) {
+            sort(ary, ary.length, comparator);
+            return distinct(ary, ary.length, comparator);
+        }
+        return ary;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> void sort(Object[] ary, int length, Comparator<? super T> comparator) {
+        if (comparator == null) {
+            Arrays.sort(ary, 0, length);
+        } else {
+            Arrays.sort((T[]) ary, 0, length, comparator);
+        }
+    }
+
+    static <T> Object[] distinct(Object[] ary, int length, Comparator<? super T> comparator) {
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            if ((n == 0) || (compare(comparator, ary[n - 1], ary[i]) != 0)) {
+                ary[n++] = ary[i];
+            }
+        }
+        if (n == ary.length) {
+            return ary;
+        }
+        return Arrays.copyOf(ary, n);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> int compare(Comparator<? super T> comparator, Object o1, Object o2) {
+        if (comparator == null) {
+            return ((Comparable<Object>) o1).compareTo(o2);
+        }
+        return comparator.compare((T) o1, (T) o2);
+    }
+
+    static boolean equal(Comparator<?> c1, Comparator<?> c2) {
+        if (c1 == null) {
+            return c2 == null;
+        }
+        return c1.equals(c2);
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+
+            private int cursor = from;
+
+            @Override
+            public boolean hasNext() {
+                return cursor < to;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (to <= cursor) {
+                    throw new NoSuchElementException();
+                }
+                return (T) elements[cursor++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T first() {
+        if (to <= from) {
+            throw new NoSuchElementException();
+        }
+        return (T) elements[from];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T last() {
+        if (to <= from) {
+            throw new NoSuchElementException();
+        }
+        return (T) elements[to - 1];
+    }
+
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -15,4 +15,8 @@ public interface SortedList<T> extends List<T> {
     public boolean insert(T o);
 
     public boolean insertAll(Collection<T> c);
+
+    public T quantile(double q);
+
+    public List<T> quantiles(double... qs);
 }
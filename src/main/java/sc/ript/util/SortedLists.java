@@ -0,0 +1,329 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+public final class SortedLists {
+
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    enum Operation {
+        UNION, INTERSECT, DIFFERENCE
+    }
+
+    private SortedLists() {
+    }
+
+    public static <T> TreeList<T> union(SortedList<T> a, SortedList<T> b) {
+        return combine(Operation.UNION, a, b);
+    }
+
+    public static <T> TreeList<T> intersect(SortedList<T> a, SortedList<T> b) {
+        return combine(Operation.INTERSECT, a, b);
+    }
+
+    public static <T> TreeList<T> difference(SortedList<T> a, SortedList<T> b) {
+        return combine(Operation.DIFFERENCE, a, b);
+    }
+
+    public static <T> TreeList<T> mergeAll(List<? extends Collection<T>> partitions, Comparator<? super T> comparator,
+            int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (partitions.isEmpty()) {
+            return new TreeList<>(comparator);
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Object[] merged = pool.invoke(new MergeAllTask<>(partitions, comparator, pool, 0, partitions.size()));
+            return new TreeList<>(new SortedArraySet<>(merged, comparator));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static <T> TreeList<T> combine(Operation op, SortedList<T> a, SortedList<T> b) {
+        Comparator<? super T> comparator = a.comparator();
+        Object[] x = a.toArray();
+        Object[] y = snapshot(b, comparator);
+        Object[] merged = merge(op, x, y, comparator, defaultPool());
+        return new TreeList<>(new SortedArraySet<>(merged, comparator));
+    }
+
+    static ForkJoinPool defaultPool() {
+        return Pools.DEFAULT;
+    }
+
+    static <T> Object[] snapshot(SortedList<?> list, Comparator<? super T> comparator) {
+        if (SortedArraySet.equal(list.comparator(), comparator)) {
+            return list.toArray();
+        }
+        return SortedArraySet.sort(list, comparator);
+    }
+
+    static <T> Object[] merge(Operation op, Object[] x, Object[] y, Comparator<? super T> comparator,
+            ForkJoinPool pool) {
+        if (((x.length + y.length) < PARALLEL_THRESHOLD) || (pool.getParallelism() < 2)) {
+            Object[] out = new Object[capacity(op, x.length, y.length)];
+            int n = merge(op, x, 0, x.length, y, 0, y.length, comparator, out, 0);
+            return trim(out, n);
+        }
+
+        // split both inputs at the same keys, merge the segments in parallel, then pack them
+        List<int[]> segments = new ArrayList<>();
+        split(x, 0, x.length, y, 0, y.length, comparator, segments);
+        Object[] tmp = new Object[x.length + y.length];
+        int[] counts = new int[segments.size()];
+        invoke(pool, new MergeTask<>(op, x, y, comparator, segments, tmp, counts, 0, segments.size()));
+
+        int[] offsets = new int[segments.size()];
+        int n = 0;
+        for (int i = 0; i < counts.length; i++) {
+            offsets[i] = n;
+            n += counts[i];
+        }
+        Object[] out = new Object[n];
+        invoke(pool, new PackTask(segments, tmp, counts, offsets, out, 0, segments.size()));
+        return out;
+    }
+
+    private static void invoke(ForkJoinPool pool, ForkJoinTask<?> task) {
+        if (ForkJoinTask.getPool() == pool) {
+            // already running as a task of this pool, so fork into it instead of submitting from outside
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+    }
+
+    static <T> int merge(Operation op, Object[] x, int xFrom, int xTo, Object[] y, int yFrom, int yTo,
+            Comparator<? super T> comparator, Object[] out, int outFrom) {
+        int i = xFrom;
+        int j = yFrom;
+        int o = outFrom;
+        while ((i < xTo) && (j < yTo)) {
+            int cmp = SortedArraySet.compare(comparator, x[i], y[j]);
+            if (cmp < 0) {
+                if (op != Operation.INTERSECT) {
+                    out[o++] = x[i];
+                }
+                i++;
+            } else if (cmp > 0) {
+                if (op == Operation.UNION) {
+                    out[o++] = y[j];
+                }
+                j++;
+            } else {
+                if (op != Operation.DIFFERENCE) {
+                    out[o++] = x[i];
+                }
+                i++;
+                j++;
+            }
+        }
+        if (op != Operation.INTERSECT) {
+            System.arraycopy(x, i, out, o, xTo - i);
+            o += xTo - i;
+        }
+        if (op == Operation.UNION) {
+            System.arraycopy(y, j, out, o, yTo - j);
+            o += yTo - j;
+        }
+        return o - outFrom;
+    }
+
+    static Object[] trim(Object[] ary, int length) {
+        if (ary.length == length) {
+            return ary;
+        }
+        Object[] trimmed = new Object[length];
+        System.arraycopy(ary, 0, trimmed, 0, length);
+        return trimmed;
+    }
+
+    private static int capacity(Operation op, int x, int y) {
+        switch (op) {
+        case UNION:
+            return x + y;
+        case INTERSECT:
+            return Math.min(x, y);
+        default:
+            return x;
+        }
+    }
+
+    private static <T> void split(Object[] x, int xFrom, int xTo, Object[] y, int yFrom, int yTo,
+            Comparator<? super T> comparator, List<int[]> segments) {
+        if (((xTo - xFrom) + (yTo - yFrom)) <= PARALLEL_THRESHOLD) {
+            segments.add(new int[] {xFrom, xTo, yFrom, yTo });
+            return;
+        }
+        if ((yTo - yFrom) <= (xTo - xFrom)) {
+            int xMid = (xFrom + xTo) >>> 1;
+            int yMid = lowerBound(y, yFrom, yTo, x[xMid], comparator);
+            split(x, xFrom, xMid, y, yFrom, yMid, comparator, segments);
+            split(x, xMid, xTo, y, yMid, yTo, comparator, segments);
+        } else {
+            int yMid = (yFrom + yTo) >>> 1;
+            int xMid = lowerBound(x, xFrom, xTo, y[yMid], comparator);
+            split(x, xFrom, xMid, y, yFrom, yMid, comparator, segments);
+            split(x, xMid, xTo, y, yMid, yTo, comparator, segments);
+        }
+    }
+
+    static <T> int lowerBound(Object[] ary, int from, int to, Object key, Comparator<? super T> comparator) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (SortedArraySet.compare(comparator, ary[mid], key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static final class Pools {
+
+        static final ForkJoinPool DEFAULT = new ForkJoinPool();
+
+        private Pools() {
+        }
+    }
+
+    private static final class MergeAllTask<T> extends RecursiveTask<Object[]> {
+
+        private static final long serialVersionUID = -6052216839562604547L;
+
+        private final List<? extends Collection<T>> partitions;
+
+        private final Comparator<? super T> comparator;
+
+        private final ForkJoinPool pool;
+
+        private final int from;
+
+        private final int to;
+
+        MergeAllTask(List<? extends Collection<T>> partitions, Comparator<? super T> comparator, ForkJoinPool pool,
+                int from, int to) {
+            this.partitions = partitions;
+            this.comparator = comparator;
+            this.pool = pool;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Object[] compute() {
+            if ((to - from) == 1) {
+                return SortedArraySet.sort(partitions.get(from), comparator);
+            }
+            int mid = (from + to) >>> 1;
+            MergeAllTask<T> left = new MergeAllTask<>(partitions, comparator, pool, from, mid);
+            MergeAllTask<T> right = new MergeAllTask<>(partitions, comparator, pool, mid, to);
+            right.fork();
+            Object[] x = left.compute();
+            Object[] y = right.join();
+            return merge(Operation.UNION, x, y, comparator, pool);
+        }
+    }
+
+    private static final class MergeTask<T> extends RecursiveAction {
+
+        private static final long serialVersionUID = 4218736245208215062L;
+
+        private final Operation op;
+
+        private final Object[] x;
+
+        private final Object[] y;
+
+        private final Comparator<? super T> comparator;
+
+        private final List<int[]> segments;
+
+        private final Object[] tmp;
+
+        private final int[] counts;
+
+        private final int from;
+
+        private final int to;
+
+        MergeTask(Operation op, Object[] x, Object[] y, Comparator<? super T> comparator, List<int[]> segments,
+                Object[] tmp, int[] counts, int from, int to) {
+            this.op = op;
+            this.x = x;
+            this.y = y;
+            this.comparator = comparator;
+            this.segments = segments;
+            this.tmp = tmp;
+            this.counts = counts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if ((to - from) == 1) {
+                int[] s = segments.get(from);
+                counts[from] = merge(op, x, s[0], s[1], y, s[2], s[3], comparator, tmp, s[0] + s[2]);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new MergeTask<>(op, x, y, comparator, segments, tmp, counts, from, mid),
+                    new MergeTask<>(op, x, y, comparator, segments, tmp, counts, mid, to));
+        }
+    }
+
+    private static final class PackTask extends RecursiveAction {
+
+        private static final long serialVersionUID = -1843806339286377203L;
+
+        private final List<int[]> segments;
+
+        private final Object[] tmp;
+
+        private final int[] counts;
+
+        private final int[] offsets;
+
+        private final Object[] out;
+
+        private final int from;
+
+        private final int to;
+
+        PackTask(List<int[]> segments, Object[] tmp, int[] counts, int[] offsets, Object[] out, int from, int to) {
+            this.segments = segments;
+            this.tmp = tmp;
+            this.counts = counts;
+            this.offsets = offsets;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if ((to - from) == 1) {
+                int[] s = segments.get(from);
+                System.arraycopy(tmp, s[0] + s[2], out, offsets[from], counts[from]);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new PackTask(segments, tmp, counts, offsets, out, from, mid),
+                    new PackTask(segments, tmp, counts, offsets, out, mid, to));
+        }
+    }
+}
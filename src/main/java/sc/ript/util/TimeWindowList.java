@@ -0,0 +1,590 @@
+package sc.ript.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * SortedList that keeps only the elements whose timestamp lies within {@code retention} of the newest timestamp seen.
+ * Elements are ordered by timestamp first and stored in fixed-size chunks, so expired heads are dropped chunk-wise.
+ */
+public class TimeWindowList<T> extends AbstractSortedList<T> {
+
+    public interface Timestamp<T> {
+
+        long timestampOf(T o);
+    }
+
+    private static final int CHUNK_SHIFT = 8;
+
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final int INITIAL_CHUNKS = 4;
+
+    private final Timestamp<? super T> timestamp;
+
+    private final long retention;
+
+    private final WindowComparator<T> comparator;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Object[][] chunks = new Object[INITIAL_CHUNKS][];
+
+    private int chunkHead;
+
+    private int chunkCount;
+
+    private Object[] spare;
+
+    private int head;
+
+    private int size;
+
+    private long watermark = Long.MIN_VALUE;
+
+    public TimeWindowList(Timestamp<? super T> timestamp, long retention) {
+        this(timestamp, retention, null);
+    }
+
+    public TimeWindowList(Timestamp<? super T> timestamp, long retention, Comparator<? super T> c) {
+        if (timestamp == null) {
+            throw new NullPointerException();
+        }
+        if (retention < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.timestamp = timestamp;
+        this.retention = retention;
+        comparator = new WindowComparator<>(timestamp, c);
+    }
+
+    public long retention() {
+        return retention;
+    }
+
+    public long watermark() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return watermark;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public int expire(long now) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (watermark < now) {
+                watermark = now;
+            }
+            return expireHead();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return size;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return size == 0;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return 0 <= indexOf(o);
+    }
+
+    @Override
+    public T get(int index) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if ((index < 0) || (size <= index)) {
+                throw new IndexOutOfBoundsException();
+            }
+            return element(head + index);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<T> quantiles(double... qs) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int[] ranks = ranks(qs, size);
+            Object[] values = new Object[ranks.length];
+            for (int i = 0; i < ranks.length; i++) {
+                values[i] = element(head + ranks[i]);
+            }
+            return asList(values);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            Object[] ary = new Object[size];
+            int copied = 0;
+            for (int c = 0; copied < size; c++) {
+                int from = 0;
+                if (c == 0) {
+                    from = head;
+                }
+                int len = Math.min(CHUNK_SIZE - from, size - copied);
+                System.arraycopy(chunk(c), from, ary, copied, len);
+                copied += len;
+            }
+            return ary;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int indexOf(Object o) {
+        if (o == null) {
+            return -1;
+        }
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int index = search((T) o);
+            if (index < 0) {
+                return -1;
+            }
+            return index;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public T remove(int index) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if ((index < 0) || (size <= index)) {
+                throw new IndexOutOfBoundsException();
+            }
+            T o = element(head + index);
+            removeAt(index);
+            return o;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            int index = search((T) o);
+            if (index < 0) {
+                return false;
+            }
+            removeAt(index);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return compact(c, false);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return compact(c, true);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            reset();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public T first() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (size == 0) {
+                throw new NoSuchElementException();
+            }
+            return element(head);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public T last() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (size == 0) {
+                throw new NoSuchElementException();
+            }
+            return element(head + size - 1);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean insert(T o) {
+        long ts = timestamp.timestampOf(o);
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (watermark < ts) {
+                watermark = ts;
+                expireHead();
+            }
+            return insertElement(o, ts);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean insertAll(Collection<T> c) {
+        T[] ary = (T[]) c.toArray();
+        Arrays.sort(ary, comparator);
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (0 < ary.length) {
+                long ts = timestamp.timestampOf(ary[ary.length - 1]);
+                if (watermark < ts) {
+                    watermark = ts;
+                    expireHead();
+                }
+            }
+            boolean modified = false;
+            for (T o : ary) {
+                if (insertElement(o, timestamp.timestampOf(o))) {
+                    modified = true;
+                }
+            }
+            return modified;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private long cutoff() {
+        long cutoff = watermark - retention;
+        if (watermark < cutoff) {
+            return Long.MIN_VALUE;
+        }
+        return cutoff;
+    }
+
+    private boolean insertElement(T o, long ts) {
+        if (ts < cutoff()) {
+            return false;
+        }
+        if ((size == 0) || (comparator.compare(o, element(head + size - 1)) > 0)) {
+            ensureSlot();
+            setElement(head + size, o);
+            size++;
+            return true;
+        }
+        int index = search(o);
+        if (0 <= index) {
+            return false;
+        }
+        index = -index - 1;
+        ensureSlot();
+        shiftRight(head + index, head + size);
+        setElement(head + index, o);
+        size++;
+        return true;
+    }
+
+    private int expireHead() {
+        if (size == 0) {
+            return 0;
+        }
+        long cutoff = cutoff();
+        if (cutoff <= timestamp.timestampOf(element(head))) {
+            return 0;
+        }
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamp.timestampOf(element(head + mid)) < cutoff) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        dropHead(low);
+        return low;
+    }
+
+    private int search(T o) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = comparator.compare(element(head + mid), o);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private boolean compact(Collection<?> c, boolean retain) {
+        int w = head;
+        for (int r = head; r < head + size; r++) {
+            T o = element(r);
+            if (c.contains(o) == retain) {
+                setElement(w++, o);
+            }
+        }
+        int removed = head + size - w;
+        if (removed == 0) {
+            return false;
+        }
+        for (int p = w; p < head + size; p++) {
+            setElement(p, null);
+        }
+        size -= removed;
+        trimTail();
+        return true;
+    }
+
+    private void removeAt(int index) {
+        if (index < (size >>> 1)) {
+            shiftRight(head, head + index);
+            dropHead(1);
+        } else {
+            shiftLeft(head + index + 1, head + size);
+            setElement(head + size - 1, null);
+            size--;
+            trimTail();
+        }
+    }
+
+    private void dropHead(int count) {
+        if (count == size) {
+            reset();
+            return;
+        }
+        int end = head + count;
+        int drop = end >>> CHUNK_SHIFT;
+        for (int c = 0; c < drop; c++) {
+            releaseChunk(c);
+        }
+        chunkHead = (chunkHead + drop) & (chunks.length - 1);
+        chunkCount -= drop;
+        Object[] first = chunk(0);
+        int from = 0;
+        if (drop == 0) {
+            from = head;
+        }
+        Arrays.fill(first, from, end & CHUNK_MASK, null);
+        head = end & CHUNK_MASK;
+        size -= count;
+    }
+
+    private void trimTail() {
+        if (size == 0) {
+            reset();
+            return;
+        }
+        int used = ((head + size - 1) >>> CHUNK_SHIFT) + 1;
+        while (used < chunkCount) {
+            releaseChunk(chunkCount - 1);
+            chunkCount--;
+        }
+    }
+
+    private void reset() {
+        for (int c = 0; c < chunkCount; c++) {
+            releaseChunk(c);
+        }
+        chunkHead = 0;
+        chunkCount = 0;
+        head = 0;
+        size = 0;
+    }
+
+    private void releaseChunk(int c) {
+        int slot = (chunkHead + c) & (chunks.length - 1);
+        Object[] chunk = chunks[slot];
+        chunks[slot] = null;
+        if (spare == null) {
+            Arrays.fill(chunk, null);
+            spare = chunk;
+        }
+    }
+
+    private void ensureSlot() {
+        if (((head + size) >>> CHUNK_SHIFT) < chunkCount) {
+            return;
+        }
+        if (chunkCount == chunks.length) {
+            Object[][] grown = new Object[chunks.length << 1][];
+            for (int c = 0; c < chunkCount; c++) {
+                grown[c] = chunk(c);
+            }
+            chunks = grown;
+            chunkHead = 0;
+        }
+        Object[] chunk = spare;
+        spare = null;
+        if (chunk == null) {
+            chunk = new Object[CHUNK_SIZE];
+        }
+        chunks[(chunkHead + chunkCount) & (chunks.length - 1)] = chunk;
+        chunkCount++;
+    }
+
+    private void shiftRight(int from, int to) {
+        // moves [from, to) to [from + 1, to + 1)
+        for (int p = to; p > from;) {
+            int c = p >>> CHUNK_SHIFT;
+            int start = c << CHUNK_SHIFT;
+            Object[] chunk = chunk(c);
+            int low = Math.max(from + 1, start);
+            if (start < low) {
+                System.arraycopy(chunk, low - 1 - start, chunk, low - start, p - low + 1);
+            } else {
+                System.arraycopy(chunk, 0, chunk, 1, p - start);
+                chunk[0] = chunk(c - 1)[CHUNK_MASK];
+            }
+            p = low - 1;
+        }
+    }
+
+    private void shiftLeft(int from, int to) {
+        // moves [from, to) to [from - 1, to - 1)
+        for (int p = from - 1; p < to - 1;) {
+            int c = p >>> CHUNK_SHIFT;
+            int start = c << CHUNK_SHIFT;
+            int end = start + CHUNK_MASK;
+            Object[] chunk = chunk(c);
+            int high = Math.min(to - 2, end);
+            if (high < end) {
+                System.arraycopy(chunk, p + 1 - start, chunk, p - start, high - p + 1);
+            } else {
+                System.arraycopy(chunk, p + 1 - start, chunk, p - start, end - p);
+                chunk[CHUNK_MASK] = chunk(c + 1)[0];
+            }
+            p = high + 1;
+        }
+    }
+
+    private Object[] chunk(int c) {
+        return chunks[(chunkHead + c) & (chunks.length - 1)];
+    }
+
+    @SuppressWarnings("unchecked")
+    private T element(int p) {
+        return (T) chunk(p >>> CHUNK_SHIFT)[p & CHUNK_MASK];
+    }
+
+    private void setElement(int p, Object o) {
+        chunk(p >>> CHUNK_SHIFT)[p & CHUNK_MASK] = o;
+    }
+
+    private static class WindowComparator<T> implements Comparator<T>, Serializable {
+
+        private static final long serialVersionUID = -2480160731452918853L;
+
+        private final Timestamp<? super T> timestamp;
+
+        private final Comparator<? super T> comparator;
+
+        WindowComparator(Timestamp<? super T> timestamp, Comparator<? super T> comparator) {
+            this.timestamp = timestamp;
+            this.comparator = comparator;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public int compare(T o1, T o2) {
+            long t1 = timestamp.timestampOf(o1);
+            long t2 = timestamp.timestampOf(o2);
+            if (t1 != t2) {
+                return Long.compare(t1, t2);
+            }
+            if (comparator == null) {
+                return ((Comparable<? super T>) o1).compareTo(o2);
+            }
+            return comparator.compare(o1, o2);
+        }
+    }
+}
@@ -0,0 +1,539 @@
+package sc.ript.util;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * SortedList for delete-heavy workloads. A removal only marks its node as a tombstone and decrements the live counts
+ * on the path to it, in O(log n) and without rebalancing; inserting the element again revives the node. Positional
+ * access counts live elements only. Once tombstones exceed a share of the nodes, a compactor on the common pool
+ * unlinks them a slice at a time, taking the write lock for each slice, so readers and writers get in between slices,
+ * until they are back within that share.
+ */
+public class TombstoneList<T> extends AbstractSortedList<T> {
+
+    public static final double DEFAULT_RATIO = 0.25;
+
+    static final int SLICE = 64;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final TombstoneTree<T> tree;
+
+    private final double ratio;
+
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    private final Runnable compactor = new Runnable() {
+
+        @Override
+        public void run() {
+            compactSlices();
+        }
+    };
+
+    public TombstoneList() {
+        this(null);
+    }
+
+    public TombstoneList(Comparator<? super T> c) {
+        this(c, DEFAULT_RATIO);
+    }
+
+    /**
+     * Compacts in the background once tombstones are more than {@code ratio} of the nodes.
+     */
+    public TombstoneList(Comparator<? super T> c, double ratio) {
+        if (!((0 < ratio) && (ratio <= 1))) {
+            throw new IllegalArgumentException("ratio: " + ratio);
+        }
+        tree = new TombstoneTree<>(c);
+        this.ratio = ratio;
+    }
+
+    /**
+     * Returns the number of removed elements whose nodes are still in the tree.
+     */
+    public int tombstones() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return tree.size() - tree.live();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Unlinks every tombstone now, by rebuilding the tree from the live elements.
+     */
+    public void compact() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            Object[] ary = tree.toLiveArray();
+            tree.build(ary, 0, ary.length);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return tree.live();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return 0 <= indexOf(o);
+    }
+
+    @Override
+    public T get(int index) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if ((index < 0) || (tree.live() <= index)) {
+                throw new IndexOutOfBoundsException();
+            }
+            return tree.liveAt(index, false).value;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<T> quantiles(double... qs) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int[] ranks = ranks(qs, tree.live());
+            Object[] values = new Object[ranks.length];
+            for (int i = 0; i < ranks.length; i++) {
+                values[i] = tree.liveAt(ranks[i], false).value;
+            }
+            return asList(values);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return tree.toLiveArray();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if ((o == null) && (tree.comparator == null)) {
+            return -1;
+        }
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return tree.liveIndexOf(o);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public T remove(int index) {
+        T o;
+        boolean compact;
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if ((index < 0) || (tree.live() <= index)) {
+                throw new IndexOutOfBoundsException();
+            }
+            o = tree.liveAt(index, true).value;
+            compact = overRatio();
+        } finally {
+            writeLock.unlock();
+        }
+        scheduleCompaction(compact);
+        return o;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if ((o == null) && (tree.comparator == null)) {
+            return false;
+        }
+        boolean modified;
+        boolean compact;
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            modified = tree.kill(o);
+            compact = overRatio();
+        } finally {
+            writeLock.unlock();
+        }
+        scheduleCompaction(compact);
+        return modified;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean modified = false;
+        boolean compact;
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            for (Object o : c) {
+                if (((o != null) || (tree.comparator != null)) && tree.kill(o)) {
+                    modified = true;
+                }
+            }
+            compact = overRatio();
+        } finally {
+            writeLock.unlock();
+        }
+        scheduleCompaction(compact);
+        return modified;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            Object[] ary = tree.toLiveArray();
+            int n = 0;
+            for (Object o : ary) {
+                if (c.contains(o)) {
+                    ary[n++] = o;
+                }
+            }
+            if (n == ary.length) {
+                return false;
+            }
+            tree.build(ary, 0, n);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            tree.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return tree.comparator;
+    }
+
+    @Override
+    public T first() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (tree.live() == 0) {
+                throw new NoSuchElementException();
+            }
+            return tree.liveAt(0, false).value;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public T last() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (tree.live() == 0) {
+                throw new NoSuchElementException();
+            }
+            return tree.liveAt(tree.live() - 1, false).value;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean insert(T o) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return tree.revive(o);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean insertAll(Collection<T> c) {
+        Object[] keys = SortedArraySet.sort(c, tree.comparator);
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (tree.root == null) {
+                tree.build(keys, 0, keys.length);
+                return 0 < keys.length;
+            }
+            boolean modified = false;
+            for (Object o : keys) {
+                if (tree.revive((T) o)) {
+                    modified = true;
+                }
+            }
+            return modified;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private boolean overRatio() {
+        int size = tree.size();
+        return (0 < size) && (ratio < ((double) (size - tree.live()) / size));
+    }
+
+    private void scheduleCompaction(boolean compact) {
+        if (compact && compacting.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(compactor);
+        }
+    }
+
+    private void compactSlices() {
+        // stops once back under the ratio rather than at zero tombstones, so that sustained removals do not keep it
+        // taking the write lock; the removals that push the ratio over again schedule the next run
+        Lock writeLock = lock.writeLock();
+        boolean done = false;
+        while (!done) {
+            writeLock.lock();
+            try {
+                int i = 0;
+                while ((i < SLICE) && tree.unlinkFirstTombstone()) {
+                    i++;
+                }
+                done = (i < SLICE) || !overRatio();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        compacting.set(false);
+        // a removal that found the flag still set did not schedule; pick its tombstones up
+        boolean compact;
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            compact = overRatio();
+        } finally {
+            readLock.unlock();
+        }
+        scheduleCompaction(compact);
+    }
+
+    static class TombstoneNode<T> extends RankTree.Node<T> {
+
+        boolean dead;
+
+        int live = 1;
+
+        TombstoneNode(T value) {
+            super(value);
+        }
+    }
+
+    /**
+     * RankTree whose nodes also count the live elements of their subtree. {@link RankTree#size()} and the positions
+     * taken by {@link RankTree#removeAt(int)} count tombstones too.
+     */
+    static class TombstoneTree<T> extends RankTree<T> {
+
+        TombstoneTree(Comparator<? super T> comparator) {
+            super(comparator);
+        }
+
+        static int live(RankTree.Node<?> n) {
+            if (n == null) {
+                return 0;
+            }
+            return ((TombstoneNode<?>) n).live;
+        }
+
+        @Override
+        RankTree.Node<T> newNode(T value) {
+            return new TombstoneNode<>(value);
+        }
+
+        @Override
+        void update(RankTree.Node<T> n) {
+            super.update(n);
+            TombstoneNode<T> node = (TombstoneNode<T>) n;
+            node.live = live(n.left) + live(n.right);
+            if (!node.dead) {
+                node.live++;
+            }
+        }
+
+        int live() {
+            return live(root);
+        }
+
+        /**
+         * Returns the live node at {@code index}, and marks it as a tombstone if {@code kill}.
+         */
+        TombstoneNode<T> liveAt(int index, boolean kill) {
+            RankTree.Node<T> n = root;
+            while (true) {
+                TombstoneNode<T> node = (TombstoneNode<T>) n;
+                if (kill) {
+                    node.live--;
+                }
+                int left = live(n.left);
+                if (index < left) {
+                    n = n.left;
+                } else if ((index == left) && !node.dead) {
+                    node.dead = kill;
+                    return node;
+                } else {
+                    index -= left;
+                    if (!node.dead) {
+                        index--;
+                    }
+                    n = n.right;
+                }
+            }
+        }
+
+        int liveIndexOf(Object o) {
+            int index = 0;
+            Object key = searchKey(o);
+            RankTree.Node<T> n = root;
+            while (n != null) {
+                int cmp = compareTo(key, n);
+                if (cmp < 0) {
+                    n = n.left;
+                } else if (cmp > 0) {
+                    index += live(n) - live(n.right);
+                    n = n.right;
+                } else if (((TombstoneNode<T>) n).dead) {
+                    return -1;
+                } else {
+                    return index + live(n.left);
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Marks the live node of {@code o} as a tombstone.
+         */
+        boolean kill(Object o) {
+            TombstoneNode<T> found = (TombstoneNode<T>) find(o);
+            if ((found == null) || found.dead) {
+                return false;
+            }
+            found.dead = true;
+            adjust(found, -1);
+            return true;
+        }
+
+        /**
+         * Inserts {@code o}, reviving its node if it is a tombstone.
+         */
+        boolean revive(T o) {
+            TombstoneNode<T> found = (TombstoneNode<T>) find(o);
+            if (found == null) {
+                return insert(o);
+            }
+            if (!found.dead) {
+                return false;
+            }
+            found.dead = false;
+            adjust(found, 1);
+            return true;
+        }
+
+        private void adjust(RankTree.Node<T> target, int delta) {
+            // the live counts on the path from the root to target, target included
+            Object key = insertKey(target);
+            RankTree.Node<T> n = root;
+            while (true) {
+                ((TombstoneNode<T>) n).live += delta;
+                if (n == target) {
+                    return;
+                }
+                if (compareTo(key, n) < 0) {
+                    n = n.left;
+                } else {
+                    n = n.right;
+                }
+            }
+        }
+
+        /**
+         * Unlinks the first tombstone, rebalancing on the way up, and returns whether there was one.
+         */
+        boolean unlinkFirstTombstone() {
+            int index = 0;
+            RankTree.Node<T> n = root;
+            while ((n != null) && (live(n) < n.size)) {
+                RankTree.Node<T> left = n.left;
+                if ((left != null) && (live(left) < left.size)) {
+                    n = left;
+                } else if (((TombstoneNode<T>) n).dead) {
+                    removeAt(index + size(left));
+                    return true;
+                } else {
+                    index += size(left) + 1;
+                    n = n.right;
+                }
+            }
+            return false;
+        }
+
+        Object[] toLiveArray() {
+            Object[] ary = new Object[live()];
+            fill(root, ary, 0);
+            return ary;
+        }
+
+        private static int fill(RankTree.Node<?> n, Object[] ary, int index) {
+            while ((n != null) && (0 < live(n))) {
+                index = fill(n.left, ary, index);
+                if (!((TombstoneNode<?>) n).dead) {
+                    ary[index++] = n.value;
+                }
+                n = n.right;
+            }
+            return index;
+        }
+    }
+}
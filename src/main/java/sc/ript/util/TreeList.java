@@ -2,15 +2,30 @@ package sc.ript.util;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 public class TreeList<T> extends AbstractSortedList<T> implements Serializable, Cloneable {
 
@@ -24,7 +39,21 @@ public class TreeList<T> extends AbstractSortedList<T> implements Serializable,
 
     private transient Iterator<T> setItr;
 
-    private transient ArrayList<T> list;
+    private transient Object[] view;
+
+    private transient int loaded;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<TreeList, WriteQueue> WRITE_QUEUE =
+            AtomicReferenceFieldUpdater.newUpdater(TreeList.class, WriteQueue.class, "writeQueue");
+
+    private transient volatile WriteQueue<T> writeQueue;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<TreeList, ChangeFeed> CHANGE_FEED =
+            AtomicReferenceFieldUpdater.newUpdater(TreeList.class, ChangeFeed.class, "changeFeed");
+
+    private transient volatile ChangeFeed<T> changeFeed;
 
     public TreeList() {
         set = new TreeSet<>();
@@ -91,7 +120,7 @@ public class TreeList<T> extends AbstractSortedList<T> implements Serializable,
         Lock readLock = setLock.readLock();
         readLock.lock();
         try {
-            return Collections.unmodifiableSortedSet(set).iterator();
+            return new ViewIterator<>(loadList(), set.size(), 0);
         } finally {
             readLock.unlock();
         }
@@ -102,8 +131,7 @@ public class TreeList<T> extends AbstractSortedList<T> implements Serializable,
         Lock readLock = setLock.readLock();
         readLock.lock();
         try {
-            loadList();
-            return Collections.unmodifiableList(list).listIterator();
+            return new ViewIterator<>(loadList(), set.size(), 0);
         } finally {
             readLock.unlock();
         }
@@ -117,8 +145,89 @@ public class TreeList<T> extends AbstractSortedList<T> implements Serializable,
             if ((index < 0) || (set.size() < index)) {
                 throw new IndexOutOfBoundsException();
             }
-            loadList();
-            return Collections.unmodifiableList(list).listIterator(index);
+            return new ViewIterator<>(loadList(), set.size(), index);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Walks the view array if it is loaded, the set otherwise, so neither creates an array of the elements. The action
+     * runs under the read lock, so it must not modify this list; a write from it throws {@link IllegalStateException}.
+     */
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        Lock readLock = setLock.readLock();
+        readLock.lock();
+        try {
+            Object[] ary = loadedView();
+            if (ary == null) {
+                for (T o : set) {
+                    action.accept(o);
+                }
+                return;
+            }
+            int size = set.size();
+            for (int i = 0; i < size; i++) {
+                action.accept(TreeList.<T> element(ary, i));
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Performs the action for each element from {@code from}, inclusive, to {@code to}, exclusive, in order. The
+     * bounds are found by binary search on the view array if it is loaded, otherwise the range of the set is walked,
+     * so a scan allocates no array. The action runs under the read lock, as for {@link #forEach(Consumer)}.
+     */
+    public void forEachInRange(T from, T to, Consumer<? super T> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        Lock readLock = setLock.readLock();
+        readLock.lock();
+        try {
+            if (0 < compare(from, to)) {
+                throw new IllegalArgumentException();
+            }
+            Object[] ary = loadedView();
+            if (ary == null) {
+                for (T o : set.subSet(from, true, to, false)) {
+                    action.accept(o);
+                }
+                return;
+            }
+            int size = set.size();
+            int end = lowerBound(ary, size, to);
+            for (int i = lowerBound(ary, size, from); i < end; i++) {
+                action.accept(TreeList.<T> element(ary, i));
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Returns a cursor over the current elements. A cursor is meant to be kept and {@link Cursor#reset() reset} for
+     * each scan, so that repeated scans do not allocate.
+     */
+    public Cursor<T> cursor() {
+        return new Cursor<>(this);
+    }
+
+    /**
+     * Returns an immutable copy of the current elements that is read without locks. Later changes to this list are
+     * not reflected in it.
+     */
+    public FrozenList<T> freeze() {
+        Lock readLock = setLock.readLock();
+        readLock.lock();
+        try {
+            return new FrozenList<>(set.toArray(), set.comparator());
         } finally {
             readLock.unlock();
         }
@@ -132,133 +241,167 @@ public class TreeList<T> extends AbstractSortedList<T> implements Serializable,
             if ((index < 0) || (set.size() <= index)) {
                 throw new IndexOutOfBoundsException();
             }
-            loadList(index);
-            return list.get(index);
+            return element(loadList(index), index);
         } finally {
             readLock.unlock();
         }
     }
 
+    /**
+     * Returns the elements at the given quantiles. A {@link TreeSet} does not know the size of its subtrees, so a rank
+     * outside the loaded view is reached by walking the set, which takes O(n) for a median; the view is left as it is.
+     * Use a {@link CountedTreeList} for O(log n) quantiles on a list that changes between them.
+     */
     @Override
-    public Object[] toArray() {
+    public List<T> quantiles(double... qs) {
         Lock readLock = setLock.readLock();
         readLock.lock();
         try {
-            return set.toArray();
+            int[] ranks = ranks(qs, set.size());
+            int[] sorted = distinct(ranks);
+            return arrange(ranks, sorted, valuesAt(sorted));
         } finally {
             readLock.unlock();
         }
     }
 
     @Override
-    public <S> S[] toArray(S[] a) {
+    public Object[] toArray() {
         Lock readLock = setLock.readLock();
         readLock.lock();
         try {
-            return set.toArray(a);
+            return set.toArray();
         } finally {
             readLock.unlock();
         }
     }
 
     @Override
-    public int indexOf(Object o) {
+    public <S> S[] toArray(S[] a) {
         Lock readLock = setLock.readLock();
         readLock.lock();
         try {
-            loadList();
-            return list.indexOf(o);
+            return set.toArray(a);
         } finally {
             readLock.unlock();
         }
     }
 
     @Override
-    public int lastIndexOf(Object o) {
+    public int indexOf(Object o) {
         Lock readLock = setLock.readLock();
         readLock.lock();
         try {
-            loadList();
-            return list.lastIndexOf(o);
+            return indexOf(loadList(), set.size(), o);
         } finally {
             readLock.unlock();
         }
     }
 
     @Override
-    public T remove(int index) {
+    public int lastIndexOf(Object o) {
         Lock readLock = setLock.readLock();
         readLock.lock();
         try {
-            if ((index < 0) || (set.size() <= index)) {
-                throw new IndexOutOfBoundsException();
-            }
+            return indexOf(loadList(), set.size(), o);
         } finally {
             readLock.unlock();
         }
+    }
 
-        Lock writeLock = setLock.writeLock();
+    @Override
+    public T remove(int index) {
+        Lock writeLock = setWriteLock();
         writeLock.lock();
         try {
             if ((index < 0) || (set.size() <= index)) {
                 throw new IndexOutOfBoundsException();
             }
-            loadList(index);
-            T o = list.get(index);
+            T o = element(loadList(index), index);
             clearView();
             if (!set.remove(o)) {
                 throw new IllegalStateException();
             }
+            recordRemove(o);
             return o;
         } finally {
+            publishChanges();
             writeLock.unlock();
         }
     }
 
     @Override
     public boolean remove(Object o) {
-        Lock writeLock = setLock.writeLock();
+        Lock writeLock = setWriteLock();
         writeLock.lock();
         try {
             clearView();
-            return set.remove(o);
+            if (!set.remove(o)) {
+                return false;
+            }
+            recordRemove(o);
+            return true;
         } finally {
+            publishChanges();
             writeLock.unlock();
         }
     }
 
     @Override
     public boolean removeAll(Collection<?> c) {
-        Lock writeLock = setLock.writeLock();
-        writeLock.lock();
-        try {
-            clearView();
-            return set.removeAll(c);
-        } finally {
-            writeLock.unlock();
+        return removeAll(c, Integer.MAX_VALUE);
+    }
+
+    public boolean removeAll(Collection<?> c, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (c.isEmpty()) {
+            return false;
         }
+        Object[] keys = SortedArraySet.sort(c, set.comparator());
+        if (lookupCheaper(keys.length, size())) {
+            return removeEach(keys, batchSize);
+        }
+        return filter(new SortedMatcher(keys, false), false, batchSize);
     }
 
     @Override
     public boolean retainAll(Collection<?> c) {
-        Lock writeLock = setLock.writeLock();
-        writeLock.lock();
+        return retainAll(c, Integer.MAX_VALUE);
+    }
+
+    public boolean retainAll(Collection<?> c, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (c instanceof Set) {
+            return filter(new ContainsMatcher(c), true, batchSize);
+        }
+        Object[] keys;
         try {
-            clearView();
-            return set.retainAll(c);
-        } finally {
-            writeLock.unlock();
+            keys = SortedArraySet.sort(c, set.comparator());
+        } catch (ClassCastException e) {
+            // keys that do not compare with each other are looked up one by one, as AbstractCollection does
+            return filter(new ContainsMatcher(c), true, batchSize);
         }
+        return filter(new SortedMatcher(keys, true), true, batchSize);
     }
 
     @Override
     public void clear() {
-        Lock writeLock = setLock.writeLock();
+        Lock writeLock = setWriteLock();
         writeLock.lock();
         try {
             clearView();
+            if (isRecording()) {
+                for (T o : set) {
+                    recordRemove(o);
+                }
+            }
             set.clear();
         } finally {
+            publishChanges();
             writeLock.unlock();
         }
     }
@@ -309,34 +452,380 @@ public class TreeList<T> extends AbstractSortedList<T> implements Serializable,
 
     @Override
     public boolean insert(T o) {
-        Lock writeLock = setLock.writeLock();
+        Lock writeLock = setWriteLock();
         writeLock.lock();
         try {
-            clearView();
-            return set.add(o);
+            if (!set.add(o)) {
+                return false;
+            }
+            insertView(o);
+            recordInsert(o);
+            return true;
         } finally {
+            publishChanges();
             writeLock.unlock();
         }
     }
 
+    public boolean tryInsert(T o, long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        // o is inserted only if the returned value says so; on timeout it is withdrawn from the queue
+        WriteQueue<T> queue = writeQueue();
+        PendingInsert<T> pending = queue.offer(o);
+        try {
+            return pending.future.get(timeout, unit);
+        } catch (TimeoutException e) {
+            if (pending.withdraw()) {
+                throw e;
+            }
+            return pending.future.join();
+        } catch (InterruptedException e) {
+            if (pending.withdraw()) {
+                throw e;
+            }
+            Thread.currentThread().interrupt();
+            return pending.future.join();
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    public CompletableFuture<Boolean> insertAsync(T o) {
+        return writeQueue().offer(o).future;
+    }
+
+    public ChangeFeed<T> changes() {
+        ChangeFeed<T> feed = changeFeed;
+        if (feed == null) {
+            CHANGE_FEED.compareAndSet(this, null, new ChangeFeed<>(set, setLock));
+            feed = changeFeed;
+        }
+        return feed;
+    }
+
     @Override
     public boolean insertAll(Collection<T> c) {
-        Lock writeLock = setLock.writeLock();
+        return insertAll(c, Integer.MAX_VALUE);
+    }
+
+    @SuppressWarnings("unchecked")
+    public boolean insertAll(Collection<T> c, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException();
+        }
+        Object[] keys = SortedArraySet.sort(c, set.comparator());
+        boolean modified = false;
+        Lock writeLock = setWriteLock();
+        for (int k = 0; k < keys.length;) {
+            int end = (int) Math.min(keys.length, (long) k + batchSize);
+            writeLock.lock();
+            try {
+                if (set.isEmpty()) {
+                    clearView();
+                    set.addAll(new SortedArraySet<>(keys, k, end, set.comparator()));
+                    if (isRecording()) {
+                        for (int i = k; i < end; i++) {
+                            recordInsert(keys[i]);
+                        }
+                    }
+                    modified = true;
+                } else {
+                    for (int i = k; i < end; i++) {
+                        T o = (T) keys[i];
+                        if (set.add(o)) {
+                            insertView(o);
+                            recordInsert(o);
+                            modified = true;
+                        }
+                    }
+                }
+            } finally {
+                publishChanges();
+                writeLock.unlock();
+            }
+            k = end;
+        }
+        return modified;
+    }
+
+    public boolean mergeFrom(SortedList<? extends T> other) {
+        if (other == this) {
+            return false;
+        }
+        Object[] keys = SortedLists.snapshot(other, set.comparator());
+        if (keys.length == 0) {
+            return false;
+        }
+        Lock writeLock = setWriteLock();
         writeLock.lock();
         try {
+            if (lookupCheaper(keys.length, set.size())) {
+                boolean modified = false;
+                for (Object o : keys) {
+                    @SuppressWarnings("unchecked")
+                    T e = (T) o;
+                    if (set.add(e)) {
+                        insertView(e);
+                        recordInsert(e);
+                        modified = true;
+                    }
+                }
+                return modified;
+            }
+            Object[] merged = SortedLists.merge(SortedLists.Operation.UNION, set.toArray(), keys, set.comparator(),
+                    SortedLists.defaultPool());
+            if (merged.length == set.size()) {
+                return false;
+            }
+            if (isRecording()) {
+                for (Object o : keys) {
+                    if (!set.contains(o)) {
+                        recordInsert(o);
+                    }
+                }
+            }
             clearView();
-            return set.addAll(c);
+            set.clear();
+            set.addAll(new SortedArraySet<>(merged, set.comparator()));
+            return true;
         } finally {
+            publishChanges();
             writeLock.unlock();
         }
     }
 
-    private void loadList() {
+    private static boolean lookupCheaper(int keys, int size) {
+        // keys * log2(size) against the size + keys of a merge pass
+        return ((long) keys * (Integer.SIZE - Integer.numberOfLeadingZeros(size))) < size;
+    }
+
+    private boolean removeEach(Object[] keys, int batchSize) {
+        boolean modified = false;
+        Lock writeLock = setWriteLock();
+        for (int k = 0; k < keys.length;) {
+            int end = (int) Math.min(keys.length, (long) k + batchSize);
+            writeLock.lock();
+            try {
+                boolean changed = false;
+                for (int i = k; i < end; i++) {
+                    if (set.remove(keys[i])) {
+                        recordRemove(keys[i]);
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    clearView();
+                    modified = true;
+                }
+            } finally {
+                publishChanges();
+                writeLock.unlock();
+            }
+            k = end;
+        }
+        return modified;
+    }
+
+    private boolean filter(Matcher matcher, boolean retain, int batchSize) {
+        boolean modified = false;
+        boolean started = false;
+        T resume = null;
+        Lock writeLock = setWriteLock();
+        while (true) {
+            boolean done;
+            writeLock.lock();
+            try {
+                Iterator<T> itr;
+                if (started) {
+                    itr = set.tailSet(resume, false).iterator();
+                } else {
+                    itr = set.iterator();
+                }
+                boolean changed = false;
+                for (int steps = 0; itr.hasNext() && (steps < batchSize); steps++) {
+                    T o = itr.next();
+                    started = true;
+                    resume = o;
+                    if (matcher.matches(o) != retain) {
+                        itr.remove();
+                        recordRemove(o);
+                        changed = true;
+                    }
+                    if (!retain && matcher.isExhausted()) {
+                        break;
+                    }
+                }
+                done = !itr.hasNext() || (!retain && matcher.isExhausted());
+                if (changed) {
+                    clearView();
+                    modified = true;
+                }
+            } finally {
+                publishChanges();
+                writeLock.unlock();
+            }
+            if (done) {
+                return modified;
+            }
+        }
+    }
+
+    private interface Matcher {
+
+        boolean matches(Object o);
+
+        boolean isExhausted();
+    }
+
+    private static final class ContainsMatcher implements Matcher {
+
+        private final Collection<?> c;
+
+        ContainsMatcher(Collection<?> c) {
+            this.c = c;
+        }
+
+        @Override
+        public boolean matches(Object o) {
+            return c.contains(o);
+        }
+
+        @Override
+        public boolean isExhausted() {
+            return false;
+        }
+    }
+
+    private final class SortedMatcher implements Matcher {
+
+        private final Object[] keys;
+
+        private final boolean skipIncomparable;
+
+        private int cursor;
+
+        SortedMatcher(Object[] keys, boolean skipIncomparable) {
+            this.keys = keys;
+            this.skipIncomparable = skipIncomparable;
+        }
+
+        @Override
+        public boolean matches(Object o) {
+            // called with ascending elements, so the cursor only moves forward
+            while (cursor < keys.length) {
+                int cmp;
+                try {
+                    cmp = SortedArraySet.compare(set.comparator(), keys[cursor], o);
+                } catch (ClassCastException e) {
+                    if (!skipIncomparable) {
+                        throw e;
+                    }
+                    // a key of a type the elements do not compare with equals none of them
+                    cursor++;
+                    continue;
+                }
+                if (cmp == 0) {
+                    cursor++;
+                    return true;
+                }
+                if (cmp > 0) {
+                    return false;
+                }
+                cursor++;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean isExhausted() {
+            return keys.length <= cursor;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private WriteQueue<T> writeQueue() {
+        WriteQueue<T> queue = writeQueue;
+        if (queue == null) {
+            WRITE_QUEUE.compareAndSet(this, null, new WriteQueue<>(this));
+            queue = writeQueue;
+        }
+        return queue;
+    }
+
+    void listen(ChangeFeed.SectionListener listener) {
+        changes().listen(listener);
+    }
+
+    void unlisten(ChangeFeed.SectionListener listener) {
+        changes().unlisten(listener);
+    }
+
+    private boolean isRecording() {
+        ChangeFeed<T> feed = changeFeed;
+        return (feed != null) && feed.isActive();
+    }
+
+    private void recordInsert(Object o) {
+        if (isRecording()) {
+            changeFeed.recordInsert(o);
+        }
+    }
+
+    private void recordRemove(Object o) {
+        if (isRecording()) {
+            changeFeed.recordRemove(o);
+        }
+    }
+
+    private void publishChanges() {
+        ChangeFeed<T> feed = changeFeed;
+        if (feed != null) {
+            feed.publish();
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        throw new IllegalStateException(e);
+    }
+
+    private Object[] loadList() {
+        return loadList(Integer.MAX_VALUE - 1);
+    }
+
+    private Object[] loadedView() {
+        // the view array if every element is loaded into it, null otherwise
         Lock readLock = viewLock.readLock();
         readLock.lock();
         try {
-            if ((setItr != null) && !setItr.hasNext()) {
-                return;
+            if ((view != null) && !setItr.hasNext()) {
+                return view;
+            }
+            return null;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private Lock setWriteLock() {
+        // a write from a forEach action would wait for the action's own read lock forever
+        if (0 < setLock.getReadHoldCount()) {
+            throw new IllegalStateException("modified from a forEach action");
+        }
+        return setLock.writeLock();
+    }
+
+    private Object[] loadList(int index) {
+        // the loaded prefix of a view array is never written again, so it can be read after the lock is released
+        Lock readLock = viewLock.readLock();
+        readLock.lock();
+        try {
+            if ((view != null) && ((index < loaded) || !setItr.hasNext())) {
+                return view;
             }
         } finally {
             readLock.unlock();
@@ -345,62 +834,452 @@ public class TreeList<T> extends AbstractSortedList<T> implements Serializable,
         Lock writeLock = viewLock.writeLock();
         writeLock.lock();
         try {
-            if ((setItr != null) && !setItr.hasNext()) {
-                return;
-            }
-            if (setItr == null) {
+            if (view == null) {
                 setItr = set.iterator();
+                view = new Object[set.size()];
+                loaded = 0;
             }
-            if (list == null) {
-                list = new ArrayList<>(set.size());
-            }
-            while (setItr.hasNext()) {
-                list.add(setItr.next());
+            while ((loaded <= index) && setItr.hasNext()) {
+                if (loaded == view.length) {
+                    view = Arrays.copyOf(view, set.size());
+                }
+                view[loaded++] = setItr.next();
             }
+            return view;
         } finally {
             writeLock.unlock();
         }
     }
 
-    private void loadList(int index) {
+    private Object[] valuesAt(int[] indexes) {
+        // indexes are distinct and ascending. Those inside the loaded view are read from it; the rest are reached by
+        // walking the set from the end of the view or backwards from the last element, whichever is shorter, so that
+        // a high percentile does not load the whole view.
+        Object[] values = new Object[indexes.length];
+        int from = 0;
+        int start = 0;
+        T tail = null;
         Lock readLock = viewLock.readLock();
         readLock.lock();
         try {
-            if ((setItr != null) && !setItr.hasNext()) {
-                return;
+            while ((from < indexes.length) && (indexes[from] < loaded)) {
+                values[from] = view[indexes[from]];
+                from++;
+            }
+            if (0 < loaded) {
+                start = loaded;
+                tail = element(view, loaded - 1);
             }
         } finally {
             readLock.unlock();
         }
+        if (from == indexes.length) {
+            return values;
+        }
+
+        int size = set.size();
+        Iterator<T> itr = set.iterator();
+        if (tail != null) {
+            itr = set.tailSet(tail, false).iterator();
+        }
+        int split = from;
+        long best = Long.MAX_VALUE;
+        for (int s = from; s <= indexes.length; s++) {
+            long cost = 0;
+            if (from < s) {
+                cost += indexes[s - 1] - start + 1;
+            }
+            if (s < indexes.length) {
+                cost += size - indexes[s];
+            }
+            if (cost < best) {
+                best = cost;
+                split = s;
+            }
+        }
+
+        int index = start;
+        for (int i = from; i < split; i++) {
+            T o = itr.next();
+            while (index < indexes[i]) {
+                o = itr.next();
+                index++;
+            }
+            values[i] = o;
+            index++;
+        }
+        index = size - 1;
+        Iterator<T> descending = set.descendingIterator();
+        for (int i = indexes.length - 1; split <= i; i--) {
+            T o = descending.next();
+            while (indexes[i] < index) {
+                o = descending.next();
+                index--;
+            }
+            values[i] = o;
+            index--;
+        }
+        return values;
+    }
 
+    @SuppressWarnings("unchecked")
+    private static <T> T element(Object[] ary, int index) {
+        return (T) ary[index];
+    }
+
+    private static int indexOf(Object[] ary, int size, Object o) {
+        if (o == null) {
+            for (int i = 0; i < size; i++) {
+                if (ary[i] == null) {
+                    return i;
+                }
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                if (o.equals(ary[i])) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void insertView(T o) {
         Lock writeLock = viewLock.writeLock();
         writeLock.lock();
         try {
-            if ((setItr != null) && !setItr.hasNext()) {
+            if (view == null) {
                 return;
             }
-            if (setItr == null) {
+            if (0 < loaded) {
+                T tail = element(view, loaded - 1);
+                if (compare(o, tail) <= 0) {
+                    setItr = null;
+                    view = null;
+                    loaded = 0;
+                    return;
+                }
+                if (setItr.hasNext()) {
+                    setItr = set.tailSet(tail, false).iterator();
+                    return;
+                }
+            } else if (setItr.hasNext()) {
                 setItr = set.iterator();
+                return;
             }
-            if (list == null) {
-                list = new ArrayList<>(set.size());
-            }
-            while (setItr.hasNext() && (list.size() <= index)) {
-                list.add(setItr.next());
+            // the view was complete and o is the new last element
+            if (loaded == view.length) {
+                view = Arrays.copyOf(view, Math.max(loaded + (loaded >> 1), loaded + 1));
             }
+            view[loaded++] = o;
         } finally {
             writeLock.unlock();
         }
     }
 
+    private int compare(T o1, T o2) {
+        return SortedArraySet.compare(set.comparator(), o1, o2);
+    }
+
+    private int lowerBound(Object[] ary, int size, T o) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(TreeList.<T> element(ary, mid), o) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
     private void clearView() {
         Lock writeLock = viewLock.writeLock();
         writeLock.lock();
         try {
             setItr = null;
-            list = null;
+            view = null;
+            loaded = 0;
         } finally {
             writeLock.unlock();
         }
     }
+
+    /**
+     * A reusable read-only iterator over a {@link TreeList}. {@link #reset()} rebinds it to the current elements
+     * without allocating, unless the list was modified in a way that made it rebuild its view.
+     */
+    public static final class Cursor<T> implements Iterator<T> {
+
+        private final TreeList<T> list;
+
+        private Object[] elements;
+
+        private int size;
+
+        private int index;
+
+        Cursor(TreeList<T> list) {
+            this.list = list;
+            reset();
+        }
+
+        /**
+         * Moves this cursor to the first of the current elements.
+         */
+        public Cursor<T> reset() {
+            Lock readLock = list.setLock.readLock();
+            readLock.lock();
+            try {
+                elements = list.loadList();
+                size = list.set.size();
+            } finally {
+                readLock.unlock();
+            }
+            index = 0;
+            return this;
+        }
+
+        /**
+         * Moves this cursor to the first element not less than {@code o}, within the elements bound by the last
+         * {@link #reset()}.
+         */
+        public Cursor<T> seek(T o) {
+            index = list.lowerBound(elements, size, o);
+            return this;
+        }
+
+        /**
+         * Returns the index of the element that {@link #next()} returns.
+         */
+        public int index() {
+            return index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        @Override
+        public T next() {
+            if (size <= index) {
+                throw new NoSuchElementException();
+            }
+            return element(elements, index++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class ViewIterator<T> implements ListIterator<T> {
+
+        private final Object[] elements;
+
+        private final int size;
+
+        private int cursor;
+
+        ViewIterator(Object[] elements, int size, int cursor) {
+            this.elements = elements;
+            this.size = size;
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < size;
+        }
+
+        @Override
+        public T next() {
+            if (size <= cursor) {
+                throw new NoSuchElementException();
+            }
+            return element(elements, cursor++);
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return 0 < cursor;
+        }
+
+        @Override
+        public T previous() {
+            if (cursor <= 0) {
+                throw new NoSuchElementException();
+            }
+            return element(elements, --cursor);
+        }
+
+        @Override
+        public int nextIndex() {
+            return cursor;
+        }
+
+        @Override
+        public int previousIndex() {
+            return cursor - 1;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void set(T e) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void add(T e) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class PendingInsert<T> {
+
+        final T value;
+
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        boolean added;
+
+        RuntimeException error;
+
+        PendingInsert(T value) {
+            this.value = value;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true) && !future.isDone();
+        }
+
+        boolean withdraw() {
+            if (!claimed.compareAndSet(false, true)) {
+                return false;
+            }
+            future.cancel(false);
+            return true;
+        }
+
+        void complete() {
+            if (error == null) {
+                future.complete(added);
+            } else {
+                future.completeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * Single-drainer queue in front of the write lock. Whoever enqueues while no drain is running becomes the drainer
+     * and applies up to {@link #DRAIN_LIMIT} pending inserts under one hold of the write lock: inline when the lock is
+     * free, otherwise on the write executor, so callers never block behind a long write nor apply an unbounded share
+     * of other callers' inserts. What is left after a batch is handed to the write executor. Futures are completed
+     * after the lock is released.
+     */
+    private static final class WriteQueue<T> implements Runnable {
+
+        static final int DRAIN_LIMIT = 256;
+
+        private final TreeList<T> list;
+
+        private final ConcurrentLinkedQueue<PendingInsert<T>> queue = new ConcurrentLinkedQueue<>();
+
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        WriteQueue(TreeList<T> list) {
+            this.list = list;
+        }
+
+        PendingInsert<T> offer(T o) {
+            PendingInsert<T> pending = new PendingInsert<>(o);
+            queue.add(pending);
+            schedule(true);
+            return pending;
+        }
+
+        @Override
+        public void run() {
+            // a write executor thread, which may wait for the lock
+            Lock writeLock = list.setLock.writeLock();
+            writeLock.lock();
+            drain(writeLock);
+            schedule(false);
+        }
+
+        private void schedule(boolean inline) {
+            // an insert queued while the previous drainer was finishing is picked up by the re-check of the queue
+            while (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+                Lock writeLock = list.setLock.writeLock();
+                if (!inline || !writeLock.tryLock()) {
+                    WriteExecutor.INSTANCE.execute(this);
+                    return;
+                }
+                // one batch per caller, the rest goes to the write executor
+                inline = false;
+                drain(writeLock);
+            }
+        }
+
+        private void drain(Lock writeLock) {
+            List<PendingInsert<T>> applied = new ArrayList<>();
+            try {
+                while (applied.size() < DRAIN_LIMIT) {
+                    PendingInsert<T> pending = queue.poll();
+                    if (pending == null) {
+                        break;
+                    }
+                    if (!pending.claim()) {
+                        continue;
+                    }
+                    applied.add(pending);
+                    try {
+                        pending.added = list.set.add(pending.value);
+                        if (pending.added) {
+                            list.insertView(pending.value);
+                            list.recordInsert(pending.value);
+                        }
+                    } catch (RuntimeException e) {
+                        pending.error = e;
+                    }
+                }
+            } finally {
+                list.publishChanges();
+                writeLock.unlock();
+                draining.set(false);
+            }
+            for (PendingInsert<T> pending : applied) {
+                pending.complete();
+            }
+        }
+    }
+
+    /**
+     * Threads of the write queues that could not take the write lock at once. They wait for the lock, so they are
+     * kept off the common pool, where they would hold up unrelated tasks.
+     */
+    private static final class WriteExecutor {
+
+        static final Executor INSTANCE = Executors.newCachedThreadPool(new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "TreeList-write-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
 }
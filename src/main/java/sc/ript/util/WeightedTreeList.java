@@ -0,0 +1,213 @@
+package sc.ript.util;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * SortedList whose elements carry a non-negative weight. Every subtree keeps the sum of its weights, so prefix sums,
+ * range sums and the position where the running total reaches a given weight take O(log n).
+ */
+public class WeightedTreeList<T> extends RankTreeList<T> {
+
+    public interface Weigher<T> {
+
+        long weightOf(T o);
+    }
+
+    private final WeightedTree<T> weighted;
+
+    public WeightedTreeList(Weigher<? super T> weigher) {
+        this(weigher, null);
+    }
+
+    public WeightedTreeList(Weigher<? super T> weigher, Comparator<? super T> c) {
+        this(new WeightedTree<>(weigher, c));
+    }
+
+    private WeightedTreeList(WeightedTree<T> tree) {
+        super(tree);
+        weighted = tree;
+    }
+
+    public long totalWeight() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return WeightedTree.sum(weighted.root);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public long prefixSum(int k) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if ((k < 0) || (weighted.size() < k)) {
+                throw new IndexOutOfBoundsException();
+            }
+            return weighted.prefixSum(k);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public long rangeSum(T from, T to) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (weighted.compare(to, from) <= 0) {
+                return 0;
+            }
+            return weighted.sumLess(to) - weighted.sumLess(from);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public int indexOfCumulative(long weight) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return weighted.indexOfCumulative(weight);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public T weightedQuantile(double q) {
+        return weightedQuantiles(q).get(0);
+    }
+
+    public List<T> weightedQuantiles(double... qs) {
+        // the first element whose running weight reaches q of the total weight
+        if (qs.length == 0) {
+            throw new IllegalArgumentException();
+        }
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            long total = WeightedTree.sum(weighted.root);
+            int[] ranks = new int[qs.length];
+            for (int i = 0; i < qs.length; i++) {
+                if (!((0 <= qs[i]) && (qs[i] <= 1))) {
+                    throw new IllegalArgumentException("quantile out of [0, 1]: " + qs[i]);
+                }
+                long weight = Math.min((long) Math.ceil(qs[i] * total), total);
+                ranks[i] = weighted.indexOfCumulative(weight);
+            }
+            if (weighted.root == null) {
+                throw new NoSuchElementException();
+            }
+            int[] sorted = distinct(ranks);
+            return arrange(ranks, sorted, weighted.valuesAt(sorted));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    static class WeightedNode<T> extends RankTree.Node<T> {
+
+        final long weight;
+
+        long sum;
+
+        WeightedNode(T value, long weight) {
+            super(value);
+            this.weight = weight;
+            sum = weight;
+        }
+    }
+
+    static class WeightedTree<T> extends RankTree<T> {
+
+        private final Weigher<? super T> weigher;
+
+        WeightedTree(Weigher<? super T> weigher, Comparator<? super T> comparator) {
+            super(comparator);
+            if (weigher == null) {
+                throw new NullPointerException();
+            }
+            this.weigher = weigher;
+        }
+
+        static long sum(RankTree.Node<?> n) {
+            if (n == null) {
+                return 0;
+            }
+            return ((WeightedNode<?>) n).sum;
+        }
+
+        @Override
+        RankTree.Node<T> newNode(T value) {
+            long weight = weigher.weightOf(value);
+            if (weight < 0) {
+                throw new IllegalArgumentException("negative weight: " + weight);
+            }
+            return new WeightedNode<>(value, weight);
+        }
+
+        @Override
+        void update(RankTree.Node<T> n) {
+            super.update(n);
+            WeightedNode<T> w = (WeightedNode<T>) n;
+            w.sum = sum(n.left) + sum(n.right) + w.weight;
+        }
+
+        long prefixSum(int k) {
+            long total = 0;
+            RankTree.Node<T> n = root;
+            while ((n != null) && (0 < k)) {
+                int left = size(n.left);
+                if (k <= left) {
+                    n = n.left;
+                } else {
+                    total += sum(n.left) + ((WeightedNode<T>) n).weight;
+                    k -= left + 1;
+                    n = n.right;
+                }
+            }
+            return total;
+        }
+
+        long sumLess(Object o) {
+            long total = 0;
+            RankTree.Node<T> n = root;
+            while (n != null) {
+                if (compare(o, n.value) <= 0) {
+                    n = n.left;
+                } else {
+                    total += sum(n.left) + ((WeightedNode<T>) n).weight;
+                    n = n.right;
+                }
+            }
+            return total;
+        }
+
+        int indexOfCumulative(long weight) {
+            // smallest index whose inclusive prefix sum reaches weight
+            if (sum(root) < weight) {
+                return -1;
+            }
+            int index = 0;
+            long remaining = weight;
+            RankTree.Node<T> n = root;
+            while (n != null) {
+                long left = sum(n.left);
+                long self = ((WeightedNode<T>) n).weight;
+                if ((n.left != null) && (remaining <= left)) {
+                    n = n.left;
+                } else if ((remaining <= left + self) || (n.right == null)) {
+                    return index + size(n.left);
+                } else {
+                    remaining -= left + self;
+                    index += size(n.left) + 1;
+                    n = n.right;
+                }
+            }
+            return -1;
+        }
+    }
+}
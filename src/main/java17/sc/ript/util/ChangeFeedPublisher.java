@@ -0,0 +1,78 @@
+package sc.ript.util;
+
+import java.util.List;
+import java.util.concurrent.Flow;
+
+/**
+ * {@link Flow.Publisher} of the batches of a {@link ChangeFeed}, for Java 17 and later. A subscriber is subscribed to
+ * the feed, so it receives the current contents first and then one batch per write section, as it requests them; a
+ * subscription that the feed refuses is signalled with {@code onError}.
+ */
+public final class ChangeFeedPublisher<T> implements Flow.Publisher<List<ListChange<T>>> {
+
+    private final ChangeFeed<T> feed;
+
+    public ChangeFeedPublisher(ChangeFeed<T> feed) {
+        if (feed == null) {
+            throw new NullPointerException();
+        }
+        this.feed = feed;
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super List<ListChange<T>>> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException();
+        }
+        try {
+            feed.subscribe(new ChangeFeed.Subscriber<List<ListChange<T>>>() {
+
+                @Override
+                public void onSubscribe(final ChangeFeed.Subscription subscription) {
+                    subscriber.onSubscribe(new Flow.Subscription() {
+
+                        @Override
+                        public void request(long n) {
+                            subscription.request(n);
+                        }
+
+                        @Override
+                        public void cancel() {
+                            subscription.cancel();
+                        }
+                    });
+                }
+
+                @Override
+                public void onNext(List<ListChange<T>> item) {
+                    subscriber.onNext(item);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    subscriber.onError(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    subscriber.onComplete();
+                }
+            });
+        } catch (IllegalStateException e) {
+            // refused before the feed called onSubscribe
+            subscriber.onSubscribe(new Flow.Subscription() {
+
+                @Override
+                public void request(long n) {
+                    // nop
+                }
+
+                @Override
+                public void cancel() {
+                    // nop
+                }
+            });
+            subscriber.onError(e);
+        }
+    }
+}
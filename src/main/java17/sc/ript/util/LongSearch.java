@@ -0,0 +1,31 @@
+package sc.ript.util;
+
+/**
+ * Search within a block of {@link LongSortedList}, for Java 17 and later. It uses {@link LongVectorSearch} when the
+ * {@code jdk.incubator.vector} module has been added to the boot layer ({@code --add-modules jdk.incubator.vector}),
+ * and the scalar search otherwise; {@link LongVectorSearch} is not loaded unless the module is there.
+ */
+final class LongSearch {
+
+    private static final boolean VECTORIZED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private LongSearch() {
+    }
+
+    /**
+     * Returns the number of values less than {@code key} in {@code a[from, from + n)}, which is sorted.
+     */
+    static int lowerBound(long[] a, int from, int n, long key) {
+        if (VECTORIZED) {
+            return LongVectorSearch.lowerBound(a, from, n, key);
+        }
+        return LongSortedList.lowerBound(a, from, n, key);
+    }
+
+    /**
+     * Returns true if {@link #lowerBound(long[], int, int, long)} uses the vector API.
+     */
+    static boolean vectorized() {
+        return VECTORIZED;
+    }
+}
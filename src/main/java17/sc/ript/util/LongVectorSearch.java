@@ -0,0 +1,41 @@
+package sc.ript.util;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vectorized search within a sorted block. The range is halved without branching on the comparison, as in
+ * {@link LongSortedList#lowerBound(long[], int, int, long)}, until it fits a few vectors; then every lane is compared
+ * with the key at once and the smaller values are counted.
+ */
+final class LongVectorSearch {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    private static final int VECTORS_PER_LEAF = 4;
+
+    private static final int LEAF = SPECIES.length() * VECTORS_PER_LEAF;
+
+    private LongVectorSearch() {
+    }
+
+    static int lowerBound(long[] a, int from, int n, long key) {
+        int base = from;
+        int rest = n;
+        while (LEAF < rest) {
+            int half = rest >>> 1;
+            base += LongSortedList.lessThan(a[base + half - 1], key) * half;
+            rest -= half;
+        }
+        int index = base;
+        int i = 0;
+        for (int bound = SPECIES.loopBound(rest); i < bound; i += SPECIES.length()) {
+            index += LongVector.fromArray(SPECIES, a, base + i).compare(VectorOperators.LT, key).trueCount();
+        }
+        for (; i < rest; i++) {
+            index += LongSortedList.lessThan(a[base + i], key);
+        }
+        return index - from;
+    }
+}
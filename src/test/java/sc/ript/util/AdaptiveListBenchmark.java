@@ -0,0 +1,99 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Heap bytes per element and the latency of random inserts and positional reads of {@link TreeList} and
+ * {@link AdaptiveList}, for list sizes from 1 to 1M. Small sizes are measured over many lists at once. Pass
+ * {@code 10000000} as the first argument to include 10M, which needs a heap of a few GB.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=sc.ript.util.AdaptiveListBenchmark
+ * </pre>
+ */
+public class AdaptiveListBenchmark {
+
+    private static final int TOTAL = 2000000;
+
+    private static final int MAX_SIZE = 1000000;
+
+    private static final int READS = 1000000;
+
+    private interface Factory {
+
+        SortedList<Integer> create();
+    }
+
+    public static void main(String[] args) {
+        int max = MAX_SIZE;
+        if (0 < args.length) {
+            max = Integer.parseInt(args[0]);
+        }
+        Factory tree = new Factory() {
+
+            @Override
+            public SortedList<Integer> create() {
+                return new TreeList<>();
+            }
+        };
+        Factory adaptive = new Factory() {
+
+            @Override
+            public SortedList<Integer> create() {
+                return new AdaptiveList<>();
+            }
+        };
+        for (int size = 1; size <= max; size *= 10) {
+            run("TreeList", tree, size);
+            run("AdaptiveList", adaptive, size);
+        }
+    }
+
+    private static void run(String name, Factory factory, int size) {
+        int count = Math.max(TOTAL / size, 1);
+        Random random = new Random(size);
+        Integer[] values = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextInt();
+        }
+
+        long before = used();
+        long start = System.nanoTime();
+        List<SortedList<Integer>> lists = new ArrayList<>(count);
+        for (int n = 0; n < count; n++) {
+            SortedList<Integer> list = factory.create();
+            for (Integer o : values) {
+                list.insert(o);
+            }
+            lists.add(list);
+        }
+        long inserted = System.nanoTime();
+        long bytes = used() - before;
+
+        long sum = 0;
+        int reads = Math.max(READS / count, 1);
+        long read = System.nanoTime();
+        for (SortedList<Integer> list : lists) {
+            for (int i = 0; i < reads; i++) {
+                sum += list.get(random.nextInt(list.size()));
+            }
+        }
+        long elapsed = System.nanoTime() - read;
+
+        // the Integer values are shared by every list and excluded by the baseline
+        System.out.printf("%-13s size %8d  %7.1f bytes/element  insert %7.1f ns  get %6.1f ns  (%d)%n", name, size,
+                (double) bytes / count / size, (inserted - start) / (double) count / size,
+                elapsed / (double) count / reads, sum & 1);
+        lists.clear();
+    }
+
+    private static long used() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,153 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class AdaptiveListTest {
+
+    public static class Constructor {
+
+        @Test
+        public void isEmpty() throws Exception {
+            AdaptiveList<Integer> obj = new AdaptiveList<>();
+
+            assertThat(obj, empty());
+            assertThat(obj.isCompact(), is(true));
+            assertThat(obj.contains(1), is(false));
+            try {
+                obj.first();
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+        }
+
+        @Test
+        public void threshold() throws Exception {
+            try {
+                new AdaptiveList<Integer>(null, 3);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // nop
+            }
+        }
+    }
+
+    public static class MethodInsert {
+
+        @Test
+        public void test() throws Exception {
+            AdaptiveList<Integer> obj = new AdaptiveList<>(Collections.<Integer> reverseOrder());
+
+            assertThat(obj.insert(3), is(true));
+            assertThat(obj.insert(1), is(true));
+            assertThat(obj.insert(3), is(false));
+            assertThat(obj.insertAll(Arrays.asList(2, 5, 1)), is(true));
+            assertThat(obj.insertAll(Arrays.asList(2, 5)), is(false));
+
+            assertThat(obj, contains(5, 3, 2, 1));
+            assertThat(obj.indexOf(2), is(2));
+            assertThat(obj.indexOf(4), is(-1));
+            assertThat(obj.first(), is(5));
+            assertThat(obj.last(), is(1));
+        }
+
+        @Test
+        public void switches() throws Exception {
+            AdaptiveList<Integer> obj = new AdaptiveList<>(null, 8);
+            for (int i = 0; i < 8; i++) {
+                obj.insert(i);
+            }
+            assertThat(obj.isCompact(), is(true));
+
+            obj.insert(8);
+            assertThat(obj.isCompact(), is(false));
+            assertThat(obj.get(8), is(8));
+
+            // stays a tree until the size falls to a quarter of the threshold
+            obj.removeAll(Arrays.asList(0, 1, 2, 3, 4, 5));
+            assertThat(obj.isCompact(), is(false));
+            obj.remove(0);
+            assertThat(obj.isCompact(), is(true));
+            assertThat(obj, contains(7, 8));
+
+            obj.insertAll(Arrays.asList(10, 11, 12, 13, 14, 15, 16));
+            assertThat(obj.isCompact(), is(false));
+            assertThat(obj, hasSize(9));
+            obj.clear();
+            assertThat(obj.isCompact(), is(true));
+        }
+
+        @Test
+        public void random() throws Exception {
+            Random random = new Random();
+            AdaptiveList<Integer> obj = new AdaptiveList<>(null, 16);
+            TreeSet<Integer> model = new TreeSet<>();
+            for (int i = 0; i < 3000; i++) {
+                int o = random.nextInt(60);
+                switch (random.nextInt(7)) {
+                case 0:
+                    assertThat(obj.remove((Object) o), is(model.remove(o)));
+                    break;
+                case 1:
+                    if (!model.isEmpty()) {
+                        int index = random.nextInt(model.size());
+                        assertThat(model.remove(obj.remove(index)), is(true));
+                    }
+                    break;
+                case 2:
+                    List<Integer> batch = Arrays.asList(o, o + 1, o + 2, o + 3);
+                    assertThat(obj.insertAll(batch), is(model.addAll(batch)));
+                    break;
+                case 3:
+                    batch = Arrays.asList(o, o + 1, o + 5);
+                    assertThat(obj.removeAll(batch), is(model.removeAll(batch)));
+                    break;
+                default:
+                    assertThat(obj.insert(o), is(model.add(o)));
+                    break;
+                }
+                assertThat(obj.size(), is(model.size()));
+            }
+
+            List<Integer> expected = new ArrayList<>(model);
+            assertThat(obj.toArray(), is(model.toArray()));
+            for (int i = 0; i < expected.size(); i++) {
+                assertThat(obj.get(i), is(expected.get(i)));
+                assertThat(obj.indexOf(expected.get(i)), is(i));
+            }
+            if (!expected.isEmpty()) {
+                assertThat(obj.quantile(1), is(expected.get(expected.size() - 1)));
+            }
+        }
+    }
+
+    public static class MethodRetainAll {
+
+        @Test
+        public void test() throws Exception {
+            AdaptiveList<Integer> obj = new AdaptiveList<>(null, 4);
+            obj.insertAll(Arrays.asList(1, 2, 3, 4, 5, 6));
+            assertThat(obj.isCompact(), is(false));
+
+            assertThat(obj.retainAll(Arrays.asList(2, 4, 6)), is(true));
+            assertThat(obj.isCompact(), is(true));
+            assertThat(obj, contains(2, 4, 6));
+            assertThat(obj.retainAll(Arrays.asList(2, 4, 6)), is(false));
+            assertThat(obj.quantiles(0.5, 1), contains(4, 6));
+        }
+    }
+}
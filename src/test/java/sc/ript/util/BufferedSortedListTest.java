@@ -0,0 +1,206 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import sc.ript.util.BufferedSortedList.Visibility;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class BufferedSortedListTest {
+
+    static class CountingList<T> extends TreeList<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        final AtomicInteger batches = new AtomicInteger();
+
+        @Override
+        public boolean insertAll(Collection<T> c) {
+            batches.incrementAndGet();
+            return super.insertAll(c);
+        }
+    }
+
+    static Thread start(Runnable task) {
+        Thread thread = new Thread(task);
+        thread.start();
+        return thread;
+    }
+
+    public static class Constructor {
+
+        @Test
+        public void illegal() throws Exception {
+            try {
+                new BufferedSortedList<>(new TreeList<Integer>(), 0, Visibility.EVENTUAL);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // nop
+            }
+            try {
+                new BufferedSortedList<>(null);
+                fail();
+            } catch (NullPointerException e) {
+                // nop
+            }
+        }
+    }
+
+    public static class MethodInsert {
+
+        @Test
+        public void batch() throws Exception {
+            CountingList<Integer> target = new CountingList<>();
+            BufferedSortedList<Integer> obj = new BufferedSortedList<>(target, 100, Visibility.EVENTUAL);
+
+            for (int i = 999; 0 <= i; i--) {
+                assertThat(obj.insert(i), is(true));
+            }
+
+            assertThat(target.batches.get(), is(10));
+            assertThat(obj.size(), is(1000));
+            assertThat(obj.first(), is(0));
+            assertThat(obj.quantile(0.5), is(499));
+        }
+
+        @Test
+        public void failure() throws Exception {
+            // the first batch fails, as with an element the target cannot compare
+            CountingList<Integer> target = new CountingList<Integer>() {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public boolean insertAll(Collection<Integer> c) {
+                    if (batches.get() == 0) {
+                        batches.incrementAndGet();
+                        throw new ClassCastException();
+                    }
+                    return super.insertAll(c);
+                }
+            };
+            BufferedSortedList<Integer> obj = new BufferedSortedList<>(target, 2, Visibility.EVENTUAL);
+
+            obj.insert(2);
+            try {
+                obj.insert(1);
+                fail();
+            } catch (ClassCastException e) {
+                // nop
+            }
+            assertThat(target, empty());
+            obj.flush();
+            assertThat(target, contains(1, 2));
+
+            obj.insert(3);
+            obj.clear();
+            obj.flush();
+            assertThat(target, empty());
+        }
+
+        @Test
+        public void eventual() throws Exception {
+            TreeList<Integer> target = new TreeList<>();
+            BufferedSortedList<Integer> obj = new BufferedSortedList<>(target, 100, Visibility.EVENTUAL);
+
+            obj.insertAll(Arrays.asList(3, 1, 2));
+
+            assertThat(obj.contains(1), is(false));
+            assertThat(obj.isEmpty(), is(true));
+            obj.flush();
+            assertThat(obj, contains(1, 2, 3));
+            assertThat(target, contains(1, 2, 3));
+        }
+
+        @Test
+        public void readYourWrites() throws Exception {
+            TreeList<Integer> target = new TreeList<>();
+            final BufferedSortedList<Integer> obj = new BufferedSortedList<>(target, 100, Visibility.READ_YOUR_WRITES);
+            final BufferedSortedList<Integer> eventual = obj.withVisibility(Visibility.EVENTUAL);
+
+            assertThat(eventual.visibility(), is(Visibility.EVENTUAL));
+            assertThat(obj.withVisibility(Visibility.READ_YOUR_WRITES), sameInstance(obj));
+            eventual.insert(1);
+            final List<Boolean> seen = new ArrayList<>();
+            start(new Runnable() {
+
+                @Override
+                public void run() {
+                    seen.add(obj.contains(1));
+                }
+            }).join();
+
+            assertThat(seen, contains(false));
+            assertThat(eventual.contains(1), is(false));
+            assertThat(obj.contains(1), is(true));
+            assertThat(eventual.contains(1), is(true));
+        }
+
+        @Test
+        public void threads() throws Exception {
+            final int threads = 4;
+            final int keys = 10000;
+            CountingList<Integer> target = new CountingList<>();
+            final BufferedSortedList<Integer> obj = new BufferedSortedList<>(target, 256, Visibility.EVENTUAL);
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int id = t;
+                workers.add(start(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < keys; i++) {
+                            obj.insert(id + (threads * i));
+                        }
+                    }
+                }));
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            assertThat(obj.bufferCount(), is(threads));
+            obj.flush();
+            // the workers have terminated, so their buffers are drained and dropped
+            assertThat(obj.bufferCount(), is(0));
+
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int i = 0; i < threads * keys; i++) {
+                expected.add(i);
+            }
+            assertThat(target.toArray(), is(expected.toArray()));
+            assertThat(target.batches.get(), lessThanOrEqualTo((threads * keys / 256) + threads));
+        }
+    }
+
+    public static class MethodRemove {
+
+        @Test
+        public void test() throws Exception {
+            TreeList<Integer> target = new TreeList<>();
+            BufferedSortedList<Integer> obj = new BufferedSortedList<>(target, 100, Visibility.EVENTUAL);
+            obj.insertAll(Arrays.asList(1, 2, 3, 4));
+
+            assertThat(obj.remove((Object) 2), is(true));
+            obj.insert(5);
+            assertThat(obj.removeAll(Arrays.asList(5)), is(true));
+            obj.insert(6);
+            assertThat(obj.retainAll(Arrays.asList(1, 6)), is(true));
+            assertThat(target, contains(1, 6));
+            obj.insert(7);
+            obj.clear();
+            obj.flush();
+            assertThat(target, empty());
+        }
+    }
+}
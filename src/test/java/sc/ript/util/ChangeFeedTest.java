@@ -0,0 +1,305 @@
+package sc.ript.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+@RunWith(Enclosed.class)
+public class ChangeFeedTest {
+
+    /**
+     * Keeps a copy of the list by applying every batch in order.
+     */
+    static class Replica implements ChangeFeed.Subscriber<List<ListChange<Integer>>> {
+
+        final List<Integer> elements = new ArrayList<>();
+
+        final List<List<ListChange<Integer>>> batches = new ArrayList<>();
+
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        final CountDownLatch failed = new CountDownLatch(1);
+
+        final long initial;
+
+        ChangeFeed.Subscription subscription;
+
+        Replica(long initial) {
+            this.initial = initial;
+        }
+
+        @Override
+        public void onSubscribe(ChangeFeed.Subscription s) {
+            subscription = s;
+            if (0 < initial) {
+                s.request(initial);
+            }
+        }
+
+        @Override
+        public synchronized void onNext(List<ListChange<Integer>> batch) {
+            batches.add(batch);
+            for (ListChange<Integer> change : batch) {
+                if (change.kind() == ListChange.Kind.INSERT) {
+                    elements.add(change.index(), change.element());
+                } else {
+                    if (!elements.get(change.index()).equals(change.element())) {
+                        error.set(new AssertionError(change + " against " + elements));
+                    }
+                    elements.remove(change.index());
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error.set(throwable);
+            failed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            // nop
+        }
+
+        synchronized List<Integer> snapshot() {
+            return new ArrayList<>(elements);
+        }
+
+        void awaitEqual(SortedList<Integer> list) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!snapshot().equals(Arrays.asList(list.toArray())) && (System.nanoTime() < deadline)) {
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+            if (error.get() != null) {
+                throw new AssertionError(error.get());
+            }
+            assertThat(snapshot(), is(Arrays.asList(list.toArray())));
+        }
+    }
+
+    public static class MethodSubscribe {
+
+        @Test
+        public void replica() throws Exception {
+            Random random = new Random();
+            TreeList<Integer> obj = new TreeList<>(Arrays.asList(5, 3, 9));
+            Replica replica = new Replica(Long.MAX_VALUE);
+            obj.changes().subscribe(replica);
+
+            replica.awaitEqual(obj);
+            assertThat(obj.changes().subscribers(), is(1));
+            for (int step = 0; step < 200; step++) {
+                List<Integer> batch = new ArrayList<>();
+                for (int i = random.nextInt(20); 0 < i; i--) {
+                    batch.add(random.nextInt(300));
+                }
+                switch (random.nextInt(9)) {
+                case 0:
+                    obj.insertAll(batch);
+                    break;
+                case 1:
+                    obj.removeAll(batch);
+                    break;
+                case 2:
+                    obj.removeAll(batch, 3);
+                    break;
+                case 3:
+                    for (Object o : obj.toArray()) {
+                        if (random.nextInt(10) != 0) {
+                            batch.add((Integer) o);
+                        }
+                    }
+                    obj.retainAll(new HashSet<>(batch));
+                    break;
+                case 4:
+                    if (!obj.isEmpty()) {
+                        obj.remove(random.nextInt(obj.size()));
+                    }
+                    break;
+                case 5:
+                    obj.mergeFrom(new TreeList<>(batch));
+                    break;
+                case 6:
+                    obj.insertAsync(random.nextInt(300)).get();
+                    break;
+                case 7:
+                    obj.insert(300 + step);
+                    break;
+                default:
+                    obj.remove((Object) random.nextInt(300));
+                    break;
+                }
+            }
+            replica.awaitEqual(obj);
+            obj.clear();
+            replica.awaitEqual(obj);
+        }
+
+        @Test
+        public void batches() throws Exception {
+            TreeList<Integer> obj = new TreeList<>();
+            Replica replica = new Replica(Long.MAX_VALUE);
+            obj.changes().subscribe(replica);
+
+            obj.insertAll(Arrays.asList(1, 2, 3, 4));
+            obj.insertAll(Arrays.asList(0, 5, 3));
+            obj.removeAll(Arrays.asList(1, 4, 9));
+            replica.awaitEqual(obj);
+
+            assertThat(replica.batches, hasSize(3));
+            assertThat(replica.batches.get(1), contains(new ListChange<>(ListChange.Kind.INSERT, 0, 0),
+                    new ListChange<>(ListChange.Kind.INSERT, 5, 5)));
+            assertThat(replica.batches.get(2), contains(new ListChange<>(ListChange.Kind.REMOVE, 4, 4),
+                    new ListChange<>(ListChange.Kind.REMOVE, 1, 1)));
+        }
+
+        @Test
+        public void cancel() throws Exception {
+            TreeList<Integer> obj = new TreeList<>();
+            Replica replica = new Replica(Long.MAX_VALUE);
+            obj.changes().subscribe(replica);
+            obj.insert(1);
+            replica.awaitEqual(obj);
+
+            replica.subscription.cancel();
+            obj.insert(2);
+
+            assertThat(obj.changes().subscribers(), is(0));
+            assertThat(replica.snapshot(), contains(1));
+
+            // the insert of 2 was not recorded, so a new subscriber starts from the set again
+            Replica next = new Replica(Long.MAX_VALUE);
+            obj.changes().subscribe(next);
+            obj.insertAll(Arrays.asList(0, 3));
+            obj.remove((Object) 2);
+            next.awaitEqual(obj);
+        }
+
+        @Test
+        public void readLocked() throws Exception {
+            ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+            ChangeFeed<Integer> feed = new ChangeFeed<>(new TreeSet<Integer>(), lock);
+            Replica replica = new Replica(Long.MAX_VALUE);
+
+            lock.readLock().lock();
+            try {
+                feed.subscribe(replica);
+                fail();
+            } catch (IllegalStateException e) {
+                // nop
+            } finally {
+                lock.readLock().unlock();
+            }
+            assertThat(feed.subscribers(), is(0));
+        }
+    }
+
+    public static class FlowPublisher {
+
+        /**
+         * Loads the Java 17 layer ahead of the base classes, as LongSearchTest does, and subscribes through
+         * {@code java.util.concurrent.Flow} by reflection, so that this test still compiles for Java 8.
+         */
+        @Test
+        public void test() throws Exception {
+            URL layer = ChangeFeed.class.getResource("/META-INF/versions/17/");
+            assumeThat(layer, notNullValue());
+            URL classes = ChangeFeed.class.getProtectionDomain().getCodeSource().getLocation();
+            try (URLClassLoader loader = new URLClassLoader(new URL[] { layer, classes },
+                    ClassLoader.getSystemClassLoader().getParent())) {
+                Class<?> listType = Class.forName(TreeList.class.getName(), true, loader);
+                Object list = listType.getConstructor().newInstance();
+                Method insert = listType.getMethod("insert", Object.class);
+                insert.invoke(list, 2);
+                Object feed = listType.getMethod("changes").invoke(list);
+                Class<?> publisherType = Class.forName("sc.ript.util.ChangeFeedPublisher", true, loader);
+                Object publisher = publisherType.getConstructor(feed.getClass()).newInstance(feed);
+                Class<?> subscriberType = Class.forName("java.util.concurrent.Flow$Subscriber");
+                final Method request = Class.forName("java.util.concurrent.Flow$Subscription").getMethod("request",
+                        long.class);
+                final BlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+                Object subscriber = Proxy.newProxyInstance(ChangeFeedTest.class.getClassLoader(),
+                        new Class<?>[] { subscriberType }, new InvocationHandler() {
+
+                            @Override
+                            public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
+                                if (method.getName().equals("onSubscribe")) {
+                                    request.invoke(args[0], Long.MAX_VALUE);
+                                } else if (method.getName().equals("onNext")
+                                        || method.getName().equals("onError")) {
+                                    signals.add(args[0]);
+                                }
+                                return null;
+                            }
+                        });
+
+                publisherType.getMethod("subscribe", subscriberType).invoke(publisher, subscriber);
+                insert.invoke(list, 1);
+
+                assertThat(String.valueOf(signals.poll(10, TimeUnit.SECONDS)), is("[INSERT(0, 2)]"));
+                assertThat(String.valueOf(signals.poll(10, TimeUnit.SECONDS)), is("[INSERT(0, 1)]"));
+            }
+        }
+    }
+
+    public static class Backpressure {
+
+        @Test
+        public void overflow() throws Exception {
+            TreeList<Integer> obj = new TreeList<>();
+            Replica replica = new Replica(1);
+            obj.changes().subscribe(replica);
+
+            for (int i = 0; i <= ChangeFeed.DEFAULT_CAPACITY + 1; i++) {
+                obj.insert(i);
+            }
+
+            assertThat(replica.failed.await(10, TimeUnit.SECONDS), is(true));
+            assertThat(replica.error.get(), instanceOf(IllegalStateException.class));
+            assertThat(replica.batches, hasSize(1));
+            assertThat(obj.changes().subscribers(), is(0));
+        }
+
+        @Test
+        public void request() throws Exception {
+            TreeList<Integer> obj = new TreeList<>();
+            Replica replica = new Replica(0);
+            obj.changes().subscribe(replica);
+
+            obj.insert(1);
+            obj.insert(2);
+            TimeUnit.MILLISECONDS.sleep(50);
+            assertThat(replica.snapshot(), empty());
+            replica.subscription.request(1);
+            replica.subscription.request(1);
+            replica.awaitEqual(obj);
+            replica.subscription.request(-1);
+
+            assertThat(replica.failed.await(10, TimeUnit.SECONDS), is(true));
+            assertThat(replica.error.get(), instanceOf(IllegalArgumentException.class));
+        }
+    }
+}
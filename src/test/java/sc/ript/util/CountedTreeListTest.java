@@ -0,0 +1,70 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class CountedTreeListTest {
+
+    public static class Constructor {
+
+        @Test
+        public void isEmpty() throws Exception {
+            CountedTreeList<Integer> obj = new CountedTreeList<>();
+
+            assertThat(obj, empty());
+            try {
+                obj.quantile(0.5);
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+        }
+
+        @Test
+        public void values() throws Exception {
+            CountedTreeList<Integer> obj = new CountedTreeList<>(Arrays.asList(3, 1, 2, 3));
+
+            assertThat(obj, contains(1, 2, 3));
+            assertThat(new CountedTreeList<>(Collections.<Integer> reverseOrder()).comparator(),
+                    is(Collections.<Integer> reverseOrder()));
+        }
+    }
+
+    public static class MethodQuantiles {
+
+        @Test
+        public void test() throws Exception {
+            Random random = new Random();
+            CountedTreeList<Integer> obj = new CountedTreeList<>();
+            TreeSet<Integer> model = new TreeSet<>();
+            for (int i = 0; i < 2000; i++) {
+                int o = random.nextInt(10000);
+                if (random.nextInt(4) == 0) {
+                    assertThat(obj.remove(Integer.valueOf(o)), is(model.remove(o)));
+                } else {
+                    assertThat(obj.insert(o), is(model.add(o)));
+                }
+                if (!model.isEmpty()) {
+                    // every quantile follows a write, with nothing loaded in between
+                    TreeListTest.MethodQuantiles.check(obj, new ArrayList<>(model), random);
+                }
+            }
+
+            List<Integer> expected = new ArrayList<>(model);
+            assertThat(obj.toArray(), is(expected.toArray()));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package sc.ript.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import sc.ript.util.DurableTreeList.FsyncPolicy;
+
+/**
+ * Inserts random longs from several threads into a {@link DurableTreeList} under each {@link FsyncPolicy} and reports
+ * write throughput, then the time to recover the list from its snapshot and from its log alone.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=sc.ript.util.DurableTreeListBenchmark
+ * </pre>
+ */
+public class DurableTreeListBenchmark {
+
+    private static final int THREADS = 4;
+
+    private static final int PER_THREAD = 5000;
+
+    private static final int RECOVER_SIZE = 1000000;
+
+    public static void main(String[] args) throws Exception {
+        for (FsyncPolicy policy : FsyncPolicy.values()) {
+            Path dir = Files.createTempDirectory("durable-" + policy);
+            try {
+                final DurableTreeList<Long> list = DurableTreeList.open(dir, Codec.LONG, policy);
+                List<Thread> threads = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    final Random random = new Random(t);
+                    threads.add(new Thread(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            for (int i = 0; i < PER_THREAD; i++) {
+                                list.insert(random.nextLong());
+                            }
+                        }
+                    }));
+                }
+                long start = System.nanoTime();
+                for (Thread thread : threads) {
+                    thread.start();
+                }
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+                long elapsed = System.nanoTime() - start;
+                list.close();
+                System.out.printf("%-9s %10.0f inserts/s from %d threads%n", policy,
+                        THREADS * PER_THREAD * 1e9 / elapsed, THREADS);
+            } finally {
+                delete(dir);
+            }
+        }
+
+        Path dir = Files.createTempDirectory("durable-recover");
+        try {
+            DurableTreeList<Long> list = DurableTreeList.open(dir, Codec.LONG, null, FsyncPolicy.NEVER, Long.MAX_VALUE);
+            List<Long> batch = new ArrayList<>();
+            Random random = new Random(1);
+            for (int i = 0; i < RECOVER_SIZE; i++) {
+                batch.add(random.nextLong());
+                if (batch.size() == 1000) {
+                    list.insertAll(batch);
+                    batch.clear();
+                }
+            }
+            list.close();
+            report("log replay", dir);
+
+            list = DurableTreeList.open(dir, Codec.LONG, null, FsyncPolicy.NEVER, Long.MAX_VALUE);
+            list.checkpoint();
+            list.close();
+            report("snapshot", dir);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static void report(String name, Path dir) throws IOException {
+        long start = System.nanoTime();
+        DurableTreeList<Long> list = DurableTreeList.open(dir, Codec.LONG, null, FsyncPolicy.NEVER, Long.MAX_VALUE);
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("recover from %-10s %8.1f ms (%d elements)%n", name, elapsed / 1e6, list.size());
+        list.close();
+    }
+
+    private static void delete(Path dir) {
+        for (File file : dir.toFile().listFiles()) {
+            file.delete();
+        }
+        dir.toFile().delete();
+    }
+}
@@ -0,0 +1,206 @@
+package sc.ript.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import sc.ript.util.DurableTreeList.FsyncPolicy;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class DurableTreeListTest {
+
+    static List<String> files(Path dir) {
+        List<String> names = new ArrayList<>();
+        for (File file : dir.toFile().listFiles()) {
+            names.add(file.getName());
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    public static class MethodOpen {
+
+        @Rule
+        public TemporaryFolder folder = new TemporaryFolder();
+
+        @Test
+        public void recover() throws Exception {
+            Path dir = folder.getRoot().toPath();
+            for (FsyncPolicy policy : FsyncPolicy.values()) {
+                Path sub = dir.resolve(policy.name());
+                TreeSet<Long> model = new TreeSet<>();
+                Random random = new Random();
+                DurableTreeList<Long> obj = DurableTreeList.open(sub, Codec.LONG, policy);
+                for (int i = 0; i < 500; i++) {
+                    long o = random.nextInt(300);
+                    switch (random.nextInt(5)) {
+                    case 0:
+                        assertThat(obj.remove((Object) o), is(model.remove(o)));
+                        break;
+                    case 1:
+                        List<Long> batch = Arrays.asList(o, o + 1, o + 2);
+                        assertThat(obj.removeAll(batch), is(model.removeAll(batch)));
+                        break;
+                    case 2:
+                        batch = Arrays.asList(o, o + 7, o + 11);
+                        assertThat(obj.insertAll(batch), is(model.addAll(batch)));
+                        break;
+                    default:
+                        assertThat(obj.insert(o), is(model.add(o)));
+                        break;
+                    }
+                }
+                // reopened without closing, as after a crash
+                DurableTreeList<Long> recovered = DurableTreeList.open(sub, Codec.LONG, policy);
+
+                assertThat(recovered.toArray(), is(model.toArray()));
+                obj.close();
+                recovered.close();
+            }
+        }
+
+        @Test
+        public void checkpoint() throws Exception {
+            Path dir = folder.getRoot().toPath();
+            DurableTreeList<String> obj = DurableTreeList.open(dir, Codec.STRING, Collections.<String> reverseOrder(),
+                    FsyncPolicy.NEVER, 1 << 10);
+            for (int i = 0; i < 1000; i++) {
+                obj.insert("hoge" + i);
+            }
+            obj.remove("hoge7");
+            obj.close();
+
+            List<String> names = files(dir);
+            assertThat(names, hasSize(2));
+            assertThat(names.get(0), startsWith("log-"));
+            assertThat(names.get(1), startsWith("snapshot-"));
+
+            DurableTreeList<String> recovered = DurableTreeList.open(dir, Codec.STRING,
+                    Collections.<String> reverseOrder(), FsyncPolicy.NEVER, 1 << 10);
+            assertThat(recovered, hasSize(999));
+            assertThat(recovered.first(), is("hoge999"));
+            assertThat(recovered.contains("hoge7"), is(false));
+            recovered.checkpoint();
+            recovered.insert("a");
+            recovered.close();
+
+            recovered = DurableTreeList.open(dir, Codec.STRING, Collections.<String> reverseOrder(),
+                    FsyncPolicy.NEVER, 1 << 10);
+            assertThat(recovered, hasSize(1000));
+            assertThat(recovered.last(), is("a"));
+            recovered.close();
+        }
+
+        @Test
+        public void tornTail() throws Exception {
+            Path dir = folder.getRoot().toPath();
+            DurableTreeList<Integer> obj = DurableTreeList.open(dir, Codec.INTEGER, FsyncPolicy.ALWAYS);
+            obj.insertAll(Arrays.asList(3, 1, 2));
+            obj.remove((Object) 2);
+            obj.close();
+            Path log = dir.resolve(files(dir).get(0));
+            long size = Files.size(log);
+            try (FileChannel ch = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ch.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 9, 1, 2, 3 }));
+            }
+
+            DurableTreeList<Integer> recovered = DurableTreeList.open(dir, Codec.INTEGER, FsyncPolicy.ALWAYS);
+            assertThat(recovered, contains(1, 3));
+            assertThat(Files.size(log), is(size));
+            recovered.insert(4);
+            recovered.close();
+
+            recovered = DurableTreeList.open(dir, Codec.INTEGER, FsyncPolicy.ALWAYS);
+            assertThat(recovered, contains(1, 3, 4));
+            recovered.close();
+        }
+
+        @Test
+        public void closed() throws Exception {
+            DurableTreeList<Integer> obj = DurableTreeList.open(folder.getRoot().toPath(), Codec.INTEGER,
+                    FsyncPolicy.INTERVAL);
+            obj.insert(1);
+            obj.close();
+            obj.close();
+
+            assertThat(obj, contains(1));
+            try {
+                obj.insert(2);
+                fail();
+            } catch (IllegalStateException e) {
+                // nop
+            }
+        }
+
+        @Test
+        public void failedLog() throws Exception {
+            Path dir = folder.getRoot().toPath();
+            DurableTreeList<Integer> obj = DurableTreeList.open(dir, Codec.INTEGER, FsyncPolicy.ALWAYS);
+            obj.insert(1);
+            // the log fails under the list
+            ((FileChannel) field("channel").get(obj)).close();
+
+            try {
+                obj.insert(2);
+                fail();
+            } catch (UncheckedIOException e) {
+                // nop
+            }
+            try {
+                obj.insert(3);
+                fail();
+            } catch (IllegalStateException e) {
+                assertThat(e.getCause(), instanceOf(IOException.class));
+            }
+            obj.close();
+
+            DurableTreeList<Integer> recovered = DurableTreeList.open(dir, Codec.INTEGER, FsyncPolicy.ALWAYS);
+            assertThat(recovered, contains(1));
+            recovered.close();
+        }
+
+        @Test
+        public void idle() throws Exception {
+            DurableTreeList<Integer> obj = DurableTreeList.open(folder.getRoot().toPath(), Codec.INTEGER,
+                    FsyncPolicy.INTERVAL);
+            obj.insert(1);
+            obj.insert(2);
+
+            // the second write is not due for a sync and no write follows it, the flusher syncs it
+            long deadline = System.currentTimeMillis() + 10000;
+            while ((field("synced").getLong(obj) < field("written").getLong(obj))
+                    && (System.currentTimeMillis() < deadline)) {
+                Thread.sleep(DurableTreeList.SYNC_INTERVAL_MILLIS);
+            }
+            assertThat(field("synced").getLong(obj), is(field("written").getLong(obj)));
+            obj.close();
+        }
+    }
+
+    static Field field(String name) throws NoSuchFieldException {
+        Field field = DurableTreeList.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+}
@@ -0,0 +1,117 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reports the retained heap per string and the cost of {@code contains}, {@code get} and {@code rank} for a
+ * {@link FrontCodedList} and a {@link TreeList} of the same URLs, generated over a few hosts and a small vocabulary of
+ * path segments as crawled or logged URLs are.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=sc.ript.util.FrontCodedListBenchmark
+ * </pre>
+ */
+public class FrontCodedListBenchmark {
+
+    private static final int SIZE = 1000000;
+
+    private static final int LOOKUPS = 1000000;
+
+    private static final int ROUNDS = 3;
+
+    private static final String[] HOSTS = { "https://www.example.com", "https://api.example.com",
+            "https://cdn.example.net", "https://docs.example.org", "http://intranet.example.local:8080" };
+
+    private static final String[] SEGMENTS = { "api", "v1", "v2", "users", "orders", "items", "static", "images",
+            "css", "js", "docs", "reference", "search", "products", "categories", "archive", "2023", "2024" };
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(1);
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < SIZE; i++) {
+            urls.add(url(random));
+        }
+
+        long before = heap();
+        FrontCodedList coded = new FrontCodedList(urls);
+        long codedBytes = heap() - before;
+        before = heap();
+        // copies, so that the strings held by the TreeList are counted for it
+        List<String> copies = new ArrayList<>(SIZE);
+        for (String url : urls) {
+            copies.add(new String(url.toCharArray()));
+        }
+        TreeList<String> tree = new TreeList<>();
+        tree.insertAll(copies);
+        tree.get(0);
+        copies = null;
+        long treeBytes = heap() - before;
+        int n = coded.size();
+        // urls is used here so that it stays reachable, and out of the differences, until both are measured
+        System.out.printf("%d URLs, %d distinct: %6.1f / %6.1f bytes per URL  (FrontCodedList / TreeList with its"
+                + " strings)%n", urls.size(), n, (double) codedBytes / n, (double) treeBytes / n);
+
+        String[] keys = new String[LOOKUPS];
+        int[] indexes = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            keys[i] = url(random);
+            indexes[i] = random.nextInt(n);
+        }
+        for (int r = 0; r < ROUNDS; r++) {
+            long sum = 0;
+            long start = System.nanoTime();
+            for (String key : keys) {
+                if (coded.contains(key)) {
+                    sum++;
+                }
+            }
+            long codedFound = System.nanoTime();
+            for (String key : keys) {
+                if (tree.contains(key)) {
+                    sum++;
+                }
+            }
+            long treeFound = System.nanoTime();
+            for (int index : indexes) {
+                sum += coded.get(index).length();
+            }
+            long codedGot = System.nanoTime();
+            for (int index : indexes) {
+                sum += tree.get(index).length();
+            }
+            long treeGot = System.nanoTime();
+            for (String key : keys) {
+                sum += coded.rank(key);
+            }
+            long codedRanked = System.nanoTime();
+            System.out.printf("  contains %5.0f / %5.0f ns  get %5.0f / %5.0f ns  rank %5.0f ns  (%d)%n",
+                    (double) (codedFound - start) / LOOKUPS, (double) (treeFound - codedFound) / LOOKUPS,
+                    (double) (codedGot - treeFound) / LOOKUPS, (double) (treeGot - codedGot) / LOOKUPS,
+                    (double) (codedRanked - treeGot) / LOOKUPS, sum);
+        }
+    }
+
+    private static String url(Random random) {
+        StringBuilder sb = new StringBuilder(HOSTS[random.nextInt(HOSTS.length)]);
+        int depth = 1 + random.nextInt(4);
+        for (int i = 0; i < depth; i++) {
+            sb.append('/').append(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+        }
+        sb.append('/').append(random.nextInt(100000));
+        if (random.nextInt(4) == 0) {
+            sb.append("?page=").append(random.nextInt(50));
+        }
+        return sb.toString();
+    }
+
+    private static long heap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,170 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class FrontCodedListTest {
+
+    static String randomPath(Random random) {
+        // few characters and segments, so that strings share prefixes and some are prefixes of others
+        StringBuilder sb = new StringBuilder("http://");
+        int segments = random.nextInt(6);
+        for (int i = 0; i < segments; i++) {
+            sb.append((char) ('a' + random.nextInt(4)));
+            if (random.nextBoolean()) {
+                sb.append('/');
+            }
+        }
+        return sb.toString();
+    }
+
+    public static class MethodCompare {
+
+        @Test
+        public void test() throws Exception {
+            String[] values = { "", "a", "ab", "abc", "abd", "b", "\uffff" };
+            for (String s : values) {
+                for (String key : values) {
+                    int lcp = FrontCodedList.mismatch(s, key, 0);
+                    assertThat(Integer.signum(FrontCodedList.compare(s, key, lcp)),
+                            is(Integer.signum(s.compareTo(key))));
+                    assertThat(FrontCodedList.mismatch(s, key, lcp), is(lcp));
+                }
+            }
+        }
+    }
+
+    public static class Constructor {
+
+        @Test
+        public void isEmpty() throws Exception {
+            FrontCodedList obj = new FrontCodedList();
+
+            assertThat(obj, empty());
+            assertThat(obj.contains("a"), is(false));
+            assertThat(obj.rank("a"), is(0));
+            assertThat(obj.remove("a"), is(false));
+            try {
+                obj.first();
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+        }
+
+        @Test
+        public void collection() throws Exception {
+            FrontCodedList obj = new FrontCodedList(Arrays.asList("b", "", "ab", "b", "a"));
+
+            assertThat(obj, contains("", "a", "ab", "b"));
+            assertThat(obj.comparator(), is(nullValue()));
+            assertThat(obj.contains(1), is(false));
+            assertThat(obj.indexOf(""), is(0));
+        }
+
+        @Test
+        public void sharedPrefixes() throws Exception {
+            List<String> values = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                values.add("https://example.com/static/images/" + i);
+            }
+            FrontCodedList obj = new FrontCodedList(values);
+
+            long chars = 0;
+            for (String s : values) {
+                chars += s.length();
+            }
+            assertThat(obj.storedChars() * 4, lessThan(chars));
+        }
+    }
+
+    public static class MethodInsert {
+
+        @Test
+        public void test() throws Exception {
+            Random random = new Random();
+            FrontCodedList obj = new FrontCodedList();
+            TreeSet<String> model = new TreeSet<>();
+            for (int i = 0; i < 20000; i++) {
+                String o = randomPath(random);
+                switch (random.nextInt(8)) {
+                case 0:
+                    assertThat(obj.remove(o), is(model.remove(o)));
+                    break;
+                case 1:
+                    if (!model.isEmpty()) {
+                        int index = random.nextInt(model.size());
+                        assertThat(model.remove(obj.remove(index)), is(true));
+                    }
+                    break;
+                case 2:
+                    List<String> batch = Arrays.asList(o, randomPath(random), o + "x");
+                    assertThat(obj.insertAll(batch), is(model.addAll(batch)));
+                    break;
+                default:
+                    assertThat(obj.insert(o), is(model.add(o)));
+                    break;
+                }
+            }
+
+            List<String> expected = new ArrayList<>(model);
+            assertThat(obj.size(), is(model.size()));
+            assertThat(obj.toArray(), is(model.toArray()));
+            for (int i = 0; i < expected.size(); i++) {
+                assertThat(obj.get(i), is(expected.get(i)));
+                assertThat(obj.indexOf(expected.get(i)), is(i));
+            }
+            for (int i = 0; i < 2000; i++) {
+                String o = randomPath(random) + "b";
+                assertThat(obj.rank(o), is(model.headSet(o).size()));
+                assertThat(obj.contains(o), is(model.contains(o)));
+            }
+            assertThat(obj.first(), is(model.first()));
+            assertThat(obj.last(), is(model.last()));
+        }
+
+        @Test
+        public void isNull() throws Exception {
+            FrontCodedList obj = new FrontCodedList();
+
+            try {
+                obj.insert(null);
+                fail();
+            } catch (NullPointerException e) {
+                // nop
+            }
+            assertThat(obj.contains(null), is(false));
+        }
+    }
+
+    public static class MethodRetainAll {
+
+        @Test
+        public void test() throws Exception {
+            List<String> values = new ArrayList<>();
+            for (int i = 0; i < 3000; i++) {
+                values.add("/usr/lib/" + i);
+            }
+            FrontCodedList obj = new FrontCodedList(values);
+
+            assertThat(obj.retainAll(Arrays.asList("/usr/lib/10", "/usr/lib/2999", "/usr")), is(true));
+            assertThat(obj, contains("/usr/lib/10", "/usr/lib/2999"));
+            assertThat(obj.removeAll(Arrays.asList("/usr/lib/10", 1)), is(true));
+            assertThat(obj.quantiles(0.5), contains("/usr/lib/2999"));
+            obj.clear();
+            assertThat(obj, empty());
+        }
+    }
+}
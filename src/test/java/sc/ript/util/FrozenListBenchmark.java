@@ -0,0 +1,76 @@
+package sc.ript.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Reports {@code get} and {@code contains} on a {@link TreeList} and on its {@link TreeList#freeze() frozen} copy, with
+ * {@link Arrays#binarySearch(Object[], Object)} on the same sorted array as the baseline for the search layout.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=sc.ript.util.FrozenListBenchmark
+ * </pre>
+ */
+public class FrozenListBenchmark {
+
+    private static final int[] SIZES = { 1000, 100000, 1000000, 4000000 };
+
+    private static final int ROUNDS = 3;
+
+    private static final int LOOKUPS = 2000000;
+
+    public static void main(String[] args) throws Exception {
+        for (int size : SIZES) {
+            Random random = new Random(size);
+            TreeList<Long> list = new TreeList<>();
+            for (int i = 0; i < size; i++) {
+                list.insert(random.nextLong());
+            }
+            FrozenList<Long> frozen = list.freeze();
+            Object[] sorted = list.toArray();
+            int n = list.size();
+            Long[] keys = new Long[LOOKUPS];
+            int[] indexes = new int[LOOKUPS];
+            for (int i = 0; i < LOOKUPS; i++) {
+                indexes[i] = random.nextInt(n);
+                keys[i] = (Long) sorted[random.nextInt(n)] + (i & 1);
+            }
+
+            for (int r = 0; r < ROUNDS; r++) {
+                long sum = 0;
+                long start = System.nanoTime();
+                for (int index : indexes) {
+                    sum += list.get(index);
+                }
+                long treeGot = System.nanoTime();
+                for (int index : indexes) {
+                    sum += frozen.get(index);
+                }
+                long frozenGot = System.nanoTime();
+                for (Long key : keys) {
+                    if (list.contains(key)) {
+                        sum++;
+                    }
+                }
+                long treeFound = System.nanoTime();
+                for (Long key : keys) {
+                    if (frozen.contains(key)) {
+                        sum++;
+                    }
+                }
+                long frozenFound = System.nanoTime();
+                for (Long key : keys) {
+                    if (0 <= Arrays.binarySearch(sorted, key)) {
+                        sum++;
+                    }
+                }
+                long searched = System.nanoTime();
+                System.out.printf("%8d: get %5.1f / %5.1f ns  contains %6.1f / %6.1f / %6.1f ns"
+                        + "  (TreeList / FrozenList / binarySearch)  (%d)%n", n, (double) (treeGot - start) / LOOKUPS,
+                        (double) (frozenGot - treeGot) / LOOKUPS, (double) (treeFound - frozenGot) / LOOKUPS,
+                        (double) (frozenFound - treeFound) / LOOKUPS, (double) (searched - frozenFound) / LOOKUPS,
+                        sum);
+            }
+        }
+    }
+}
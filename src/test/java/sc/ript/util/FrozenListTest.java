@@ -0,0 +1,198 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class FrozenListTest {
+
+    public static class Constructor {
+
+        @Test
+        public void empty() throws Exception {
+            FrozenList<String> obj = new TreeList<String>().freeze();
+
+            assertThat(obj, is(emptyIterable()));
+            assertThat(obj.size(), is(0));
+            assertThat(obj.contains("a"), is(false));
+            assertThat(obj.indexOf("a"), is(-1));
+            assertThat(obj.rank("a"), is(0));
+            try {
+                obj.first();
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+            try {
+                obj.quantile(0.5);
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+        }
+
+        @Test
+        public void snapshot() throws Exception {
+            TreeList<String> list = new TreeList<>(Arrays.asList("b", "a", "c"));
+            FrozenList<String> obj = list.freeze();
+            list.insert("d");
+            list.remove("a");
+
+            assertThat(obj, contains("a", "b", "c"));
+            assertThat(list, contains("b", "c", "d"));
+        }
+
+        @Test
+        public void comparator() throws Exception {
+            Comparator<String> c = Collections.reverseOrder();
+            TreeList<String> list = new TreeList<>(c);
+            list.insertAll(Arrays.asList("a", "b", "c"));
+            FrozenList<String> obj = list.freeze();
+
+            assertThat(obj.comparator(), is(sameInstance((Object) c)));
+            assertThat(obj, contains("c", "b", "a"));
+            assertThat(obj.indexOf("a"), is(2));
+            assertThat(obj.rank("bb"), is(1));
+        }
+    }
+
+    public static class MethodIndexOf {
+
+        @Test
+        public void test() throws Exception {
+            Random random = new Random();
+            for (int n = 0; n < 100; n++) {
+                TreeSet<Integer> model = new TreeSet<>();
+                int size = random.nextInt(300);
+                for (int i = 0; i < size; i++) {
+                    model.add(random.nextInt(1000) * 2);
+                }
+                FrozenList<Integer> obj = new TreeList<>(model).freeze();
+                List<Integer> expected = new ArrayList<>(model);
+
+                assertThat(obj.size(), is(expected.size()));
+                for (int i = 0; i < expected.size(); i++) {
+                    assertThat(obj.get(i), is(expected.get(i)));
+                    assertThat(obj.indexOf(expected.get(i)), is(i));
+                    assertThat(obj.contains(expected.get(i)), is(true));
+                }
+                for (int o = -1; o < 2002; o++) {
+                    assertThat(obj.rank(o), is(model.headSet(o).size()));
+                    if ((o % 2) != 0) {
+                        assertThat(obj.indexOf(o), is(-1));
+                        assertThat(obj.contains(o), is(false));
+                    }
+                }
+            }
+        }
+
+        @Test
+        public void isNull() throws Exception {
+            FrozenList<String> obj = new TreeList<>(Arrays.asList("a")).freeze();
+
+            assertThat(obj.indexOf(null), is(-1));
+            assertThat(obj.contains(null), is(false));
+        }
+    }
+
+    public static class MethodGet {
+
+        @Test
+        public void test() throws Exception {
+            FrozenList<String> obj = new TreeList<>(Arrays.asList("b", "a", "c")).freeze();
+
+            assertThat(obj.get(0), is("a"));
+            assertThat(obj.get(2), is("c"));
+            assertThat(obj.first(), is("a"));
+            assertThat(obj.last(), is("c"));
+            assertThat(obj.quantiles(0, 0.5, 1), contains("a", "b", "c"));
+            try {
+                obj.get(3);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+                // nop
+            }
+            try {
+                obj.get(-1);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+                // nop
+            }
+        }
+    }
+
+    public static class MethodToArray {
+
+        @Test
+        public void test() throws Exception {
+            FrozenList<String> obj = new TreeList<>(Arrays.asList("b", "a")).freeze();
+            Object[] ary = obj.toArray();
+            ary[0] = "z";
+
+            assertThat(obj, contains("a", "b"));
+            assertThat(obj.toArray(new String[0]), is(new String[] { "a", "b" }));
+        }
+    }
+
+    public static class Mutators {
+
+        @Test
+        public void test() throws Exception {
+            FrozenList<String> obj = new TreeList<>(Arrays.asList("a", "b")).freeze();
+
+            try {
+                obj.insert("c");
+                fail();
+            } catch (UnsupportedOperationException e) {
+                // nop
+            }
+            try {
+                obj.insertAll(Arrays.asList("c"));
+                fail();
+            } catch (UnsupportedOperationException e) {
+                // nop
+            }
+            try {
+                obj.remove("a");
+                fail();
+            } catch (UnsupportedOperationException e) {
+                // nop
+            }
+            try {
+                obj.remove(0);
+                fail();
+            } catch (UnsupportedOperationException e) {
+                // nop
+            }
+            try {
+                obj.clear();
+                fail();
+            } catch (UnsupportedOperationException e) {
+                // nop
+            }
+            try {
+                Iterator<String> itr = obj.iterator();
+                itr.next();
+                itr.remove();
+                fail();
+            } catch (UnsupportedOperationException e) {
+                // nop
+            }
+            assertThat(obj, contains("a", "b"));
+        }
+    }
+}
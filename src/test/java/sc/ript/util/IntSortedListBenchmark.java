@@ -0,0 +1,102 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reports the retained heap per element and the cost of {@code get}, {@code indexOf} and a bulk {@code insertAll} and
+ * {@code removeAll} for an {@link IntSortedList} and a {@link TreeList} of the same ids, taking 90% and 5% of a range.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=sc.ript.util.IntSortedListBenchmark
+ * </pre>
+ */
+public class IntSortedListBenchmark {
+
+    private static final int SIZE = 1000000;
+
+    private static final double[] DENSITIES = { 0.9, 0.05 };
+
+    private static final int LOOKUPS = 1000000;
+
+    /**
+     * Fewer lookups on the TreeList, whose positional reads walk its sorted view.
+     */
+    private static final int TREE_LOOKUPS = 1000;
+
+    private static final int BATCH = 100000;
+
+    public static void main(String[] args) throws Exception {
+        for (double density : DENSITIES) {
+            Random random = new Random(0);
+            int span = (int) (SIZE / density);
+            List<Integer> values = new ArrayList<>();
+            for (int o = 0; values.size() < SIZE; o++) {
+                if (random.nextDouble() < density) {
+                    values.add(o);
+                }
+            }
+
+            // settle the garbage of building the values first
+            heap();
+            long before = heap();
+            IntSortedList bitmap = new IntSortedList();
+            bitmap.insertAll(values);
+            long bitmapBytes = heap() - before;
+            before = heap();
+            TreeList<Integer> tree = new TreeList<>();
+            tree.insertAll(values);
+            tree.get(0);
+            long treeBytes = heap() - before;
+            System.out.printf("density %.2f: %5.2f / %5.2f bytes per element  (IntSortedList / TreeList)%n", density,
+                    (double) bitmapBytes / values.size(), (double) treeBytes / values.size());
+
+            long sum = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                sum += bitmap.get(random.nextInt(SIZE));
+            }
+            long bitmapGot = System.nanoTime();
+            for (int i = 0; i < TREE_LOOKUPS; i++) {
+                sum += tree.get(random.nextInt(SIZE));
+            }
+            long treeGot = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                sum += bitmap.indexOf(random.nextInt(span));
+            }
+            long bitmapFound = System.nanoTime();
+            for (int i = 0; i < TREE_LOOKUPS; i++) {
+                sum += tree.indexOf(random.nextInt(span));
+            }
+            long treeFound = System.nanoTime();
+
+            List<Integer> batch = new ArrayList<>();
+            for (int i = 0; i < BATCH; i++) {
+                batch.add(span + random.nextInt(span / 10));
+            }
+            bitmap.insertAll(batch);
+            bitmap.removeAll(batch);
+            long bitmapBulk = System.nanoTime();
+            tree.insertAll(batch);
+            tree.removeAll(batch);
+            long treeBulk = System.nanoTime();
+            System.out.printf("  get %5.0f / %7.0f ns  indexOf %5.0f / %7.0f ns  insertAll+removeAll %5.1f / %5.1f ms"
+                    + "  (%d)%n", (double) (bitmapGot - start) / LOOKUPS, (double) (treeGot - bitmapGot) / TREE_LOOKUPS,
+                    (double) (bitmapFound - treeGot) / LOOKUPS, (double) (treeFound - bitmapFound) / TREE_LOOKUPS,
+                    (bitmapBulk - treeFound) / 1e6, (treeBulk - bitmapBulk) / 1e6, sum);
+            if (values.size() == 0) {
+                System.out.println();
+            }
+        }
+    }
+
+    private static long heap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
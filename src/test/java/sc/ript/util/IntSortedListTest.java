@@ -0,0 +1,154 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class IntSortedListTest {
+
+    private static List<Integer> range(int from, int to, int step) {
+        List<Integer> values = new ArrayList<>();
+        for (int o = from; o < to; o += step) {
+            values.add(o);
+        }
+        return values;
+    }
+
+    public static class Constructor {
+
+        @Test
+        public void isEmpty() throws Exception {
+            IntSortedList obj = new IntSortedList();
+
+            assertThat(obj, empty());
+            assertThat(obj.containsInt(0), is(false));
+            assertThat(obj.rank(0), is(0));
+            assertThat(obj.containerBytes(), is(0));
+            try {
+                obj.first();
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+        }
+
+        @Test
+        public void values() throws Exception {
+            IntSortedList obj = new IntSortedList(5, Integer.MAX_VALUE, -3, 5, Integer.MIN_VALUE, 65536);
+
+            assertThat(obj, contains(Integer.MIN_VALUE, -3, 5, 65536, Integer.MAX_VALUE));
+            assertThat(obj.rank(Integer.MAX_VALUE), is(4));
+            assertThat(obj.rank(6), is(3));
+            assertThat(obj.indexOfInt(Integer.MAX_VALUE), is(4));
+            assertThat(obj.indexOfInt(Integer.MIN_VALUE), is(0));
+            assertThat(obj.indexOfInt(4), is(-1));
+            assertThat(obj.contains(5L), is(false));
+            assertThat(obj.contains(5), is(true));
+            assertThat(obj.first(), is(Integer.MIN_VALUE));
+            assertThat(obj.last(), is(Integer.MAX_VALUE));
+        }
+    }
+
+    public static class MethodInsertAll {
+
+        @Test
+        public void containers() throws Exception {
+            IntSortedList obj = new IntSortedList();
+
+            // one run per container
+            assertThat(obj.insertAll(range(-70000, 70000, 1)), is(true));
+            assertThat(obj.size(), is(140000));
+            assertThat(obj.containerBytes(), lessThan(100));
+            assertThat(obj.getInt(70000), is(0));
+            assertThat(obj.indexOfInt(-1), is(69999));
+
+            // every other value: too many runs, so two bitmaps and two arrays of 2232 values
+            assertThat(obj.removeAll(range(-70000, 70000, 2)), is(true));
+            assertThat(obj.size(), is(70000));
+            assertThat(obj.containerBytes(), is((2 * 8192) + (2 * 2232 * 2)));
+            assertThat(obj.getInt(35000), is(-70000 + 70001));
+            assertThat(obj.toIntArray()[0], is(-69999));
+
+            // sparse: arrays
+            assertThat(obj.removeAll(range(-70000, 70000, 1)), is(true));
+            assertThat(obj.insertAll(range(0, 65536, 64)), is(true));
+            assertThat(obj.containerBytes(), is(1024 * 2));
+            assertThat(obj.insertAll(range(0, 65536, 64)), is(false));
+            assertThat(obj.removeAll(Arrays.<Object> asList("a", 1L)), is(false));
+        }
+
+        @Test
+        public void test() throws Exception {
+            Random random = new Random();
+            IntSortedList obj = new IntSortedList();
+            TreeSet<Integer> model = new TreeSet<>();
+            for (int i = 0; i < 4000; i++) {
+                int o = random.nextInt(4 * 65536) - (2 * 65536);
+                List<Integer> batch = range(o, o + random.nextInt(10000), 1 + random.nextInt(3));
+                switch (random.nextInt(8)) {
+                case 0:
+                    assertThat(obj.removeAll(batch), is(model.removeAll(batch)));
+                    break;
+                case 1:
+                    assertThat(obj.insertAll(batch), is(model.addAll(batch)));
+                    break;
+                case 2:
+                case 3:
+                    assertThat(obj.removeInt(o), is(model.remove(o)));
+                    break;
+                case 4:
+                    if (!model.isEmpty()) {
+                        int index = random.nextInt(model.size());
+                        assertThat(model.remove(obj.remove(index)), is(true));
+                    }
+                    break;
+                default:
+                    assertThat(obj.insertInt(o), is(model.add(o)));
+                    break;
+                }
+                if (!model.isEmpty()) {
+                    int index = random.nextInt(model.size());
+                    Integer value = obj.getInt(index);
+                    assertThat(model.headSet(value).size(), is(index));
+                    assertThat(obj.indexOfInt(value), is(index));
+                    assertThat(obj.rank(o), is(model.headSet(o).size()));
+                }
+                if ((i % 500) == 0) {
+                    assertThat(obj.toArray(), is(model.toArray()));
+                }
+            }
+
+            assertThat(obj.size(), is(model.size()));
+            assertThat(obj.toArray(), is(model.toArray()));
+            for (int o = -2 * 65536; o < (2 * 65536 + 10000); o += 7) {
+                assertThat(obj.containsInt(o), is(model.contains(o)));
+            }
+        }
+    }
+
+    public static class MethodRetainAll {
+
+        @Test
+        public void test() throws Exception {
+            IntSortedList obj = new IntSortedList(1, 2, 3, 4);
+
+            assertThat(obj.retainAll(Arrays.asList(1, 3, 5)), is(true));
+            assertThat(obj.retainAll(Arrays.asList(1, 3)), is(false));
+            assertThat(obj, contains(1, 3));
+            assertThat(obj.quantiles(0, 1), contains(1, 3));
+            obj.clear();
+            assertThat(obj, empty());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package sc.ript.util;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+
+/**
+ * Inserts and looks up strings ordered by a number parsed out of them, once in a {@link TreeList} with a comparator
+ * that parses both sides of every comparison and once in a {@link KeyedTreeList} that parses each element once.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=sc.ript.util.KeyedTreeListBenchmark
+ * </pre>
+ */
+public class KeyedTreeListBenchmark {
+
+    private static final int SIZE = 200000;
+
+    private static final int ROUNDS = 5;
+
+    private static final String PREFIX = "item-";
+
+    private static final ToLongFunction<String> NUMBER = new ToLongFunction<String>() {
+
+        @Override
+        public long applyAsLong(String o) {
+            return Long.parseLong(o.substring(PREFIX.length()));
+        }
+    };
+
+    private static final Comparator<String> BY_NUMBER = new Comparator<String>() {
+
+        @Override
+        public int compare(String o1, String o2) {
+            return Long.compare(NUMBER.applyAsLong(o1), NUMBER.applyAsLong(o2));
+        }
+    };
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        String[] values = new String[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            values[i] = PREFIX + random.nextInt(Integer.MAX_VALUE);
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            run("TreeList", new TreeList<>(BY_NUMBER), values);
+            run("KeyedTreeList", new KeyedTreeList<>(NUMBER, BY_NUMBER), values);
+        }
+    }
+
+    private static void run(String name, SortedList<String> list, String[] values) {
+        long start = System.nanoTime();
+        for (String o : values) {
+            list.insert(o);
+        }
+        long inserted = System.nanoTime();
+        int found = 0;
+        for (String o : values) {
+            if (list.contains(o)) {
+                found++;
+            }
+        }
+        long looked = System.nanoTime();
+        System.out.printf("%-14s insert %7.1f ms  contains %7.1f ms  (%d)%n", name, (inserted - start) / 1e6,
+                (looked - inserted) / 1e6, found);
+    }
+}
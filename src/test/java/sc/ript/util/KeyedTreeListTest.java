@@ -0,0 +1,140 @@
+package sc.ript.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.ToLongFunction;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class KeyedTreeListTest {
+
+    static final ToLongFunction<String> LENGTH = new ToLongFunction<String>() {
+
+        @Override
+        public long applyAsLong(String o) {
+            return o.length();
+        }
+    };
+
+    static final Comparator<String> LENGTH_THEN_LEXICAL = new Comparator<String>() {
+
+        @Override
+        public int compare(String o1, String o2) {
+            int cmp = o1.length() - o2.length();
+            if (cmp != 0) {
+                return cmp;
+            }
+            return o1.compareTo(o2);
+        }
+    };
+
+    public static class Constructor {
+
+        @Test
+        public void isEmpty() throws Exception {
+            KeyedTreeList<String> obj = new KeyedTreeList<>(LENGTH);
+
+            assertThat(obj, empty());
+            assertThat(obj.contains("a"), is(false));
+            try {
+                obj.first();
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+        }
+
+        @Test
+        public void isNull() throws Exception {
+            try {
+                new KeyedTreeList<String>(null);
+                fail();
+            } catch (NullPointerException e) {
+                // nop
+            }
+        }
+    }
+
+    public static class MethodInsert {
+
+        @Test
+        public void test() throws Exception {
+            KeyedTreeList<String> obj = new KeyedTreeList<>(LENGTH);
+
+            assertThat(obj.insert("hoge"), is(true));
+            assertThat(obj.insert("foo"), is(true));
+            assertThat(obj.insert("hoge"), is(false));
+            assertThat(obj.insertAll(Arrays.asList("hoge", "foo", "bar", "a", "bar")), is(true));
+            assertThat(obj.insertAll(Arrays.asList("a", "foo")), is(false));
+
+            assertThat(obj, contains("a", "bar", "foo", "hoge"));
+            assertThat(obj.keyAt(0), is(1L));
+            assertThat(obj.keyAt(3), is(4L));
+            assertThat(obj.indexOf("foo"), is(2));
+            assertThat(obj.indexOf("fooo"), is(-1));
+        }
+
+        @Test
+        public void then() throws Exception {
+            KeyedTreeList<String> obj = new KeyedTreeList<>(LENGTH, Collections.<String> reverseOrder());
+            obj.insertAll(Arrays.asList("b", "aa", "a", "c", "bb"));
+
+            assertThat(obj, contains("c", "b", "a", "bb", "aa"));
+            assertThat(obj.remove("b"), is(true));
+            assertThat(obj.remove("b"), is(false));
+            assertThat(obj, contains("c", "a", "bb", "aa"));
+        }
+
+        @Test
+        public void random() throws Exception {
+            Random random = new Random();
+            KeyedTreeList<String> obj = new KeyedTreeList<>(LENGTH);
+            TreeSet<String> model = new TreeSet<>(LENGTH_THEN_LEXICAL);
+            for (int i = 0; i < 2000; i++) {
+                String o = Integer.toString(random.nextInt(5000), 36);
+                switch (random.nextInt(4)) {
+                case 0:
+                    assertThat(obj.remove(o), is(model.remove(o)));
+                    break;
+                case 1:
+                    List<String> batch = Arrays.asList(o, o + "z", "0" + o);
+                    assertThat(obj.insertAll(batch), is(model.addAll(batch)));
+                    break;
+                default:
+                    assertThat(obj.insert(o), is(model.add(o)));
+                    break;
+                }
+            }
+
+            assertThat(obj.toArray(), is(model.toArray()));
+            String o = model.first();
+            assertThat(obj.comparator().compare(o, o + "z"), lessThan(0));
+            assertThat(obj.comparator().compare("b", "a"), greaterThan(0));
+        }
+    }
+
+    public static class MethodRetainAll {
+
+        @Test
+        public void test() throws Exception {
+            KeyedTreeList<String> obj = new KeyedTreeList<>(LENGTH);
+            obj.insertAll(Arrays.asList("ccc", "a", "bb", "dd"));
+
+            assertThat(obj.retainAll(Arrays.asList("dd", "a", "x")), is(true));
+            assertThat(obj, contains("a", "dd"));
+            assertThat(obj.keyAt(1), is(2L));
+            assertThat(obj.quantile(1), is("dd"));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs 1, 2, 4 and 8 threads against a {@link TreeList} and a {@link LeafLockedList} of the same size and reports the
+ * throughput. Every thread owns a slice of the keys; with an overlap of 0 it only touches its own slice, with an
+ * overlap of 1 it picks keys from the whole range. Half of the operations are inserts and removals, the rest are
+ * lookups by key and by index.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=sc.ript.util.LeafLockedListBenchmark
+ * </pre>
+ */
+public class LeafLockedListBenchmark {
+
+    private static final int[] THREADS = { 1, 2, 4, 8 };
+
+    private static final double[] OVERLAPS = { 0, 0.5, 1 };
+
+    private static final int SIZE = 100000;
+
+    private static final int KEYS = 1 << 24;
+
+    private static final int OPS = 20000;
+
+    public static void main(String[] args) throws Exception {
+        int slices = THREADS[THREADS.length - 1];
+        for (double overlap : OVERLAPS) {
+            for (int threads : THREADS) {
+                TreeList<Integer> tree = new TreeList<>();
+                LeafLockedList<Integer> leaves = new LeafLockedList<>();
+                List<Integer> values = new ArrayList<>();
+                Random random = new Random(0);
+                for (int i = 0; i < SIZE; i++) {
+                    values.add(random.nextInt(KEYS));
+                }
+                tree.insertAll(values);
+                leaves.insertAll(values);
+
+                double treeRate = run(tree, threads, slices, overlap);
+                double leafRate = run(leaves, threads, slices, overlap);
+                System.out.printf("overlap %.1f, %d threads: %9.0f / %9.0f ops/s  (TreeList / LeafLockedList)%n",
+                        overlap, threads, treeRate, leafRate);
+            }
+        }
+    }
+
+    private static double run(final SortedList<Integer> list, int threads, final int slices, final double overlap)
+            throws InterruptedException {
+        final int ops = OPS / threads;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int slice = KEYS / slices;
+            final int base = t * slice;
+            final long seed = t;
+            workers.add(new Thread() {
+
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    long sum = 0;
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < ops; i++) {
+                        int key;
+                        if (random.nextDouble() < overlap) {
+                            key = random.nextInt(KEYS);
+                        } else {
+                            key = base + random.nextInt(slice);
+                        }
+                        switch (random.nextInt(4)) {
+                        case 0:
+                            list.insert(key);
+                            break;
+                        case 1:
+                            list.remove(Integer.valueOf(key));
+                            break;
+                        case 2:
+                            if (list.contains(key)) {
+                                sum++;
+                            }
+                            break;
+                        default:
+                            sum += list.get(random.nextInt(SIZE / 2));
+                            break;
+                        }
+                    }
+                    if (sum == 1) {
+                        System.out.println();
+                    }
+                }
+            });
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long time = System.nanoTime() - begin;
+        return (double) ops * threads * 1e9 / time;
+    }
+}
@@ -0,0 +1,291 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class LeafLockedListTest {
+
+    public static class Constructor {
+
+        @Test
+        public void isEmpty() throws Exception {
+            LeafLockedList<String> obj = new LeafLockedList<>();
+
+            assertThat(obj, empty());
+            assertThat(obj.indexOf("a"), is(-1));
+            try {
+                obj.first();
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+            try {
+                obj.get(0);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+                // nop
+            }
+        }
+
+        @Test
+        public void comparator() throws Exception {
+            LeafLockedList<String> obj = new LeafLockedList<>(Collections.<String> reverseOrder());
+            obj.insertAll(Arrays.asList("a", "c", "b"));
+
+            assertThat(obj, contains("c", "b", "a"));
+            assertThat(obj.first(), is("c"));
+            assertThat(obj.last(), is("a"));
+        }
+    }
+
+    public static class MethodInsert {
+
+        @Test
+        public void test() throws Exception {
+            Random random = new Random();
+            LeafLockedList<Integer> obj = new LeafLockedList<>();
+            TreeSet<Integer> model = new TreeSet<>();
+            // enough keys to split leaves and drop them again
+            int range = LeafLockedList.LEAF_SIZE * 16;
+            for (int i = 0; i < 40000; i++) {
+                int o = random.nextInt(range);
+                switch (random.nextInt(6)) {
+                case 0:
+                case 1:
+                    assertThat(obj.remove(Integer.valueOf(o)), is(model.remove(o)));
+                    break;
+                case 2:
+                    if (!model.isEmpty()) {
+                        int index = random.nextInt(model.size());
+                        assertThat(model.remove(obj.remove(index)), is(true));
+                    }
+                    break;
+                case 3:
+                    List<Integer> batch = Arrays.asList(o, o + 1, o + 2);
+                    assertThat(obj.removeAll(batch), is(model.removeAll(batch)));
+                    break;
+                default:
+                    assertThat(obj.insert(o), is(model.add(o)));
+                    break;
+                }
+                if ((i % 1000) == 0) {
+                    assertThat(obj.toArray(), is(model.toArray()));
+                }
+            }
+
+            List<Integer> expected = new ArrayList<>(model);
+            assertThat(obj.size(), is(model.size()));
+            assertThat(obj.toArray(), is(model.toArray()));
+            for (int i = 0; i < expected.size(); i++) {
+                assertThat(obj.get(i), is(expected.get(i)));
+                assertThat(obj.indexOf(expected.get(i)), is(i));
+            }
+            for (int o = 0; o < range + 2; o++) {
+                assertThat(obj.contains(o), is(model.contains(o)));
+            }
+        }
+
+        @Test
+        public void groups() throws Exception {
+            LeafLockedList<Integer> obj = new LeafLockedList<>();
+            // inserted from both ends, so that leaves split into several groups
+            int n = LeafLockedList.LEAF_SIZE * LeafLockedList.GROUP * 3;
+            for (int i = 0; i < (n / 2); i++) {
+                obj.insert(i);
+                obj.insert(n - 1 - i);
+            }
+
+            assertThat(obj.size(), is(n));
+            for (int i = 0; i < n; i += 97) {
+                assertThat(obj.get(i), is(i));
+                assertThat(obj.indexOf(i), is(i));
+            }
+            assertThat(obj.get(n - 1), is(n - 1));
+            assertThat(obj.quantiles(0.5, 1), contains((n / 2) - 1, n - 1));
+            try {
+                obj.get(n);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+                // nop
+            }
+            assertThat(obj.remove(n / 2), is(n / 2));
+            assertThat(obj.get(n / 2), is((n / 2) + 1));
+            assertThat(obj.indexOf(n / 2), is(-1));
+        }
+
+        @Test
+        public void concurrent() throws Exception {
+            final int writers = 4;
+            final int perWriter = LeafLockedList.LEAF_SIZE * 8;
+            final LeafLockedList<Integer> obj = new LeafLockedList<>();
+            final Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+            final AtomicBoolean done = new AtomicBoolean();
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                final int base = w * perWriter;
+                threads.add(new Thread() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            Random random = new Random();
+                            for (int i = 0; i < perWriter; i++) {
+                                obj.insert(base + random.nextInt(perWriter));
+                            }
+                            for (int i = 0; i < perWriter; i++) {
+                                obj.insert(base + i);
+                            }
+                        } catch (Throwable e) {
+                            errors.add(e);
+                        }
+                    }
+                });
+            }
+            Thread reader = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        Random random = new Random();
+                        while (!done.get()) {
+                            // elements are only inserted, so every index below a size seen earlier stays valid
+                            int size = obj.size();
+                            if (0 < size) {
+                                int index = random.nextInt(size);
+                                Integer value = obj.get(index);
+                                assertThat(obj.indexOf(value), greaterThanOrEqualTo(index));
+                                // not empty any more, so quantiles has something to return
+                                List<Integer> qs = obj.quantiles(0, 0.5, 1);
+                                assertThat(qs.get(0), lessThanOrEqualTo(qs.get(1)));
+                                assertThat(qs.get(1), lessThanOrEqualTo(qs.get(2)));
+                            }
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            };
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            reader.start();
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            done.set(true);
+            reader.join();
+
+            assertThat(errors, empty());
+            assertThat(obj.size(), is(writers * perWriter));
+            for (int i = 0; i < (writers * perWriter); i++) {
+                assertThat(obj.get(i), is(i));
+            }
+        }
+    }
+
+    public static class MethodLast {
+
+        @Test
+        public void test() throws Exception {
+            LeafLockedList<Integer> obj = new LeafLockedList<>();
+            try {
+                obj.last();
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+            for (int i = 0; i < (LeafLockedList.LEAF_SIZE * 4); i++) {
+                obj.insert(i);
+            }
+            assertThat(obj.last(), is((LeafLockedList.LEAF_SIZE * 4) - 1));
+            for (int i = LeafLockedList.LEAF_SIZE; i < (LeafLockedList.LEAF_SIZE * 4); i++) {
+                obj.remove(Integer.valueOf(i));
+            }
+            assertThat(obj.last(), is(LeafLockedList.LEAF_SIZE - 1));
+        }
+
+        @Test(timeout = 60000)
+        public void concurrent() throws Exception {
+            // readers of both ends and writers at the end, which used to lock the leaves in opposite orders
+            final LeafLockedList<Integer> obj = new LeafLockedList<>();
+            final Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+            final int range = LeafLockedList.LEAF_SIZE * 4;
+            for (int i = 0; i < range; i++) {
+                obj.insert(i);
+            }
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final boolean reader = (t % 2) == 0;
+                threads.add(new Thread() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            Random random = new Random();
+                            for (int i = 0; i < 20000; i++) {
+                                if (reader) {
+                                    assertThat(obj.first(), lessThanOrEqualTo(obj.last()));
+                                } else {
+                                    int o = range - 1 - random.nextInt(LeafLockedList.LEAF_SIZE);
+                                    if (random.nextBoolean()) {
+                                        obj.insert(o);
+                                    } else {
+                                        obj.remove(Integer.valueOf(o));
+                                    }
+                                }
+                            }
+                        } catch (Throwable e) {
+                            errors.add(e);
+                        }
+                    }
+                });
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertThat(errors, empty());
+        }
+    }
+
+    public static class MethodRetainAll {
+
+        @Test
+        public void test() throws Exception {
+            LeafLockedList<String> obj = new LeafLockedList<>();
+            obj.insertAll(Arrays.asList("a", "b", "c", "d"));
+
+            assertThat(obj.retainAll(Arrays.asList("a", "c", "e")), is(true));
+            assertThat(obj.retainAll(Arrays.asList("a", "c")), is(false));
+            assertThat(obj, contains("a", "c"));
+            obj.clear();
+            assertThat(obj, empty());
+            assertThat(obj.insert("b"), is(true));
+            assertThat(obj, contains("b"));
+        }
+    }
+}
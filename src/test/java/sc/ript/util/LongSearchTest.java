@@ -0,0 +1,84 @@
+package sc.ript.util;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+public class LongSearchTest {
+
+    static void check(SearchFunction search) throws Exception {
+        Random random = new Random();
+        for (int n = 0; n < 300; n++) {
+            long[] ary = new long[random.nextInt(LongSortedList.BLOCK_SIZE + 1)];
+            for (int i = 0; i < ary.length; i++) {
+                ary[i] = random.nextInt(4000) - 2000;
+            }
+            Arrays.sort(ary);
+            int from = random.nextInt(ary.length + 1);
+            int to = from + random.nextInt(ary.length - from + 1);
+            for (int k = 0; k < 50; k++) {
+                long key = random.nextInt(4100) - 2050;
+                assertThat(search.lowerBound(ary, from, to - from, key),
+                        is(LongSortedList.lowerBound(ary, from, to - from, key)));
+            }
+            long[] extremes = { Long.MIN_VALUE, Long.MAX_VALUE };
+            for (long key : extremes) {
+                assertThat(search.lowerBound(ary, from, to - from, key),
+                        is(LongSortedList.lowerBound(ary, from, to - from, key)));
+            }
+        }
+    }
+
+    interface SearchFunction {
+
+        int lowerBound(long[] a, int from, int n, long key) throws Exception;
+    }
+
+    @Test
+    public void classpath() throws Exception {
+        check(new SearchFunction() {
+
+            @Override
+            public int lowerBound(long[] a, int from, int n, long key) {
+                return LongSearch.lowerBound(a, from, n, key);
+            }
+        });
+    }
+
+    /**
+     * Tests the Java 17 layer of the multi-release jar, which a directory on the class path does not select by
+     * itself, by loading it ahead of the base classes.
+     */
+    @Test
+    public void java17() throws Exception {
+        URL layer = LongSearch.class.getResource("/META-INF/versions/17/");
+        assumeThat(layer, notNullValue());
+        URL classes = LongSearch.class.getProtectionDomain().getCodeSource().getLocation();
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { layer, classes },
+                ClassLoader.getSystemClassLoader().getParent())) {
+            Class<?> type = Class.forName(LongSearch.class.getName(), true, loader);
+            Method vectorized = type.getDeclaredMethod("vectorized");
+            vectorized.setAccessible(true);
+            // surefire adds the module on JDK 17 and later
+            assertThat(vectorized.invoke(null), is((Object) true));
+            final Method lowerBound = type.getDeclaredMethod("lowerBound", long[].class, int.class, int.class,
+                    long.class);
+            lowerBound.setAccessible(true);
+            check(new SearchFunction() {
+
+                @Override
+                public int lowerBound(long[] a, int from, int n, long key) throws Exception {
+                    return (Integer) lowerBound.invoke(null, a, from, n, key);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package sc.ript.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the branch-free block search of {@link LongSortedList} and the search it actually uses, vectorized or not,
+ * with {@link Arrays#binarySearch(long[], long)} on one block of random keys, then reports lookups and inserts of
+ * {@link LongSortedList} against a {@link TreeList} of boxed longs.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=sc.ript.util.LongSortedListBenchmark
+ * </pre>
+ *
+ * To take the vector path outside the jar, put the Java 17 layer first and add the module:
+ *
+ * <pre>
+ * java --add-modules jdk.incubator.vector -cp target/classes/META-INF/versions/17:target/classes:target/test-classes \
+ *     sc.ript.util.LongSortedListBenchmark
+ * </pre>
+ */
+public class LongSortedListBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    private static final int SEARCHES = 10000000;
+
+    private static final int SIZE = 1000000;
+
+    private static final int LOOKUPS = 2000000;
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(1);
+        long[] block = new long[LongSortedList.BLOCK_SIZE];
+        for (int i = 0; i < block.length; i++) {
+            block[i] = random.nextLong();
+        }
+        Arrays.sort(block);
+        long[] keys = new long[SEARCHES];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+        }
+        long[] values = new long[SIZE];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextLong();
+        }
+
+        for (int r = 0; r < ROUNDS; r++) {
+            long sum = 0;
+            long start = System.nanoTime();
+            for (long key : keys) {
+                sum += LongSortedList.lowerBound(block, 0, block.length, key);
+            }
+            long branchFree = System.nanoTime();
+            for (long key : keys) {
+                sum += LongSearch.lowerBound(block, 0, block.length, key);
+            }
+            long used = System.nanoTime();
+            for (long key : keys) {
+                sum += Arrays.binarySearch(block, key);
+            }
+            long binary = System.nanoTime();
+            System.out.printf("block of %d: lowerBound %5.1f ns  LongSearch (vectorized: %b) %5.1f ns"
+                    + "  binarySearch %5.1f ns  (%d)%n", block.length, (double) (branchFree - start) / SEARCHES,
+                    LongSearch.vectorized(), (double) (used - branchFree) / SEARCHES,
+                    (double) (binary - used) / SEARCHES, sum);
+
+            LongSortedList list = new LongSortedList();
+            TreeList<Long> tree = new TreeList<>();
+            start = System.nanoTime();
+            for (long o : values) {
+                list.insertLong(o);
+            }
+            long listInserted = System.nanoTime();
+            for (long o : values) {
+                tree.insert(o);
+            }
+            long treeInserted = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                sum += list.containsLong(values[i % SIZE] + (i & 1)) ? 1 : 0;
+            }
+            long listFound = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                sum += tree.contains(values[i % SIZE] + (i & 1)) ? 1 : 0;
+            }
+            long treeFound = System.nanoTime();
+            System.out.printf("%d longs: insert %5.0f / %5.0f ns  contains %5.0f / %5.0f ns  (LongSortedList / TreeList)"
+                    + "  (%d)%n", SIZE, (double) (listInserted - start) / SIZE,
+                    (double) (treeInserted - listInserted) / SIZE, (double) (listFound - treeInserted) / LOOKUPS,
+                    (double) (treeFound - listFound) / LOOKUPS, sum);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class LongSortedListTest {
+
+    public static class MethodLowerBound {
+
+        @Test
+        public void lessThan() throws Exception {
+            long[] values = { Long.MIN_VALUE, Long.MIN_VALUE + 1, -1, 0, 1, Long.MAX_VALUE - 1, Long.MAX_VALUE };
+            for (long x : values) {
+                for (long y : values) {
+                    assertThat(x + " < " + y, LongSortedList.lessThan(x, y), is((x < y) ? 1 : 0));
+                }
+            }
+        }
+
+        @Test
+        public void test() throws Exception {
+            Random random = new Random();
+            for (int n = 0; n < 200; n++) {
+                long[] ary = new long[random.nextInt(100)];
+                for (int i = 0; i < ary.length; i++) {
+                    ary[i] = random.nextInt(200) - 100;
+                }
+                Arrays.sort(ary);
+                int from = random.nextInt(ary.length + 1);
+                int to = from + random.nextInt(ary.length - from + 1);
+                for (long key = -102; key < 102; key++) {
+                    int expected = 0;
+                    for (int i = from; i < to; i++) {
+                        if (ary[i] < key) {
+                            expected++;
+                        }
+                    }
+                    assertThat(LongSortedList.lowerBound(ary, from, to - from, key), is(expected));
+                }
+            }
+        }
+    }
+
+    public static class Constructor {
+
+        @Test
+        public void isEmpty() throws Exception {
+            LongSortedList obj = new LongSortedList();
+
+            assertThat(obj, empty());
+            assertThat(obj.containsLong(0), is(false));
+            assertThat(obj.rank(0), is(0));
+            try {
+                obj.first();
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+        }
+
+        @Test
+        public void values() throws Exception {
+            LongSortedList obj = new LongSortedList(5, Long.MAX_VALUE, -3, 5, Long.MIN_VALUE);
+
+            assertThat(obj, contains(Long.MIN_VALUE, -3L, 5L, Long.MAX_VALUE));
+            assertThat(obj.rank(Long.MAX_VALUE), is(3));
+            assertThat(obj.indexOfLong(Long.MAX_VALUE), is(3));
+            assertThat(obj.indexOfLong(Long.MIN_VALUE), is(0));
+            assertThat(obj.contains(5), is(false));
+            assertThat(obj.contains(5L), is(true));
+        }
+
+        @Test
+        public void growsShortBlock() throws Exception {
+            // the last loaded block is only as long as its values, and grows on insert
+            LongSortedList obj = new LongSortedList(1, 2, 3);
+            for (long o = 4; o < 3000; o++) {
+                assertThat(obj.insertLong(o), is(true));
+            }
+
+            assertThat(obj.size(), is(2999));
+            assertThat(obj.getLong(2998), is(2999L));
+            assertThat(obj.rank(1500), is(1499));
+        }
+    }
+
+    public static class MethodInsertLong {
+
+        @Test
+        public void test() throws Exception {
+            Random random = new Random();
+            LongSortedList obj = new LongSortedList();
+            TreeSet<Long> model = new TreeSet<>();
+            for (int i = 0; i < 20000; i++) {
+                long o = random.nextInt(8000);
+                switch (random.nextInt(8)) {
+                case 0:
+                    assertThat(obj.removeLong(o), is(model.remove(o)));
+                    break;
+                case 1:
+                    if (!model.isEmpty()) {
+                        int index = random.nextInt(model.size());
+                        assertThat(model.remove(obj.remove(index)), is(true));
+                    }
+                    break;
+                case 2:
+                    List<Long> batch = Arrays.asList(o, o + 1, o + 10);
+                    assertThat(obj.insertAll(batch), is(model.addAll(batch)));
+                    break;
+                default:
+                    assertThat(obj.insertLong(o), is(model.add(o)));
+                    break;
+                }
+            }
+
+            List<Long> expected = new ArrayList<>(model);
+            assertThat(obj.size(), is(model.size()));
+            assertThat(obj.toArray(), is(model.toArray()));
+            for (int i = 0; i < expected.size(); i += 3) {
+                assertThat(obj.getLong(i), is(expected.get(i)));
+                assertThat(obj.indexOfLong(expected.get(i)), is(i));
+            }
+            for (long o = -1; o < 8020; o += 7) {
+                assertThat(obj.rank(o), is(model.headSet(o).size()));
+                assertThat(obj.containsLong(o), is(model.contains(o)));
+            }
+            assertThat(obj.first(), is(model.first()));
+            assertThat(obj.last(), is(model.last()));
+            assertThat(obj.quantile(0.5), is(expected.get((int) Math.ceil(0.5 * expected.size()) - 1)));
+        }
+    }
+
+    public static class MethodRetainAll {
+
+        @Test
+        public void test() throws Exception {
+            LongSortedList obj = new LongSortedList();
+            for (long i = 0; i < 3000; i++) {
+                obj.insertLong(i * 2);
+            }
+
+            assertThat(obj.retainAll(Arrays.asList(10L, 4000L, 5L)), is(true));
+            assertThat(obj, contains(10L, 4000L));
+            obj.insertLong(7);
+            assertThat(obj.toLongArray(), is(new long[] { 7, 10, 4000 }));
+            obj.clear();
+            assertThat(obj, empty());
+            assertThat(obj.insertLong(1), is(true));
+        }
+    }
+}
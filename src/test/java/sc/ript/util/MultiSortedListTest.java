@@ -0,0 +1,202 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class MultiSortedListTest {
+
+    static final class Item {
+
+        final int id;
+
+        final int score;
+
+        Item(int id, int score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        @Override
+        public String toString() {
+            return id + ":" + score;
+        }
+    }
+
+    static final Comparator<Item> BY_ID = new Comparator<Item>() {
+
+        @Override
+        public int compare(Item o1, Item o2) {
+            return Integer.compare(o1.id, o2.id);
+        }
+    };
+
+    static final Comparator<Item> BY_SCORE = new Comparator<Item>() {
+
+        @Override
+        public int compare(Item o1, Item o2) {
+            return Integer.compare(o1.score, o2.score);
+        }
+    };
+
+    static final Comparator<Item> BY_SCORE_DESC = Collections.reverseOrder(BY_SCORE);
+
+    static void check(MultiSortedList<Item> obj, TreeSet<Item> model) {
+        List<Item> byScore = new ArrayList<>(model);
+        Collections.sort(byScore, BY_SCORE);
+        List<Item> byScoreDesc = new ArrayList<>(model);
+        Collections.sort(byScoreDesc, BY_SCORE_DESC);
+
+        assertThat(obj.size(), is(model.size()));
+        assertThat(obj.index(0).toArray(), is(model.toArray()));
+        assertThat(obj.index(1).toArray(), is(byScore.toArray()));
+        assertThat(obj.index(2).toArray(), is(byScoreDesc.toArray()));
+        for (int i = 0; i < byScore.size(); i++) {
+            Item o = byScore.get(i);
+            assertThat(obj.index(1).get(i), sameInstance(o));
+            assertThat(obj.index(1).indexOf(o), is(i));
+            assertThat(obj.index(2).get(byScore.size() - 1 - i).score, is(o.score));
+        }
+    }
+
+    public static class Constructor {
+
+        @Test
+        public void test() throws Exception {
+            MultiSortedList<Item> obj = new MultiSortedList<>(BY_ID, BY_SCORE);
+
+            assertThat(obj.indexCount(), is(2));
+            assertThat(obj.size(), is(0));
+            assertThat(obj.index(0).comparator(), sameInstance((Comparator<? super Item>) BY_ID));
+            // ties in score are broken by id, as in the index itself
+            Comparator<? super Item> c = obj.index(1).comparator();
+            assertThat(c.compare(new Item(1, 5), new Item(2, 3)), greaterThan(0));
+            assertThat(c.compare(new Item(1, 5), new Item(2, 5)), lessThan(0));
+            assertThat(c.compare(new Item(2, 5), new Item(2, 5)), is(0));
+        }
+
+        @Test
+        public void natural() throws Exception {
+            MultiSortedList<Integer> obj = new MultiSortedList<>(null, Collections.<Integer> reverseOrder());
+            obj.insertAll(Arrays.asList(3, 1, 2, 3));
+
+            assertThat(obj.index(0), contains(1, 2, 3));
+            assertThat(obj.index(1), contains(3, 2, 1));
+        }
+    }
+
+    public static class MethodInsert {
+
+        @Test
+        public void test() throws Exception {
+            MultiSortedList<Item> obj = new MultiSortedList<>(BY_ID, BY_SCORE, BY_SCORE_DESC);
+            Item a = new Item(1, 50);
+            Item b = new Item(2, 10);
+            Item c = new Item(3, 50);
+
+            assertThat(obj.insert(a), is(true));
+            assertThat(obj.index(1).insert(b), is(true));
+            assertThat(obj.index(2).insert(c), is(true));
+            assertThat(obj.insert(new Item(2, 99)), is(false));
+
+            assertThat(obj.index(0), contains(a, b, c));
+            assertThat(obj.index(1), contains(b, a, c));
+            assertThat(obj.index(2), contains(a, c, b));
+            assertThat(obj.index(1).first(), sameInstance(b));
+            assertThat(obj.index(2).quantile(0.5), sameInstance(c));
+        }
+
+        @Test
+        public void random() throws Exception {
+            Random random = new Random();
+            MultiSortedList<Item> obj = new MultiSortedList<>(BY_ID, BY_SCORE, BY_SCORE_DESC);
+            TreeSet<Item> model = new TreeSet<>(BY_ID);
+            for (int i = 0; i < 1000; i++) {
+                Item o = new Item(random.nextInt(300), random.nextInt(50));
+                switch (random.nextInt(6)) {
+                case 0:
+                    assertThat(obj.remove(o), is(model.remove(o)));
+                    break;
+                case 1:
+                    if (!model.isEmpty()) {
+                        int index = random.nextInt(model.size());
+                        Item removed = obj.index(1).remove(index);
+                        assertThat(model.remove(removed), is(true));
+                    }
+                    break;
+                case 2:
+                    List<Item> batch = Arrays.asList(o, new Item(o.id + 1, o.score), new Item(o.id + 2, 0));
+                    assertThat(obj.index(random.nextInt(3)).insertAll(batch), is(model.addAll(batch)));
+                    break;
+                default:
+                    assertThat(obj.insert(o), is(model.add(o)));
+                    break;
+                }
+            }
+
+            check(obj, model);
+        }
+
+        @Test
+        public void build() throws Exception {
+            Random random = new Random();
+            MultiSortedList<Item> obj = new MultiSortedList<>(BY_ID, BY_SCORE, BY_SCORE_DESC);
+            TreeSet<Item> model = new TreeSet<>(BY_ID);
+            List<Item> batch = new ArrayList<>();
+            for (int i = random.nextInt(500); 0 < i; i--) {
+                batch.add(new Item(random.nextInt(1000), random.nextInt(50)));
+            }
+
+            assertThat(obj.insertAll(batch), is(model.addAll(batch)));
+            check(obj, model);
+        }
+    }
+
+    public static class MethodRemove {
+
+        @Test
+        public void test() throws Exception {
+            MultiSortedList<Item> obj = new MultiSortedList<>(BY_ID, BY_SCORE);
+            Item a = new Item(1, 30);
+            Item b = new Item(2, 20);
+            Item c = new Item(3, 10);
+            obj.insertAll(Arrays.asList(a, b, c));
+
+            // equal to b by id only
+            assertThat(obj.remove(new Item(2, 0)), is(true));
+            assertThat(obj.index(1), contains(c, a));
+            assertThat(obj.index(1).remove(0), sameInstance(c));
+            assertThat(obj.index(0), contains(a));
+            assertThat(obj.index(1).removeAll(Arrays.asList(a)), is(true));
+            assertThat(obj.size(), is(0));
+            assertThat(obj.index(1).size(), is(0));
+        }
+
+        @Test
+        public void retainAll() throws Exception {
+            MultiSortedList<Item> obj = new MultiSortedList<>(BY_ID, BY_SCORE);
+            Item a = new Item(1, 30);
+            Item b = new Item(2, 20);
+            Item c = new Item(3, 10);
+            obj.insertAll(Arrays.asList(a, b, c));
+
+            assertThat(obj.index(1).retainAll(Arrays.asList(a, c)), is(true));
+            assertThat(obj.index(0), contains(a, c));
+            assertThat(obj.index(1), contains(c, a));
+            obj.clear();
+            assertThat(obj.index(1).size(), is(0));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package sc.ript.util;
+
+import java.util.Random;
+
+/**
+ * Reports the retained heap per element and the cost of {@code getLong}, {@code rank} and {@code insertLong} for a
+ * {@link PackedLongList}, a {@link LongSortedList} and a {@link TreeList} of boxed longs, on ids that are 1 to 3 apart
+ * and on timestamps that are up to 1000 apart.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=sc.ript.util.PackedLongListBenchmark
+ * </pre>
+ */
+public class PackedLongListBenchmark {
+
+    private static final int SIZE = 1000000;
+
+    private static final int[] GAPS = { 3, 1000 };
+
+    private static final int LOOKUPS = 1000000;
+
+    private static final int INSERTS = 100000;
+
+    public static void main(String[] args) throws Exception {
+        for (int gap : GAPS) {
+            Random random = new Random(gap);
+            long[] values = new long[SIZE];
+            values[0] = System.currentTimeMillis();
+            for (int i = 1; i < SIZE; i++) {
+                values[i] = values[i - 1] + 1 + random.nextInt(gap);
+            }
+            long span = values[SIZE - 1] - values[0];
+
+            long before = heap();
+            PackedLongList packed = new PackedLongList(values);
+            long packedBytes = heap() - before;
+            before = heap();
+            LongSortedList plain = new LongSortedList(values);
+            long plainBytes = heap() - before;
+            before = heap();
+            TreeList<Long> tree = new TreeList<>();
+            for (long o : values) {
+                tree.insert(o);
+            }
+            tree.get(0);
+            long treeBytes = heap() - before;
+            System.out.printf("gaps up to %4d: %5.2f / %5.2f / %5.2f bytes per element"
+                    + "  (PackedLongList / LongSortedList / TreeList)%n", gap, (double) packedBytes / SIZE,
+                    (double) plainBytes / SIZE, (double) treeBytes / SIZE);
+
+            long sum = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                sum += packed.getLong(random.nextInt(SIZE));
+            }
+            long packedGot = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                sum += plain.getLong(random.nextInt(SIZE));
+            }
+            long plainGot = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                sum += tree.get(random.nextInt(SIZE));
+            }
+            long treeGot = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                sum += packed.rank(values[0] + (long) (random.nextDouble() * span));
+            }
+            long packedRanked = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                sum += plain.rank(values[0] + (long) (random.nextDouble() * span));
+            }
+            long plainRanked = System.nanoTime();
+            for (int i = 0; i < INSERTS; i++) {
+                packed.insertLong(values[0] + (long) (random.nextDouble() * span));
+            }
+            long packedInserted = System.nanoTime();
+            for (int i = 0; i < INSERTS; i++) {
+                plain.insertLong(values[0] + (long) (random.nextDouble() * span));
+            }
+            long plainInserted = System.nanoTime();
+            for (int i = 0; i < INSERTS; i++) {
+                tree.insert(values[0] + (long) (random.nextDouble() * span));
+            }
+            long treeInserted = System.nanoTime();
+            System.out.printf("  get %5.0f / %5.0f / %5.0f ns  rank %5.0f / %5.0f ns  insert %5.0f / %5.0f / %5.0f ns"
+                    + "  (%d)%n", (double) (packedGot - start) / LOOKUPS, (double) (plainGot - packedGot) / LOOKUPS,
+                    (double) (treeGot - plainGot) / LOOKUPS, (double) (packedRanked - treeGot) / LOOKUPS,
+                    (double) (plainRanked - packedRanked) / LOOKUPS, (double) (packedInserted - plainRanked) / INSERTS,
+                    (double) (plainInserted - packedInserted) / INSERTS,
+                    (double) (treeInserted - plainInserted) / INSERTS, sum);
+        }
+    }
+
+    private static long heap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
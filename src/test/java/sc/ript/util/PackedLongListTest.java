@@ -0,0 +1,162 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class PackedLongListTest {
+
+    public static class MethodPack {
+
+        @Test
+        public void test() throws Exception {
+            Random random = new Random();
+            // up to 2^56 per gap, so that 128 gaps from Long.MIN_VALUE do not overflow
+            for (int bits = 0; bits <= 56; bits++) {
+                long[] values = new long[PackedLongList.BLOCK_SIZE];
+                values[0] = Long.MIN_VALUE + random.nextInt(10);
+                for (int i = 1; i < values.length; i++) {
+                    values[i] = values[i - 1] + 1 + (random.nextLong() & ((1L << bits) - 1));
+                }
+                int width = PackedLongList.width(values, 0, values.length);
+                assertThat(width, lessThanOrEqualTo(bits));
+                long[] packed = PackedLongList.pack(values, 0, values.length, width);
+                for (int i = 1; i < values.length; i++) {
+                    assertThat(PackedLongList.gap(packed, width, i - 1), is(values[i] - values[i - 1] - 1));
+                }
+            }
+        }
+
+        @Test
+        public void fullRange() throws Exception {
+            long[] values = { Long.MIN_VALUE, Long.MAX_VALUE };
+
+            assertThat(PackedLongList.width(values, 0, 2), is(Long.SIZE));
+            PackedLongList obj = new PackedLongList(Long.MAX_VALUE, 0, Long.MIN_VALUE);
+            assertThat(obj, contains(Long.MIN_VALUE, 0L, Long.MAX_VALUE));
+            assertThat(obj.rank(Long.MAX_VALUE), is(2));
+            assertThat(obj.indexOfLong(Long.MIN_VALUE), is(0));
+        }
+    }
+
+    public static class Constructor {
+
+        @Test
+        public void isEmpty() throws Exception {
+            PackedLongList obj = new PackedLongList();
+
+            assertThat(obj, empty());
+            assertThat(obj.containsLong(0), is(false));
+            assertThat(obj.rank(0), is(0));
+            assertThat(obj.removeLong(0), is(false));
+            try {
+                obj.last();
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+        }
+
+        @Test
+        public void dense() throws Exception {
+            long[] values = new long[100000];
+            Random random = new Random();
+            values[0] = System.currentTimeMillis();
+            for (int i = 1; i < values.length; i++) {
+                values[i] = values[i - 1] + 1 + random.nextInt(100);
+            }
+            PackedLongList obj = new PackedLongList(values);
+
+            assertThat(obj.size(), is(values.length));
+            assertThat(obj.toLongArray(), is(values));
+            assertThat(obj.packedBytes(), lessThan(values.length * 2L));
+        }
+    }
+
+    public static class MethodInsertLong {
+
+        @Test
+        public void test() throws Exception {
+            Random random = new Random();
+            PackedLongList obj = new PackedLongList();
+            TreeSet<Long> model = new TreeSet<>();
+            for (int i = 0; i < 20000; i++) {
+                long o = random.nextInt(4000);
+                switch (random.nextInt(8)) {
+                case 0:
+                    assertThat(obj.removeLong(o), is(model.remove(o)));
+                    break;
+                case 1:
+                    if (!model.isEmpty()) {
+                        int index = random.nextInt(model.size());
+                        assertThat(model.remove(obj.remove(index)), is(true));
+                    }
+                    break;
+                case 2:
+                    List<Long> batch = Arrays.asList(o, o + 1, o + 10);
+                    assertThat(obj.insertAll(batch), is(model.addAll(batch)));
+                    break;
+                default:
+                    assertThat(obj.insertLong(o), is(model.add(o)));
+                    break;
+                }
+            }
+
+            List<Long> expected = new ArrayList<>(model);
+            assertThat(obj.size(), is(model.size()));
+            assertThat(obj.toArray(), is(model.toArray()));
+            for (int i = 0; i < expected.size(); i++) {
+                assertThat(obj.getLong(i), is(expected.get(i)));
+                assertThat(obj.indexOfLong(expected.get(i)), is(i));
+            }
+            for (long o = -1; o < 4020; o++) {
+                assertThat(obj.rank(o), is(model.headSet(o).size()));
+                assertThat(obj.containsLong(o), is(model.contains(o)));
+            }
+            assertThat(obj.first(), is(model.first()));
+            assertThat(obj.last(), is(model.last()));
+        }
+    }
+
+    public static class MethodInsertAll {
+
+        @Test
+        public void test() throws Exception {
+            PackedLongList obj = new PackedLongList(5, 1);
+
+            assertThat(obj.insertAll(Arrays.asList(3L, 5L, 2L, 3L)), is(true));
+            assertThat(obj, contains(1L, 2L, 3L, 5L));
+            assertThat(obj.insertAll(Arrays.asList(1L, 5L)), is(false));
+            assertThat(obj.quantiles(0, 1), contains(1L, 5L));
+        }
+    }
+
+    public static class MethodRetainAll {
+
+        @Test
+        public void test() throws Exception {
+            PackedLongList obj = new PackedLongList();
+            for (long i = 0; i < 3000; i++) {
+                obj.insertLong(i * 2);
+            }
+
+            assertThat(obj.retainAll(Arrays.asList(10L, 4000L, 5L)), is(true));
+            assertThat(obj, contains(10L, 4000L));
+            assertThat(obj.remove(Integer.valueOf(10)), is(false));
+            obj.clear();
+            assertThat(obj, empty());
+            assertThat(obj.insertLong(1), is(true));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package sc.ript.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Starts 1, 2 and 4 {@link ShardServer} processes on the loopback interface and reports the throughput of batched
+ * inserts from several client threads through one {@link PartitionedList}, then of positional reads, quantiles and
+ * range scans.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=sc.ript.util.PartitionedListBenchmark
+ * </pre>
+ */
+public class PartitionedListBenchmark {
+
+    private static final int[] SHARDS = { 1, 2, 4 };
+
+    private static final int THREADS = 4;
+
+    private static final int BATCHES = 100;
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final int READS = 20000;
+
+    private static final long KEYS = 1L << 40;
+
+    public static void main(String[] args) throws Exception {
+        for (int n : SHARDS) {
+            List<Process> processes = new ArrayList<>();
+            List<InetSocketAddress> addresses = new ArrayList<>();
+            List<Long> splits = new ArrayList<>();
+            try {
+                for (int i = 0; i < n; i++) {
+                    Process process = new ProcessBuilder(System.getProperty("java.home") + File.separator + "bin"
+                            + File.separator + "java", "-cp", System.getProperty("java.class.path"),
+                            ShardServer.class.getName()).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+                    processes.add(process);
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                            StandardCharsets.UTF_8));
+                    int port = Integer.parseInt(reader.readLine().trim());
+                    addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+                    if (0 < i) {
+                        splits.add(KEYS / n * i);
+                    }
+                }
+                run(n, new PartitionedList<>(Codec.LONG, null, splits, addresses));
+            } finally {
+                for (Process process : processes) {
+                    process.getOutputStream().close();
+                    process.waitFor();
+                }
+            }
+        }
+    }
+
+    private static void run(int n, final PartitionedList<Long> list) throws Exception {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final Random random = new Random(t);
+            threads.add(new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int b = 0; b < BATCHES; b++) {
+                        List<Long> batch = new ArrayList<>();
+                        for (int i = 0; i < BATCH_SIZE; i++) {
+                            batch.add((long) (random.nextDouble() * KEYS));
+                        }
+                        list.insertAll(batch);
+                    }
+                }
+            }));
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long inserted = System.nanoTime();
+
+        Random random = new Random(1);
+        int size = list.size();
+        long sum = 0;
+        for (int i = 0; i < READS; i++) {
+            sum += list.get(random.nextInt(size));
+        }
+        long got = System.nanoTime();
+        for (int i = 0; i < (READS / 10); i++) {
+            sum += list.quantiles(0.5, 0.9, 0.99, 0.999).get(0);
+        }
+        long quantiles = System.nanoTime();
+        for (int i = 0; i < (READS / 10); i++) {
+            long from = (long) (random.nextDouble() * KEYS);
+            sum += list.range(from, from + (KEYS / size) * 100).size();
+        }
+        long ranges = System.nanoTime();
+        list.close();
+
+        System.out.printf("%d shard(s): %9.0f inserts/s  %7.0f get/s  %7.0f quantiles/s  %7.0f ranges/s  (%d, %d)%n",
+                n, THREADS * BATCHES * BATCH_SIZE * 1e9 / (inserted - start), READS * 1e9 / (got - inserted),
+                READS / 10 * 1e9 / (quantiles - got), READS / 10 * 1e9 / (ranges - quantiles), size, sum);
+    }
+}
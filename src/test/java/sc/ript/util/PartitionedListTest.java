@@ -0,0 +1,292 @@
+package sc.ript.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.rules.ExternalResource;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class PartitionedListTest {
+
+    /**
+     * Three shards split at 100 and 200, served from this JVM.
+     */
+    static class Shards extends ExternalResource {
+
+        final List<ShardServer<Long>> servers = new ArrayList<>();
+
+        final List<InetSocketAddress> addresses = new ArrayList<>();
+
+        PartitionedList<Long> obj;
+
+        @Override
+        protected void before() throws Exception {
+            for (int i = 0; i < 3; i++) {
+                ShardServer<Long> server = new ShardServer<>(Codec.LONG, null, 0);
+                servers.add(server);
+                addresses.add(server.address());
+            }
+            obj = new PartitionedList<>(Codec.LONG, null, Arrays.asList(100L, 200L), addresses);
+        }
+
+        @Override
+        protected void after() {
+            try {
+                obj.close();
+                for (ShardServer<Long> server : servers) {
+                    server.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public static class Constructor {
+
+        @Test
+        public void splits() throws Exception {
+            List<InetSocketAddress> addresses = Collections.nCopies(3, new InetSocketAddress(0));
+            try {
+                new PartitionedList<>(Codec.LONG, null, Arrays.asList(1L), addresses);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // nop
+            }
+            try {
+                new PartitionedList<>(Codec.LONG, null, Arrays.asList(2L, 1L), addresses);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // nop
+            }
+        }
+    }
+
+    public static class MethodInsert {
+
+        @Rule
+        public Shards shards = new Shards();
+
+        @Test
+        public void test() throws Exception {
+            PartitionedList<Long> obj = shards.obj;
+            assertThat(obj.insert(150L), is(true));
+            assertThat(obj.insert(5L), is(true));
+            assertThat(obj.insert(150L), is(false));
+            assertThat(obj.insertAll(Arrays.asList(300L, 100L, 5L, 99L)), is(true));
+
+            assertThat(obj.toArray(), is(new Object[] { 5L, 99L, 100L, 150L, 300L }));
+            assertThat(obj.shardSizes(), is(new int[] { 2, 2, 1 }));
+            assertThat(shards.servers.get(1).size(), is(2));
+            assertThat(obj.size(), is(5));
+            assertThat(obj.first(), is(5L));
+            assertThat(obj.last(), is(300L));
+        }
+
+        @Test
+        public void random() throws Exception {
+            PartitionedList<Long> obj = shards.obj;
+            Random random = new Random();
+            TreeSet<Long> model = new TreeSet<>();
+            for (int i = 0; i < 500; i++) {
+                long o = random.nextInt(300);
+                switch (random.nextInt(6)) {
+                case 0:
+                    assertThat(obj.remove((Object) o), is(model.remove(o)));
+                    break;
+                case 1:
+                    if (!model.isEmpty()) {
+                        int index = random.nextInt(model.size());
+                        Long removed = obj.remove(index);
+                        assertThat(model.remove(removed), is(true));
+                    }
+                    break;
+                case 2:
+                    List<Long> batch = Arrays.asList(o, o + 50, o + 100);
+                    assertThat(obj.insertAll(batch), is(model.addAll(batch)));
+                    break;
+                case 3:
+                    batch = Arrays.asList(o, o + 3, o + 120);
+                    assertThat(obj.removeAll(batch), is(model.removeAll(batch)));
+                    break;
+                default:
+                    assertThat(obj.insert(o), is(model.add(o)));
+                    break;
+                }
+            }
+
+            List<Long> expected = new ArrayList<>(model);
+            assertThat(obj.size(), is(model.size()));
+            assertThat(obj.toArray(), is(model.toArray()));
+            for (int i = 0; i < expected.size(); i += 7) {
+                assertThat(obj.get(i), is(expected.get(i)));
+                assertThat(obj.indexOf(expected.get(i)), is(i));
+            }
+            for (long o = -1; o < 450; o += 13) {
+                assertThat(obj.rank(o), is(model.headSet(o).size()));
+                assertThat(obj.contains(o), is(model.contains(o)));
+                assertThat(obj.range(o, o + 150), is((List<Long>) new ArrayList<>(model.subSet(o, o + 150))));
+            }
+        }
+    }
+
+    public static class MethodGet {
+
+        @Rule
+        public Shards shards = new Shards();
+
+        @Test
+        public void refresh() throws Exception {
+            PartitionedList<Long> obj = shards.obj;
+            obj.insertAll(Arrays.asList(1L, 2L, 150L, 250L));
+            PartitionedList<Long> other = new PartitionedList<>(Codec.LONG, null, Arrays.asList(100L, 200L),
+                    shards.addresses);
+            other.insertAll(Arrays.asList(3L, 4L));
+            other.remove((Object) 250L);
+            other.close();
+
+            // the cached sizes are stale until the index misses
+            assertThat(obj.size(), is(4));
+            assertThat(obj.get(3), is(4L));
+            assertThat(obj.size(), is(5));
+            obj.refresh();
+            assertThat(obj.shardSizes(), is(new int[] { 4, 1, 0 }));
+            assertThat(obj.last(), is(150L));
+            try {
+                obj.get(5);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+                // nop
+            }
+        }
+
+        @Test
+        public void lastOfShrunkShard() throws Exception {
+            PartitionedList<Long> obj = shards.obj;
+            obj.insertAll(Arrays.asList(1L, 150L, 250L, 260L, 270L));
+            PartitionedList<Long> other = new PartitionedList<>(Codec.LONG, null, Arrays.asList(100L, 200L),
+                    shards.addresses);
+            other.removeAll(Arrays.asList(260L, 270L));
+            other.close();
+
+            // the cached size of the last shard is 3, but it still holds 250
+            assertThat(obj.last(), is(250L));
+            assertThat(obj.shardSizes(), is(new int[] { 1, 1, 1 }));
+        }
+
+        @Test
+        public void isEmpty() throws Exception {
+            PartitionedList<Long> obj = shards.obj;
+            assertThat(obj.isEmpty(), is(true));
+            try {
+                obj.first();
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+            try {
+                obj.quantile(0.5);
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+        }
+    }
+
+    public static class ShardFailure {
+
+        @Rule
+        public Shards shards = new Shards();
+
+        @Test
+        public void test() throws Exception {
+            PartitionedList<Long> obj = shards.obj;
+            obj.insertAll(Arrays.asList(1L, 150L, 250L));
+            InetSocketAddress address = shards.addresses.get(1);
+            shards.servers.get(1).close();
+
+            // shard 0 answers and shard 1 drops the connection before shard 2 is read
+            try {
+                obj.toArray();
+                fail();
+            } catch (UncheckedIOException e) {
+                // nop
+            }
+            try {
+                obj.contains(150L);
+                fail();
+            } catch (UncheckedIOException e) {
+                // nop
+            }
+
+            // shard 2 is connected again rather than read from where the failed call left it
+            ShardServer<Long> restarted = new ShardServer<>(Codec.LONG, null, address);
+            shards.servers.set(1, restarted);
+            obj.refresh();
+            assertThat(obj.shardSizes(), is(new int[] { 1, 0, 1 }));
+            assertThat(obj.insert(150L), is(true));
+            assertThat(obj.toArray(), is(new Object[] { 1L, 150L, 250L }));
+            assertThat(obj.last(), is(250L));
+        }
+    }
+
+    public static class MethodQuantiles {
+
+        @Rule
+        public Shards shards = new Shards();
+
+        @Test
+        public void test() throws Exception {
+            PartitionedList<Long> obj = shards.obj;
+            Random random = new Random();
+            TreeSet<Long> model = new TreeSet<>();
+            for (int i = random.nextInt(500) + 1; 0 < i; i--) {
+                model.add((long) random.nextInt(300));
+            }
+            obj.insertAll(model);
+            List<Long> expected = new ArrayList<>(model);
+
+            double[] qs = { 0.9, 0, 0.5, 0.33, 1, 0.5 };
+            List<Long> actual = obj.quantiles(qs);
+            assertThat(actual, hasSize(qs.length));
+            for (int i = 0; i < qs.length; i++) {
+                int index = Math.max((int) Math.ceil(qs[i] * expected.size()) - 1, 0);
+                assertThat(actual.get(i), is(expected.get(index)));
+            }
+        }
+    }
+
+    public static class MethodRetainAll {
+
+        @Rule
+        public Shards shards = new Shards();
+
+        @Test
+        public void test() throws Exception {
+            PartitionedList<Long> obj = shards.obj;
+            obj.insertAll(Arrays.asList(1L, 120L, 220L, 230L));
+
+            assertThat(obj.retainAll(Arrays.asList(1L, 230L, 7L)), is(true));
+            assertThat(obj.toArray(), is(new Object[] { 1L, 230L }));
+            assertThat(obj.retainAll(Arrays.asList(1L, 230L)), is(false));
+            obj.clear();
+            assertThat(obj.size(), is(0));
+            assertThat(shards.servers.get(2).size(), is(0));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package sc.ript.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class ShardServerTest {
+
+    public static class Pipeline {
+
+        @Test
+        public void test() throws Exception {
+            try (ShardServer<String> obj = new ShardServer<>(Codec.STRING, null, 0);
+                    Socket socket = new Socket(obj.address().getAddress(), obj.address().getPort())) {
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+
+                // three requests before any response is read
+                out.writeByte(ShardServer.INSERT);
+                Codec.STRING.write("hoge", out);
+                out.writeByte(ShardServer.REMOVE_AT);
+                out.writeInt(5);
+                out.writeByte(ShardServer.INDEX_OF);
+                Codec.STRING.write("hoge", out);
+                out.flush();
+
+                assertThat(in.readByte(), is(ShardServer.OK));
+                assertThat(in.readInt(), is(1));
+                assertThat(in.readBoolean(), is(true));
+                assertThat(in.readByte(), is(ShardServer.OUT_OF_RANGE));
+                assertThat(in.readInt(), is(1));
+                assertThat(in.readByte(), is(ShardServer.OK));
+                assertThat(in.readInt(), is(1));
+                assertThat(in.readInt(), is(0));
+                assertThat(obj.size(), is(1));
+            }
+        }
+
+        @Test
+        public void unknown() throws Exception {
+            try (ShardServer<String> obj = new ShardServer<>(Codec.STRING, null, 0);
+                    Socket socket = new Socket(obj.address().getAddress(), obj.address().getPort())) {
+                socket.getOutputStream().write(99);
+
+                assertThat(socket.getInputStream().read(), is(-1));
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Streams random longs into an exact {@link TreeList} and into {@link SketchList}s of increasing k, then reports
+ * insert throughput, retained elements and the worst rank error over the percentiles 1..99. The last column merges
+ * four sketches that were filled from separate threads.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=sc.ript.util.SketchListBenchmark
+ * </pre>
+ */
+public class SketchListBenchmark {
+
+    private static final int SIZE = 500000;
+
+    private static final int THREADS = 4;
+
+    private static final int[] KS = { 50, 200, 800 };
+
+    private static final int PERCENT = 100;
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(1);
+        final List<Long> values = new ArrayList<>();
+        for (int i = 0; i < SIZE; i++) {
+            values.add(random.nextLong());
+        }
+
+        long start = System.nanoTime();
+        TreeList<Long> exact = new TreeList<>();
+        for (Long o : values) {
+            exact.insert(o);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-16s %10.0f ops/s %9d retained%n", "TreeList", SIZE * 1e9 / elapsed, exact.size());
+
+        for (int k : KS) {
+            start = System.nanoTime();
+            SketchList<Long> sketch = new SketchList<>(k);
+            for (Long o : values) {
+                sketch.insert(o);
+            }
+            elapsed = System.nanoTime() - start;
+            System.out.printf("%-16s %10.0f ops/s %9d retained, max rank error %.4f (bound %.4f)%n", "SketchList/" + k,
+                    SIZE * 1e9 / elapsed, sketch.retained(), maxError(exact, sketch), sketch.rankError());
+
+            start = System.nanoTime();
+            SketchList<Long> merged = fill(values, k);
+            elapsed = System.nanoTime() - start;
+            System.out.printf("%-16s %10.0f ops/s %9d retained, max rank error %.4f%n", "merged/" + k,
+                    SIZE * 1e9 / elapsed, merged.retained(), maxError(exact, merged));
+        }
+    }
+
+    private static SketchList<Long> fill(final List<Long> values, int k) throws InterruptedException {
+        final List<SketchList<Long>> parts = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final SketchList<Long> part = new SketchList<>(k);
+            final List<Long> slice = values.subList(t * SIZE / THREADS, (t + 1) * SIZE / THREADS);
+            parts.add(part);
+            threads.add(new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (Long o : slice) {
+                        part.insert(o);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        SketchList<Long> merged = new SketchList<>(k);
+        for (SketchList<Long> part : parts) {
+            merged.merge(part);
+        }
+        return merged;
+    }
+
+    private static double maxError(TreeList<Long> exact, SketchList<Long> sketch) {
+        double max = 0;
+        for (int p = 1; p < PERCENT; p++) {
+            double q = (double) p / PERCENT;
+            int rank = exact.indexOf(sketch.quantile(q));
+            double error = Math.abs(rank - (Math.ceil(q * SIZE) - 1)) / SIZE;
+            max = Math.max(max, error);
+        }
+        return max;
+    }
+}
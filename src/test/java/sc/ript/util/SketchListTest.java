@@ -0,0 +1,221 @@
+package sc.ript.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class SketchListTest {
+
+    static List<Integer> shuffled(int size, Random random) {
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            values.add(i);
+        }
+        Collections.shuffle(values, random);
+        return values;
+    }
+
+    static void assertAccurate(SketchList<Integer> obj, int size) {
+        // the values are 0 until size, so a value is its own exact rank
+        double tolerance = 2 * obj.rankError() * size;
+        for (int i = 0; i <= 100; i++) {
+            int index = (int) Math.min((long) i * size / 100, size - 1);
+            assertThat((double) obj.get(index), closeTo(index, tolerance));
+            assertThat((double) obj.rank(index), closeTo(index, tolerance));
+        }
+    }
+
+    public static class Constructor {
+
+        @Test
+        public void isEmpty() throws Exception {
+            SketchList<Integer> obj = new SketchList<>();
+
+            assertThat(obj.isEmpty(), is(true));
+            assertThat(obj.size(), is(0));
+            assertThat(obj.rank(1), is(0L));
+            try {
+                obj.first();
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+            try {
+                obj.get(0);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+                // nop
+            }
+            try {
+                obj.quantile(0.5);
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+        }
+
+        @Test
+        public void rankError() throws Exception {
+            SketchList<Integer> obj = SketchList.withRankError(0.01, null);
+
+            assertThat(obj.rankError(), lessThanOrEqualTo(0.01));
+            assertThat(new SketchList<Integer>(obj.k() - 1).rankError(), greaterThan(0.01));
+            try {
+                new SketchList<Integer>(1);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // nop
+            }
+        }
+    }
+
+    public static class MethodInsert {
+
+        @Test
+        public void test() throws Exception {
+            Random random = new Random();
+            int size = 50000 + random.nextInt(50000);
+            SketchList<Integer> obj = new SketchList<>();
+            for (Integer o : shuffled(size, random)) {
+                assertThat(obj.insert(o), is(true));
+            }
+
+            assertThat(obj.size(), is(size));
+            assertThat(obj.count(), is((long) size));
+            assertThat(obj.first(), is(0));
+            assertThat(obj.last(), is(size - 1));
+            assertThat(obj.retained(), lessThan(4 * obj.k()));
+            assertAccurate(obj, size);
+        }
+
+        @Test
+        public void duplicates() throws Exception {
+            SketchList<Integer> obj = new SketchList<>(Collections.<Integer> reverseOrder());
+            for (int i = 0; i < 10000; i++) {
+                obj.insertAll(Arrays.asList(1, 2, 2, 3));
+            }
+
+            assertThat(obj.size(), is(40000));
+            assertThat(obj.first(), is(3));
+            assertThat(obj.quantiles(0.1, 0.5, 0.9), contains(3, 2, 1));
+        }
+    }
+
+    public static class MethodMerge {
+
+        @Test
+        public void test() throws Exception {
+            Random random = new Random();
+            int size = 100000;
+            List<Integer> values = shuffled(size, random);
+            SketchList<Integer> obj = new SketchList<>();
+            List<SketchList<Integer>> parts = new ArrayList<>();
+            for (int p = 0; p < 4; p++) {
+                SketchList<Integer> part = new SketchList<>();
+                part.insertAll(values.subList(p * size / 4, (p + 1) * size / 4));
+                parts.add(part);
+            }
+            for (SketchList<Integer> part : parts) {
+                assertThat(obj.merge(part), is(true));
+            }
+
+            assertThat(obj.merge(obj), is(false));
+            assertThat(obj.merge(new SketchList<Integer>()), is(false));
+            assertThat(obj.size(), is(size));
+            assertThat(obj.first(), is(0));
+            assertThat(obj.last(), is(size - 1));
+            assertThat(obj.retained(), lessThan(4 * obj.k()));
+            assertAccurate(obj, size);
+            try {
+                obj.merge(new SketchList<Integer>(obj.k() + 1));
+                fail();
+            } catch (IllegalArgumentException e) {
+                // nop
+            }
+        }
+
+        @Test
+        public void serialized() throws Exception {
+            Random random = new Random();
+            SketchList<Integer> obj = new SketchList<>();
+            obj.insertAll(shuffled(20000, random));
+
+            byte[] bytes;
+            {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+                    oos.writeObject(obj);
+                }
+                bytes = baos.toByteArray();
+            }
+            SketchList<Integer> copy;
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                @SuppressWarnings("unchecked")
+                SketchList<Integer> read = (SketchList<Integer>) ois.readObject();
+                copy = read;
+            }
+
+            assertThat(copy.quantiles(0.25, 0.5, 0.75), is(obj.quantiles(0.25, 0.5, 0.75)));
+            copy.merge(obj);
+            assertThat(copy.size(), is(40000));
+        }
+    }
+
+    public static class Unsupported {
+
+        @Test
+        public void test() throws Exception {
+            SketchList<Integer> obj = new SketchList<>();
+            obj.insert(1);
+
+            try {
+                obj.contains(1);
+                fail();
+            } catch (UnsupportedOperationException e) {
+                // nop
+            }
+            try {
+                obj.remove((Object) 1);
+                fail();
+            } catch (UnsupportedOperationException e) {
+                // nop
+            }
+            try {
+                obj.iterator();
+                fail();
+            } catch (UnsupportedOperationException e) {
+                // nop
+            }
+            obj.clear();
+            assertThat(obj.isEmpty(), is(true));
+        }
+
+        @Test
+        public void identity() throws Exception {
+            SketchList<Integer> obj = new SketchList<>();
+            SketchList<Integer> other = new SketchList<>();
+            obj.insertAll(Arrays.asList(3, 1, 2));
+            other.insertAll(Arrays.asList(3, 1, 2));
+
+            assertThat(obj.toString(), is("SketchList[k=200, count=3, min=1, max=3]"));
+            assertThat(obj.equals(obj), is(true));
+            assertThat(obj.equals(other), is(false));
+            assertThat(obj.hashCode(), is(System.identityHashCode(obj)));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Builds one list from 64 sorted partitions, by repeated {@link TreeList#insertAll(java.util.Collection)} and by
+ * {@link SortedLists#mergeAll(List, java.util.Comparator, int)} at increasing parallelism.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=sc.ript.util.SortedListsBenchmark
+ * </pre>
+ */
+public class SortedListsBenchmark {
+
+    private static final int PARTITIONS = 64;
+
+    private static final int PARTITION_SIZE = 20000;
+
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        List<TreeSet<Integer>> partitions = new ArrayList<>();
+        for (int i = 0; i < PARTITIONS; i++) {
+            TreeSet<Integer> partition = new TreeSet<>();
+            while (partition.size() < PARTITION_SIZE) {
+                partition.add(random.nextInt());
+            }
+            partitions.add(partition);
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.printf("round %d%n", round);
+            long start = System.nanoTime();
+            TreeList<Integer> list = new TreeList<>();
+            for (TreeSet<Integer> partition : partitions) {
+                list.insertAll(partition);
+            }
+            report("insertAll", list, start);
+
+            for (int parallelism = 1; parallelism <= Math.max(cores, 2); parallelism <<= 1) {
+                start = System.nanoTime();
+                list = SortedLists.mergeAll(partitions, null, parallelism);
+                report("mergeAll/" + parallelism, list, start);
+            }
+        }
+    }
+
+    private static void report(String name, TreeList<Integer> list, long start) {
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("  %-14s %8.1f ms (%d elements)%n", name, elapsed / 1e6, list.size());
+    }
+}
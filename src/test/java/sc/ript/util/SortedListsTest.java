@@ -0,0 +1,229 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class SortedListsTest {
+
+    static TreeSet<Integer> randomSet(Random random, int size, int bound) {
+        TreeSet<Integer> set = new TreeSet<>();
+        while (set.size() < size) {
+            set.add(random.nextInt(bound));
+        }
+        return set;
+    }
+
+    public static class MethodUnion {
+
+        @Test
+        public void test() throws Exception {
+            Random random = new Random();
+            TreeSet<Integer> a = randomSet(random, 100, 300);
+            TreeSet<Integer> b = randomSet(random, 150, 300);
+            TreeSet<Integer> expected = new TreeSet<>(a);
+            expected.addAll(b);
+
+            TreeList<Integer> obj = SortedLists.union(new TreeList<>(a), new TreeList<>(b));
+
+            assertThat(obj, contains(expected.toArray()));
+            assertThat(obj.comparator(), nullValue());
+        }
+
+        @Test
+        public void isEmpty() throws Exception {
+            TreeList<Integer> obj = SortedLists.union(new TreeList<Integer>(), new TreeList<Integer>());
+
+            assertThat(obj, empty());
+        }
+
+        @Test
+        public void parallel() throws Exception {
+            Random random = new Random();
+            int size = SortedLists.PARALLEL_THRESHOLD * 2;
+            TreeSet<Integer> a = randomSet(random, size, size * 4);
+            TreeSet<Integer> b = randomSet(random, size / 2, size * 4);
+            TreeSet<Integer> expected = new TreeSet<>(a);
+            expected.addAll(b);
+
+            TreeList<Integer> obj = SortedLists.union(new TreeList<>(a), new TreeList<>(b));
+
+            assertThat(obj, hasSize(expected.size()));
+            assertArrayEquals(obj.toArray(), expected.toArray());
+        }
+
+        @Test
+        public void differentComparator() throws Exception {
+            Random random = new Random();
+            TreeSet<Integer> a = randomSet(random, 100, 300);
+            TreeSet<Integer> b = new TreeSet<>(Collections.reverseOrder());
+            b.addAll(randomSet(random, 100, 300));
+            TreeSet<Integer> expected = new TreeSet<>(a);
+            expected.addAll(b);
+
+            TreeList<Integer> obj = SortedLists.union(new TreeList<>(a), new TreeList<>(b));
+
+            assertThat(obj, contains(expected.toArray()));
+        }
+    }
+
+    public static class MethodIntersect {
+
+        @Test
+        public void test() throws Exception {
+            Random random = new Random();
+            TreeSet<Integer> a = randomSet(random, 100, 300);
+            TreeSet<Integer> b = randomSet(random, 150, 300);
+            TreeSet<Integer> expected = new TreeSet<>(a);
+            expected.retainAll(b);
+
+            TreeList<Integer> obj = SortedLists.intersect(new TreeList<>(a), new TreeList<>(b));
+
+            assertThat(obj, contains(expected.toArray()));
+        }
+
+        @Test
+        public void parallel() throws Exception {
+            Random random = new Random();
+            int size = SortedLists.PARALLEL_THRESHOLD * 2;
+            TreeSet<Integer> a = randomSet(random, size, size * 2);
+            TreeSet<Integer> b = randomSet(random, size, size * 2);
+            TreeSet<Integer> expected = new TreeSet<>(a);
+            expected.retainAll(b);
+
+            TreeList<Integer> obj = SortedLists.intersect(new TreeList<>(a), new TreeList<>(b));
+
+            assertArrayEquals(obj.toArray(), expected.toArray());
+        }
+    }
+
+    public static class MethodDifference {
+
+        @Test
+        public void test() throws Exception {
+            Comparator<String> c = new Comparator<String>() {
+
+                @Override
+                public int compare(String o1, String o2) {
+                    int cmp = o1.length() - o2.length();
+                    if (cmp != 0) {
+                        return cmp;
+                    }
+                    return o1.compareTo(o2);
+                }
+            };
+            TreeList<String> a = new TreeList<>(c);
+            TreeList<String> b = new TreeList<>(c);
+            for (int i = 0; i < 200; i++) {
+                a.insert("hoge" + i);
+                if ((i % 2) == 0) {
+                    b.insert("hoge" + i);
+                }
+            }
+
+            TreeList<String> obj = SortedLists.difference(a, b);
+
+            assertThat(obj, hasSize(100));
+            assertThat(obj.comparator(), sameInstance((Object) c));
+            for (String o : obj) {
+                assertThat(b.contains(o), is(false));
+                assertThat(a.contains(o), is(true));
+            }
+        }
+
+        @Test
+        public void parallel() throws Exception {
+            Random random = new Random();
+            int size = SortedLists.PARALLEL_THRESHOLD * 2;
+            TreeSet<Integer> a = randomSet(random, size, size * 2);
+            TreeSet<Integer> b = randomSet(random, size, size * 2);
+            TreeSet<Integer> expected = new TreeSet<>(a);
+            expected.removeAll(b);
+
+            TreeList<Integer> obj = SortedLists.difference(new TreeList<>(a), new TreeList<>(b));
+
+            assertArrayEquals(obj.toArray(), expected.toArray());
+        }
+    }
+
+    public static class MethodMergeAll {
+
+        @Test
+        public void test() throws Exception {
+            Random random = new Random();
+            TreeSet<Integer> expected = new TreeSet<>();
+            List<Collection<Integer>> partitions = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                Collection<Integer> partition;
+                switch (i % 3) {
+                case 0:
+                    partition = new TreeSet<>();
+                    break;
+                case 1:
+                    partition = new TreeSet<>(Collections.reverseOrder());
+                    break;
+                default:
+                    partition = new ArrayList<>();
+                    break;
+                }
+                int size = random.nextInt(100);
+                for (int j = 0; j < size; j++) {
+                    int o = random.nextInt(5000);
+                    partition.add(o);
+                    expected.add(o);
+                }
+                partitions.add(partition);
+            }
+
+            TreeList<Integer> obj = SortedLists.mergeAll(partitions, null, 4);
+
+            assertThat(obj, contains(expected.toArray()));
+        }
+
+        @Test
+        public void parallel() throws Exception {
+            Random random = new Random();
+            int size = SortedLists.PARALLEL_THRESHOLD;
+            TreeSet<Integer> expected = new TreeSet<>();
+            List<TreeSet<Integer>> partitions = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                TreeSet<Integer> partition = randomSet(random, size, size * 16);
+                expected.addAll(partition);
+                partitions.add(partition);
+            }
+
+            TreeList<Integer> obj = SortedLists.mergeAll(partitions, null, 4);
+
+            assertArrayEquals(obj.toArray(), expected.toArray());
+            assertThat(obj.get(size), is(new ArrayList<>(expected).get(size)));
+        }
+
+        @Test
+        public void isEmpty() throws Exception {
+            Comparator<Integer> c = Collections.reverseOrder();
+            TreeList<Integer> obj = SortedLists.mergeAll(new ArrayList<List<Integer>>(), c, 1);
+
+            assertThat(obj, empty());
+            assertThat(obj.comparator(), sameInstance((Object) c));
+
+            try {
+                SortedLists.mergeAll(new ArrayList<List<Integer>>(), c, 0);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // nop
+            }
+        }
+    }
+}
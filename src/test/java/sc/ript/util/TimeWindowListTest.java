@@ -0,0 +1,264 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class TimeWindowListTest {
+
+    static final TimeWindowList.Timestamp<Long> IDENTITY = new TimeWindowList.Timestamp<Long>() {
+
+        @Override
+        public long timestampOf(Long o) {
+            return o.longValue();
+        }
+    };
+
+    public static class Constructor {
+
+        @Test
+        public void isEmpty() throws Exception {
+            SortedList<Long> obj = new TimeWindowList<>(IDENTITY, 10);
+
+            assertThat(obj, empty());
+            assertThat(obj.comparator(), notNullValue());
+        }
+
+        @Test
+        public void negativeRetention() throws Exception {
+            try {
+                new TimeWindowList<>(IDENTITY, -1);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // nop
+            }
+        }
+
+        @Test
+        public void nullTimestamp() throws Exception {
+            try {
+                new TimeWindowList<Long>(null, 1);
+                fail();
+            } catch (NullPointerException e) {
+                // nop
+            }
+        }
+    }
+
+    public static class MethodInsert {
+
+        @Test
+        public void append() throws Exception {
+            TimeWindowList<Long> obj = new TimeWindowList<>(IDENTITY, 1000);
+
+            for (long i = 0; i < 1000; i++) {
+                assertThat(obj.insert(i), is(true));
+            }
+            assertThat(obj.insert(999L), is(false));
+            assertThat(obj, hasSize(1000));
+            for (int i = 0; i < 1000; i++) {
+                assertThat(obj.get(i), is((long) i));
+            }
+        }
+
+        @Test
+        public void outOfOrder() throws Exception {
+            TimeWindowList<Long> obj = new TimeWindowList<>(IDENTITY, Long.MAX_VALUE);
+            TreeSet<Long> model = new TreeSet<>();
+            Random random = new Random();
+
+            for (int i = 0; i < 2000; i++) {
+                long o = random.nextInt(5000);
+                assertThat(obj.insert(o), is(model.add(o)));
+            }
+            assertThat(obj, contains(model.toArray()));
+        }
+
+        @Test
+        public void expire() throws Exception {
+            TimeWindowList<Long> obj = new TimeWindowList<>(IDENTITY, 100);
+
+            for (long i = 0; i < 1000; i++) {
+                obj.insert(i);
+            }
+            assertThat(obj.watermark(), is(999L));
+            assertThat(obj, hasSize(101));
+            assertThat(obj.first(), is(899L));
+            assertThat(obj.get(0), is(899L));
+            assertThat(obj.get(100), is(999L));
+
+            assertThat(obj.insert(898L), is(false));
+            assertThat(obj.insert(900L), is(false));
+            assertThat(obj, hasSize(101));
+        }
+
+        @Test
+        public void tieBreaker() throws Exception {
+            TimeWindowList.Timestamp<String> length = new TimeWindowList.Timestamp<String>() {
+
+                @Override
+                public long timestampOf(String o) {
+                    return o.length();
+                }
+            };
+            SortedList<String> obj = new TimeWindowList<>(length, 10);
+
+            obj.insertAll(Arrays.asList("hoge", "foo", "bar", "hoge"));
+
+            assertThat(obj, contains("bar", "foo", "hoge"));
+        }
+    }
+
+    public static class MethodExpire {
+
+        @Test
+        public void test() throws Exception {
+            TimeWindowList<Long> obj = new TimeWindowList<>(IDENTITY, 10);
+
+            for (long i = 0; i < 600; i += 2) {
+                obj.insert(i);
+            }
+            assertThat(obj.expire(590), is(0));
+            assertThat(obj, hasSize(6));
+            assertThat(obj.expire(1000), is(6));
+            assertThat(obj, empty());
+
+            obj.insert(1000L);
+            assertThat(obj, contains(1000L));
+        }
+
+        @Test
+        public void chunkBoundary() throws Exception {
+            TimeWindowList<Long> obj = new TimeWindowList<>(IDENTITY, 10000);
+
+            for (long i = 0; i < 3000; i++) {
+                obj.insert(i);
+            }
+            assertThat(obj.expire(10513), is(513));
+            assertThat(obj, hasSize(2487));
+            assertThat(obj.first(), is(513L));
+            for (int i = 0; i < obj.size(); i++) {
+                assertThat(obj.get(i), is(513L + i));
+            }
+        }
+    }
+
+    public static class MethodRemove {
+
+        @Test
+        public void test() throws Exception {
+            TimeWindowList<Long> obj = new TimeWindowList<>(IDENTITY, Long.MAX_VALUE);
+            List<Long> model = new ArrayList<>();
+            for (long i = 0; i < 1500; i++) {
+                obj.insert(i);
+                model.add(i);
+            }
+            Random random = new Random();
+
+            while (!model.isEmpty()) {
+                int index = random.nextInt(model.size());
+                if (random.nextBoolean()) {
+                    assertThat(obj.remove(index), is(model.remove(index)));
+                } else {
+                    assertThat(obj.remove(model.remove(index)), is(true));
+                }
+                assertThat(obj.size(), is(model.size()));
+                if (!model.isEmpty()) {
+                    assertThat(obj.first(), is(model.get(0)));
+                    assertThat(obj.last(), is(model.get(model.size() - 1)));
+                }
+            }
+            assertThat(obj, empty());
+            assertThat(obj.remove((Object) 1L), is(false));
+        }
+
+        @Test
+        public void boundary() throws Exception {
+            SortedList<Long> obj = new TimeWindowList<>(IDENTITY, 10);
+
+            try {
+                obj.remove(0);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+                // nop
+            }
+            try {
+                obj.first();
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+        }
+    }
+
+    public static class MethodRemoveAll {
+
+        @Test
+        public void test() throws Exception {
+            SortedList<Long> obj = new TimeWindowList<>(IDENTITY, 1000);
+            for (long i = 0; i < 600; i++) {
+                obj.insert(i);
+            }
+            List<Long> odd = new ArrayList<>();
+            for (long i = 1; i < 600; i += 2) {
+                odd.add(i);
+            }
+
+            assertThat(obj.removeAll(odd), is(true));
+            assertThat(obj.removeAll(odd), is(false));
+            assertThat(obj, hasSize(300));
+            for (int i = 0; i < obj.size(); i++) {
+                assertThat(obj.get(i), is(2L * i));
+            }
+
+            assertThat(obj.retainAll(Collections.singleton(10L)), is(true));
+            assertThat(obj, contains(10L));
+        }
+    }
+
+    public static class MethodIndexOf {
+
+        @Test
+        public void test() throws Exception {
+            SortedList<Long> obj = new TimeWindowList<>(IDENTITY, 1000);
+            for (long i = 0; i < 600; i += 3) {
+                obj.insert(i);
+            }
+
+            for (int i = 0; i < obj.size(); i++) {
+                assertThat(obj.indexOf(3L * i), is(i));
+                assertThat(obj.lastIndexOf(3L * i), is(i));
+                assertThat(obj.contains(3L * i), is(true));
+            }
+            assertThat(obj.indexOf(1L), is(-1));
+            assertThat(obj.indexOf(null), is(-1));
+            assertThat(obj.contains(1L), is(false));
+        }
+    }
+
+    public static class MethodQuantiles {
+
+        @Test
+        public void test() throws Exception {
+            SortedList<Long> obj = new TimeWindowList<>(IDENTITY, 1000);
+            for (long i = 1; i <= 600; i++) {
+                obj.insert(i);
+            }
+
+            assertThat(obj.quantiles(0, 0.5, 0.99, 1), contains(1L, 300L, 594L, 600L));
+            assertThat(obj.quantile(0.25), is(150L));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package sc.ript.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Runs bursts of removals, positional reads and inserts, 40% of them removals, against a {@link TreeList}, an
+ * {@link AdaptiveList} past its threshold, whose removals unlink and rebalance at once, and a {@link TombstoneList} of
+ * the same size, and reports the time per operation and the tombstones left at the end.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=sc.ript.util.TombstoneListBenchmark
+ * </pre>
+ */
+public class TombstoneListBenchmark {
+
+    private static final int SIZE = 100000;
+
+    private static final int BURSTS = 50;
+
+    private static final int REMOVES = 400;
+
+    private static final int GETS = 300;
+
+    private static final int INSERTS = 300;
+
+    private static final int ROUNDS = 2;
+
+    public static void main(String[] args) throws Exception {
+        for (int r = 0; r < ROUNDS; r++) {
+            TreeList<Integer> tree = new TreeList<>();
+            AdaptiveList<Integer> unlinked = new AdaptiveList<>();
+            TombstoneList<Integer> tombstones = new TombstoneList<>();
+            Random random = new Random(r);
+            Integer[] values = new Integer[SIZE];
+            for (int i = 0; i < SIZE; i++) {
+                values[i] = random.nextInt();
+            }
+            tree.insertAll(Arrays.asList(values));
+            unlinked.insertAll(Arrays.asList(values));
+            tombstones.insertAll(Arrays.asList(values));
+
+            long treeTime = run(tree, new Random(r));
+            long unlinkedTime = run(unlinked, new Random(r));
+            long tombstoneTime = run(tombstones, new Random(r));
+            int ops = BURSTS * (REMOVES + GETS + INSERTS);
+            System.out.printf("%d bursts: %7.0f / %5.0f / %5.0f ns per operation"
+                    + "  (TreeList / AdaptiveList / TombstoneList)  %d tombstones left%n", BURSTS,
+                    (double) treeTime / ops, (double) unlinkedTime / ops, (double) tombstoneTime / ops,
+                    tombstones.tombstones());
+        }
+    }
+
+    private static long run(SortedList<Integer> list, Random random) {
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int b = 0; b < BURSTS; b++) {
+            for (int i = 0; i < REMOVES; i++) {
+                if (random.nextBoolean()) {
+                    list.remove(random.nextInt(list.size()));
+                } else {
+                    list.remove(list.get(random.nextInt(list.size())));
+                }
+            }
+            for (int i = 0; i < GETS; i++) {
+                sum += list.get(random.nextInt(list.size()));
+            }
+            for (int i = 0; i < INSERTS; i++) {
+                list.insert(random.nextInt());
+            }
+        }
+        long time = System.nanoTime() - start;
+        if (sum == 1) {
+            System.out.println();
+        }
+        return time;
+    }
+}
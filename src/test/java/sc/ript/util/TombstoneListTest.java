@@ -0,0 +1,201 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class TombstoneListTest {
+
+    public static class Constructor {
+
+        @Test
+        public void isEmpty() throws Exception {
+            TombstoneList<String> obj = new TombstoneList<>();
+
+            assertThat(obj, empty());
+            assertThat(obj.tombstones(), is(0));
+            try {
+                obj.first();
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+        }
+
+        @Test
+        public void comparator() throws Exception {
+            TombstoneList<String> obj = new TombstoneList<>(Collections.<String> reverseOrder());
+            obj.insertAll(Arrays.asList("a", "c", "b"));
+
+            assertThat(obj, contains("c", "b", "a"));
+        }
+
+        @Test
+        public void ratio() throws Exception {
+            try {
+                new TombstoneList<String>(null, 0);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // nop
+            }
+            try {
+                new TombstoneList<String>(null, 1.5);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // nop
+            }
+        }
+    }
+
+    public static class MethodRemove {
+
+        @Test
+        public void tombstone() throws Exception {
+            // a ratio of 1 is never exceeded, so nothing is compacted behind the test's back
+            TombstoneList<String> obj = new TombstoneList<>(null, 1);
+            obj.insertAll(Arrays.asList("a", "b", "c", "d", "e"));
+
+            assertThat(obj.remove("b"), is(true));
+            assertThat(obj.remove("b"), is(false));
+            assertThat(obj.remove(2), is("d"));
+            assertThat(obj.tombstones(), is(2));
+            assertThat(obj, contains("a", "c", "e"));
+            assertThat(obj.size(), is(3));
+            assertThat(obj.get(1), is("c"));
+            assertThat(obj.indexOf("e"), is(2));
+            assertThat(obj.indexOf("d"), is(-1));
+            assertThat(obj.contains("b"), is(false));
+
+            assertThat(obj.insert("b"), is(true));
+            assertThat(obj.tombstones(), is(1));
+            assertThat(obj, contains("a", "b", "c", "e"));
+
+            assertThat(obj.remove("a"), is(true));
+            assertThat(obj.remove("e"), is(true));
+            assertThat(obj.first(), is("b"));
+            assertThat(obj.last(), is("c"));
+            assertThat(obj.quantiles(0, 1), contains("b", "c"));
+
+            obj.compact();
+            assertThat(obj.tombstones(), is(0));
+            assertThat(obj, contains("b", "c"));
+        }
+
+        @Test
+        public void background() throws Exception {
+            TombstoneList<Integer> obj = new TombstoneList<>();
+            List<Integer> values = new ArrayList<>();
+            for (int i = 0; i < 10000; i++) {
+                values.add(i);
+            }
+            obj.insertAll(values);
+            for (int i = 0; i < 10000; i++) {
+                if ((i % 10) != 0) {
+                    obj.remove(Integer.valueOf(i));
+                }
+            }
+
+            // removals after the last compaction may leave tombstones up to the ratio of the nodes behind
+            int tombstones = obj.tombstones();
+            for (int i = 0; (i < 100) && ((TombstoneList.DEFAULT_RATIO * (1000 + tombstones)) < tombstones); i++) {
+                Thread.sleep(100);
+                tombstones = obj.tombstones();
+            }
+            assertThat((double) tombstones, lessThanOrEqualTo(TombstoneList.DEFAULT_RATIO * (1000 + tombstones)));
+            // the compactor stopped there, the rest waits for removals to push the ratio over again
+            Thread.sleep(200);
+            assertThat(obj.tombstones(), is(tombstones));
+            assertThat(tombstones, greaterThan(0));
+            assertThat(obj.size(), is(1000));
+            assertThat(obj.get(999), is(9990));
+
+            obj.compact();
+            assertThat(obj.tombstones(), is(0));
+            assertThat(obj.size(), is(1000));
+            assertThat(obj.get(999), is(9990));
+        }
+
+        @Test
+        public void isNull() throws Exception {
+            TombstoneList<String> obj = new TombstoneList<>();
+
+            assertThat(obj.remove(null), is(false));
+            assertThat(obj.indexOf(null), is(-1));
+        }
+    }
+
+    public static class MethodInsert {
+
+        @Test
+        public void test() throws Exception {
+            Random random = new Random();
+            TombstoneList<Integer> obj = new TombstoneList<>(null, 0.1);
+            TreeSet<Integer> model = new TreeSet<>();
+            for (int i = 0; i < 20000; i++) {
+                int o = random.nextInt(2000);
+                switch (random.nextInt(6)) {
+                case 0:
+                case 1:
+                    assertThat(obj.remove(Integer.valueOf(o)), is(model.remove(o)));
+                    break;
+                case 2:
+                    if (!model.isEmpty()) {
+                        int index = random.nextInt(model.size());
+                        assertThat(model.remove(obj.remove(index)), is(true));
+                    }
+                    break;
+                case 3:
+                    List<Integer> batch = Arrays.asList(o, o + 1, o + 2);
+                    assertThat(obj.removeAll(batch), is(model.removeAll(batch)));
+                    break;
+                default:
+                    assertThat(obj.insert(o), is(model.add(o)));
+                    break;
+                }
+                if ((i % 1000) == 0) {
+                    assertThat(obj.toArray(), is(model.toArray()));
+                }
+            }
+
+            List<Integer> expected = new ArrayList<>(model);
+            assertThat(obj.size(), is(model.size()));
+            assertThat(obj.toArray(), is(model.toArray()));
+            for (int i = 0; i < expected.size(); i++) {
+                assertThat(obj.get(i), is(expected.get(i)));
+                assertThat(obj.indexOf(expected.get(i)), is(i));
+            }
+            for (int o = 0; o < 2002; o++) {
+                assertThat(obj.contains(o), is(model.contains(o)));
+            }
+        }
+    }
+
+    public static class MethodRetainAll {
+
+        @Test
+        public void test() throws Exception {
+            TombstoneList<String> obj = new TombstoneList<>(null, 1);
+            obj.insertAll(Arrays.asList("a", "b", "c", "d"));
+            obj.remove("c");
+
+            assertThat(obj.retainAll(Arrays.asList("a", "c", "d")), is(true));
+            assertThat(obj, contains("a", "d"));
+            assertThat(obj.tombstones(), is(0));
+            obj.clear();
+            assertThat(obj, empty());
+            assertThat(obj.tombstones(), is(0));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package sc.ript.util;
+
+import java.util.Random;
+
+/**
+ * Insert throughput of {@link TreeList} on sorted, nearly-sorted and random streams, with a positional read after
+ * every few inserts so that the cost of keeping or rebuilding the view shows up.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=sc.ript.util.TreeListBenchmark
+ * </pre>
+ */
+public class TreeListBenchmark {
+
+    private static final int SIZE = 200000;
+
+    private static final int READ_EVERY = 16;
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        int[] sorted = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            sorted[i] = i;
+        }
+        int[] nearlySorted = sorted.clone();
+        for (int i = 0; i < (SIZE / 100); i++) {
+            int a = random.nextInt(SIZE - 8);
+            int b = a + 1 + random.nextInt(7);
+            int tmp = nearlySorted[a];
+            nearlySorted[a] = nearlySorted[b];
+            nearlySorted[b] = tmp;
+        }
+        int[] shuffled = sorted.clone();
+        for (int i = SIZE - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = tmp;
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.printf("round %d%n", round);
+            run("sorted", sorted);
+            run("nearly-sorted", nearlySorted);
+            run("random", shuffled);
+        }
+    }
+
+    private static void run(String name, int[] stream) {
+        TreeList<Integer> list = new TreeList<>();
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < stream.length; i++) {
+            list.insert(stream[i]);
+            if ((i % READ_EVERY) == 0) {
+                sink += list.get(list.size() - 1);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("  %-14s %,12.0f inserts/s (%d)%n", name, stream.length * 1e9 / elapsed, sink & 1);
+    }
+}
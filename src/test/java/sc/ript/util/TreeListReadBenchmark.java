@@ -0,0 +1,110 @@
+package sc.ript.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Bytes allocated per full scan of a {@link TreeList} through its iterator, {@code forEach}, {@code forEachInRange}
+ * and a reused cursor, measured with the allocation counter of the current thread after a warm-up.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=sc.ript.util.TreeListReadBenchmark
+ * </pre>
+ */
+public class TreeListReadBenchmark {
+
+    private static final int SIZE = 100000;
+
+    private static final int WARMUP = 2000;
+
+    private static final int SCANS = 2000;
+
+    private static long sum;
+
+    private static final Consumer<Integer> SUM = new Consumer<Integer>() {
+
+        @Override
+        public void accept(Integer o) {
+            sum += o;
+        }
+    };
+
+    private interface Scan {
+
+        void run();
+    }
+
+    public static void main(String[] args) {
+        final TreeList<Integer> list = new TreeList<>();
+        for (int i = 0; i < SIZE; i++) {
+            list.insert(i);
+        }
+        final TreeList.Cursor<Integer> cursor = list.cursor();
+        // boxed once, so that only the list itself is measured
+        final Integer from = SIZE / 4;
+        final Integer to = SIZE / 2;
+
+        measure("iterator", new Scan() {
+
+            @Override
+            public void run() {
+                Iterator<Integer> itr = list.iterator();
+                while (itr.hasNext()) {
+                    sum += itr.next();
+                }
+            }
+        });
+        measure("forEach", new Scan() {
+
+            @Override
+            public void run() {
+                list.forEach(SUM);
+            }
+        });
+        measure("forEachInRange", new Scan() {
+
+            @Override
+            public void run() {
+                list.forEachInRange(from, to, SUM);
+            }
+        });
+        measure("cursor", new Scan() {
+
+            @Override
+            public void run() {
+                cursor.reset();
+                while (cursor.hasNext()) {
+                    sum += cursor.next();
+                }
+            }
+        });
+        measure("get", new Scan() {
+
+            @Override
+            public void run() {
+                for (int i = 0; i < SIZE; i += 1000) {
+                    sum += list.get(i);
+                }
+            }
+        });
+        System.out.println("(" + sum + ")");
+    }
+
+    private static void measure(String name, Scan scan) {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP; i++) {
+            scan.run();
+        }
+        long start = System.nanoTime();
+        long before = bean.getThreadAllocatedBytes(id);
+        for (int i = 0; i < SCANS; i++) {
+            scan.run();
+        }
+        long allocated = bean.getThreadAllocatedBytes(id) - before;
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-15s %8.1f bytes/scan %10.1f us/scan%n", name, (double) allocated / SCANS,
+                elapsed / 1e3 / SCANS);
+    }
+}
@@ -0,0 +1,45 @@
+package sc.ript.util;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+
+/**
+ * Throughput of the writers and readers of {@link TreeListStressTest} with a fixed seed. Every run is appended to
+ * {@code target/treelist-stress.csv}. When {@code treelist.stress.baseline} (ops/s) is given, the run fails if the
+ * throughput drops more than {@code treelist.stress.tolerance} (default 0.25) below it.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=sc.ript.util.TreeListStressBenchmark -Dtreelist.stress.baseline=20000
+ * </pre>
+ */
+public class TreeListStressBenchmark {
+
+    private static final long MILLIS = 10000L;
+
+    private static final double DEFAULT_TOLERANCE = 0.25;
+
+    private static final long SEED = 20141225L;
+
+    public static void main(String[] args) throws Exception {
+        long millis = Long.getLong("treelist.stress.millis", MILLIS);
+        double baseline = Double.parseDouble(System.getProperty("treelist.stress.baseline", "0"));
+        double tolerance = Double.parseDouble(System.getProperty("treelist.stress.tolerance",
+                String.valueOf(DEFAULT_TOLERANCE)));
+
+        double throughput = TreeListStressTest.run(SEED, millis);
+        System.out.printf("%d writers, %d readers: %.0f ops/s%n", TreeListStressTest.WRITERS,
+                TreeListStressTest.READERS, throughput);
+        File dir = new File("target");
+        if (dir.isDirectory()) {
+            try (Writer out = new FileWriter(new File(dir, "treelist-stress.csv"), true)) {
+                out.write(String.format("%d,%d,%d,%.0f%n", System.currentTimeMillis(), TreeListStressTest.WRITERS,
+                        TreeListStressTest.READERS, throughput));
+            }
+        }
+        if ((0 < baseline) && (throughput < baseline * (1 - tolerance))) {
+            throw new IllegalStateException(String.format("%.0f ops/s against a baseline of %.0f ops/s", throughput,
+                    baseline));
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Runs writers and readers against one {@link TreeList} at the same time. Every writer owns a disjoint set of keys
+ * and keeps its own model, so each writer can check its own keys exactly and the final contents can be compared with
+ * the union of the models. Readers check that every view they get is strictly ascending.
+ *
+ * <pre>
+ * mvn test -Dtest=TreeListStressTest -Dtreelist.stress.millis=10000
+ * </pre>
+ *
+ * Throughput is measured by {@link TreeListStressBenchmark}, which runs the same scenario.
+ */
+public class TreeListStressTest {
+
+    static final int WRITERS = 4;
+
+    static final int READERS = 4;
+
+    private static final int KEYS_PER_WRITER = 1000;
+
+    private static final int BATCH = 16;
+
+    private static final long DEFAULT_MILLIS = 1500L;
+
+    @Test
+    public void mixed() throws Exception {
+        double throughput = run(new Random().nextLong(), Long.getLong("treelist.stress.millis", DEFAULT_MILLIS));
+
+        assertThat(throughput, greaterThan(0.0));
+    }
+
+    /**
+     * Runs the writers and readers for {@code millis}, checks the contents and returns the operations per second.
+     */
+    static double run(long seed, long millis) throws Exception {
+        final TreeList<Integer> list = new TreeList<>();
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicLong ops = new AtomicLong();
+        final Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Set<Integer>> models = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        Random seeds = new Random(seed);
+
+        for (int w = 0; w < WRITERS; w++) {
+            Set<Integer> model = new TreeSet<>();
+            models.add(model);
+            threads.add(new Thread(new WriterTask(list, w, model, new Random(seeds.nextLong()), start, stop, ops,
+                    errors)));
+        }
+        for (int r = 0; r < READERS; r++) {
+            threads.add(new Thread(new ReaderTask(list, new Random(seeds.nextLong()), start, stop, ops, errors)));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        TimeUnit.MILLISECONDS.sleep(millis);
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        if (!errors.isEmpty()) {
+            throw new AssertionError(errors.peek());
+        }
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (Set<Integer> model : models) {
+            expected.addAll(model);
+        }
+        assertThat(list, hasSize(expected.size()));
+        assertArrayEquals(expected.toArray(), list.toArray());
+        int index = 0;
+        for (Integer o : expected) {
+            assertThat(list.get(index), is(o));
+            assertThat(list.indexOf(o), is(index));
+            index++;
+        }
+
+        return ops.get() * 1e9 / elapsed;
+    }
+
+    private abstract static class Worker implements Runnable {
+
+        private final CountDownLatch start;
+
+        private final AtomicBoolean stop;
+
+        private final AtomicLong ops;
+
+        private final Queue<Throwable> errors;
+
+        Worker(CountDownLatch start, AtomicBoolean stop, AtomicLong ops, Queue<Throwable> errors) {
+            this.start = start;
+            this.stop = stop;
+            this.ops = ops;
+            this.errors = errors;
+        }
+
+        @Override
+        public void run() {
+            long count = 0;
+            try {
+                start.await();
+                while (!stop.get() && errors.isEmpty()) {
+                    step();
+                    count++;
+                }
+            } catch (Throwable e) {
+                errors.add(e);
+            } finally {
+                ops.addAndGet(count);
+            }
+        }
+
+        abstract void step();
+    }
+
+    private static final class WriterTask extends Worker {
+
+        private final TreeList<Integer> list;
+
+        private final int id;
+
+        private final Set<Integer> model;
+
+        private final Random random;
+
+        WriterTask(TreeList<Integer> list, int id, Set<Integer> model, Random random, CountDownLatch start,
+                AtomicBoolean stop, AtomicLong ops, Queue<Throwable> errors) {
+            super(start, stop, ops, errors);
+            this.list = list;
+            this.id = id;
+            this.model = model;
+            this.random = random;
+        }
+
+        private int key() {
+            return id + (WRITERS * random.nextInt(KEYS_PER_WRITER));
+        }
+
+        @Override
+        void step() {
+            int op = random.nextInt(10);
+            if (op == 0) {
+                List<Integer> batch = new ArrayList<>();
+                for (int i = 0; i < BATCH; i++) {
+                    batch.add(key());
+                }
+                assertThat(list.insertAll(batch), is(model.addAll(batch)));
+                for (Integer k : batch) {
+                    assertThat(list.contains(k), is(true));
+                }
+            } else if (op == 1) {
+                List<Integer> batch = new ArrayList<>();
+                for (int i = 0; i < BATCH; i++) {
+                    batch.add(key());
+                }
+                assertThat(list.removeAll(batch), is(model.removeAll(batch)));
+                for (Integer k : batch) {
+                    assertThat(list.contains(k), is(false));
+                }
+            } else {
+                Integer k = key();
+                if (model.contains(k)) {
+                    assertThat(list.remove(k), is(true));
+                    model.remove(k);
+                } else {
+                    assertThat(list.insert(k), is(true));
+                    model.add(k);
+                }
+                assertThat(list.contains(k), is(model.contains(k)));
+                int index = list.indexOf(k);
+                assertThat(0 <= index, is(model.contains(k)));
+            }
+        }
+    }
+
+    private static final class ReaderTask extends Worker {
+
+        private final TreeList<Integer> list;
+
+        private final Random random;
+
+        ReaderTask(TreeList<Integer> list, Random random, CountDownLatch start, AtomicBoolean stop, AtomicLong ops,
+                Queue<Throwable> errors) {
+            super(start, stop, ops, errors);
+            this.list = list;
+            this.random = random;
+        }
+
+        @Override
+        void step() {
+            int op = random.nextInt(4);
+            if (op == 0) {
+                ascending(list.listIterator());
+            } else if (op == 1) {
+                ascending(list.iterator());
+            } else {
+                int size = list.size();
+                if (size == 0) {
+                    return;
+                }
+                int index = random.nextInt(size);
+                try {
+                    Integer o = list.get(index);
+                    assertThat(o, lessThan(WRITERS * KEYS_PER_WRITER));
+                    if (op == 3) {
+                        ListIterator<Integer> itr = list.listIterator(index);
+                        if (itr.hasNext()) {
+                            itr.next();
+                        }
+                    }
+                } catch (IndexOutOfBoundsException e) {
+                    // the list shrank after size() was read, and may have grown again since
+                }
+            }
+        }
+
+        private static void ascending(Iterator<Integer> itr) {
+            int previous = -1;
+            while (itr.hasNext()) {
+                int o = itr.next();
+                assertThat(o, greaterThan(previous));
+                previous = o;
+            }
+        }
+    }
+}
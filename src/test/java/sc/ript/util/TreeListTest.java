@@ -5,6 +5,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -14,8 +15,16 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 import org.junit.Test;
 import org.junit.experimental.runners.Enclosed;
@@ -385,6 +394,29 @@ public class TreeListTest {
 
             assertThat(index, is(obj.size()));
         }
+
+        @Test
+        public void snapshot() throws Exception {
+            SortedList<Integer> obj = new TreeList<>(Arrays.asList(1, 2, 3));
+            Iterator<Integer> itr = obj.iterator();
+            ListIterator<Integer> listItr = obj.listIterator();
+
+            obj.insert(4);
+            obj.insert(0);
+            obj.remove((Object) 2);
+
+            List<Integer> seen = new ArrayList<>();
+            while (itr.hasNext()) {
+                seen.add(itr.next());
+            }
+            assertThat(seen, contains(1, 2, 3));
+            seen.clear();
+            while (listItr.hasNext()) {
+                seen.add(listItr.next());
+            }
+            assertThat(seen, contains(1, 2, 3));
+            assertThat(obj, contains(0, 1, 3, 4));
+        }
     }
 
     @RunWith(Enclosed.class)
@@ -859,6 +891,60 @@ public class TreeListTest {
             assertThat(obj, empty());
             assertThat(obj.removeAll(all), is(false));
         }
+
+        @Test
+        public void argumentList() throws Exception {
+            TreeList<Integer> obj = new TreeList<>();
+            TreeSet<Integer> model = new TreeSet<>();
+            List<Integer> arg = new ArrayList<>();
+            {
+                Random random = new Random();
+                for (int i = 0; i < 1000; i++) {
+                    obj.insert(i);
+                    model.add(i);
+                }
+                for (int i = 0; i < 700; i++) {
+                    arg.add(random.nextInt(1500));
+                }
+            }
+            obj.get(999);
+
+            assertThat(obj.removeAll(arg), is(model.removeAll(arg)));
+            assertThat(obj, contains(model.toArray()));
+            assertThat(obj.removeAll(arg), is(false));
+            assertThat(obj.removeAll(Collections.singletonList(model.first())), is(true));
+            assertThat(obj.get(0), is(model.higher(model.first())));
+        }
+
+        @Test
+        public void batchSize() throws Exception {
+            TreeList<Integer> obj = new TreeList<>();
+            List<Integer> arg = new ArrayList<>();
+            {
+                for (int i = 0; i < 1000; i++) {
+                    obj.insert(i);
+                    if ((i % 3) != 0) {
+                        arg.add(i);
+                    }
+                }
+                Collections.shuffle(arg);
+            }
+
+            assertThat(obj.removeAll(arg, 7), is(true));
+            assertThat(obj, hasSize(334));
+            for (int i = 0; i < obj.size(); i++) {
+                assertThat(obj.get(i), is(i * 3));
+            }
+            assertThat(obj.removeAll(Arrays.asList(0, 3), 1), is(true));
+            assertThat(obj.first(), is(6));
+
+            try {
+                obj.removeAll(arg, 0);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // nop
+            }
+        }
     }
 
     public static class MethodRetainAll {
@@ -920,6 +1006,42 @@ public class TreeListTest {
             assertThat(obj.removeAll(all), is(false));
             assertThat(obj, empty());
         }
+
+        @Test
+        public void argumentList() throws Exception {
+            TreeList<Integer> obj = new TreeList<>();
+            TreeSet<Integer> model = new TreeSet<>();
+            List<Integer> arg = new ArrayList<>();
+            {
+                Random random = new Random();
+                for (int i = 0; i < 1000; i++) {
+                    obj.insert(i);
+                    model.add(i);
+                }
+                for (int i = 0; i < 700; i++) {
+                    arg.add(random.nextInt(1500));
+                }
+            }
+
+            assertThat(obj.retainAll(arg, 10), is(model.retainAll(arg)));
+            assertThat(obj, contains(model.toArray()));
+            assertThat(obj.retainAll(arg), is(false));
+            assertThat(obj.retainAll(new ArrayList<Integer>()), is(true));
+            assertThat(obj, empty());
+        }
+
+        @Test
+        public void foreign() throws Exception {
+            TreeList<Integer> obj = new TreeList<>(Arrays.asList(1, 2, 3, 4));
+
+            // not comparable with each other, so looked up one by one
+            assertThat(obj.retainAll(Arrays.<Object> asList("a", 2, 3)), is(true));
+            assertThat(obj, contains(2, 3));
+            assertThat(obj.retainAll(Arrays.<Object> asList(3, 2, 5)), is(false));
+            // comparable with each other, not with the elements
+            assertThat(obj.retainAll(Arrays.asList("a", "b")), is(true));
+            assertThat(obj, empty());
+        }
     }
 
     public static class MethodClear {
@@ -1056,6 +1178,62 @@ public class TreeListTest {
 
             assertThat(obj, contains(arg.toArray()));
         }
+
+        @Test
+        public void ascending() throws Exception {
+            SortedList<Integer> obj = new TreeList<>();
+
+            for (int i = 0; i < 100; i++) {
+                assertThat(obj.insert(i), is(true));
+                assertThat(obj.get(i), is(i));
+                assertThat(obj.insert(i), is(false));
+            }
+            assertThat(obj.insert(50), is(false));
+            assertThat(obj.indexOf(99), is(99));
+            assertThat(obj, hasSize(100));
+        }
+
+        @Test
+        public void appendWhileIterating() throws Exception {
+            SortedList<Integer> obj = new TreeList<>();
+            obj.insert(1);
+            obj.insert(2);
+            obj.insert(3);
+            ListIterator<Integer> itr = obj.listIterator();
+
+            assertThat(itr.next(), is(1));
+            assertThat(obj.insert(4), is(true));
+            // the iterator keeps its snapshot
+            assertThat(itr.next(), is(2));
+            assertThat(itr.next(), is(3));
+            assertThat(itr.hasNext(), is(false));
+            assertThat(obj.get(3), is(4));
+            assertThat(obj, contains(1, 2, 3, 4));
+        }
+
+        @Test
+        public void partialView() throws Exception {
+            SortedSet<Integer> arg;
+            {
+                arg = new TreeSet<>();
+                for (int i = 0; i < 100; i += 2) {
+                    arg.add(i);
+                }
+            }
+            SortedList<Integer> obj = new TreeList<>(arg);
+            Random random = new Random();
+
+            for (int i = 0; i < 100; i++) {
+                int o = random.nextInt(300);
+                obj.get(random.nextInt(obj.size()));
+                assertThat(obj.insert(o), is(arg.add(o)));
+                List<Integer> expected = new ArrayList<>(arg);
+                int index = random.nextInt(expected.size());
+                assertThat(obj.get(index), is(expected.get(index)));
+                assertThat(obj.last(), is(expected.get(expected.size() - 1)));
+            }
+            assertThat(obj, contains(arg.toArray()));
+        }
     }
 
     public static class MethodInsertAll {
@@ -1109,6 +1287,70 @@ public class TreeListTest {
             assertThat(obj, hasSize(all.size()));
             assertThat(obj, contains(all.toArray()));
         }
+
+        @Test
+        public void batchSize() throws Exception {
+            TreeList<Integer> obj = new TreeList<>();
+            TreeSet<Integer> model = new TreeSet<>();
+            List<Integer> arg = new ArrayList<>();
+            {
+                Random random = new Random();
+                for (int i = 0; i < 500; i++) {
+                    arg.add(random.nextInt(1000));
+                }
+            }
+
+            assertThat(obj.insertAll(arg, 64), is(model.addAll(arg)));
+            assertThat(obj, contains(model.toArray()));
+            assertThat(obj.insertAll(arg, 1), is(false));
+            assertThat(obj.insertAll(Arrays.asList(1000, 1001), 1), is(true));
+            assertThat(obj.last(), is(1001));
+            assertThat(obj, hasSize(model.size() + 2));
+        }
+    }
+
+    public static class MethodMergeFrom {
+
+        @Test
+        public void test() throws Exception {
+            Random random = new Random();
+            TreeSet<Integer> model = new TreeSet<>();
+            TreeList<Integer> obj = new TreeList<>();
+            TreeList<Integer> other = new TreeList<>();
+            for (int i = 0; i < 500; i++) {
+                int o = random.nextInt(1000);
+                model.add(o);
+                obj.insert(o);
+            }
+            for (int i = 0; i < 500; i++) {
+                int o = random.nextInt(1000);
+                model.add(o);
+                other.insert(o);
+            }
+            obj.get(0);
+
+            assertThat(obj.mergeFrom(other), is(true));
+            assertThat(obj, contains(model.toArray()));
+            assertThat(obj.mergeFrom(other), is(false));
+            assertThat(obj.mergeFrom(obj), is(false));
+            assertThat(obj.mergeFrom(new TreeList<Integer>()), is(false));
+        }
+
+        @Test
+        public void fewElements() throws Exception {
+            TreeList<Integer> obj = new TreeList<>();
+            for (int i = 0; i < 1000; i += 2) {
+                obj.insert(i);
+            }
+            obj.get(0);
+            TreeList<Integer> other = new TreeList<>(Collections.reverseOrder());
+            other.insertAll(Arrays.asList(1001, 3, 4));
+
+            assertThat(obj.mergeFrom(other), is(true));
+            assertThat(obj, hasSize(502));
+            assertThat(obj.get(2), is(3));
+            assertThat(obj.last(), is(1001));
+        }
     }
 
     public static class ICloneable {
@@ -1157,4 +1399,424 @@ public class TreeListTest {
             assertThat(copy, contains(obj.toArray()));
         }
     }
+
+    public static class MethodQuantiles {
+
+        static Integer expected(List<Integer> model, double q) {
+            int index = (int) Math.ceil(q * model.size()) - 1;
+            return model.get(Math.max(index, 0));
+        }
+
+        static void check(SortedList<Integer> obj, List<Integer> model, Random random) {
+            double[] qs = { 0, 0.5, 0.99, 0.999, 1, random.nextDouble(), random.nextDouble() };
+            List<Integer> actual = obj.quantiles(qs);
+
+            assertThat(actual, hasSize(qs.length));
+            for (int i = 0; i < qs.length; i++) {
+                assertThat(actual.get(i), is(expected(model, qs[i])));
+                assertThat(obj.quantile(qs[i]), is(expected(model, qs[i])));
+            }
+        }
+
+        @Test
+        public void isEmpty() throws Exception {
+            SortedList<Integer> obj = new TreeList<>();
+
+            try {
+                obj.quantile(0.5);
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+            obj.insert(1);
+            for (double q : new double[] { -0.1, 1.1, Double.NaN }) {
+                try {
+                    obj.quantile(q);
+                    fail();
+                } catch (IllegalArgumentException e) {
+                    // nop
+                }
+            }
+        }
+
+        @Test
+        public void test() throws Exception {
+            Random random = new Random();
+            SortedSet<Integer> arg = new TreeSet<>();
+            int size = Math.max(random.nextInt(2000), 1);
+            while (arg.size() < size) {
+                arg.add(random.nextInt(100000));
+            }
+            TreeList<Integer> obj = new TreeList<>(arg);
+            List<Integer> model = new ArrayList<>(arg);
+
+            // no view yet
+            check(obj, model, random);
+            // partial view
+            obj.get(size / 3);
+            check(obj, model, random);
+            // complete view
+            obj.get(size - 1);
+            check(obj, model, random);
+            // view partially loaded again after an insert beyond it
+            obj.insert(100000);
+            model.add(100000);
+            check(obj, model, random);
+        }
+
+        @Test
+        public void walk() throws Exception {
+            List<Integer> model = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                model.add(i * 2);
+            }
+            TreeList<Integer> obj = new TreeList<>(model);
+
+            // short walks from either end
+            assertThat(obj.quantiles(0.1, 0.999), contains(expected(model, 0.1), expected(model, 0.999)));
+            // a walk over most of the set
+            assertThat(obj.quantiles(0.4, 0.6), contains(expected(model, 0.4), expected(model, 0.6)));
+            assertThat(obj.quantiles(0.5, 1), contains(expected(model, 0.5), expected(model, 1)));
+        }
+
+        @Test
+        public void order() throws Exception {
+            SortedList<Integer> obj = new TreeList<>(Arrays.asList(5, 1, 4, 2, 3));
+
+            assertThat(obj.quantiles(0.9, 0.1, 0.9, 0.5), contains(5, 1, 5, 3));
+            try {
+                obj.quantiles(0.5).set(0, 1);
+                fail();
+            } catch (UnsupportedOperationException e) {
+                // nop
+            }
+        }
+    }
+
+    public static class MethodTryInsert {
+
+        static final Integer BLOCK = -1;
+
+        // holds the write lock of list until release is counted down
+        static Thread block(final TreeList<Integer> list) {
+            Thread thread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    list.insert(BLOCK);
+                }
+            });
+            thread.start();
+            return thread;
+        }
+
+        static TreeList<Integer> blocking(final CountDownLatch entered, final CountDownLatch release) {
+            return new TreeList<>(new Comparator<Integer>() {
+
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    if ((o1 == BLOCK) || (o2 == BLOCK)) {
+                        entered.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                    return o1.compareTo(o2);
+                }
+            });
+        }
+
+        @Test
+        public void test() throws Exception {
+            TreeList<Integer> obj = new TreeList<>();
+
+            assertThat(obj.tryInsert(2, 1, TimeUnit.SECONDS), is(true));
+            assertThat(obj.tryInsert(1, 0, TimeUnit.SECONDS), is(true));
+            assertThat(obj.tryInsert(2, 1, TimeUnit.SECONDS), is(false));
+            assertThat(obj, contains(1, 2));
+        }
+
+        @Test
+        public void timeout() throws Exception {
+            CountDownLatch entered = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            TreeList<Integer> obj = blocking(entered, release);
+            Thread writer = block(obj);
+            entered.await();
+
+            try {
+                obj.tryInsert(1, 50, TimeUnit.MILLISECONDS);
+                fail();
+            } catch (TimeoutException e) {
+                // nop
+            }
+            release.countDown();
+            writer.join();
+
+            assertThat(obj.tryInsert(2, 1, TimeUnit.SECONDS), is(true));
+            assertThat(obj, contains(BLOCK, 2));
+        }
+    }
+
+    public static class MethodInsertAsync {
+
+        @Test
+        public void test() throws Exception {
+            TreeList<Integer> obj = new TreeList<>();
+
+            assertThat(obj.insertAsync(1).get(), is(true));
+            assertThat(obj.insertAsync(1).get(), is(false));
+            assertThat(obj, contains(1));
+        }
+
+        @Test
+        public void blocked() throws Exception {
+            CountDownLatch entered = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            TreeList<Integer> obj = MethodTryInsert.blocking(entered, release);
+            Thread writer = MethodTryInsert.block(obj);
+            entered.await();
+
+            List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(obj.insertAsync(i % 50));
+            }
+            CompletableFuture<Boolean> cancelled = obj.insertAsync(1000);
+            assertThat(cancelled.cancel(false), is(true));
+            for (CompletableFuture<Boolean> future : futures) {
+                assertThat(future.isDone(), is(false));
+            }
+            release.countDown();
+            writer.join();
+
+            int added = 0;
+            for (CompletableFuture<Boolean> future : futures) {
+                if (future.get(10, TimeUnit.SECONDS)) {
+                    added++;
+                }
+            }
+            assertThat(added, is(50));
+            assertThat(obj, hasSize(51));
+            assertThat(obj.contains(1000), is(false));
+            assertThat(obj.get(50), is(49));
+        }
+
+        @Test
+        public void writeExecutor() throws Exception {
+            final CountDownLatch entered = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            TreeList<Integer> obj = new TreeList<>(new Comparator<Integer>() {
+
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    if ((o1 == MethodTryInsert.BLOCK) || (o2 == MethodTryInsert.BLOCK)) {
+                        entered.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    } else {
+                        threads.add(Thread.currentThread().getName());
+                    }
+                    return o1.compareTo(o2);
+                }
+            });
+            Thread writer = MethodTryInsert.block(obj);
+            entered.await();
+
+            // several batches queued behind the lock, all applied off the common pool
+            List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                futures.add(obj.insertAsync(i));
+            }
+            release.countDown();
+            writer.join();
+            for (CompletableFuture<Boolean> future : futures) {
+                assertThat(future.get(10, TimeUnit.SECONDS), is(true));
+            }
+
+            assertThat(obj, hasSize(1001));
+            assertThat(threads, everyItem(startsWith("TreeList-write-")));
+        }
+
+        @Test
+        public void failure() throws Exception {
+            TreeList<Object> obj = new TreeList<>();
+            obj.insert(1);
+
+            CompletableFuture<Boolean> future = obj.insertAsync("a");
+            try {
+                future.join();
+                fail();
+            } catch (CompletionException e) {
+                assertThat(e.getCause(), instanceOf(ClassCastException.class));
+            }
+            assertThat(obj.insertAsync(2).get(), is(true));
+        }
+    }
+
+    public static class MethodForEach {
+
+        @Test
+        public void test() throws Exception {
+            Random random = new Random();
+            SortedSet<Integer> arg = new TreeSet<>();
+            for (int i = random.nextInt(1000); 0 < i; i--) {
+                arg.add(random.nextInt(100000));
+            }
+            final TreeList<Integer> obj = new TreeList<>(arg);
+            final List<Integer> actual = new ArrayList<>();
+            obj.forEach(new Consumer<Integer>() {
+
+                @Override
+                public void accept(Integer o) {
+                    actual.add(o);
+                }
+            });
+
+            assertThat(actual, is((List<Integer>) new ArrayList<>(arg)));
+        }
+
+        @Test
+        public void loaded() throws Exception {
+            TreeList<Integer> obj = new TreeList<>(Arrays.asList(3, 1, 2));
+            obj.get(2);
+            obj.insert(4);
+            final List<Integer> actual = new ArrayList<>();
+            obj.forEach(new Consumer<Integer>() {
+
+                @Override
+                public void accept(Integer o) {
+                    actual.add(o);
+                }
+            });
+
+            assertThat(actual, contains(1, 2, 3, 4));
+        }
+
+        @Test
+        public void modify() throws Exception {
+            final TreeList<Integer> obj = new TreeList<>(Arrays.asList(1, 2, 3));
+            final List<Integer> actual = new ArrayList<>();
+            try {
+                obj.forEach(new Consumer<Integer>() {
+
+                    @Override
+                    public void accept(Integer o) {
+                        actual.add(o);
+                        obj.insert(o + 10);
+                    }
+                });
+                fail();
+            } catch (IllegalStateException e) {
+                // nop
+            }
+
+            assertThat(actual, contains(1));
+            assertThat(obj, contains(1, 2, 3));
+        }
+    }
+
+    public static class MethodForEachInRange {
+
+        @Test
+        public void test() throws Exception {
+            Random random = new Random();
+            TreeSet<Integer> arg = new TreeSet<>();
+            for (int i = random.nextInt(1000); 0 < i; i--) {
+                arg.add(random.nextInt(1000));
+            }
+            TreeList<Integer> obj = new TreeList<>(arg);
+            for (int n = 0; n < 100; n++) {
+                int from = random.nextInt(1100) - 50;
+                int to = from + random.nextInt(300);
+                final List<Integer> actual = new ArrayList<>();
+                obj.forEachInRange(from, to, new Consumer<Integer>() {
+
+                    @Override
+                    public void accept(Integer o) {
+                        actual.add(o);
+                    }
+                });
+
+                assertThat(actual, is((List<Integer>) new ArrayList<>(arg.subSet(from, to))));
+            }
+        }
+
+        @Test
+        public void comparator() throws Exception {
+            TreeList<Integer> obj = new TreeList<>(Collections.<Integer> reverseOrder());
+            obj.insertAll(Arrays.asList(1, 2, 3, 4, 5));
+            final List<Integer> actual = new ArrayList<>();
+            obj.forEachInRange(4, 1, new Consumer<Integer>() {
+
+                @Override
+                public void accept(Integer o) {
+                    actual.add(o);
+                }
+            });
+
+            assertThat(actual, contains(4, 3, 2));
+            actual.clear();
+            // now walks the loaded view
+            obj.get(4);
+            obj.forEachInRange(5, 3, new Consumer<Integer>() {
+
+                @Override
+                public void accept(Integer o) {
+                    actual.add(o);
+                }
+            });
+            assertThat(actual, contains(5, 4));
+            try {
+                obj.forEachInRange(1, 4, actual::add);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // nop
+            }
+        }
+    }
+
+    public static class MethodCursor {
+
+        @Test
+        public void test() throws Exception {
+            TreeList<Integer> obj = new TreeList<>(Arrays.asList(5, 1, 3));
+            TreeList.Cursor<Integer> cursor = obj.cursor();
+
+            assertThat(cursor.next(), is(1));
+            assertThat(cursor.index(), is(1));
+            obj.insert(2);
+            assertThat(cursor.next(), is(3));
+            assertThat(cursor.next(), is(5));
+            assertThat(cursor.hasNext(), is(false));
+            try {
+                cursor.next();
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+
+            cursor.reset();
+            List<Integer> actual = new ArrayList<>();
+            while (cursor.hasNext()) {
+                actual.add(cursor.next());
+            }
+            assertThat(actual, contains(1, 2, 3, 5));
+
+            assertThat(cursor.reset().seek(3).next(), is(3));
+            assertThat(cursor.seek(4).next(), is(5));
+            assertThat(cursor.seek(6).hasNext(), is(false));
+            try {
+                cursor.remove();
+                fail();
+            } catch (UnsupportedOperationException e) {
+                // nop
+            }
+        }
+    }
 }
@@ -0,0 +1,258 @@
+package sc.ript.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class WeightedTreeListTest {
+
+    static final WeightedTreeList.Weigher<Integer> VALUE = new WeightedTreeList.Weigher<Integer>() {
+
+        @Override
+        public long weightOf(Integer o) {
+            return o.longValue();
+        }
+    };
+
+    static long prefixSum(List<Integer> model, int k) {
+        long sum = 0;
+        for (int i = 0; i < k; i++) {
+            sum += model.get(i);
+        }
+        return sum;
+    }
+
+    public static class Constructor {
+
+        @Test
+        public void isEmpty() throws Exception {
+            WeightedTreeList<Integer> obj = new WeightedTreeList<>(VALUE);
+
+            assertThat(obj, empty());
+            assertThat(obj.totalWeight(), is(0L));
+            assertThat(obj.prefixSum(0), is(0L));
+            assertThat(obj.indexOfCumulative(1), is(-1));
+            try {
+                obj.first();
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+        }
+
+        @Test
+        public void isNull() throws Exception {
+            try {
+                new WeightedTreeList<Integer>(null);
+                fail();
+            } catch (NullPointerException e) {
+                // nop
+            }
+        }
+    }
+
+    public static class MethodInsert {
+
+        @Test
+        public void test() throws Exception {
+            WeightedTreeList<Integer> obj = new WeightedTreeList<>(VALUE, Collections.reverseOrder());
+
+            assertThat(obj.insert(3), is(true));
+            assertThat(obj.insert(1), is(true));
+            assertThat(obj.insert(3), is(false));
+            assertThat(obj.insertAll(Arrays.asList(2, 5, 1)), is(true));
+
+            assertThat(obj, contains(5, 3, 2, 1));
+            assertThat(obj.totalWeight(), is(11L));
+        }
+
+        @Test
+        public void negativeWeight() throws Exception {
+            WeightedTreeList<Integer> obj = new WeightedTreeList<>(VALUE);
+
+            try {
+                obj.insert(-1);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // nop
+            }
+            assertThat(obj, empty());
+        }
+    }
+
+    public static class Model {
+
+        @Test
+        public void test() throws Exception {
+            WeightedTreeList<Integer> obj = new WeightedTreeList<>(VALUE);
+            TreeSet<Integer> model = new TreeSet<>();
+            Random random = new Random();
+
+            for (int step = 0; step < 3000; step++) {
+                int o = random.nextInt(500);
+                switch (random.nextInt(4)) {
+                case 0:
+                    assertThat(obj.remove((Object) o), is(model.remove(o)));
+                    break;
+                case 1:
+                    if (!model.isEmpty()) {
+                        int index = random.nextInt(model.size());
+                        Integer expected = new ArrayList<>(model).get(index);
+                        assertThat(obj.remove(index), is(expected));
+                        model.remove(expected);
+                    }
+                    break;
+                default:
+                    assertThat(obj.insert(o), is(model.add(o)));
+                    break;
+                }
+            }
+            List<Integer> list = new ArrayList<>(model);
+
+            assertThat(obj, contains(list.toArray()));
+            for (int k = 0; k <= list.size(); k++) {
+                assertThat(obj.prefixSum(k), is(prefixSum(list, k)));
+            }
+            for (int i = 0; i < list.size(); i++) {
+                assertThat(obj.get(i), is(list.get(i)));
+                assertThat(obj.indexOf(list.get(i)), is(i));
+            }
+            for (int i = 0; i < 100; i++) {
+                int from = random.nextInt(600) - 50;
+                int to = random.nextInt(600) - 50;
+                long expected = 0;
+                for (Integer o : list) {
+                    if ((from <= o) && (o < to)) {
+                        expected += o;
+                    }
+                }
+                assertThat(obj.rangeSum(from, to), is(expected));
+            }
+            long total = obj.totalWeight();
+            assertThat(total, is(prefixSum(list, list.size())));
+            for (int i = 0; i < 100; i++) {
+                long weight = (long) (random.nextDouble() * (total + 1));
+                int index = obj.indexOfCumulative(weight);
+                assertThat(prefixSum(list, index + 1), greaterThanOrEqualTo(weight));
+                if (0 < index) {
+                    assertThat(prefixSum(list, index), lessThan(weight));
+                }
+            }
+            assertThat(obj.indexOfCumulative(total + 1), is(-1));
+        }
+    }
+
+    public static class MethodPrefixSum {
+
+        @Test
+        public void boundary() throws Exception {
+            WeightedTreeList<Integer> obj = new WeightedTreeList<>(VALUE);
+            obj.insertAll(Arrays.asList(1, 2, 3));
+
+            assertThat(obj.prefixSum(3), is(6L));
+            try {
+                obj.prefixSum(4);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+                // nop
+            }
+            try {
+                obj.prefixSum(-1);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+                // nop
+            }
+        }
+    }
+
+    public static class MethodIndexOfCumulative {
+
+        @Test
+        public void zeroWeights() throws Exception {
+            WeightedTreeList<Integer> obj = new WeightedTreeList<>(VALUE);
+            obj.insertAll(Arrays.asList(0, 4, 6));
+
+            assertThat(obj.indexOfCumulative(0), is(0));
+            assertThat(obj.indexOfCumulative(1), is(1));
+            assertThat(obj.indexOfCumulative(4), is(1));
+            assertThat(obj.indexOfCumulative(5), is(2));
+            assertThat(obj.indexOfCumulative(10), is(2));
+            assertThat(obj.indexOfCumulative(11), is(-1));
+        }
+    }
+
+    public static class MethodRetainAll {
+
+        @Test
+        public void test() throws Exception {
+            WeightedTreeList<Integer> obj = new WeightedTreeList<>(VALUE);
+            obj.insertAll(Arrays.asList(1, 2, 3, 4, 5));
+
+            assertThat(obj.retainAll(Arrays.asList(2, 4, 9)), is(true));
+            assertThat(obj.retainAll(Arrays.asList(2, 4, 9)), is(false));
+            assertThat(obj, contains(2, 4));
+            assertThat(obj.totalWeight(), is(6L));
+            assertThat(obj.removeAll(Arrays.asList(4, 7)), is(true));
+            assertThat(obj, contains(2));
+            assertThat(obj.indexOf(null), is(-1));
+        }
+    }
+
+    public static class MethodQuantiles {
+
+        @Test
+        public void test() throws Exception {
+            WeightedTreeList<Integer> obj = new WeightedTreeList<>(VALUE);
+            Random random = new Random();
+            TreeSet<Integer> model = new TreeSet<>();
+            int size = Math.max(random.nextInt(2000), 1);
+            while (model.size() < size) {
+                int o = random.nextInt(100000);
+                model.add(o);
+                obj.insert(o);
+            }
+            List<Integer> list = new ArrayList<>(model);
+            double[] qs = { 0.999, 0, 0.5, 1, random.nextDouble(), 0.5 };
+
+            List<Integer> actual = obj.quantiles(qs);
+            for (int i = 0; i < qs.length; i++) {
+                int index = (int) Math.ceil(qs[i] * size) - 1;
+                assertThat(actual.get(i), is(list.get(Math.max(index, 0))));
+            }
+        }
+
+        @Test
+        public void weighted() throws Exception {
+            WeightedTreeList<Integer> obj = new WeightedTreeList<>(VALUE);
+            obj.insertAll(Arrays.asList(1, 2, 3, 4));
+
+            // running weights 1, 3, 6, 10
+            assertThat(obj.weightedQuantiles(0, 0.3, 0.31, 0.6, 1), contains(1, 2, 3, 3, 4));
+            assertThat(obj.weightedQuantile(0.5), is(3));
+            try {
+                new WeightedTreeList<>(VALUE).weightedQuantile(0.5);
+                fail();
+            } catch (NoSuchElementException e) {
+                // nop
+            }
+            try {
+                obj.weightedQuantile(2);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // nop
+            }
+        }
+    }
+}